@@ -0,0 +1,67 @@
+package com.smarttransit.authservice.actuator;
+
+import com.smarttransit.authservice.repository.UserRepository;
+import com.smarttransit.authservice.service.PasswordHashPolicy;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * /actuator/passwordhashes: the BCrypt work factor in force, how it was calibrated,
+ * and how many stored hashes still use each cost (i.e. how far the rehash-on-login
+ * migration has progressed). pendingRehash counts the hashes
+ * {@link PasswordHashPolicy#needsRehash} would replace: legacy ones and prefixed ones
+ * below the target cost.
+ */
+@Component
+@Endpoint(id = "passwordhashes")
+public class PasswordHashesEndpoint {
+
+    private final PasswordHashPolicy passwordHashPolicy;
+    private final UserRepository userRepository;
+
+    public PasswordHashesEndpoint(PasswordHashPolicy passwordHashPolicy, UserRepository userRepository) {
+        this.passwordHashPolicy = passwordHashPolicy;
+        this.userRepository = userRepository;
+    }
+
+    @ReadOperation
+    public Map<String, Object> passwordHashes() {
+        Map<String, Long> prefixed = countByCost(userRepository.countPrefixedHashesByCost());
+        Map<String, Long> legacy = countByCost(userRepository.countLegacyHashesByCost());
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("targetCost", passwordHashPolicy.getTargetStrength());
+        body.put("latencyBudgetMs", passwordHashPolicy.getLatencyBudgetMillis());
+        body.put("calibrationMs", passwordHashPolicy.getMeasuredMillis());
+        body.put("costDistribution", prefixed);
+        body.put("legacyCostDistribution", legacy);
+        body.put("pendingRehash", prefixed.entrySet().stream()
+                .filter(entry -> belowTarget(entry.getKey()))
+                .mapToLong(Map.Entry::getValue)
+                .sum() + legacy.values().stream().mapToLong(Long::longValue).sum());
+        return body;
+    }
+
+    private boolean belowTarget(String cost) {
+        try {
+            return Integer.parseInt(cost) < passwordHashPolicy.getTargetStrength();
+        } catch (NumberFormatException e) {
+            // Not a readable cost: needsRehash replaces it too
+            return true;
+        }
+    }
+
+    private static Map<String, Long> countByCost(List<Object[]> rows) {
+        Map<String, Long> counts = new TreeMap<>();
+        for (Object[] row : rows) {
+            counts.merge(String.valueOf(row[0]), ((Number) row[1]).longValue(), Long::sum);
+        }
+        return counts;
+    }
+}
@@ -1,112 +1,142 @@
 package com.smarttransit.authservice.client;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.smarttransit.authservice.dto.UserDto;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
-import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Client non bloquant du user-service.
+ *
+ * Toutes les méthodes renvoient un Mono et ne bloquent aucun thread ; chaque appel
+ * a son propre timeout. Les recherches identiques concurrentes (même email) sont
+ * fusionnées en une seule requête en vol, et getUserById / userExists passent par
+ * un petit cache Caffeine (les erreurs ne sont jamais mises en cache).
+ */
 @Service
 public class UserServiceClient {
 
     private final WebClient webClient;
-    
-    @Value("${user-service.url:http://user-service}")
-    private String userServiceUrl;
+    private final Duration lookupTimeout;
+    private final Duration writeTimeout;
+
+    private final Map<String, Mono<UserDto>> inFlightByEmail = new ConcurrentHashMap<>();
+    private final AsyncCache<Long, UserDto> usersById;
+    private final AsyncCache<String, Boolean> existsByEmail;
 
     @Autowired
-    public UserServiceClient(WebClient.Builder webClientBuilder) {
-        this.webClient = webClientBuilder.build();
+    public UserServiceClient(WebClient.Builder webClientBuilder,
+                             @Value("${user-service.url:http://user-service}") String userServiceUrl,
+                             @Value("${user-service.client.lookup-timeout-ms:2000}") long lookupTimeoutMillis,
+                             @Value("${user-service.client.write-timeout-ms:5000}") long writeTimeoutMillis,
+                             @Value("${user-service.client.cache.max-size:10000}") long cacheMaxSize,
+                             @Value("${user-service.client.cache.ttl-seconds:60}") long cacheTtlSeconds) {
+        this.webClient = webClientBuilder.clone().baseUrl(userServiceUrl).build();
+        this.lookupTimeout = Duration.ofMillis(lookupTimeoutMillis);
+        this.writeTimeout = Duration.ofMillis(writeTimeoutMillis);
+        this.usersById = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .buildAsync();
+        this.existsByEmail = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .buildAsync();
     }
 
     /**
      * Récupère un utilisateur par son email
      * Appel REST: GET /api/users/email/{email}
      */
-    public UserDto getUserByEmail(String email) {
-        try {
-            return webClient.get()
-                    .uri(userServiceUrl + "/api/users/email/{email}", email)
-                    .retrieve()
-                    .bodyToMono(UserDto.class)
-                    .block();
-        } catch (Exception e) {
-            throw new RuntimeException("Erreur lors de la récupération de l'utilisateur par email: " + email, e);
-        }
+    public Mono<UserDto> getUserByEmail(String email) {
+        // Un seul appel en vol par email ; les abonnés concurrents partagent son résultat
+        return Mono.defer(() -> inFlightByEmail.computeIfAbsent(email, key -> fetchUserByEmail(key)
+                        .doFinally(signal -> inFlightByEmail.remove(key))
+                        .cache()))
+                .onErrorMap(e -> new RuntimeException("Erreur lors de la récupération de l'utilisateur par email: " + email, e));
     }
 
     /**
-     * Récupère un utilisateur par son ID
+     * Récupère un utilisateur par son ID (mis en cache)
      * Appel REST: GET /api/users/{userId}
      */
-    public UserDto getUserById(Long userId) {
-        try {
-            return webClient.get()
-                    .uri(userServiceUrl + "/api/users/{userId}", userId)
-                    .retrieve()
-                    .bodyToMono(UserDto.class)
-                    .block();
-        } catch (Exception e) {
-            throw new RuntimeException("Erreur lors de la récupération de l'utilisateur par ID: " + userId, e);
-        }
+    public Mono<UserDto> getUserById(Long userId) {
+        // Le cache asynchrone fusionne aussi les appels concurrents pour le même ID
+        // suppressCancel: un abonné qui annule ne doit pas annuler le futur partagé
+        return Mono.fromFuture(() -> usersById.get(userId, (key, executor) -> webClient.get()
+                        .uri("/api/users/{userId}", key)
+                        .retrieve()
+                        .bodyToMono(UserDto.class)
+                        .timeout(lookupTimeout)
+                        .toFuture()), true)
+                .onErrorMap(e -> new RuntimeException("Erreur lors de la récupération de l'utilisateur par ID: " + userId, e));
     }
 
     /**
      * Vérifie les credentials d'un utilisateur
      * Appel REST: POST /api/users/authenticate
      */
-    public boolean verifyPassword(String email, String password) {
-        try {
-            Map<String, String> credentials = Map.of(
-                "email", email,
-                "password", password
-            );
-
-            Boolean result = webClient.post()
-                    .uri(userServiceUrl + "/api/users/authenticate")
-                    .body(BodyInserters.fromValue(credentials))
-                    .retrieve()
-                    .bodyToMono(Boolean.class)
-                    .block();
+    public Mono<Boolean> verifyPassword(String email, String password) {
+        Map<String, String> credentials = Map.of(
+            "email", email,
+            "password", password
+        );
 
-            return result != null && result;
-        } catch (Exception e) {
-            throw new RuntimeException("Erreur lors de la vérification du mot de passe pour: " + email, e);
-        }
+        return webClient.post()
+                .uri("/api/users/authenticate")
+                .bodyValue(credentials)
+                .retrieve()
+                .bodyToMono(Boolean.class)
+                .timeout(lookupTimeout)
+                .map(Boolean.TRUE::equals)
+                .defaultIfEmpty(false)
+                .onErrorMap(e -> new RuntimeException("Erreur lors de la vérification du mot de passe pour: " + email, e));
     }
 
     /**
      * Met à jour le mot de passe d'un utilisateur
      * Appel REST: PUT /api/users/{userId}/password
      */
-    public void updatePassword(Long userId, String newPassword) {
-        try {
-            Map<String, String> passwordData = Map.of("password", newPassword);
+    public Mono<Void> updatePassword(Long userId, String newPassword) {
+        Map<String, String> passwordData = Map.of("password", newPassword);
 
-            webClient.put()
-                    .uri(userServiceUrl + "/api/users/{userId}/password", userId)
-                    .body(BodyInserters.fromValue(passwordData))
-                    .retrieve()
-                    .bodyToMono(Void.class)
-                    .block();
-        } catch (Exception e) {
-            throw new RuntimeException("Erreur lors de la mise à jour du mot de passe pour l'utilisateur: " + userId, e);
-        }
+        return webClient.put()
+                .uri("/api/users/{userId}/password", userId)
+                .bodyValue(passwordData)
+                .retrieve()
+                .bodyToMono(Void.class)
+                .timeout(writeTimeout)
+                .doOnSuccess(ignored -> usersById.synchronous().invalidate(userId))
+                .onErrorMap(e -> new RuntimeException("Erreur lors de la mise à jour du mot de passe pour l'utilisateur: " + userId, e));
     }
 
     /**
      * Vérifie si un utilisateur existe par email
+     * (mis en cache ; une erreur autre que 404 renvoie false sans être mise en cache)
      */
-    public boolean userExists(String email) {
-        try {
-            UserDto user = getUserByEmail(email);
-            return user != null;
-        } catch (Exception e) {
-            return false;
-        }
+    public Mono<Boolean> userExists(String email) {
+        return Mono.fromFuture(() -> existsByEmail.get(email, (key, executor) -> fetchUserByEmail(key)
+                        .map(user -> true)
+                        .defaultIfEmpty(false)
+                        .onErrorResume(WebClientResponseException.NotFound.class, e -> Mono.just(false))
+                        .toFuture()), true)
+                .onErrorReturn(false);
+    }
+
+    private Mono<UserDto> fetchUserByEmail(String email) {
+        return webClient.get()
+                .uri("/api/users/email/{email}", email)
+                .retrieve()
+                .bodyToMono(UserDto.class)
+                .timeout(lookupTimeout);
     }
-}
\ No newline at end of file
+}
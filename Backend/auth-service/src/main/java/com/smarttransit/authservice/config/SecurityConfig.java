@@ -1,14 +1,41 @@
 package com.smarttransit.authservice.config;
 
+import com.smarttransit.authservice.service.PasswordHashPolicy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Map;
 
 @Configuration
 public class SecurityConfig {
-    
+
+    /**
+     * Fixed work factor when auth.password-hashing.strength > 0, otherwise calibrated
+     * against the per-hash latency budget at startup
+     */
+    @Bean
+    public PasswordHashPolicy passwordHashPolicy(@Value("${auth.password-hashing.strength:0}") int strength,
+                                                 @Value("${auth.password-hashing.target-latency-ms:250}") long targetLatencyMillis,
+                                                 @Value("${auth.password-hashing.min-strength:10}") int minStrength,
+                                                 @Value("${auth.password-hashing.max-strength:14}") int maxStrength) {
+        if (strength > 0) {
+            return new PasswordHashPolicy(strength, targetLatencyMillis, Map.of());
+        }
+        return PasswordHashPolicy.calibrate(targetLatencyMillis, minStrength, maxStrength);
+    }
+
+    /**
+     * New hashes are written as {bcrypt}...; legacy hashes without a prefix still match
+     */
     @Bean
-    public BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(PasswordHashPolicy passwordHashPolicy) {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(passwordHashPolicy.getTargetStrength());
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bcrypt));
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return encoder;
     }
-}
\ No newline at end of file
+}
@@ -1,16 +1,52 @@
 package com.smarttransit.authservice.config;
 
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
 
 @Configuration
 public class WebClientConfig {
 
+    /**
+     * Bounded, shared connection pool for calls to other services: idle connections
+     * are reused instead of opening one per request, and a request that cannot get a
+     * connection within pending-acquire-timeout fails fast instead of queueing forever
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider serviceConnectionProvider(
+            @Value("${http-client.pool.max-connections:100}") int maxConnections,
+            @Value("${http-client.pool.pending-acquire-max-count:500}") int pendingAcquireMaxCount,
+            @Value("${http-client.pool.pending-acquire-timeout-ms:2000}") long pendingAcquireTimeoutMillis,
+            @Value("${http-client.pool.max-idle-time-ms:30000}") long maxIdleTimeMillis,
+            @Value("${http-client.pool.max-life-time-ms:300000}") long maxLifeTimeMillis) {
+        return ConnectionProvider.builder("service-calls")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMillis))
+                .maxIdleTime(Duration.ofMillis(maxIdleTimeMillis))
+                .maxLifeTime(Duration.ofMillis(maxLifeTimeMillis))
+                .evictInBackground(Duration.ofSeconds(30))
+                .metrics(true)
+                .build();
+    }
+
     @Bean
     @LoadBalanced
-    public WebClient.Builder webClientBuilder() {
-        return WebClient.builder();
+    public WebClient.Builder webClientBuilder(ConnectionProvider serviceConnectionProvider,
+                                              @Value("${http-client.connect-timeout-ms:1000}") int connectTimeoutMillis,
+                                              @Value("${http-client.response-timeout-ms:5000}") long responseTimeoutMillis) {
+        HttpClient httpClient = HttpClient.create(serviceConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMillis)
+                .responseTimeout(Duration.ofMillis(responseTimeoutMillis))
+                .compress(true);
+        return WebClient.builder().clientConnector(new ReactorClientHttpConnector(httpClient));
     }
-}
\ No newline at end of file
+}
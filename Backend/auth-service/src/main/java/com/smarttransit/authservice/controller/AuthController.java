@@ -1,7 +1,10 @@
 package com.smarttransit.authservice.controller;
 
 import com.smarttransit.authservice.dto.*;
+import com.smarttransit.authservice.exception.TooManyRequestsException;
 import com.smarttransit.authservice.service.AuthService;
+import com.smarttransit.authservice.util.ClientAddresses;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -13,10 +16,12 @@ import org.springframework.web.bind.annotation.*;
 public class AuthController {
 
     private final AuthService authService;
+    private final ClientAddresses clientAddresses;
 
     @Autowired
-    public AuthController(AuthService authService) {
+    public AuthController(AuthService authService, ClientAddresses clientAddresses) {
         this.authService = authService;
+        this.clientAddresses = clientAddresses;
     }
 
     @PostMapping("/register")
@@ -25,6 +30,8 @@ public class AuthController {
             authService.register(registerRequest);
             return ResponseEntity.status(HttpStatus.CREATED)
                 .body(AuthResponse.success("User registered successfully"));
+        } catch (TooManyRequestsException e) {
+            throw e;
         } catch (Exception e) {
             return ResponseEntity.badRequest()
                 .body(AuthResponse.error("Registration failed: " + e.getMessage()));
@@ -32,13 +39,17 @@ public class AuthController {
     }
 
     @PostMapping("/login")
-    public ResponseEntity<LoginResponse> login(@Valid @RequestBody LoginRequest loginRequest) {
+    public ResponseEntity<LoginResponse> login(@Valid @RequestBody LoginRequest loginRequest,
+                                               HttpServletRequest request) {
         try {
             LoginResponse response = authService.login(
                 loginRequest.getEmail(), 
-                loginRequest.getPassword()
+                loginRequest.getPassword(),
+                clientAddresses.resolve(request)
             );
             return ResponseEntity.ok(response);
+        } catch (TooManyRequestsException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage());
         }
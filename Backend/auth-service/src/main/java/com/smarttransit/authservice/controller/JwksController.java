@@ -0,0 +1,37 @@
+package com.smarttransit.authservice.controller;
+
+import com.smarttransit.authservice.service.SigningKeyManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+
+/**
+ * Public keys for verifying access tokens without calling auth-service
+ */
+@RestController
+public class JwksController {
+
+    private final SigningKeyManager signingKeyManager;
+
+    // Keep below jwt.keys.publish-ahead-minutes so clients see new keys before they sign
+    @Value("${jwt.keys.jwks-max-age-seconds:300}")
+    private long maxAgeSeconds = 300;
+
+    @Autowired
+    public JwksController(SigningKeyManager signingKeyManager) {
+        this.signingKeyManager = signingKeyManager;
+    }
+
+    @GetMapping(value = "/.well-known/jwks.json", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> jwks() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds)).cachePublic())
+                .body(signingKeyManager.jwksJson());
+    }
+}
@@ -1,8 +1,11 @@
 package com.smarttransit.authservice.controller;
 
 import com.smarttransit.authservice.dto.*;
+import com.smarttransit.authservice.exception.TooManyRequestsException;
 import com.smarttransit.authservice.model.User;
 import com.smarttransit.authservice.service.AuthService;
+import com.smarttransit.authservice.util.ClientAddresses;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -15,20 +18,26 @@ import java.util.List;
 public class PublicAuthController {
 
     private final AuthService authService;
+    private final ClientAddresses clientAddresses;
 
     @Autowired
-    public PublicAuthController(AuthService authService) {
+    public PublicAuthController(AuthService authService, ClientAddresses clientAddresses) {
         this.authService = authService;
+        this.clientAddresses = clientAddresses;
     }
 
     @PostMapping("/login")
-    public ResponseEntity<PublicLoginResponse> login(@Valid @RequestBody LoginRequest loginRequest) {
+    public ResponseEntity<PublicLoginResponse> login(@Valid @RequestBody LoginRequest loginRequest,
+                                                     HttpServletRequest request) {
         try {
-            LoginResponse lr = authService.login(loginRequest.getEmail(), loginRequest.getPassword());
+            LoginResponse lr = authService.login(loginRequest.getEmail(), loginRequest.getPassword(),
+                    clientAddresses.resolve(request));
             PublicUserDto user = toPublicUser(lr.getUserId(), lr.getEmail(), lr.getRoles());
             TokensDto tokens = new TokensDto(lr.getAccessToken(), lr.getRefreshToken());
             PublicLoginResponse response = new PublicLoginResponse(true, user, tokens, null);
             return ResponseEntity.ok(response);
+        } catch (TooManyRequestsException e) {
+            throw e;
         } catch (Exception e) {
             PublicLoginResponse response = new PublicLoginResponse(false, null, null, "Invalid credentials");
             return ResponseEntity.ok(response);
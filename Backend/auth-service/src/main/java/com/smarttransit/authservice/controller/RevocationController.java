@@ -0,0 +1,57 @@
+package com.smarttransit.authservice.controller;
+
+import com.smarttransit.authservice.service.RevokedTokenCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Revoked, not yet expired tokens, polled by the gateway so it can reject them
+ * without a per-request call. Tokens are identified by their SHA-256 only.
+ *
+ * Internal: callers must send auth.internal.api-key in X-Internal-Api-Key (the
+ * gateway also refuses the path from clients). Without a configured key the
+ * endpoint answers 403 to everyone.
+ */
+@RestController
+@RequestMapping("/api/auth")
+public class RevocationController {
+
+    public static final String API_KEY_HEADER = "X-Internal-Api-Key";
+
+    private final RevokedTokenCache revokedTokenCache;
+    private final byte[] apiKey;
+
+    @Autowired
+    public RevocationController(RevokedTokenCache revokedTokenCache,
+                                @Value("${auth.internal.api-key:}") String apiKey) {
+        this.revokedTokenCache = revokedTokenCache;
+        this.apiKey = apiKey.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @GetMapping("/revocations")
+    public ResponseEntity<Map<String, Object>> revocations(
+            @RequestHeader(name = API_KEY_HEADER, required = false) String callerKey) {
+        if (apiKey.length == 0 || callerKey == null
+                || !MessageDigest.isEqual(apiKey, callerKey.getBytes(StandardCharsets.UTF_8))) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (!revokedTokenCache.isInitialized()) {
+            return ResponseEntity.status(503).build();
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("tokenHashes", revokedTokenCache.revokedTokenIds());
+        body.put("userCutoffs", revokedTokenCache.userCutoffSeconds());
+        return ResponseEntity.ok(body);
+    }
+}
@@ -0,0 +1,98 @@
+package com.smarttransit.authservice.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * RSA key pair used to sign JWTs. Shared through the database so every
+ * auth-service instance signs with, and publishes, the same keys.
+ */
+@Entity
+@Table(name = "signing_keys")
+public class SigningKey {
+
+    // Key id, sent as the JWT "kid" header and in the JWKS
+    @Id
+    @Column(length = 64)
+    private String kid;
+
+    @Column(nullable = false, length = 16)
+    private String algorithm;
+
+    // X.509 SubjectPublicKeyInfo, base64
+    @Column(nullable = false, length = 1024)
+    private String publicKey;
+
+    // PKCS#8, base64
+    @Column(nullable = false, length = 4096)
+    private String privateKey;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    // Published in the JWKS from createdAt, used for signing from activatesAt
+    @Column(nullable = false)
+    private LocalDateTime activatesAt;
+
+    // Constructors
+    public SigningKey() {}
+
+    public SigningKey(String kid, String algorithm, String publicKey, String privateKey,
+                      LocalDateTime createdAt, LocalDateTime activatesAt) {
+        this.kid = kid;
+        this.algorithm = algorithm;
+        this.publicKey = publicKey;
+        this.privateKey = privateKey;
+        this.createdAt = createdAt;
+        this.activatesAt = activatesAt;
+    }
+
+    // Getters and setters
+    public String getKid() {
+        return kid;
+    }
+
+    public void setKid(String kid) {
+        this.kid = kid;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public String getPublicKey() {
+        return publicKey;
+    }
+
+    public void setPublicKey(String publicKey) {
+        this.publicKey = publicKey;
+    }
+
+    public String getPrivateKey() {
+        return privateKey;
+    }
+
+    public void setPrivateKey(String privateKey) {
+        this.privateKey = privateKey;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getActivatesAt() {
+        return activatesAt;
+    }
+
+    public void setActivatesAt(LocalDateTime activatesAt) {
+        this.activatesAt = activatesAt;
+    }
+}
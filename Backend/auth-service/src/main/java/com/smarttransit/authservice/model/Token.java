@@ -1,19 +1,22 @@
 package com.smarttransit.authservice.model;
 
 import com.smarttransit.authservice.enums.TokenType;
+import com.smarttransit.authservice.util.TokenDigests;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "tokens", indexes = {
-    @Index(name = "idx_token", columnList = "token"),
+    @Index(name = "idx_token_hash", columnList = "tokenHash", unique = true),
     @Index(name = "idx_user_id", columnList = "userId"),
     @Index(name = "idx_expires_at", columnList = "expiresAt")
 })
 public class Token {
 
+    // Sequence (not IDENTITY) ids let Hibernate batch inserts; one sequence call covers 50 rows
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tokens_seq")
+    @SequenceGenerator(name = "tokens_seq", sequenceName = "tokens_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -22,6 +25,11 @@ public class Token {
     @Column(nullable = false, length = 1000)
     private String token;
 
+    // SHA-256 of the token (hex); all lookups go through this fixed-size key.
+    // Rows from before the column are filled at startup by TokenHashBackfill
+    @Column(length = 64)
+    private String tokenHash;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private TokenType tokenType;
@@ -50,7 +58,7 @@ public class Token {
 
     public Token(Long userId, String token, TokenType tokenType, LocalDateTime expiresAt) {
         this.userId = userId;
-        this.token = token;
+        setToken(token);
         this.tokenType = tokenType;
         this.expiresAt = expiresAt;
         this.createdAt = LocalDateTime.now();
@@ -80,6 +88,11 @@ public class Token {
 
     public void setToken(String token) {
         this.token = token;
+        this.tokenHash = token == null ? null : TokenDigests.sha256Hex(token);
+    }
+
+    public String getTokenHash() {
+        return tokenHash;
     }
 
     public TokenType getTokenType() {
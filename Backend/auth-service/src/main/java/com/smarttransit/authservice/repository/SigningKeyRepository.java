@@ -0,0 +1,14 @@
+package com.smarttransit.authservice.repository;
+
+import com.smarttransit.authservice.model.SigningKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface SigningKeyRepository extends JpaRepository<SigningKey, String> {
+
+    // All keys, oldest activation first
+    List<SigningKey> findAllByOrderByActivatesAtAsc();
+}
@@ -2,6 +2,7 @@ package com.smarttransit.authservice.repository;
 
 import com.smarttransit.authservice.enums.TokenType;
 import com.smarttransit.authservice.model.Token;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -15,8 +16,12 @@ import java.util.Optional;
 @Repository
 public interface TokenRepository extends JpaRepository<Token, Long> {
 
-    // Find token by token string for validation
-    Optional<Token> findByToken(String token);
+    // Find token by the SHA-256 of its value for validation
+    Optional<Token> findByTokenHash(String tokenHash);
+
+    // Rows written before token_hash existed, a keyset page at a time
+    @Query("SELECT t FROM Token t WHERE t.tokenHash IS NULL AND t.id > :afterId ORDER BY t.id")
+    List<Token> findWithoutTokenHash(@Param("afterId") Long afterId, Pageable pageable);
 
     // Find all tokens for a specific user
     List<Token> findByUserId(Long userId);
@@ -34,23 +39,38 @@ public interface TokenRepository extends JpaRepository<Token, Long> {
 
     // Revoke all tokens for a user (logout from all devices)
     @Modifying
-    @Query("UPDATE Token t SET t.isRevoked = true WHERE t.userId = :userId")
+    @Query("UPDATE Token t SET t.isRevoked = true WHERE t.userId = :userId AND t.isRevoked = false")
     int revokeAllTokensForUser(@Param("userId") Long userId);
 
+    // Revoke a single token by the SHA-256 of its value
+    @Modifying
+    @Query("UPDATE Token t SET t.isRevoked = true WHERE t.tokenHash = :tokenHash AND t.isRevoked = false")
+    int revokeByTokenHash(@Param("tokenHash") String tokenHash);
+
     // Revoke all tokens of a specific type for a user
     @Modifying
     @Query("UPDATE Token t SET t.isRevoked = true WHERE t.userId = :userId AND t.tokenType = :tokenType")
     int revokeAllTokensForUserByType(@Param("userId") Long userId, @Param("tokenType") TokenType tokenType);
 
-    // Find expired tokens for cleanup
-    List<Token> findByExpiresAtBefore(LocalDateTime dateTime);
+    // Revoked tokens that are still within their lifetime (revocation cache sync)
+    @Query("SELECT t.tokenHash FROM Token t WHERE t.isRevoked = true AND t.expiresAt > :now")
+    List<String> findRevokedTokenHashes(@Param("now") LocalDateTime now);
 
     // Delete expired tokens (cleanup job)
     @Modifying
     @Query("DELETE FROM Token t WHERE t.expiresAt < :dateTime")
     int deleteExpiredTokens(@Param("dateTime") LocalDateTime dateTime);
 
+    // Next page of expired token ids after a keyset position (chunked purge)
+    @Query("SELECT t.id FROM Token t WHERE t.expiresAt < :dateTime AND t.id > :afterId ORDER BY t.id")
+    List<Long> findExpiredTokenIds(@Param("dateTime") LocalDateTime dateTime, @Param("afterId") Long afterId, Pageable pageable);
+
+    // Delete expired tokens within one keyset chunk (afterId, upToId]
+    @Modifying
+    @Query("DELETE FROM Token t WHERE t.expiresAt < :dateTime AND t.id > :afterId AND t.id <= :upToId")
+    int deleteExpiredTokens(@Param("dateTime") LocalDateTime dateTime, @Param("afterId") Long afterId, @Param("upToId") Long upToId);
+
     // Check if a token exists and is valid
-    @Query("SELECT CASE WHEN COUNT(t) > 0 THEN true ELSE false END FROM Token t WHERE t.token = :token AND t.isRevoked = false AND t.expiresAt > :now")
-    boolean isTokenValid(@Param("token") String token, @Param("now") LocalDateTime now);
+    @Query("SELECT CASE WHEN COUNT(t) > 0 THEN true ELSE false END FROM Token t WHERE t.tokenHash = :tokenHash AND t.isRevoked = false AND t.expiresAt > :now")
+    boolean isTokenValid(@Param("tokenHash") String tokenHash, @Param("now") LocalDateTime now);
 }
\ No newline at end of file
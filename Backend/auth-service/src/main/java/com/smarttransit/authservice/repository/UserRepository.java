@@ -2,8 +2,13 @@ package com.smarttransit.authservice.repository;
 
 import com.smarttransit.authservice.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -14,4 +19,20 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByEmail(String email);
     
     Optional<User> findByEmailAndIsActiveTrue(String email);
+
+    // Replace a password hash only if it has not changed since it was verified
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.password = :newHash WHERE u.id = :id AND u.password = :oldHash")
+    int updatePasswordHash(@Param("id") Long id, @Param("oldHash") String oldHash, @Param("newHash") String newHash);
+
+    // BCrypt cost of hashes stored with the {bcrypt} prefix: {bcrypt}$2a$NN$...
+    @Query("SELECT SUBSTRING(u.password, 13, 2), COUNT(u) FROM User u WHERE u.password LIKE '{bcrypt}%' "
+            + "GROUP BY SUBSTRING(u.password, 13, 2)")
+    List<Object[]> countPrefixedHashesByCost();
+
+    // BCrypt cost of legacy hashes without a prefix: $2a$NN$...
+    @Query("SELECT SUBSTRING(u.password, 5, 2), COUNT(u) FROM User u WHERE u.password LIKE '$2%' "
+            + "GROUP BY SUBSTRING(u.password, 5, 2)")
+    List<Object[]> countLegacyHashesByCost();
 }
\ No newline at end of file
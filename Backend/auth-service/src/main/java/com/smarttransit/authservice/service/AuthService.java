@@ -6,11 +6,14 @@ import com.smarttransit.authservice.dto.LoginResponse;
 import com.smarttransit.authservice.dto.RegisterRequest;
 import com.smarttransit.authservice.dto.TokenValidationResponse;
 import com.smarttransit.authservice.enums.TokenType;
+import com.smarttransit.authservice.exception.TooManyRequestsException;
 import com.smarttransit.authservice.model.Role;
 import com.smarttransit.authservice.model.User;
 import com.smarttransit.authservice.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -20,15 +23,25 @@ import java.util.stream.Collectors;
 @Service
 public class AuthService {
 
+    private static final Logger log = LoggerFactory.getLogger(AuthService.class);
+
     private final UserRepository userRepository;
     private final TokenService tokenService;
-    private final BCryptPasswordEncoder passwordEncoder;
+    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+    private final PasswordHashPolicy passwordHashPolicy;
+    private final LoginAttemptLimiter loginAttemptLimiter;
 
     @Autowired
-    public AuthService(UserRepository userRepository, TokenService tokenService, BCryptPasswordEncoder passwordEncoder) {
+    public AuthService(UserRepository userRepository, TokenService tokenService, PasswordEncoder passwordEncoder,
+                       PasswordHashingExecutor passwordHashingExecutor, PasswordHashPolicy passwordHashPolicy,
+                       LoginAttemptLimiter loginAttemptLimiter) {
         this.userRepository = userRepository;
         this.tokenService = tokenService;
         this.passwordEncoder = passwordEncoder;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.passwordHashPolicy = passwordHashPolicy;
+        this.loginAttemptLimiter = loginAttemptLimiter;
     }
 
     /**
@@ -44,7 +57,7 @@ public class AuthService {
             // Create new user
             User user = new User();
             user.setEmail(request.getEmail());
-            user.setPassword(passwordEncoder.encode(request.getPassword()));
+            user.setPassword(passwordHashingExecutor.execute(() -> passwordEncoder.encode(request.getPassword())));
             user.setFirstName(request.getFirstName());
             user.setLastName(request.getLastName());
             user.setRoles(Set.of(Role.USER)); // Default role
@@ -53,6 +66,8 @@ public class AuthService {
             User savedUser = userRepository.save(user);
             
             return AuthResponse.success("User registered successfully", savedUser.getId());
+        } catch (TooManyRequestsException e) {
+            throw e;
         } catch (Exception e) {
             return AuthResponse.error("Registration failed: " + e.getMessage());
         }
@@ -62,15 +77,31 @@ public class AuthService {
      * Authenticate user and return tokens
      */
     public LoginResponse login(String email, String password) {
+        return login(email, password, null);
+    }
+
+    /**
+     * Authenticate user and return tokens, counting failures per email and client IP.
+     * Keys over their failure threshold are rejected with 429 before any lookup or hashing.
+     */
+    public LoginResponse login(String email, String password, String clientIp) {
         try {
+            loginAttemptLimiter.checkAllowed(email, clientIp);
+
             // Find user by email
-            User user = userRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("Invalid credentials"));
+            User user = userRepository.findByEmail(email).orElse(null);
+            if (user == null) {
+                loginAttemptLimiter.recordFailure(email, clientIp);
+                throw new RuntimeException("Invalid credentials");
+            }
 
             // Verify password
-            if (!passwordEncoder.matches(password, user.getPassword())) {
+            if (!passwordHashingExecutor.execute(() -> passwordEncoder.matches(password, user.getPassword()))) {
+                loginAttemptLimiter.recordFailure(email, clientIp);
                 throw new RuntimeException("Invalid credentials");
             }
+            loginAttemptLimiter.recordSuccess(email);
+            upgradePasswordHashIfNeeded(user, password);
 
             // Convert roles to string list
             List<String> roles = user.getRoles().stream()
@@ -81,28 +112,50 @@ public class AuthService {
             String accessToken = tokenService.generateAccessToken(user.getEmail(), user.getId(), roles);
             String refreshToken = tokenService.generateRefreshToken(user.getEmail());
 
-            // Store tokens in database
-            tokenService.storeToken(user.getId(), accessToken, TokenType.ACCESS_TOKEN);
-            tokenService.storeToken(user.getId(), refreshToken, TokenType.REFRESH_TOKEN);
+            // Store both tokens in one batched insert
+            tokenService.storeTokenPair(user.getId(), accessToken, refreshToken);
 
             return new LoginResponse(accessToken, refreshToken, user.getId(), user.getEmail(), roles);
+        } catch (TooManyRequestsException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("Authentication failed: " + e.getMessage());
         }
     }
 
     /**
-     * Logout user by revoking tokens
+     * Re-encode a verified password at the current work factor, off the request path.
+     * Skipped when the hashing pool is busy; the next login will try again.
+     */
+    private void upgradePasswordHashIfNeeded(User user, String password) {
+        String oldHash = user.getPassword();
+        if (!passwordHashPolicy.needsRehash(oldHash)) {
+            return;
+        }
+        Long userId = user.getId();
+        passwordHashingExecutor.tryExecuteAsync(() -> {
+            try {
+                userRepository.updatePasswordHash(userId, oldHash, passwordEncoder.encode(password));
+            } catch (Exception e) {
+                log.warn("Password hash upgrade failed for user {}: {}", userId, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Logout user by revoking tokens: one UPDATE for all of the user's tokens,
+     * or for just this token when it carries no user ID
      */
     public AuthResponse logout(String token) {
         try {
-            tokenService.revokeToken(token);
             Long userId = null;
             try {
                 userId = tokenService.getUserIdFromToken(token);
             } catch (Exception ignored) {}
             if (userId != null) {
                 tokenService.revokeAllUserTokens(userId);
+            } else {
+                tokenService.revokeToken(token);
             }
             return AuthResponse.success("Logged out successfully");
         } catch (Exception e) {
@@ -0,0 +1,148 @@
+package com.smarttransit.authservice.service;
+
+import com.smarttransit.authservice.repository.TokenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes expired tokens in bounded chunks instead of loading them all.
+ *
+ * Each chunk is a keyset page of ids (ORDER BY id after the last deleted id)
+ * removed with one DELETE in its own transaction, followed by a short pause,
+ * so the job never holds more than one chunk of ids in memory or long row locks.
+ * When the tokens table is range-partitioned on expires_at, whole expired
+ * partitions are dropped first and the chunked delete only mops up the rest.
+ *
+ * Progress is published as auth.tokens.purge.* meters (see /actuator/metrics).
+ */
+@Component
+public class ExpiredTokenPurgeJob {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpiredTokenPurgeJob.class);
+
+    private final TokenRepository tokenRepository;
+    private final TokenPartitionManager partitionManager;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter deletedCounter;
+    private final Counter chunkCounter;
+    private final Counter partitionsDroppedCounter;
+    private final Timer chunkTimer;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong deletedInCurrentRun = new AtomicLong();
+    private final AtomicLong deletedInLastRun = new AtomicLong();
+    private final AtomicLong lastRunFinishedEpochSeconds = new AtomicLong();
+
+    @Value("${auth.tokens.purge.batch-size:5000}")
+    private int batchSize = 5000;
+
+    @Value("${auth.tokens.purge.pause-ms:50}")
+    private long pauseMillis = 50;
+
+    public ExpiredTokenPurgeJob(TokenRepository tokenRepository,
+                                TokenPartitionManager partitionManager,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry) {
+        this.tokenRepository = tokenRepository;
+        this.partitionManager = partitionManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.deletedCounter = Counter.builder("auth.tokens.purge.deleted")
+                .description("Expired tokens deleted by the purge job")
+                .register(meterRegistry);
+        this.chunkCounter = Counter.builder("auth.tokens.purge.chunks")
+                .description("Delete chunks executed by the purge job")
+                .register(meterRegistry);
+        this.partitionsDroppedCounter = Counter.builder("auth.tokens.purge.partitions.dropped")
+                .description("Expired token partitions dropped by the purge job")
+                .register(meterRegistry);
+        this.chunkTimer = Timer.builder("auth.tokens.purge.chunk.duration")
+                .description("Time spent deleting one chunk")
+                .register(meterRegistry);
+        meterRegistry.gauge("auth.tokens.purge.running", running, r -> r.get() ? 1 : 0);
+        meterRegistry.gauge("auth.tokens.purge.current.deleted", deletedInCurrentRun);
+        meterRegistry.gauge("auth.tokens.purge.last.deleted", deletedInLastRun);
+        meterRegistry.gauge("auth.tokens.purge.last.finished", lastRunFinishedEpochSeconds);
+    }
+
+    /**
+     * Runs every day at 2 AM by default
+     */
+    @Scheduled(cron = "${auth.tokens.purge.cron:0 0 2 * * ?}")
+    public void purgeExpiredTokens() {
+        purgeExpiredTokens(LocalDateTime.now());
+    }
+
+    /**
+     * Delete every token that expired before the cutoff
+     *
+     * @return number of rows deleted by the chunked delete (dropped partitions are not counted)
+     */
+    public long purgeExpiredTokens(LocalDateTime cutoff) {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Expired token purge already running, skipping");
+            return 0;
+        }
+        deletedInCurrentRun.set(0);
+        try {
+            if (partitionManager.isPartitioned()) {
+                partitionsDroppedCounter.increment(partitionManager.dropPartitionsExpiredBefore(cutoff));
+            }
+
+            long afterId = 0;
+            while (true) {
+                List<Long> ids = tokenRepository.findExpiredTokenIds(cutoff, afterId, PageRequest.of(0, batchSize));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                long fromId = afterId;
+                long upToId = ids.get(ids.size() - 1);
+                Integer deleted = chunkTimer.record(() -> transactionTemplate.execute(
+                        status -> tokenRepository.deleteExpiredTokens(cutoff, fromId, upToId)));
+                long count = deleted == null ? 0 : deleted;
+                deletedCounter.increment(count);
+                chunkCounter.increment();
+                deletedInCurrentRun.addAndGet(count);
+                afterId = upToId;
+
+                if (ids.size() < batchSize) {
+                    break;
+                }
+                pause();
+            }
+
+            long total = deletedInCurrentRun.get();
+            deletedInLastRun.set(total);
+            lastRunFinishedEpochSeconds.set(System.currentTimeMillis() / 1000);
+            log.info("Cleanup completed: {} expired tokens deleted", total);
+            return total;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void pause() {
+        if (pauseMillis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(pauseMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Expired token purge interrupted", e);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.smarttransit.authservice.service;
+
+import com.smarttransit.authservice.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory brute-force guard for login, keyed by email and by client IP.
+ *
+ * Failed attempts are counted in a sliding window approximated from two fixed
+ * windows (previous count weighted by how much of it still overlaps, plus the
+ * current count). Counts are LongAdders, so concurrent failures for the same key
+ * never contend on a lock; only the once-per-window roll-over synchronizes. Once
+ * a key is over its threshold, {@link #checkAllowed} fails with 429 before any
+ * user lookup or BCrypt work is done.
+ *
+ * At most max-tracked-keys keys are kept. When a new key finds the limiter full,
+ * idle keys are dropped first and then the tenth of keys whose last failure is
+ * oldest, so a flood of new keys can never switch the limiter off.
+ *
+ * State is per instance: behind N auth-service replicas the effective limit is
+ * up to N times the configured one.
+ */
+@Component
+public class LoginAttemptLimiter {
+
+    private final boolean enabled;
+    private final long windowMillis;
+    private final int maxFailuresPerEmail;
+    private final int maxFailuresPerIp;
+    private final int maxTrackedKeys;
+    private final LongSupplier clock;
+
+    private final Map<String, Window> emailWindows = new ConcurrentHashMap<>();
+    private final Map<String, Window> ipWindows = new ConcurrentHashMap<>();
+
+    private final Counter failureCounter;
+    private final Counter blockedByEmailCounter;
+    private final Counter blockedByIpCounter;
+    private final Counter evictedCounter;
+
+    @Autowired
+    public LoginAttemptLimiter(@Value("${auth.login-limiter.enabled:true}") boolean enabled,
+                               @Value("${auth.login-limiter.window-seconds:900}") long windowSeconds,
+                               @Value("${auth.login-limiter.max-failures-per-email:10}") int maxFailuresPerEmail,
+                               @Value("${auth.login-limiter.max-failures-per-ip:100}") int maxFailuresPerIp,
+                               @Value("${auth.login-limiter.max-tracked-keys:100000}") int maxTrackedKeys,
+                               MeterRegistry meterRegistry) {
+        this(enabled, windowSeconds, maxFailuresPerEmail, maxFailuresPerIp, maxTrackedKeys, meterRegistry,
+                System::currentTimeMillis);
+    }
+
+    LoginAttemptLimiter(boolean enabled, long windowSeconds, int maxFailuresPerEmail, int maxFailuresPerIp,
+                        int maxTrackedKeys, MeterRegistry meterRegistry, LongSupplier clock) {
+        if (maxTrackedKeys <= 0) {
+            throw new IllegalArgumentException("auth.login-limiter.max-tracked-keys must be positive: " + maxTrackedKeys);
+        }
+        this.enabled = enabled;
+        this.windowMillis = TimeUnit.SECONDS.toMillis(windowSeconds);
+        this.maxFailuresPerEmail = maxFailuresPerEmail;
+        this.maxFailuresPerIp = maxFailuresPerIp;
+        this.maxTrackedKeys = maxTrackedKeys;
+        this.clock = clock;
+
+        this.failureCounter = Counter.builder("auth.login.failures")
+                .description("Failed login attempts counted by the limiter")
+                .register(meterRegistry);
+        this.blockedByEmailCounter = Counter.builder("auth.login.blocked")
+                .description("Login attempts rejected before the password check")
+                .tag("key", "email")
+                .register(meterRegistry);
+        this.blockedByIpCounter = Counter.builder("auth.login.blocked")
+                .description("Login attempts rejected before the password check")
+                .tag("key", "ip")
+                .register(meterRegistry);
+        this.evictedCounter = Counter.builder("auth.login.evicted")
+                .description("Keys with recent failures dropped because max-tracked-keys was reached")
+                .register(meterRegistry);
+        meterRegistry.gauge("auth.login.tracked.keys", this, limiter -> limiter.trackedKeys());
+    }
+
+    /**
+     * Reject the attempt when the email or the client IP is over its failure threshold
+     *
+     * @throws TooManyRequestsException with the seconds left in the current window
+     */
+    public void checkAllowed(String email, String clientIp) {
+        if (!enabled) {
+            return;
+        }
+        long now = clock.getAsLong();
+        if (isOverLimit(ipWindows, clientIp, maxFailuresPerIp, now)) {
+            blockedByIpCounter.increment();
+            throw tooManyAttempts(now);
+        }
+        if (isOverLimit(emailWindows, normalize(email), maxFailuresPerEmail, now)) {
+            blockedByEmailCounter.increment();
+            throw tooManyAttempts(now);
+        }
+    }
+
+    /**
+     * Count a failed attempt (unknown email or wrong password) against both keys
+     */
+    public void recordFailure(String email, String clientIp) {
+        if (!enabled) {
+            return;
+        }
+        long now = clock.getAsLong();
+        failureCounter.increment();
+        increment(emailWindows, normalize(email), now);
+        increment(ipWindows, clientIp, now);
+    }
+
+    /**
+     * A correct password clears the email's failures; the IP keeps its count so
+     * one valid account cannot be used to reset a stuffing run
+     */
+    public void recordSuccess(String email) {
+        if (enabled && email != null) {
+            emailWindows.remove(normalize(email));
+        }
+    }
+
+    /**
+     * Forget keys with no failures in the current or previous window
+     */
+    @Scheduled(fixedDelayString = "${auth.login-limiter.eviction-interval-ms:60000}")
+    public void evictIdle() {
+        evictIdle(clock.getAsLong());
+    }
+
+    private void evictIdle(long now) {
+        emailWindows.values().removeIf(window -> window.estimate(now, windowMillis) == 0);
+        ipWindows.values().removeIf(window -> window.estimate(now, windowMillis) == 0);
+    }
+
+    /**
+     * Make room for a new key: drop idle keys, then the oldest tenth if still full
+     */
+    private synchronized void makeRoom(long now) {
+        if (trackedKeys() < maxTrackedKeys) {
+            return;
+        }
+        evictIdle(now);
+        int excess = trackedKeys() - maxTrackedKeys + 1;
+        if (excess <= 0) {
+            return;
+        }
+        long[] lastFailures = new long[emailWindows.size() + ipWindows.size()];
+        int count = 0;
+        for (Window window : emailWindows.values()) {
+            if (count < lastFailures.length) {
+                lastFailures[count++] = window.lastFailure;
+            }
+        }
+        for (Window window : ipWindows.values()) {
+            if (count < lastFailures.length) {
+                lastFailures[count++] = window.lastFailure;
+            }
+        }
+        if (count == 0) {
+            // Emptied by a concurrent eviction or successful login since the size check
+            return;
+        }
+        Arrays.sort(lastFailures, 0, count);
+        long cutoff = lastFailures[Math.min(count, Math.max(excess, maxTrackedKeys / 10)) - 1];
+        int before = trackedKeys();
+        emailWindows.values().removeIf(window -> window.lastFailure <= cutoff);
+        ipWindows.values().removeIf(window -> window.lastFailure <= cutoff);
+        evictedCounter.increment(before - trackedKeys());
+    }
+
+    public int trackedKeys() {
+        return emailWindows.size() + ipWindows.size();
+    }
+
+    private boolean isOverLimit(Map<String, Window> windows, String key, int maxFailures, long now) {
+        if (key == null) {
+            return false;
+        }
+        Window window = windows.get(key);
+        return window != null && window.estimate(now, windowMillis) >= maxFailures;
+    }
+
+    private void increment(Map<String, Window> windows, String key, long now) {
+        if (key == null) {
+            return;
+        }
+        Window window = windows.get(key);
+        if (window == null) {
+            if (trackedKeys() >= maxTrackedKeys) {
+                makeRoom(now);
+            }
+            window = windows.computeIfAbsent(key, k -> new Window(now / windowMillis));
+        }
+        window.increment(now, windowMillis);
+    }
+
+    private TooManyRequestsException tooManyAttempts(long now) {
+        long retryAfterSeconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(windowMillis - now % windowMillis));
+        return new TooManyRequestsException("Too many failed login attempts, please retry later", retryAfterSeconds);
+    }
+
+    private static String normalize(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Window {
+        private volatile long index;
+        private volatile long previous;
+        private final LongAdder current = new LongAdder();
+        private volatile long lastFailure;
+
+        Window(long index) {
+            this.index = index;
+        }
+
+        void increment(long now, long windowMillis) {
+            roll(now / windowMillis);
+            current.increment();
+            lastFailure = now;
+        }
+
+        double estimate(long now, long windowMillis) {
+            long nowIndex = now / windowMillis;
+            roll(nowIndex);
+            double previousWeight = 1.0 - (double) (now % windowMillis) / windowMillis;
+            return previous * previousWeight + current.sum();
+        }
+
+        private void roll(long nowIndex) {
+            if (nowIndex == index) {
+                return;
+            }
+            synchronized (this) {
+                if (nowIndex > index) {
+                    long count = current.sumThenReset();
+                    previous = nowIndex == index + 1 ? count : 0;
+                    index = nowIndex;
+                }
+            }
+        }
+    }
+}
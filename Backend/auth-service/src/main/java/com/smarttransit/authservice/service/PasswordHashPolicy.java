@@ -0,0 +1,110 @@
+package com.smarttransit.authservice.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BCrypt work factor in force on this node and how it was chosen.
+ *
+ * The factor is either fixed by configuration or calibrated at startup: the
+ * highest cost whose measured hash time stays within the latency budget on the
+ * current hardware, never below the configured floor. Stored hashes below that cost
+ * are rehashed on the next successful login. Higher ones are kept: nodes on different
+ * hardware calibrate different costs, and rehashing down as well would flip a user's
+ * hash back and forth between them.
+ */
+public class PasswordHashPolicy {
+
+    private static final Logger log = LoggerFactory.getLogger(PasswordHashPolicy.class);
+    private static final Pattern BCRYPT_COST = Pattern.compile("^(?:\\{bcrypt})?\\$2[abyx]?\\$(\\d{2})\\$");
+    private static final String CALIBRATION_PASSWORD = "calibration-password";
+
+    private final int targetStrength;
+    private final long latencyBudgetMillis;
+    private final Map<Integer, Long> measuredMillis;
+
+    public PasswordHashPolicy(int targetStrength, long latencyBudgetMillis, Map<Integer, Long> measuredMillis) {
+        this.targetStrength = targetStrength;
+        this.latencyBudgetMillis = latencyBudgetMillis;
+        this.measuredMillis = Collections.unmodifiableMap(new LinkedHashMap<>(measuredMillis));
+    }
+
+    /**
+     * Pick the highest cost in [minStrength, maxStrength] whose median hash time fits the budget
+     */
+    public static PasswordHashPolicy calibrate(long latencyBudgetMillis, int minStrength, int maxStrength) {
+        Map<Integer, Long> measured = new LinkedHashMap<>();
+        int chosen = minStrength;
+        for (int strength = minStrength; strength <= maxStrength; strength++) {
+            long millis = medianHashMillis(strength);
+            measured.put(strength, millis);
+            if (millis > latencyBudgetMillis) {
+                break;
+            }
+            chosen = strength;
+            // Each step doubles the cost; stop before measuring one that is bound to miss
+            if (millis * 2 > latencyBudgetMillis) {
+                break;
+            }
+        }
+        if (measured.get(chosen) > latencyBudgetMillis) {
+            log.warn("BCrypt cost {} takes {} ms, above the {} ms budget; keeping the configured minimum",
+                    chosen, measured.get(chosen), latencyBudgetMillis);
+        }
+        log.info("BCrypt work factor calibrated to {} (budget {} ms, measured {})", chosen, latencyBudgetMillis, measured);
+        return new PasswordHashPolicy(chosen, latencyBudgetMillis, measured);
+    }
+
+    private static long medianHashMillis(int strength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        encoder.encode(CALIBRATION_PASSWORD); // warm-up
+        long[] samples = new long[3];
+        for (int i = 0; i < samples.length; i++) {
+            long start = System.nanoTime();
+            encoder.encode(CALIBRATION_PASSWORD);
+            samples[i] = (System.nanoTime() - start) / 1_000_000;
+        }
+        Arrays.sort(samples);
+        return samples[1];
+    }
+
+    /**
+     * BCrypt cost of a stored hash, with or without the {bcrypt} prefix; -1 if not a BCrypt hash
+     */
+    public static int strengthOf(String encodedPassword) {
+        if (encodedPassword == null) {
+            return -1;
+        }
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
+    /**
+     * Whether a stored hash should be replaced after the password was verified
+     */
+    public boolean needsRehash(String encodedPassword) {
+        return encodedPassword == null
+                || !encodedPassword.startsWith("{bcrypt}")
+                || strengthOf(encodedPassword) < targetStrength;
+    }
+
+    public int getTargetStrength() {
+        return targetStrength;
+    }
+
+    public long getLatencyBudgetMillis() {
+        return latencyBudgetMillis;
+    }
+
+    public Map<Integer, Long> getMeasuredMillis() {
+        return measuredMillis;
+    }
+}
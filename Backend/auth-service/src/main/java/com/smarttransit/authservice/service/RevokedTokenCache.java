@@ -0,0 +1,248 @@
+package com.smarttransit.authservice.service;
+
+import com.smarttransit.authservice.repository.TokenRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-process view of revoked tokens used by local (stateless) validation.
+ *
+ * A Bloom filter answers the common "never revoked" case without touching the
+ * set; only filter hits are confirmed against the exact set of revoked token
+ * ids. Both are rebuilt from the tokens table on a fixed delay, so revocations
+ * made by another auth-service instance become visible within one sync interval.
+ * Revocations made through this instance are applied immediately; "logout all
+ * devices" is a set-based UPDATE, so locally it is tracked as a per-user cut-off
+ * (tokens issued at or before it are revoked) until the next reload picks up
+ * the individual rows.
+ */
+@Component
+public class RevokedTokenCache {
+
+    // Local revocations younger than this are carried over a refresh in case the
+    // reload query ran before their UPDATE was committed
+    private static final long LOCAL_GRACE_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final TokenRepository tokenRepository;
+
+    @Value("${jwt.revocation.expected-entries:100000}")
+    private int expectedEntries = 100_000;
+
+    @Value("${jwt.revocation.false-positive-rate:0.01}")
+    private double falsePositiveRate = 0.01;
+
+    private volatile Snapshot snapshot;
+
+    public RevokedTokenCache(TokenRepository tokenRepository) {
+        this.tokenRepository = tokenRepository;
+    }
+
+    /**
+     * Reload revoked, not yet expired token ids from the database and swap them in
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.sync-interval-ms:30000}")
+    public void refresh() {
+        long startedAt = System.nanoTime();
+        List<String> revokedTokenHashes = tokenRepository.findRevokedTokenHashes(LocalDateTime.now());
+        Snapshot fresh = new Snapshot(Math.max(expectedEntries, revokedTokenHashes.size()), falsePositiveRate);
+        for (String tokenHash : revokedTokenHashes) {
+            fresh.add(tokenHash, 0L);
+        }
+        Snapshot previous = snapshot;
+        if (previous != null) {
+            previous.ids.forEach((id, revokedAt) -> {
+                if (revokedAt != 0L && revokedAt - startedAt > -LOCAL_GRACE_NANOS) {
+                    fresh.add(id, revokedAt);
+                }
+            });
+            previous.userCutoffs.forEach((userId, cutoff) -> {
+                if (cutoff.revokedAt() - startedAt > -LOCAL_GRACE_NANOS) {
+                    fresh.userCutoffs.merge(userId, cutoff, UserCutoff::latest);
+                }
+            });
+        }
+        snapshot = fresh;
+    }
+
+    /**
+     * Whether the cache has been loaded at least once
+     */
+    public boolean isInitialized() {
+        return snapshot != null;
+    }
+
+    /**
+     * Record a revocation made by this instance
+     */
+    public void revoke(String tokenId) {
+        Snapshot current = snapshot;
+        if (current != null) {
+            current.add(tokenId, System.nanoTime());
+        }
+    }
+
+    public void revokeAll(Collection<String> tokenIds) {
+        tokenIds.forEach(this::revoke);
+    }
+
+    /**
+     * Record a "logout all devices" made by this instance. The iat claim has
+     * second precision, so a token issued within the same second is also
+     * rejected until the next reload.
+     */
+    public void revokeAllForUser(Long userId, Date revokedAt) {
+        Snapshot current = snapshot;
+        if (current != null) {
+            long cutoffSeconds = revokedAt.getTime() / 1000;
+            current.userCutoffs.merge(userId, new UserCutoff(cutoffSeconds, System.nanoTime()), UserCutoff::latest);
+        }
+    }
+
+    /**
+     * Check a token id against the filter, confirming hits against the exact set
+     */
+    public boolean isRevoked(String tokenId) {
+        Snapshot current = snapshot;
+        return current != null && current.filter.mightContain(tokenId) && current.ids.containsKey(tokenId);
+    }
+
+    /**
+     * Same as {@link #isRevoked(String)}, also applying any local per-user cut-off
+     */
+    public boolean isRevoked(String tokenId, Long userId, Date issuedAt) {
+        if (isRevoked(tokenId)) {
+            return true;
+        }
+        Snapshot current = snapshot;
+        if (current == null || userId == null || issuedAt == null || current.userCutoffs.isEmpty()) {
+            return false;
+        }
+        UserCutoff cutoff = current.userCutoffs.get(userId);
+        return cutoff != null && issuedAt.getTime() / 1000 <= cutoff.issuedAtOrBeforeSeconds();
+    }
+
+    /**
+     * Copy of the revoked token ids (SHA-256 of the token), for edge verifiers
+     */
+    public Set<String> revokedTokenIds() {
+        Snapshot current = snapshot;
+        return current == null ? Set.of() : Set.copyOf(current.ids.keySet());
+    }
+
+    /**
+     * Copy of the local per-user cut-offs: tokens of the user issued at or before
+     * the given epoch second are revoked
+     */
+    public Map<Long, Long> userCutoffSeconds() {
+        Snapshot current = snapshot;
+        Map<Long, Long> cutoffs = new HashMap<>();
+        if (current != null) {
+            current.userCutoffs.forEach((userId, cutoff) -> cutoffs.put(userId, cutoff.issuedAtOrBeforeSeconds()));
+        }
+        return cutoffs;
+    }
+
+    public int size() {
+        Snapshot current = snapshot;
+        return current == null ? 0 : current.ids.size();
+    }
+
+    private static final class Snapshot {
+        private final BloomFilter filter;
+        // token id -> System.nanoTime() of a local revocation, 0 when loaded from the database
+        private final Map<String, Long> ids = new ConcurrentHashMap<>();
+        private final Map<Long, UserCutoff> userCutoffs = new ConcurrentHashMap<>();
+
+        Snapshot(int expectedEntries, double falsePositiveRate) {
+            this.filter = new BloomFilter(expectedEntries, falsePositiveRate);
+        }
+
+        void add(String tokenId, long revokedAt) {
+            // Map first, so a concurrent reader that sees the filter bit also finds the id
+            ids.merge(tokenId, revokedAt, Math::max);
+            filter.put(tokenId);
+        }
+    }
+
+    private record UserCutoff(long issuedAtOrBeforeSeconds, long revokedAt) {
+        static UserCutoff latest(UserCutoff a, UserCutoff b) {
+            return a.issuedAtOrBeforeSeconds > b.issuedAtOrBeforeSeconds ? a : b;
+        }
+    }
+
+    /**
+     * Lock-free Bloom filter over strings using double hashing (Kirsch-Mitzenmacher)
+     */
+    static final class BloomFilter {
+        private final AtomicLongArray bits;
+        private final long bitCount;
+        private final int hashCount;
+
+        BloomFilter(int expectedEntries, double falsePositiveRate) {
+            int n = Math.max(expectedEntries, 1);
+            long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            int words = (int) Math.max(1, (m + 63) >>> 6);
+            this.bits = new AtomicLongArray(words);
+            this.bitCount = (long) words << 6;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        }
+
+        void put(String key) {
+            long hash = hash64(key);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashCount; i++) {
+                long index = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+                int word = (int) (index >>> 6);
+                long mask = 1L << index;
+                long current;
+                do {
+                    current = bits.get(word);
+                    if ((current & mask) != 0) {
+                        break;
+                    }
+                } while (!bits.compareAndSet(word, current, current | mask));
+            }
+        }
+
+        boolean mightContain(String key) {
+            long hash = hash64(key);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashCount; i++) {
+                long index = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+                if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long hash64(String key) {
+            // FNV-1a followed by the murmur3 finalizer to spread the bits
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < key.length(); i++) {
+                h ^= key.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
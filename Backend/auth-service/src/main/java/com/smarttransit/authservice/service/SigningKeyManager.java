@@ -0,0 +1,250 @@
+package com.smarttransit.authservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smarttransit.authservice.model.SigningKey;
+import com.smarttransit.authservice.repository.SigningKeyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RS256 signing keys with rotation, and the JWKS that publishes them.
+ *
+ * Keys live in the signing_keys table so all instances agree on them. A new key
+ * is created once the active one is older than the rotation interval; it is
+ * published right away but only signs after publish-ahead, so verifiers that
+ * cache the JWKS pick it up before the first token carrying its kid arrives.
+ * A superseded key stays published until every token it could have signed has
+ * expired, then it is deleted.
+ *
+ * The JWKS document is serialized once per reload, not per request.
+ */
+@Component
+public class SigningKeyManager {
+
+    private static final Logger log = LoggerFactory.getLogger(SigningKeyManager.class);
+    static final String ALGORITHM = "RS256";
+    // Minimum gap between reloads triggered by an unknown kid
+    private static final long UNKNOWN_KID_RELOAD_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final SigningKeyRepository signingKeyRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${jwt.keys.rotation-interval-hours:720}")
+    private long rotationIntervalHours = 720;
+
+    // Must exceed how long downstream services cache the JWKS
+    @Value("${jwt.keys.publish-ahead-minutes:15}")
+    private long publishAheadMinutes = 15;
+
+    // Longest-lived token a key can sign (the refresh token)
+    @Value("${jwt.refresh-token.expiration:604800}")
+    private long maxTokenLifetimeSeconds = 604800;
+
+    @Value("${jwt.keys.key-size:2048}")
+    private int keySize = 2048;
+
+    private volatile KeySet keySet;
+    private volatile long lastReloadNanos;
+
+    public SigningKeyManager(SigningKeyRepository signingKeyRepository, ObjectMapper objectMapper) {
+        this.signingKeyRepository = signingKeyRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Key to sign new tokens with: the most recently activated one
+     */
+    public ActiveKey currentSigningKey() {
+        List<LoadedKey> keys = keys().keys;
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = keys.size() - 1; i >= 0; i--) {
+            LoadedKey key = keys.get(i);
+            if (!key.activatesAt.isAfter(now)) {
+                return new ActiveKey(key.kid, key.privateKey);
+            }
+        }
+        throw new IllegalStateException("No active JWT signing key");
+    }
+
+    /**
+     * Public key for a kid, reloading (rate-limited) when another instance has rotated
+     */
+    public RSAPublicKey findVerificationKey(String kid) {
+        if (kid == null) {
+            return null;
+        }
+        RSAPublicKey key = keys().publicKeys.get(kid);
+        if (key == null && System.nanoTime() - lastReloadNanos > UNKNOWN_KID_RELOAD_NANOS) {
+            refresh();
+            key = keys().publicKeys.get(kid);
+        }
+        return key;
+    }
+
+    /**
+     * Serialized JWKS ({"keys":[...]}) of every published key
+     */
+    public String jwksJson() {
+        return keys().jwksJson;
+    }
+
+    /**
+     * Rotate if due, drop retired keys and reload the key set
+     */
+    @Scheduled(fixedDelayString = "${jwt.keys.sync-interval-ms:60000}")
+    public synchronized void refresh() {
+        lastReloadNanos = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        List<SigningKey> stored = signingKeyRepository.findAllByOrderByActivatesAtAsc();
+
+        if (stored.isEmpty()) {
+            stored = List.of(createKey(now, now));
+        } else if (isRotationDue(stored, now)) {
+            List<SigningKey> withNext = new ArrayList<>(stored);
+            withNext.add(createKey(now, now.plusMinutes(publishAheadMinutes)));
+            stored = withNext;
+        }
+
+        List<LoadedKey> published = new ArrayList<>();
+        for (int i = 0; i < stored.size(); i++) {
+            SigningKey key = stored.get(i);
+            if (isRetired(stored, i, now)) {
+                signingKeyRepository.delete(key);
+                log.info("Retired JWT signing key {}", key.getKid());
+            } else {
+                published.add(load(key));
+            }
+        }
+        keySet = new KeySet(published, toJwksJson(published));
+    }
+
+    private KeySet keys() {
+        KeySet current = keySet;
+        if (current == null) {
+            synchronized (this) {
+                current = keySet;
+                if (current == null) {
+                    refresh();
+                    current = keySet;
+                }
+            }
+        }
+        return current;
+    }
+
+    private boolean isRotationDue(List<SigningKey> stored, LocalDateTime now) {
+        SigningKey newest = stored.get(stored.size() - 1);
+        // A pending key means rotation already happened
+        return !newest.getActivatesAt().isAfter(now)
+                && newest.getActivatesAt().plusHours(rotationIntervalHours).isBefore(now);
+    }
+
+    private boolean isRetired(List<SigningKey> stored, int index, LocalDateTime now) {
+        // Superseded once a newer key has activated; retired when its last tokens have expired
+        for (int next = index + 1; next < stored.size(); next++) {
+            LocalDateTime supersededAt = stored.get(next).getActivatesAt();
+            if (!supersededAt.isAfter(now)) {
+                return supersededAt.plusSeconds(maxTokenLifetimeSeconds).isBefore(now);
+            }
+        }
+        return false;
+    }
+
+    private SigningKey createKey(LocalDateTime now, LocalDateTime activatesAt) {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(keySize);
+            KeyPair pair = generator.generateKeyPair();
+            Base64.Encoder encoder = Base64.getEncoder();
+            SigningKey key = new SigningKey(UUID.randomUUID().toString(), ALGORITHM,
+                    encoder.encodeToString(pair.getPublic().getEncoded()),
+                    encoder.encodeToString(pair.getPrivate().getEncoded()),
+                    now, activatesAt);
+            log.info("Created JWT signing key {} (signs from {})", key.getKid(), activatesAt);
+            return signingKeyRepository.save(key);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot generate JWT signing key", e);
+        }
+    }
+
+    private static LoadedKey load(SigningKey key) {
+        try {
+            KeyFactory factory = KeyFactory.getInstance("RSA");
+            Base64.Decoder decoder = Base64.getDecoder();
+            RSAPublicKey publicKey = (RSAPublicKey) factory.generatePublic(
+                    new X509EncodedKeySpec(decoder.decode(key.getPublicKey())));
+            PrivateKey privateKey = factory.generatePrivate(
+                    new PKCS8EncodedKeySpec(decoder.decode(key.getPrivateKey())));
+            return new LoadedKey(key.getKid(), key.getActivatesAt(), publicKey, privateKey);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot load JWT signing key " + key.getKid(), e);
+        }
+    }
+
+    private String toJwksJson(List<LoadedKey> keys) {
+        List<Map<String, String>> jwks = new ArrayList<>();
+        for (LoadedKey key : keys) {
+            Map<String, String> jwk = new LinkedHashMap<>();
+            jwk.put("kty", "RSA");
+            jwk.put("kid", key.kid);
+            jwk.put("use", "sig");
+            jwk.put("alg", ALGORITHM);
+            jwk.put("n", base64Url(key.publicKey.getModulus()));
+            jwk.put("e", base64Url(key.publicKey.getPublicExponent()));
+            jwks.add(jwk);
+        }
+        try {
+            return objectMapper.writeValueAsString(Map.of("keys", jwks));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize JWKS", e);
+        }
+    }
+
+    private static String base64Url(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        // Unsigned big-endian, as required by RFC 7518
+        if (bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    public record ActiveKey(String kid, PrivateKey privateKey) {}
+
+    private record LoadedKey(String kid, LocalDateTime activatesAt, RSAPublicKey publicKey, PrivateKey privateKey) {}
+
+    private static final class KeySet {
+        private final List<LoadedKey> keys;
+        private final Map<String, RSAPublicKey> publicKeys = new LinkedHashMap<>();
+        private final String jwksJson;
+
+        KeySet(List<LoadedKey> keys, String jwksJson) {
+            this.keys = List.copyOf(keys);
+            this.jwksJson = jwksJson;
+            keys.forEach(key -> publicKeys.put(key.kid, key.publicKey));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.smarttransit.authservice.service;
+
+import com.smarttransit.authservice.model.Token;
+import com.smarttransit.authservice.repository.TokenRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Fills token_hash for tokens stored before the column existed.
+ *
+ * Lookups, revocations and the revoked-token cache all go through token_hash, so a
+ * row without one would read as revoked and log its owner out. The hash is computed
+ * here rather than in SQL (not every database has SHA-256), a keyset page of rows per
+ * transaction. Runs after the schema update and before the web server accepts
+ * requests or the revoked-token cache first loads; a no-op once every row has a hash.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class TokenHashBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenHashBackfill.class);
+
+    private final TokenRepository tokenRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${auth.tokens.hash-backfill.batch-size:1000}")
+    private int batchSize = 1000;
+
+    public TokenHashBackfill(TokenRepository tokenRepository, PlatformTransactionManager transactionManager) {
+        this.tokenRepository = tokenRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * @return number of tokens given a hash
+     */
+    @PostConstruct
+    public long backfill() {
+        long filled = 0;
+        long afterId = 0;
+        while (true) {
+            long fromId = afterId;
+            List<Token> tokens = transactionTemplate.execute(status -> {
+                List<Token> page = tokenRepository.findWithoutTokenHash(fromId, PageRequest.of(0, batchSize));
+                for (Token token : page) {
+                    // Recomputes token_hash from the stored value
+                    token.setToken(token.getToken());
+                }
+                return tokenRepository.saveAll(page);
+            });
+            if (tokens == null || tokens.isEmpty()) {
+                break;
+            }
+            filled += tokens.size();
+            afterId = tokens.get(tokens.size() - 1).getId();
+            if (tokens.size() < batchSize) {
+                break;
+            }
+        }
+        if (filled > 0) {
+            log.info("Filled token_hash for {} tokens stored before it existed", filled);
+        }
+        return filled;
+    }
+}
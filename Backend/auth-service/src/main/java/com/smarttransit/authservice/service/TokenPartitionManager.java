@@ -0,0 +1,114 @@
+package com.smarttransit.authservice.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Optional daily range partitions of the tokens table on expires_at (PostgreSQL only).
+ *
+ * Off by default. When auth.tokens.partitioning.enabled=true and the table was created
+ * with db/tokens-partitioned.sql, partitions named tokens_pYYYYMMDD are created ahead of
+ * time and dropped once every row in them has expired, turning the purge into a DROP TABLE.
+ */
+@Component
+public class TokenPartitionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenPartitionManager.class);
+    private static final String PARTITION_PREFIX = "tokens_p";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${auth.tokens.partitioning.enabled:false}")
+    private boolean enabled;
+
+    // Must exceed the refresh token lifetime, or inserts will find no partition
+    @Value("${auth.tokens.partitioning.days-ahead:9}")
+    private int daysAhead = 9;
+
+    private volatile Boolean partitioned;
+
+    public TokenPartitionManager(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Whether partitioning is enabled and the tokens table is actually partitioned
+     */
+    public boolean isPartitioned() {
+        if (!enabled) {
+            return false;
+        }
+        Boolean result = partitioned;
+        if (result == null) {
+            result = Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table p JOIN pg_class c ON c.oid = p.partrelid "
+                            + "WHERE c.relname = 'tokens')", Boolean.class));
+            if (!result) {
+                log.warn("auth.tokens.partitioning.enabled is set but the tokens table is not partitioned");
+            }
+            partitioned = result;
+        }
+        return result;
+    }
+
+    /**
+     * Create the partitions for today and the next days-ahead days
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${auth.tokens.partitioning.cron:0 30 1 * * ?}")
+    public void createUpcomingPartitions() {
+        if (!isPartitioned()) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i <= daysAhead; i++) {
+            LocalDate day = today.plusDays(i);
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + PARTITION_PREFIX + day.format(SUFFIX)
+                    + " PARTITION OF tokens FOR VALUES FROM ('" + day + "') TO ('" + day.plusDays(1) + "')");
+        }
+    }
+
+    /**
+     * Drop every partition whose whole range lies before the cutoff
+     *
+     * @return number of partitions dropped
+     */
+    public int dropPartitionsExpiredBefore(LocalDateTime cutoff) {
+        List<String> partitions = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                        + "JOIN pg_class p ON p.oid = i.inhparent WHERE p.relname = 'tokens'", String.class);
+        int dropped = 0;
+        for (String partition : partitions) {
+            if (!partition.startsWith(PARTITION_PREFIX)) {
+                continue;
+            }
+            LocalDate day;
+            try {
+                day = LocalDate.parse(partition.substring(PARTITION_PREFIX.length()), SUFFIX);
+            } catch (DateTimeParseException e) {
+                continue;
+            }
+            if (!day.plusDays(1).atStartOfDay().isAfter(cutoff)) {
+                jdbcTemplate.execute("DROP TABLE IF EXISTS " + partition);
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            log.info("Dropped {} expired token partitions", dropped);
+        }
+        return dropped;
+    }
+}
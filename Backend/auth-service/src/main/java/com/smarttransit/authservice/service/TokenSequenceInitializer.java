@@ -0,0 +1,49 @@
+package com.smarttransit.authservice.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Moves tokens_seq past the existing token ids at startup (PostgreSQL only).
+ *
+ * Tokens used IDENTITY ids before tokens_seq was introduced, and ddl-auto creates the
+ * sequence starting at 1 on a database that already holds tokens. The sequence is only
+ * ever moved forward, so this is a no-op once it is ahead of max(id). Runs after the
+ * schema update and before the web server accepts logins.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class TokenSequenceInitializer {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenSequenceInitializer.class);
+
+    // With the pooled optimizer a nextval of v hands out ids v-49..v, so v = max(id) is enough
+    static final String ADVANCE_SQL = "SELECT setval('tokens_seq', t.max_id) FROM (SELECT max(id) AS max_id FROM tokens) t "
+            + "WHERE t.max_id > (SELECT last_value FROM tokens_seq)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TokenSequenceInitializer(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void advancePastExistingIds() {
+        String database = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equals(database)) {
+            return;
+        }
+        List<Long> advanced = jdbcTemplate.queryForList(ADVANCE_SQL, Long.class);
+        if (!advanced.isEmpty()) {
+            log.info("Advanced tokens_seq to {}, past the existing token ids", advanced.get(0));
+        }
+    }
+}
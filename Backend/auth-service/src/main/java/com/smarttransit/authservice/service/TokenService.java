@@ -4,24 +4,35 @@ import com.smarttransit.authservice.dto.TokenValidationResponse;
 import com.smarttransit.authservice.model.Token;
 import com.smarttransit.authservice.enums.TokenType;
 import com.smarttransit.authservice.repository.TokenRepository;
+import com.smarttransit.authservice.util.TokenDigests;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.crypto.SecretKey;
+import java.security.Key;
 import java.time.LocalDateTime;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class TokenService {
 
     private final TokenRepository tokenRepository;
+    private final RevokedTokenCache revokedTokenCache;
+    private final SigningKeyManager signingKeyManager;
     private SecretKey secretKey;
+    private volatile JwtParser jwtParser;
+    private volatile Cache<String, Claims> claimsCache;
 
     @Value("${jwt.secret:mySecretKeyForJWTTokenGenerationThatShouldBeAtLeast256Bits}")
     private String jwtSecret;
@@ -32,9 +43,30 @@ public class TokenService {
     @Value("${jwt.refresh-token.expiration:604800}") // 7 days default
     private long refreshTokenExpiration;
 
+    // "local" verifies signature/expiry in memory and checks revocation against RevokedTokenCache;
+    // "database" looks every token up in the tokens table
+    @Value("${jwt.validation.mode:database}")
+    private String validationMode = "database";
+
+    // Verified claims kept per token (keyed by SHA-256), each entry evicted at the token's exp
+    @Value("${jwt.claims-cache.max-size:10000}")
+    private long claimsCacheMaxSize = 10_000;
+
+    // "RS256" signs with the rotating key pair published at /.well-known/jwks.json;
+    // "HS512" signs with the shared jwt.secret
+    @Value("${jwt.signing.algorithm:HS512}")
+    private String signingAlgorithm = "HS512";
+
+    // Keep accepting HS512 tokens after switching to RS256, until the last of them has expired
+    @Value("${jwt.signing.accept-hmac:true}")
+    private boolean acceptHmac = true;
+
     @Autowired
-    public TokenService(TokenRepository tokenRepository) {
+    public TokenService(TokenRepository tokenRepository, RevokedTokenCache revokedTokenCache,
+                        SigningKeyManager signingKeyManager) {
         this.tokenRepository = tokenRepository;
+        this.revokedTokenCache = revokedTokenCache;
+        this.signingKeyManager = signingKeyManager;
     }
 
     private SecretKey getSecretKey() {
@@ -51,6 +83,95 @@ public class TokenService {
         return secretKey;
     }
 
+    private boolean isRsaSigning() {
+        return SigningKeyManager.ALGORITHM.equalsIgnoreCase(signingAlgorithm);
+    }
+
+    private JwtBuilder sign(JwtBuilder builder) {
+        if (isRsaSigning()) {
+            SigningKeyManager.ActiveKey key = signingKeyManager.currentSigningKey();
+            return builder.setHeaderParam(JwsHeader.KEY_ID, key.kid())
+                    .signWith(key.privateKey(), SignatureAlgorithm.RS256);
+        }
+        return builder.signWith(getSecretKey(), SignatureAlgorithm.HS512);
+    }
+
+    /**
+     * Verification key chosen from the token header: the RSA key named by kid,
+     * or the shared secret for HS512 tokens while those are still accepted
+     */
+    private Key resolveVerificationKey(JwsHeader<?> header) {
+        String algorithm = header.getAlgorithm();
+        if (SignatureAlgorithm.RS256.getValue().equals(algorithm)) {
+            Key key = signingKeyManager.findVerificationKey(header.getKeyId());
+            if (key == null) {
+                throw new UnsupportedJwtException("Unknown signing key: " + header.getKeyId());
+            }
+            return key;
+        }
+        if (SignatureAlgorithm.HS512.getValue().equals(algorithm) && (acceptHmac || !isRsaSigning())) {
+            return getSecretKey();
+        }
+        throw new UnsupportedJwtException("Unsupported signing algorithm: " + algorithm);
+    }
+
+    /**
+     * Shared parser; JwtParser is immutable and thread-safe once built
+     */
+    private JwtParser getParser() {
+        JwtParser parser = jwtParser;
+        if (parser == null) {
+            synchronized (this) {
+                parser = jwtParser;
+                if (parser == null) {
+                    parser = Jwts.parserBuilder()
+                            .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                                @Override
+                                public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                                    return resolveVerificationKey(header);
+                                }
+                            })
+                            .build();
+                    jwtParser = parser;
+                }
+            }
+        }
+        return parser;
+    }
+
+    private Cache<String, Claims> getClaimsCache() {
+        Cache<String, Claims> cache = claimsCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = claimsCache;
+                if (cache == null) {
+                    cache = Caffeine.newBuilder()
+                            .maximumSize(claimsCacheMaxSize)
+                            .expireAfter(new Expiry<String, Claims>() {
+                                @Override
+                                public long expireAfterCreate(String key, Claims claims, long currentTime) {
+                                    long remainingMillis = claims.getExpiration().getTime() - System.currentTimeMillis();
+                                    return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMillis, 0));
+                                }
+
+                                @Override
+                                public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+                                    return expireAfterCreate(key, claims, currentTime);
+                                }
+
+                                @Override
+                                public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+                                    return currentDuration;
+                                }
+                            })
+                            .build();
+                    claimsCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
     /**
      * Generate JWT access token
      */
@@ -59,15 +180,15 @@ public class TokenService {
             Date now = new Date();
             Date expiryDate = new Date(now.getTime() + accessTokenExpiration * 1000);
 
-            String token = Jwts.builder()
+            String token = sign(Jwts.builder()
+                    .setId(UUID.randomUUID().toString())
                     .setSubject(email)
                     .claim("userId", userId.toString()) // Store as string to avoid type issues
                     .claim("email", email)
                     .claim("roles", roles)
                     .claim("tokenType", "ACCESS")
                     .setIssuedAt(now)
-                    .setExpiration(expiryDate)
-                    .signWith(getSecretKey(), SignatureAlgorithm.HS512)
+                    .setExpiration(expiryDate))
                     .compact();
 
             if (token == null || token.trim().isEmpty()) {
@@ -88,12 +209,12 @@ public class TokenService {
             Date now = new Date();
             Date expiryDate = new Date(now.getTime() + refreshTokenExpiration * 1000);
 
-            String token = Jwts.builder()
+            String token = sign(Jwts.builder()
+                    .setId(UUID.randomUUID().toString())
                     .setSubject(email)
                     .claim("tokenType", "REFRESH")
                     .setIssuedAt(now)
-                    .setExpiration(expiryDate)
-                    .signWith(getSecretKey(), SignatureAlgorithm.HS512)
+                    .setExpiration(expiryDate))
                     .compact();
 
             if (token == null || token.trim().isEmpty()) {
@@ -110,6 +231,20 @@ public class TokenService {
      * Store token in database
      */
     public Token storeToken(Long userId, String tokenValue, TokenType tokenType) {
+        return tokenRepository.save(newToken(userId, tokenValue, tokenType));
+    }
+
+    /**
+     * Store the access/refresh pair issued at login in a single batched insert
+     */
+    @Transactional
+    public List<Token> storeTokenPair(Long userId, String accessToken, String refreshToken) {
+        return tokenRepository.saveAll(List.of(
+                newToken(userId, accessToken, TokenType.ACCESS_TOKEN),
+                newToken(userId, refreshToken, TokenType.REFRESH_TOKEN)));
+    }
+
+    private Token newToken(Long userId, String tokenValue, TokenType tokenType) {
         Token token = new Token();
         token.setUserId(userId);
         token.setToken(tokenValue);
@@ -122,50 +257,75 @@ public class TokenService {
         
         token.setIsRevoked(false);
 
-        return tokenRepository.save(token);
+        return token;
+    }
+
+    private Optional<Token> findStoredToken(String tokenValue) {
+        if (tokenValue == null) {
+            return Optional.empty();
+        }
+        return tokenRepository.findByTokenHash(TokenDigests.sha256Hex(tokenValue));
     }
 
     /**
-     * Revoke token
+     * Revoke token (single UPDATE, no load)
      */
+    @Transactional
     public void revokeToken(String tokenValue) {
-        Optional<Token> tokenOpt = tokenRepository.findByToken(tokenValue);
-        if (tokenOpt.isPresent()) {
-            Token token = tokenOpt.get();
-            token.setIsRevoked(true);
-            tokenRepository.save(token);
+        if (tokenValue == null) {
+            return;
+        }
+        String tokenHash = TokenDigests.sha256Hex(tokenValue);
+        if (tokenRepository.revokeByTokenHash(tokenHash) > 0) {
+            revokedTokenCache.revoke(tokenHash);
         }
     }
 
     /**
-     * Revoke all user tokens
+     * Revoke all user tokens (single set-based UPDATE, no load)
      */
+    @Transactional
     public void revokeAllUserTokens(Long userId) {
-        List<Token> validTokens = tokenRepository.findValidTokensByUserId(userId, LocalDateTime.now());
-        validTokens.forEach(token -> {
-            token.setIsRevoked(true);
-        });
-        tokenRepository.saveAll(validTokens);
+        tokenRepository.revokeAllTokensForUser(userId);
+        revokedTokenCache.revokeAllForUser(userId, new Date());
     }
 
     /**
      * Check if token is revoked
      */
     public boolean isTokenRevoked(String tokenValue) {
-        Optional<Token> token = tokenRepository.findByToken(tokenValue);
+        Optional<Token> token = findStoredToken(tokenValue);
         return token.map(Token::getIsRevoked).orElse(true);
     }
 
     /**
-     * Parse and validate JWT token
+     * Parse and validate JWT token; the signature is verified once per token lifetime
      */
     public Claims parseToken(String token) {
+        if (token == null || token.isBlank()) {
+            throw new RuntimeException("Invalid JWT token");
+        }
+        return parseToken(token, TokenDigests.sha256Hex(token));
+    }
+
+    private Claims parseToken(String token, String key) {
         try {
-            return Jwts.parserBuilder()
-                    .setSigningKey(getSecretKey())
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
+            Cache<String, Claims> cache = getClaimsCache();
+            Claims cached = cache.getIfPresent(key);
+            if (cached != null) {
+                if (cached.getExpiration().before(new Date())) {
+                    cache.invalidate(key);
+                    throw new RuntimeException("Token expired");
+                }
+                return cached;
+            }
+
+            Claims claims = getParser().parseClaimsJws(token).getBody();
+            // Tokens without exp are still accepted but never cached
+            if (claims.getExpiration() != null) {
+                cache.put(key, claims);
+            }
+            return claims;
         } catch (ExpiredJwtException e) {
             throw new RuntimeException("Token expired", e);
         } catch (JwtException | IllegalArgumentException e) {
@@ -213,7 +373,7 @@ public class TokenService {
             }
 
             // Verify the token exists in database and is not revoked
-            Optional<Token> tokenEntity = tokenRepository.findByToken(refreshToken);
+            Optional<Token> tokenEntity = findStoredToken(refreshToken);
             if (tokenEntity.isEmpty() || tokenEntity.get().getIsRevoked()) {
                 return false;
             }
@@ -238,7 +398,10 @@ public class TokenService {
      * Extract user ID from token with proper type handling
      */
     public Long getUserIdFromToken(String token) {
-        Claims claims = parseToken(token);
+        return extractUserId(parseToken(token));
+    }
+
+    private Long extractUserId(Claims claims) {
         Object userIdClaim = claims.get("userId");
         
         if (userIdClaim instanceof Integer) {
@@ -262,21 +425,6 @@ public class TokenService {
         return (List<String>) claims.get("roles");
     }
 
-    /**
-     * Clean up expired tokens (scheduled task)
-     * Runs every day at 2 AM
-     */
-    @Scheduled(cron = "0 0 2 * * ?")
-    public void cleanupExpiredTokens() {
-        LocalDateTime now = LocalDateTime.now();
-        List<Token> expiredTokens = tokenRepository.findByExpiresAtBefore(now);
-        
-        if (!expiredTokens.isEmpty()) {
-            tokenRepository.deleteAll(expiredTokens);
-            System.out.println("Cleanup completed: " + expiredTokens.size() + " expired tokens deleted");
-        }
-    }
-
     /**
      * Check if token is expired
      */
@@ -293,7 +441,7 @@ public class TokenService {
      * Get stored token from database
      */
     public Token getStoredToken(String tokenValue) {
-        return tokenRepository.findByToken(tokenValue).orElse(null);
+        return findStoredToken(tokenValue).orElse(null);
     }
 
     /**
@@ -313,7 +461,7 @@ public class TokenService {
         }
 
         // Retrieve token information
-        Optional<Token> tokenEntity = tokenRepository.findByToken(refreshToken);
+        Optional<Token> tokenEntity = findStoredToken(refreshToken);
         if (tokenEntity.isEmpty()) {
             throw new RuntimeException("Refresh token not found");
         }
@@ -345,6 +493,10 @@ public class TokenService {
      * Validate token and return user details
      */
     public TokenValidationResponse validateTokenAndGetDetails(String token) {
+        // Fall back to the database until the revocation cache has loaded once
+        if ("local".equalsIgnoreCase(validationMode) && revokedTokenCache.isInitialized()) {
+            return validateTokenLocally(token);
+        }
         try {
             // Validate the token first
             if (!validateToken(token)) {
@@ -355,7 +507,7 @@ public class TokenService {
             Claims claims = parseToken(token);
             
             // Get user ID with proper type handling
-            Long userId = getUserIdFromToken(token);
+            Long userId = extractUserId(claims);
             String email = claims.getSubject();
             
             @SuppressWarnings("unchecked")
@@ -368,6 +520,29 @@ public class TokenService {
         }
     }
 
+    /**
+     * Validate token without a database round trip: one signature/expiry check,
+     * then a revocation lookup in the in-memory cache
+     */
+    public TokenValidationResponse validateTokenLocally(String token) {
+        try {
+            String tokenId = TokenDigests.sha256Hex(token);
+            Claims claims = parseToken(token, tokenId);
+            Long userId = claims.get("userId") != null ? extractUserId(claims) : null;
+            if (revokedTokenCache.isRevoked(tokenId, userId, claims.getIssuedAt())) {
+                return new TokenValidationResponse(false, null, null, null);
+            }
+
+            @SuppressWarnings("unchecked")
+            List<String> roles = (List<String>) claims.get("roles");
+
+            return new TokenValidationResponse(true, userId, claims.getSubject(), roles);
+
+        } catch (Exception e) {
+            return new TokenValidationResponse(false, null, null, null);
+        }
+    }
+
     /**
      * Get all valid tokens for a user
      */
@@ -386,7 +561,7 @@ public class TokenService {
      * Get token by value
      */
     public Optional<Token> getTokenByValue(String tokenValue) {
-        return tokenRepository.findByToken(tokenValue);
+        return findStoredToken(tokenValue);
     }
 
     /**
@@ -0,0 +1,27 @@
+package com.smarttransit.authservice.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Fixed-size fingerprints for JWT strings, so in-memory structures never have
+ * to hold or compare the full (several hundred bytes) token text.
+ */
+public final class TokenDigests {
+
+    private TokenDigests() {}
+
+    /**
+     * SHA-256 of the token, hex encoded (64 chars)
+     */
+    public static String sha256Hex(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
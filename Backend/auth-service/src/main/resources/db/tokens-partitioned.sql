@@ -0,0 +1,28 @@
+-- Optional: tokens range-partitioned by expires_at (PostgreSQL 11+).
+--
+-- Apply on a fresh authdb (or after moving rows out of the plain table), then set
+-- auth.tokens.partitioning.enabled=true. TokenPartitionManager creates the daily
+-- tokens_pYYYYMMDD partitions ahead of time and ExpiredTokenPurgeJob drops them once
+-- they only hold expired rows.
+--
+-- Partitioned tables require the partition key in every unique constraint, so the
+-- primary key is (id, expires_at) and idx_token_hash is not unique here; token_hash
+-- uniqueness still holds in practice because every token carries a random jti.
+
+CREATE SEQUENCE IF NOT EXISTS tokens_seq INCREMENT BY 50;
+
+CREATE TABLE tokens (
+    id          bigint       NOT NULL,
+    user_id     bigint       NOT NULL,
+    token       varchar(1000) NOT NULL,
+    token_hash  varchar(64),
+    token_type  varchar(255) NOT NULL,
+    created_at  timestamp(6) NOT NULL,
+    expires_at  timestamp(6) NOT NULL,
+    is_revoked  boolean      NOT NULL,
+    PRIMARY KEY (id, expires_at)
+) PARTITION BY RANGE (expires_at);
+
+CREATE INDEX idx_token_hash ON tokens (token_hash);
+CREATE INDEX idx_user_id ON tokens (user_id);
+CREATE INDEX idx_expires_at ON tokens (expires_at);
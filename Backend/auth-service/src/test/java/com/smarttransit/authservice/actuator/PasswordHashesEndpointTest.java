@@ -0,0 +1,55 @@
+package com.smarttransit.authservice.actuator;
+
+import com.smarttransit.authservice.repository.UserRepository;
+import com.smarttransit.authservice.service.PasswordHashPolicy;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PasswordHashesEndpointTest {
+
+    /** Groups hashes by cost the way the repository queries do (SUBSTRING is 1-based). */
+    private static List<Object[]> countByCost(List<String> hashes, String prefix, int costAt) {
+        Map<String, Long> counts = new TreeMap<>();
+        for (String hash : hashes) {
+            if (hash.startsWith(prefix)) {
+                counts.merge(hash.substring(costAt - 1, costAt + 1), 1L, Long::sum);
+            }
+        }
+        List<Object[]> rows = new ArrayList<>();
+        counts.forEach((cost, count) -> rows.add(new Object[]{cost, count}));
+        return rows;
+    }
+
+    @Test
+    void passwordHashes_PendingRehash_MatchesNeedsRehash() {
+        PasswordHashPolicy policy = new PasswordHashPolicy(5, 250, Map.of());
+        String lower = new BCryptPasswordEncoder(4).encode("secret");
+        String atTarget = new BCryptPasswordEncoder(5).encode("secret");
+        String higher = new BCryptPasswordEncoder(6).encode("secret");
+        List<String> hashes = List.of(
+                "{bcrypt}" + lower,
+                "{bcrypt}" + lower,
+                "{bcrypt}" + atTarget,
+                "{bcrypt}" + higher, // calibrated higher on another node
+                atTarget); // legacy, no prefix
+
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.countPrefixedHashesByCost()).thenReturn(countByCost(hashes, "{bcrypt}", 13));
+        when(userRepository.countLegacyHashesByCost()).thenReturn(countByCost(hashes, "$2", 5));
+
+        Map<String, Object> body = new PasswordHashesEndpoint(policy, userRepository).passwordHashes();
+
+        long expected = hashes.stream().filter(policy::needsRehash).count();
+        assertEquals(3L, expected);
+        assertEquals(expected, body.get("pendingRehash"));
+    }
+}
@@ -0,0 +1,84 @@
+package com.smarttransit.authservice.benchmark;
+
+import com.smarttransit.authservice.AuthServiceApplication;
+import com.smarttransit.authservice.dto.TokenValidationResponse;
+import com.smarttransit.authservice.enums.TokenType;
+import com.smarttransit.authservice.service.RevokedTokenCache;
+import com.smarttransit.authservice.service.TokenService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares /api/auth/validate's service path in "database" mode (tokens table lookup
+ * plus repeated parsing) against "local" mode (one parse plus in-memory revocation check).
+ *
+ * Runs against the H2-backed test profile, so the database numbers are a lower bound:
+ * a real PostgreSQL round trip only widens the gap.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="TokenValidationBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class TokenValidationBenchmark {
+
+    private static final int TOKEN_COUNT = 1024;
+
+    @Param({"database", "local"})
+    private String mode;
+
+    private ConfigurableApplicationContext context;
+    private TokenService tokenService;
+    private String[] tokens;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(AuthServiceApplication.class)
+                .profiles("test")
+                // Command-line args, so they win over application(-test).properties
+                .run("--jwt.validation.mode=" + mode,
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.smarttransit.authservice=WARN",
+                        "--logging.level.org.springframework.web=WARN");
+        tokenService = context.getBean(TokenService.class);
+
+        List<String> issued = new ArrayList<>(TOKEN_COUNT);
+        for (long userId = 1; userId <= TOKEN_COUNT; userId++) {
+            String token = tokenService.generateAccessToken("user" + userId + "@example.com", userId, List.of("USER"));
+            tokenService.storeToken(userId, token, TokenType.ACCESS_TOKEN);
+            issued.add(token);
+        }
+        // Revoke a slice so the revocation check is not trivially empty
+        for (int i = 0; i < TOKEN_COUNT; i += 16) {
+            tokenService.revokeToken(issued.get(i));
+        }
+        context.getBean(RevokedTokenCache.class).refresh();
+        tokens = issued.toArray(new String[0]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public TokenValidationResponse validate(Cursor cursor) {
+        String token = tokens[cursor.next++ & (TOKEN_COUNT - 1)];
+        return tokenService.validateTokenAndGetDetails(token);
+    }
+}
@@ -0,0 +1,93 @@
+package com.smarttransit.authservice.client;
+
+import com.smarttransit.authservice.dto.UserDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserServiceClientTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private UserServiceClient client(Mono<ClientResponse> response, long timeoutMillis) {
+        WebClient.Builder builder = WebClient.builder().exchangeFunction(request -> {
+            calls.incrementAndGet();
+            return response;
+        });
+        return new UserServiceClient(builder, "http://user-service", timeoutMillis, 5000, 100, 60);
+    }
+
+    private static ClientResponse userJson(long id, String email) {
+        return ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body("{\"id\":" + id + ",\"email\":\"" + email + "\"}")
+                .build();
+    }
+
+    @Test
+    void getUserByEmail_ConcurrentIdenticalLookups_ShareOneRequest() {
+        // Arrange: the response is held back until both callers have subscribed
+        Sinks.One<ClientResponse> pending = Sinks.one();
+        UserServiceClient client = client(pending.asMono(), 2000);
+
+        // Act
+        Mono<UserDto> first = client.getUserByEmail("a@example.com").cache();
+        Mono<UserDto> second = client.getUserByEmail("a@example.com").cache();
+        first.subscribe();
+        second.subscribe();
+        pending.tryEmitValue(userJson(1, "a@example.com"));
+
+        // Assert
+        assertEquals(1L, first.block(Duration.ofSeconds(2)).getId());
+        assertEquals(1L, second.block(Duration.ofSeconds(2)).getId());
+        assertEquals(1, calls.get());
+
+        // Once completed, a later lookup goes out again
+        client.getUserByEmail("a@example.com").block(Duration.ofSeconds(2));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void getUserById_SecondCall_ServedFromCache() {
+        UserServiceClient client = client(Mono.fromSupplier(() -> userJson(7, "b@example.com")), 2000);
+
+        assertEquals("b@example.com", client.getUserById(7L).block(Duration.ofSeconds(2)).getEmail());
+        assertEquals("b@example.com", client.getUserById(7L).block(Duration.ofSeconds(2)).getEmail());
+
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void userExists_NotFound_IsFalseAndCached() {
+        UserServiceClient client = client(Mono.fromSupplier(() -> ClientResponse.create(HttpStatus.NOT_FOUND).build()), 2000);
+
+        assertFalse(client.userExists("missing@example.com").block(Duration.ofSeconds(2)));
+        assertFalse(client.userExists("missing@example.com").block(Duration.ofSeconds(2)));
+
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void userExists_Timeout_IsFalseButNotCached() {
+        UserServiceClient client = client(Mono.never(), 50);
+
+        assertFalse(client.userExists("slow@example.com").block(Duration.ofSeconds(2)));
+
+        // The failed future is dropped from the cache right after it completes, so a retry goes out again
+        long deadline = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+        while (calls.get() < 2 && System.nanoTime() < deadline) {
+            assertFalse(client.userExists("slow@example.com").block(Duration.ofSeconds(2)));
+        }
+        assertEquals(2, calls.get());
+    }
+}
@@ -4,11 +4,13 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.smarttransit.authservice.dto.*;
 import com.smarttransit.authservice.service.AuthService;
 import com.smarttransit.authservice.service.TokenService;
+import com.smarttransit.authservice.util.ClientAddresses;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
@@ -21,6 +23,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(AuthController.class)
+@Import(ClientAddresses.class)
 @ActiveProfiles("test")
 class AuthControllerIntegrationTest {
 
@@ -61,7 +64,7 @@ class AuthControllerIntegrationTest {
     @Test
     void login_ValidCredentials_ReturnsLoginResponse() throws Exception {
         // Arrange
-        when(authService.login(eq("test@example.com"), eq("password123")))
+        when(authService.login(eq("test@example.com"), eq("password123"), any()))
             .thenReturn(loginResponse);
 
         // Act & Assert
@@ -75,13 +78,13 @@ class AuthControllerIntegrationTest {
                 .andExpect(jsonPath("$.email").value("test@example.com"))
                 .andExpect(jsonPath("$.roles[0]").value("USER"));
 
-        verify(authService).login(eq("test@example.com"), eq("password123"));
+        verify(authService).login(eq("test@example.com"), eq("password123"), any());
     }
 
     @Test
     void login_InvalidCredentials_ReturnsError() throws Exception {
         // Arrange
-        when(authService.login(eq("test@example.com"), eq("wrongpassword")))
+        when(authService.login(eq("test@example.com"), eq("wrongpassword"), any()))
             .thenThrow(new RuntimeException("Email ou mot de passe incorrect"));
 
         LoginRequest invalidRequest = new LoginRequest("test@example.com", "wrongpassword");
@@ -92,7 +95,7 @@ class AuthControllerIntegrationTest {
                 .content(objectMapper.writeValueAsString(invalidRequest)))
                 .andExpect(status().isInternalServerError());
 
-        verify(authService).login(eq("test@example.com"), eq("wrongpassword"));
+        verify(authService).login(eq("test@example.com"), eq("wrongpassword"), any());
     }
 
     @Test
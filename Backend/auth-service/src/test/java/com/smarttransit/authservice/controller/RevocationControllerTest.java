@@ -0,0 +1,48 @@
+package com.smarttransit.authservice.controller;
+
+import com.smarttransit.authservice.service.RevokedTokenCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(RevocationController.class)
+@ActiveProfiles("test")
+class RevocationControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private RevokedTokenCache revokedTokenCache;
+
+    @Test
+    void revocations_WithoutApiKey_Forbidden() throws Exception {
+        mockMvc.perform(get("/api/auth/revocations"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/api/auth/revocations").header(RevocationController.API_KEY_HEADER, "wrong-key"))
+                .andExpect(status().isForbidden());
+        verifyNoInteractions(revokedTokenCache);
+    }
+
+    @Test
+    void revocations_WithApiKey_ReturnsHashesAndCutoffs() throws Exception {
+        when(revokedTokenCache.isInitialized()).thenReturn(true);
+        when(revokedTokenCache.revokedTokenIds()).thenReturn(Set.of("abc123"));
+        when(revokedTokenCache.userCutoffSeconds()).thenReturn(Map.of(7L, 1700000000L));
+
+        mockMvc.perform(get("/api/auth/revocations").header(RevocationController.API_KEY_HEADER, "test-internal-api-key"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tokenHashes[0]").value("abc123"))
+                .andExpect(jsonPath("$.userCutoffs.7").value(1700000000L));
+    }
+}
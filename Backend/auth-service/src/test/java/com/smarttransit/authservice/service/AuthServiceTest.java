@@ -3,16 +3,19 @@ package com.smarttransit.authservice.service;
 import com.smarttransit.authservice.dto.LoginResponse;
 import com.smarttransit.authservice.dto.TokenValidationResponse;
 import com.smarttransit.authservice.enums.TokenType;
+import com.smarttransit.authservice.exception.TooManyRequestsException;
 import com.smarttransit.authservice.model.Token;
 import com.smarttransit.authservice.model.User;
 import com.smarttransit.authservice.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.util.Arrays;
 import java.util.HashSet;
@@ -33,7 +36,16 @@ class AuthServiceTest {
     private TokenService tokenService;
 
     @Mock
-    private BCryptPasswordEncoder passwordEncoder;
+    private PasswordEncoder passwordEncoder;
+
+    @Mock
+    private PasswordHashPolicy passwordHashPolicy;
+
+    @Mock
+    private LoginAttemptLimiter loginAttemptLimiter;
+
+    @Spy
+    private PasswordHashingExecutor passwordHashingExecutor = new PasswordHashingExecutor(2, 8, 2000, new SimpleMeterRegistry());
 
     @InjectMocks
     private AuthService authService;
@@ -70,8 +82,65 @@ class AuthServiceTest {
         assertEquals(testUser.getId(), response.getUserId());
         assertEquals(testUser.getEmail(), response.getEmail());
 
-        verify(tokenService).storeToken(testUser.getId(), "access-token", TokenType.ACCESS_TOKEN);
-        verify(tokenService).storeToken(testUser.getId(), "refresh-token", TokenType.REFRESH_TOKEN);
+        verify(tokenService).storeTokenPair(testUser.getId(), "access-token", "refresh-token");
+        verify(tokenService, never()).storeToken(anyLong(), anyString(), any(TokenType.class));
+    }
+
+    @Test
+    void login_OutdatedHash_RehashesAtCurrentCost() {
+        // Arrange
+        when(userRepository.findByEmail(testEmail)).thenReturn(Optional.of(testUser));
+        when(passwordEncoder.matches(testPassword, "encodedPassword")).thenReturn(true);
+        when(passwordHashPolicy.needsRehash("encodedPassword")).thenReturn(true);
+        when(passwordEncoder.encode(testPassword)).thenReturn("{bcrypt}rehashed");
+        when(tokenService.generateAccessToken(anyString(), anyLong(), anyList())).thenReturn("access-token");
+        when(tokenService.generateRefreshToken(anyString())).thenReturn("refresh-token");
+
+        // Act
+        authService.login(testEmail, testPassword);
+
+        // Assert: the rehash runs on the hashing pool, conditional on the old hash
+        verify(userRepository, timeout(2000)).updatePasswordHash(1L, "encodedPassword", "{bcrypt}rehashed");
+    }
+
+    @Test
+    void login_CurrentHash_DoesNotRehash() {
+        // Arrange
+        when(userRepository.findByEmail(testEmail)).thenReturn(Optional.of(testUser));
+        when(passwordEncoder.matches(testPassword, "encodedPassword")).thenReturn(true);
+        when(tokenService.generateAccessToken(anyString(), anyLong(), anyList())).thenReturn("access-token");
+        when(tokenService.generateRefreshToken(anyString())).thenReturn("refresh-token");
+
+        // Act
+        authService.login(testEmail, testPassword);
+
+        // Assert
+        verify(passwordHashingExecutor, never()).tryExecuteAsync(any());
+        verify(userRepository, never()).updatePasswordHash(anyLong(), anyString(), anyString());
+    }
+
+    @Test
+    void login_OverFailureLimit_RejectsBeforeLookupAndHashing() {
+        // Arrange
+        doThrow(new TooManyRequestsException("Too many failed login attempts", 60))
+                .when(loginAttemptLimiter).checkAllowed(testEmail, "10.0.0.1");
+
+        // Act & Assert
+        assertThrows(TooManyRequestsException.class, () -> authService.login(testEmail, testPassword, "10.0.0.1"));
+        verify(userRepository, never()).findByEmail(anyString());
+        verify(passwordEncoder, never()).matches(anyString(), anyString());
+    }
+
+    @Test
+    void login_WrongPassword_RecordsFailure() {
+        // Arrange
+        when(userRepository.findByEmail(testEmail)).thenReturn(Optional.of(testUser));
+        when(passwordEncoder.matches(testPassword, testUser.getPassword())).thenReturn(false);
+
+        // Act & Assert
+        assertThrows(RuntimeException.class, () -> authService.login(testEmail, testPassword, "10.0.0.1"));
+        verify(loginAttemptLimiter).recordFailure(testEmail, "10.0.0.1");
+        verify(loginAttemptLimiter, never()).recordSuccess(anyString());
     }
 
     @Test
@@ -84,6 +153,17 @@ class AuthServiceTest {
         assertThrows(RuntimeException.class, () -> authService.login(testEmail, testPassword));
     }
 
+    @Test
+    void login_HashingPoolSaturated_PropagatesTooManyRequests() {
+        // Arrange
+        when(userRepository.findByEmail(testEmail)).thenReturn(Optional.of(testUser));
+        doThrow(new TooManyRequestsException("busy", 1)).when(passwordHashingExecutor).execute(any());
+
+        // Act & Assert
+        assertThrows(TooManyRequestsException.class, () -> authService.login(testEmail, testPassword));
+        verifyNoInteractions(tokenService);
+    }
+
     @Test
     void login_UserNotFound_ThrowsException() {
         // Arrange
@@ -94,13 +174,25 @@ class AuthServiceTest {
     }
 
     @Test
-    void logout_ValidToken_Success() {
+    void logout_ValidToken_RevokesAllUserTokensInOneUpdate() {
         // Arrange
-        doNothing().when(tokenService).revokeToken("valid-token");
+        when(tokenService.getUserIdFromToken("valid-token")).thenReturn(testUser.getId());
 
         // Act & Assert
         assertDoesNotThrow(() -> authService.logout("valid-token"));
-        verify(tokenService).revokeToken("valid-token");
+        verify(tokenService).revokeAllUserTokens(testUser.getId());
+        verify(tokenService, never()).revokeToken(anyString());
+    }
+
+    @Test
+    void logout_TokenWithoutUserId_RevokesThatToken() {
+        // Arrange
+        when(tokenService.getUserIdFromToken("refresh-token")).thenThrow(new IllegalArgumentException("no userId"));
+
+        // Act & Assert
+        assertDoesNotThrow(() -> authService.logout("refresh-token"));
+        verify(tokenService).revokeToken("refresh-token");
+        verify(tokenService, never()).revokeAllUserTokens(anyLong());
     }
 
     @Test
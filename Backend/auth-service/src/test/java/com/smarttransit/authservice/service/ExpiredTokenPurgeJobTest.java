@@ -0,0 +1,92 @@
+package com.smarttransit.authservice.service;
+
+import com.smarttransit.authservice.repository.TokenRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExpiredTokenPurgeJobTest {
+
+    @Mock
+    private TokenRepository tokenRepository;
+
+    @Mock
+    private TokenPartitionManager partitionManager;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ExpiredTokenPurgeJob purgeJob;
+    private final LocalDateTime cutoff = LocalDateTime.of(2025, 1, 1, 2, 0);
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        purgeJob = new ExpiredTokenPurgeJob(tokenRepository, partitionManager, transactionManager, meterRegistry);
+        ReflectionTestUtils.setField(purgeJob, "batchSize", 3);
+        ReflectionTestUtils.setField(purgeJob, "pauseMillis", 0L);
+    }
+
+    @Test
+    void purgeExpiredTokens_DeletesInKeysetChunks() {
+        // Arrange
+        when(tokenRepository.findExpiredTokenIds(eq(cutoff), eq(0L), any(Pageable.class))).thenReturn(List.of(1L, 2L, 5L));
+        when(tokenRepository.findExpiredTokenIds(eq(cutoff), eq(5L), any(Pageable.class))).thenReturn(List.of(8L, 9L));
+        when(tokenRepository.deleteExpiredTokens(cutoff, 0L, 5L)).thenReturn(3);
+        when(tokenRepository.deleteExpiredTokens(cutoff, 5L, 9L)).thenReturn(2);
+
+        // Act
+        long deleted = purgeJob.purgeExpiredTokens(cutoff);
+
+        // Assert
+        assertEquals(5, deleted);
+        verify(tokenRepository, never()).deleteExpiredTokens(any(LocalDateTime.class));
+        verify(tokenRepository, never()).findAll();
+        assertEquals(5.0, meterRegistry.get("auth.tokens.purge.deleted").counter().count());
+        assertEquals(2.0, meterRegistry.get("auth.tokens.purge.chunks").counter().count());
+        assertEquals(5.0, meterRegistry.get("auth.tokens.purge.last.deleted").gauge().value());
+    }
+
+    @Test
+    void purgeExpiredTokens_NothingExpired_NoDelete() {
+        // Arrange
+        when(tokenRepository.findExpiredTokenIds(eq(cutoff), eq(0L), any(Pageable.class))).thenReturn(List.of());
+
+        // Act
+        long deleted = purgeJob.purgeExpiredTokens(cutoff);
+
+        // Assert
+        assertEquals(0, deleted);
+        verify(tokenRepository, never()).deleteExpiredTokens(any(LocalDateTime.class), anyLong(), anyLong());
+    }
+
+    @Test
+    void purgeExpiredTokens_PartitionedTable_DropsPartitionsFirst() {
+        // Arrange
+        when(partitionManager.isPartitioned()).thenReturn(true);
+        when(partitionManager.dropPartitionsExpiredBefore(cutoff)).thenReturn(4);
+        when(tokenRepository.findExpiredTokenIds(eq(cutoff), eq(0L), any(Pageable.class))).thenReturn(List.of());
+
+        // Act
+        purgeJob.purgeExpiredTokens(cutoff);
+
+        // Assert
+        verify(partitionManager).dropPartitionsExpiredBefore(cutoff);
+        assertEquals(4.0, meterRegistry.get("auth.tokens.purge.partitions.dropped").counter().count());
+    }
+}
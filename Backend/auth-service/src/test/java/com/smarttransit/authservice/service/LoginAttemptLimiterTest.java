@@ -0,0 +1,129 @@
+package com.smarttransit.authservice.service;
+
+import com.smarttransit.authservice.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginAttemptLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+
+    private LoginAttemptLimiter limiter(int perEmail, int perIp, int maxKeys) {
+        // 60s windows, starting exactly at a window boundary
+        now.set(60_000L * 1000);
+        return new LoginAttemptLimiter(true, 60, perEmail, perIp, maxKeys, meterRegistry, now::get);
+    }
+
+    @Test
+    void checkAllowed_BlocksEmailAfterThreshold() {
+        LoginAttemptLimiter limiter = limiter(3, 100, 1000);
+
+        for (int i = 0; i < 3; i++) {
+            limiter.checkAllowed("user@example.com", "10.0.0.1");
+            limiter.recordFailure("User@Example.com ", "10.0.0." + i);
+        }
+
+        TooManyRequestsException e = assertThrows(TooManyRequestsException.class,
+                () -> limiter.checkAllowed("user@example.com", "10.0.0.9"));
+        assertEquals(60, e.getRetryAfterSeconds());
+        assertDoesNotThrow(() -> limiter.checkAllowed("other@example.com", "10.0.0.9"));
+        assertEquals(1.0, meterRegistry.get("auth.login.blocked").tag("key", "email").counter().count());
+    }
+
+    @Test
+    void checkAllowed_BlocksIpAcrossEmails() {
+        LoginAttemptLimiter limiter = limiter(100, 2, 1000);
+
+        limiter.recordFailure("a@example.com", "10.0.0.1");
+        limiter.recordFailure("b@example.com", "10.0.0.1");
+
+        assertThrows(TooManyRequestsException.class, () -> limiter.checkAllowed("c@example.com", "10.0.0.1"));
+        assertDoesNotThrow(() -> limiter.checkAllowed("c@example.com", "10.0.0.2"));
+    }
+
+    @Test
+    void slidingWindow_PreviousWindowDecaysLinearly() {
+        LoginAttemptLimiter limiter = limiter(4, 100, 1000);
+        for (int i = 0; i < 4; i++) {
+            limiter.recordFailure("user@example.com", null);
+        }
+
+        // Half-way into the next window the 4 old failures weigh as 2
+        now.addAndGet(90_000);
+        assertDoesNotThrow(() -> limiter.checkAllowed("user@example.com", null));
+        limiter.recordFailure("user@example.com", null);
+        limiter.recordFailure("user@example.com", null);
+        assertThrows(TooManyRequestsException.class, () -> limiter.checkAllowed("user@example.com", null));
+
+        // Two windows later everything has expired and the key is evicted
+        now.addAndGet(120_000);
+        assertDoesNotThrow(() -> limiter.checkAllowed("user@example.com", null));
+        limiter.evictIdle();
+        assertEquals(0, limiter.trackedKeys());
+    }
+
+    @Test
+    void recordSuccess_ClearsEmailButNotIp() {
+        LoginAttemptLimiter limiter = limiter(2, 2, 1000);
+        limiter.recordFailure("user@example.com", "10.0.0.1");
+        limiter.recordFailure("user@example.com", "10.0.0.1");
+
+        limiter.recordSuccess("user@example.com");
+
+        assertDoesNotThrow(() -> limiter.checkAllowed("user@example.com", "10.0.0.2"));
+        assertThrows(TooManyRequestsException.class, () -> limiter.checkAllowed("user@example.com", "10.0.0.1"));
+    }
+
+    @Test
+    void recordFailure_AtCapacity_EvictsOldestKeysAndKeepsCounting() {
+        LoginAttemptLimiter limiter = limiter(1, 1, 2);
+        limiter.recordFailure("a@example.com", "10.0.0.1");
+        now.addAndGet(1_000);
+        limiter.recordFailure("b@example.com", "10.0.0.2");
+
+        // Both new keys are tracked; a's and 10.0.0.1's failures are the oldest and were dropped
+        assertEquals(2, limiter.trackedKeys());
+        assertThrows(TooManyRequestsException.class, () -> limiter.checkAllowed("b@example.com", "10.0.0.9"));
+        assertThrows(TooManyRequestsException.class, () -> limiter.checkAllowed("c@example.com", "10.0.0.2"));
+        assertDoesNotThrow(() -> limiter.checkAllowed("a@example.com", "10.0.0.9"));
+        assertEquals(2.0, meterRegistry.get("auth.login.evicted").counter().count());
+    }
+
+    @Test
+    void recordFailure_AtCapacity_DropsIdleKeysFirst() {
+        LoginAttemptLimiter limiter = limiter(5, 5, 2);
+        limiter.recordFailure("a@example.com", null);
+        limiter.recordFailure("b@example.com", null);
+
+        // a and b have aged out of both windows
+        now.addAndGet(120_000);
+        limiter.recordFailure("c@example.com", null);
+
+        assertEquals(1, limiter.trackedKeys());
+        assertEquals(0.0, meterRegistry.get("auth.login.evicted").counter().count());
+    }
+
+    @Test
+    void constructor_NoTrackedKeys_Rejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new LoginAttemptLimiter(true, 60, 10, 100, 0, meterRegistry, now::get));
+    }
+
+    @Test
+    void recordFailure_CapacityOfOne_KeepsTheNewestKey() {
+        LoginAttemptLimiter limiter = limiter(1, 100, 1);
+
+        limiter.recordFailure("a@example.com", null);
+        now.addAndGet(1_000);
+        limiter.recordFailure("b@example.com", null);
+
+        assertEquals(1, limiter.trackedKeys());
+        assertDoesNotThrow(() -> limiter.checkAllowed("a@example.com", null));
+        assertThrows(TooManyRequestsException.class, () -> limiter.checkAllowed("b@example.com", null));
+    }
+}
@@ -0,0 +1,51 @@
+package com.smarttransit.authservice.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHashPolicyTest {
+
+    @Test
+    void strengthOf_ParsesPrefixedAndLegacyHashes() {
+        String legacy = new BCryptPasswordEncoder(4).encode("secret");
+
+        assertEquals(4, PasswordHashPolicy.strengthOf(legacy));
+        assertEquals(4, PasswordHashPolicy.strengthOf("{bcrypt}" + legacy));
+        assertEquals(-1, PasswordHashPolicy.strengthOf("plain-text"));
+        assertEquals(-1, PasswordHashPolicy.strengthOf(null));
+    }
+
+    @Test
+    void needsRehash_OnlyForPrefixedHashesAtOrAboveTheTargetCostIsFalse() {
+        PasswordHashPolicy policy = new PasswordHashPolicy(5, 250, Map.of());
+        String atTarget = new BCryptPasswordEncoder(5).encode("secret");
+        String lower = new BCryptPasswordEncoder(4).encode("secret");
+        String higher = new BCryptPasswordEncoder(6).encode("secret");
+
+        assertFalse(policy.needsRehash("{bcrypt}" + atTarget));
+        assertFalse(policy.needsRehash("{bcrypt}" + higher)); // calibrated higher on another node
+        assertTrue(policy.needsRehash(atTarget)); // legacy, no prefix
+        assertTrue(policy.needsRehash("{bcrypt}" + lower));
+        assertTrue(policy.needsRehash("plain-text"));
+    }
+
+    @Test
+    void calibrate_StaysWithinBoundsAndRecordsMeasurements() {
+        PasswordHashPolicy policy = PasswordHashPolicy.calibrate(10_000, 4, 6);
+
+        assertTrue(policy.getTargetStrength() >= 4 && policy.getTargetStrength() <= 6);
+        assertTrue(policy.getMeasuredMillis().containsKey(4));
+    }
+
+    @Test
+    void calibrate_UnreachableBudget_FallsBackToMinimum() {
+        PasswordHashPolicy policy = PasswordHashPolicy.calibrate(-1, 4, 6);
+
+        assertEquals(4, policy.getTargetStrength());
+        assertEquals(1, policy.getMeasuredMillis().size());
+    }
+}
@@ -0,0 +1,88 @@
+package com.smarttransit.authservice.service;
+
+import com.smarttransit.authservice.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHashingExecutorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private PasswordHashingExecutor hashingExecutor;
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        if (hashingExecutor != null) {
+            hashingExecutor.shutdown();
+        }
+    }
+
+    @Test
+    void execute_ReturnsTaskResultAndRecordsLatency() {
+        hashingExecutor = new PasswordHashingExecutor(1, 1, 2000, meterRegistry);
+
+        assertEquals("hash", hashingExecutor.execute(() -> "hash"));
+        assertEquals(1, meterRegistry.get("auth.password.hash.duration").timer().count());
+        assertEquals(1, meterRegistry.get("auth.password.hash.latency").timer().count());
+    }
+
+    @Test
+    void execute_TaskThrows_PropagatesException() {
+        hashingExecutor = new PasswordHashingExecutor(1, 1, 2000, meterRegistry);
+
+        assertThrows(IllegalArgumentException.class, () -> hashingExecutor.execute(() -> {
+            throw new IllegalArgumentException("bad hash");
+        }));
+    }
+
+    @Test
+    void execute_PoolAndQueueFull_RejectsImmediately() throws Exception {
+        hashingExecutor = new PasswordHashingExecutor(1, 1, 5000, meterRegistry);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+
+        // One task occupies the only worker, a second fills the queue
+        callers.submit(() -> hashingExecutor.execute(() -> {
+            started.countDown();
+            await(release);
+            return true;
+        }));
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        callers.submit(() -> hashingExecutor.execute(() -> true));
+        waitForQueueDepth(1);
+
+        long start = System.nanoTime();
+        assertThrows(TooManyRequestsException.class, () -> hashingExecutor.execute(() -> true));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        assertEquals(1.0, meterRegistry.get("auth.password.hash.rejected").counter().count());
+
+        release.countDown();
+    }
+
+    private void waitForQueueDepth(int depth) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (meterRegistry.get("auth.password.hash.queue.depth").gauge().value() < depth) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("queue never reached depth " + depth);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.smarttransit.authservice.service;
+
+import com.smarttransit.authservice.repository.TokenRepository;
+import com.smarttransit.authservice.util.TokenDigests;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RevokedTokenCacheTest {
+
+    @Mock
+    private TokenRepository tokenRepository;
+
+    @InjectMocks
+    private RevokedTokenCache revokedTokenCache;
+
+    @Test
+    void isRevoked_BeforeFirstRefresh_ReturnsFalse() {
+        assertFalse(revokedTokenCache.isInitialized());
+        assertFalse(revokedTokenCache.isRevoked(TokenDigests.sha256Hex("token")));
+    }
+
+    @Test
+    void refresh_LoadsRevokedTokensFromDatabase() {
+        // Arrange
+        when(tokenRepository.findRevokedTokenHashes(any(LocalDateTime.class)))
+                .thenReturn(List.of(TokenDigests.sha256Hex("revoked-1"), TokenDigests.sha256Hex("revoked-2")));
+
+        // Act
+        revokedTokenCache.refresh();
+
+        // Assert
+        assertTrue(revokedTokenCache.isInitialized());
+        assertTrue(revokedTokenCache.isRevoked(TokenDigests.sha256Hex("revoked-1")));
+        assertTrue(revokedTokenCache.isRevoked(TokenDigests.sha256Hex("revoked-2")));
+        assertFalse(revokedTokenCache.isRevoked(TokenDigests.sha256Hex("active")));
+        assertEquals(2, revokedTokenCache.size());
+    }
+
+    @Test
+    void revoke_LocalRevocation_SurvivesRefresh() {
+        // Arrange
+        when(tokenRepository.findRevokedTokenHashes(any(LocalDateTime.class))).thenReturn(List.of());
+        revokedTokenCache.refresh();
+        String tokenId = TokenDigests.sha256Hex("just-logged-out");
+
+        // Act
+        revokedTokenCache.revoke(tokenId);
+        revokedTokenCache.refresh();
+
+        // Assert
+        assertTrue(revokedTokenCache.isRevoked(tokenId));
+    }
+
+    @Test
+    void revokeAllForUser_RejectsTokensIssuedUpToCutoff() {
+        // Arrange
+        when(tokenRepository.findRevokedTokenHashes(any(LocalDateTime.class))).thenReturn(List.of());
+        revokedTokenCache.refresh();
+        Date now = new Date();
+        String tokenId = TokenDigests.sha256Hex("access");
+
+        // Act
+        revokedTokenCache.revokeAllForUser(42L, now);
+
+        // Assert
+        assertTrue(revokedTokenCache.isRevoked(tokenId, 42L, new Date(now.getTime() - 60_000)));
+        assertFalse(revokedTokenCache.isRevoked(tokenId, 42L, new Date(now.getTime() + 60_000)));
+        assertFalse(revokedTokenCache.isRevoked(tokenId, 7L, new Date(now.getTime() - 60_000)));
+    }
+
+    @Test
+    void refresh_DropsEntriesNoLongerReturnedByDatabase() {
+        // Arrange
+        when(tokenRepository.findRevokedTokenHashes(any(LocalDateTime.class)))
+                .thenReturn(List.of(TokenDigests.sha256Hex("expired-soon")))
+                .thenReturn(List.of());
+        revokedTokenCache.refresh();
+
+        // Act
+        revokedTokenCache.refresh();
+
+        // Assert
+        assertFalse(revokedTokenCache.isRevoked(TokenDigests.sha256Hex("expired-soon")));
+    }
+
+    @Test
+    void bloomFilter_NoFalseNegatives() {
+        RevokedTokenCache.BloomFilter filter = new RevokedTokenCache.BloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.put(TokenDigests.sha256Hex("token-" + i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain(TokenDigests.sha256Hex("token-" + i)));
+        }
+
+        int falsePositives = 0;
+        for (int i = 1000; i < 11000; i++) {
+            if (filter.mightContain(TokenDigests.sha256Hex("token-" + i))) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 300, "false positive rate too high: " + falsePositives);
+    }
+
+    @Test
+    void revokedTokenIdsAndUserCutoffs_ExportCurrentSnapshot() {
+        // Arrange
+        when(tokenRepository.findRevokedTokenHashes(any(LocalDateTime.class)))
+                .thenReturn(List.of(TokenDigests.sha256Hex("revoked-1")));
+        revokedTokenCache.refresh();
+        revokedTokenCache.revoke(TokenDigests.sha256Hex("revoked-2"));
+        revokedTokenCache.revokeAllForUser(42L, new Date(1_700_000_000_000L));
+
+        // Act & Assert
+        assertEquals(Set.of(TokenDigests.sha256Hex("revoked-1"), TokenDigests.sha256Hex("revoked-2")),
+                revokedTokenCache.revokedTokenIds());
+        assertEquals(Map.of(42L, 1_700_000_000L), revokedTokenCache.userCutoffSeconds());
+    }
+}
@@ -0,0 +1,117 @@
+package com.smarttransit.authservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smarttransit.authservice.model.SigningKey;
+import com.smarttransit.authservice.repository.SigningKeyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigInteger;
+import java.security.interfaces.RSAPublicKey;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SigningKeyManagerTest {
+
+    @Mock
+    private SigningKeyRepository signingKeyRepository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<SigningKey> stored = new ArrayList<>();
+    private SigningKeyManager signingKeyManager;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(signingKeyRepository.findAllByOrderByActivatesAtAsc()).thenAnswer(invocation -> {
+            List<SigningKey> sorted = new ArrayList<>(stored);
+            sorted.sort(Comparator.comparing(SigningKey::getActivatesAt));
+            return sorted;
+        });
+        lenient().when(signingKeyRepository.save(any(SigningKey.class))).thenAnswer(invocation -> {
+            SigningKey key = invocation.getArgument(0);
+            stored.add(key);
+            return key;
+        });
+        lenient().doAnswer(invocation -> stored.remove(invocation.<SigningKey>getArgument(0)))
+                .when(signingKeyRepository).delete(any(SigningKey.class));
+
+        signingKeyManager = new SigningKeyManager(signingKeyRepository, objectMapper);
+        ReflectionTestUtils.setField(signingKeyManager, "rotationIntervalHours", 720L);
+        ReflectionTestUtils.setField(signingKeyManager, "publishAheadMinutes", 15L);
+        ReflectionTestUtils.setField(signingKeyManager, "maxTokenLifetimeSeconds", 604800L);
+    }
+
+    @Test
+    void currentSigningKey_EmptyStore_CreatesActiveKeyAndPublishesIt() throws Exception {
+        // Act
+        SigningKeyManager.ActiveKey active = signingKeyManager.currentSigningKey();
+
+        // Assert
+        assertEquals(1, stored.size());
+        assertEquals(stored.get(0).getKid(), active.kid());
+
+        JsonNode jwk = objectMapper.readTree(signingKeyManager.jwksJson()).get("keys").get(0);
+        assertEquals("RSA", jwk.get("kty").asText());
+        assertEquals("RS256", jwk.get("alg").asText());
+        assertEquals(active.kid(), jwk.get("kid").asText());
+        RSAPublicKey publicKey = signingKeyManager.findVerificationKey(active.kid());
+        assertEquals(publicKey.getModulus(),
+                new BigInteger(1, Base64.getUrlDecoder().decode(jwk.get("n").asText())));
+    }
+
+    @Test
+    void refresh_RotationDue_PublishesNextKeyBeforeItSigns() {
+        // Arrange: active key older than the rotation interval
+        signingKeyManager.refresh();
+        SigningKey old = stored.get(0);
+        old.setActivatesAt(LocalDateTime.now().minusDays(31));
+
+        // Act
+        signingKeyManager.refresh();
+
+        // Assert
+        assertEquals(2, stored.size());
+        SigningKey next = stored.get(1);
+        assertTrue(next.getActivatesAt().isAfter(LocalDateTime.now()));
+        assertEquals(old.getKid(), signingKeyManager.currentSigningKey().kid());
+        assertNotNull(signingKeyManager.findVerificationKey(next.getKid()));
+        assertTrue(signingKeyManager.jwksJson().contains(next.getKid()));
+
+        // A pending key means no further rotation
+        signingKeyManager.refresh();
+        assertEquals(2, stored.size());
+    }
+
+    @Test
+    void refresh_SupersededKeyPastTokenLifetime_IsDeleted() {
+        // Arrange: old key superseded 8 days ago by a key activated then
+        signingKeyManager.refresh();
+        SigningKey old = stored.get(0);
+        old.setActivatesAt(LocalDateTime.now().minusDays(40));
+        signingKeyManager.refresh();
+        SigningKey next = stored.get(1);
+        next.setActivatesAt(LocalDateTime.now().minusDays(8));
+
+        // Act
+        signingKeyManager.refresh();
+
+        // Assert
+        assertEquals(List.of(next), stored);
+        assertEquals(next.getKid(), signingKeyManager.currentSigningKey().kid());
+        verify(signingKeyRepository).delete(old);
+        assertNull(signingKeyManager.findVerificationKey("unknown-kid"));
+    }
+}
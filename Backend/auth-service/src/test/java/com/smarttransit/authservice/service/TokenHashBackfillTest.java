@@ -0,0 +1,82 @@
+package com.smarttransit.authservice.service;
+
+import com.smarttransit.authservice.enums.TokenType;
+import com.smarttransit.authservice.model.Token;
+import com.smarttransit.authservice.repository.TokenRepository;
+import com.smarttransit.authservice.util.TokenDigests;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenHashBackfillTest {
+
+    @Mock
+    private TokenRepository tokenRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private TokenHashBackfill backfill;
+
+    @BeforeEach
+    void setUp() {
+        backfill = new TokenHashBackfill(tokenRepository, transactionManager);
+        ReflectionTestUtils.setField(backfill, "batchSize", 2);
+        when(tokenRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    /** A token as stored before token_hash existed */
+    private static Token legacyToken(long id, String value) {
+        Token token = new Token(1L, value, TokenType.ACCESS_TOKEN, LocalDateTime.now().plusHours(1));
+        token.setId(id);
+        ReflectionTestUtils.setField(token, "tokenHash", null);
+        return token;
+    }
+
+    @Test
+    void backfill_HashesMissingRowsInKeysetChunks() {
+        // Arrange
+        Token first = legacyToken(3L, "token-a");
+        Token second = legacyToken(7L, "token-b");
+        Token third = legacyToken(9L, "token-c");
+        when(tokenRepository.findWithoutTokenHash(eq(0L), any(Pageable.class))).thenReturn(List.of(first, second));
+        when(tokenRepository.findWithoutTokenHash(eq(7L), any(Pageable.class))).thenReturn(List.of(third));
+
+        // Act
+        long filled = backfill.backfill();
+
+        // Assert
+        assertEquals(3, filled);
+        assertEquals(TokenDigests.sha256Hex("token-a"), first.getTokenHash());
+        assertEquals(TokenDigests.sha256Hex("token-b"), second.getTokenHash());
+        assertEquals(TokenDigests.sha256Hex("token-c"), third.getTokenHash());
+        verify(tokenRepository, times(2)).saveAll(anyList());
+        verify(tokenRepository, never()).findWithoutTokenHash(eq(9L), any(Pageable.class));
+    }
+
+    @Test
+    void backfill_EveryRowHashed_WritesNothing() {
+        // Arrange
+        when(tokenRepository.findWithoutTokenHash(eq(0L), any(Pageable.class))).thenReturn(List.of());
+
+        // Act
+        long filled = backfill.backfill();
+
+        // Assert
+        assertEquals(0, filled);
+        verify(tokenRepository, times(1)).findWithoutTokenHash(anyLong(), any(Pageable.class));
+    }
+}
@@ -0,0 +1,53 @@
+package com.smarttransit.authservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenSequenceInitializerTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private TokenSequenceInitializer initializer;
+
+    @BeforeEach
+    void setUp() {
+        initializer = new TokenSequenceInitializer(jdbcTemplate);
+    }
+
+    @Test
+    void advancePastExistingIds_OnPostgres_MovesSequenceForwardOnly() {
+        // Arrange
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn("PostgreSQL");
+        when(jdbcTemplate.queryForList(TokenSequenceInitializer.ADVANCE_SQL, Long.class)).thenReturn(List.of(1234L));
+
+        // Act
+        initializer.advancePastExistingIds();
+
+        // Assert
+        verify(jdbcTemplate).queryForList(TokenSequenceInitializer.ADVANCE_SQL, Long.class);
+    }
+
+    @Test
+    void advancePastExistingIds_OnOtherDatabases_DoesNothing() {
+        // Arrange
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn("H2");
+
+        // Act
+        initializer.advancePastExistingIds();
+
+        // Assert
+        verify(jdbcTemplate, never()).queryForList(anyString(), eq(Long.class));
+    }
+}
@@ -4,6 +4,7 @@ import com.smarttransit.authservice.dto.TokenValidationResponse;
 import com.smarttransit.authservice.enums.TokenType;
 import com.smarttransit.authservice.model.Token;
 import com.smarttransit.authservice.repository.TokenRepository;
+import com.smarttransit.authservice.util.TokenDigests;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
@@ -17,6 +18,9 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import javax.crypto.SecretKey;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Date;
@@ -33,6 +37,12 @@ class TokenServiceTest {
     @Mock
     private TokenRepository tokenRepository;
 
+    @Mock
+    private RevokedTokenCache revokedTokenCache;
+
+    @Mock
+    private SigningKeyManager signingKeyManager;
+
     @InjectMocks
     private TokenService tokenService;
 
@@ -106,6 +116,18 @@ class TokenServiceTest {
         assertEquals("REFRESH", claims.get("tokenType")); // Fixed: should be "tokenType" not "type"
     }
 
+    @Test
+    void generateAccessToken_SameUserSameSecond_IssuesDistinctTokenIds() {
+        // Act
+        String first = tokenService.generateAccessToken(testEmail, testUserId, testRoles);
+        String second = tokenService.generateAccessToken(testEmail, testUserId, testRoles);
+
+        // Assert
+        assertNotEquals(first, second);
+        assertNotNull(tokenService.parseToken(first).getId());
+        assertNotEquals(tokenService.parseToken(first).getId(), tokenService.parseToken(second).getId());
+    }
+
     @Test
     void storeToken_ValidInput_SavesToken() {
         // Arrange
@@ -120,6 +142,7 @@ class TokenServiceTest {
         verify(tokenRepository).save(argThat(token -> 
             token.getUserId().equals(testUserId) &&
             token.getToken().equals(tokenValue) &&
+            token.getTokenHash().equals(TokenDigests.sha256Hex(tokenValue)) &&
             token.getTokenType() == TokenType.ACCESS_TOKEN
         ));
     }
@@ -129,7 +152,7 @@ class TokenServiceTest {
         // Arrange
         String validToken = generateValidToken();
         testToken.setToken(validToken);
-        when(tokenRepository.findByToken(validToken)).thenReturn(Optional.of(testToken));
+        when(tokenRepository.findByTokenHash(TokenDigests.sha256Hex(validToken))).thenReturn(Optional.of(testToken));
 
         // Act
         boolean result = tokenService.validateToken(validToken);
@@ -144,7 +167,7 @@ class TokenServiceTest {
         String validToken = generateValidToken();
         testToken.setToken(validToken);
         testToken.setIsRevoked(true);
-        when(tokenRepository.findByToken(validToken)).thenReturn(Optional.of(testToken));
+        when(tokenRepository.findByTokenHash(TokenDigests.sha256Hex(validToken))).thenReturn(Optional.of(testToken));
 
         // Act
         boolean result = tokenService.validateToken(validToken);
@@ -159,7 +182,7 @@ class TokenServiceTest {
         String expiredToken = generateExpiredToken();
         testToken.setToken(expiredToken);
         testToken.setExpiresAt(LocalDateTime.now().minusHours(1));
-        when(tokenRepository.findByToken(expiredToken)).thenReturn(Optional.of(testToken));
+        when(tokenRepository.findByTokenHash(TokenDigests.sha256Hex(expiredToken))).thenReturn(Optional.of(testToken));
 
         // Act
         boolean result = tokenService.validateToken(expiredToken);
@@ -185,7 +208,7 @@ class TokenServiceTest {
         // Arrange
         String validToken = generateValidToken();
         testToken.setToken(validToken);
-        when(tokenRepository.findByToken(validToken)).thenReturn(Optional.of(testToken));
+        when(tokenRepository.findByTokenHash(TokenDigests.sha256Hex(validToken))).thenReturn(Optional.of(testToken));
 
         // Act
         TokenValidationResponse result = tokenService.validateTokenAndGetDetails(validToken);
@@ -198,39 +221,200 @@ class TokenServiceTest {
         assertEquals(testRoles, result.getRoles());
     }
 
+    @Test
+    void validateTokenAndGetDetails_LocalMode_SkipsDatabase() {
+        // Arrange
+        ReflectionTestUtils.setField(tokenService, "validationMode", "local");
+        String validToken = generateValidToken();
+        when(revokedTokenCache.isInitialized()).thenReturn(true);
+        when(revokedTokenCache.isRevoked(eq(TokenDigests.sha256Hex(validToken)), eq(testUserId), any(Date.class))).thenReturn(false);
+
+        // Act
+        TokenValidationResponse result = tokenService.validateTokenAndGetDetails(validToken);
+
+        // Assert
+        assertTrue(result.isValid());
+        assertEquals(testUserId, result.getUserId());
+        assertEquals(testEmail, result.getEmail());
+        assertEquals(testRoles, result.getRoles());
+        verifyNoInteractions(tokenRepository);
+    }
+
+    @Test
+    void validateTokenAndGetDetails_LocalModeRevokedToken_ReturnsInvalid() {
+        // Arrange
+        ReflectionTestUtils.setField(tokenService, "validationMode", "local");
+        String validToken = generateValidToken();
+        when(revokedTokenCache.isInitialized()).thenReturn(true);
+        when(revokedTokenCache.isRevoked(eq(TokenDigests.sha256Hex(validToken)), eq(testUserId), any(Date.class))).thenReturn(true);
+
+        // Act
+        TokenValidationResponse result = tokenService.validateTokenAndGetDetails(validToken);
+
+        // Assert
+        assertFalse(result.isValid());
+        verifyNoInteractions(tokenRepository);
+    }
+
+    @Test
+    void validateTokenAndGetDetails_LocalModeExpiredToken_ReturnsInvalid() {
+        // Arrange
+        ReflectionTestUtils.setField(tokenService, "validationMode", "local");
+        when(revokedTokenCache.isInitialized()).thenReturn(true);
+
+        // Act
+        TokenValidationResponse result = tokenService.validateTokenAndGetDetails(generateExpiredToken());
+
+        // Assert
+        assertFalse(result.isValid());
+    }
+
+    @Test
+    void validateTokenAndGetDetails_LocalModeCacheNotLoaded_UsesDatabase() {
+        // Arrange
+        ReflectionTestUtils.setField(tokenService, "validationMode", "local");
+        String validToken = generateValidToken();
+        testToken.setToken(validToken);
+        when(revokedTokenCache.isInitialized()).thenReturn(false);
+        when(tokenRepository.findByTokenHash(TokenDigests.sha256Hex(validToken))).thenReturn(Optional.of(testToken));
+
+        // Act
+        TokenValidationResponse result = tokenService.validateTokenAndGetDetails(validToken);
+
+        // Assert
+        assertTrue(result.isValid());
+        verify(tokenRepository).findByTokenHash(TokenDigests.sha256Hex(validToken));
+    }
+
+    @Test
+    void storeTokenPair_ValidInput_SavesBothTokensInOneCall() {
+        // Arrange
+        when(tokenRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        List<Token> result = tokenService.storeTokenPair(testUserId, "access", "refresh");
+
+        // Assert
+        assertEquals(2, result.size());
+        assertEquals(TokenType.ACCESS_TOKEN, result.get(0).getTokenType());
+        assertEquals(TokenType.REFRESH_TOKEN, result.get(1).getTokenType());
+        assertTrue(result.get(1).getExpiresAt().isAfter(result.get(0).getExpiresAt()));
+        verify(tokenRepository, never()).save(any(Token.class));
+    }
+
     @Test
     void revokeToken_ValidToken_RevokesToken() {
         // Arrange
         String tokenValue = "test-token";
-        when(tokenRepository.findByToken(tokenValue)).thenReturn(Optional.of(testToken));
+        String tokenHash = TokenDigests.sha256Hex(tokenValue);
+        when(tokenRepository.revokeByTokenHash(tokenHash)).thenReturn(1);
 
         // Act
         tokenService.revokeToken(tokenValue);
 
         // Assert
-        assertTrue(testToken.getIsRevoked());
-        verify(tokenRepository).save(testToken);
+        verify(tokenRepository).revokeByTokenHash(tokenHash);
+        verify(tokenRepository, never()).findByTokenHash(anyString());
+        verify(revokedTokenCache).revoke(tokenHash);
     }
 
     @Test
-    void revokeAllUserTokens_ValidUserId_RevokesAllTokens() {
+    void revokeToken_UnknownToken_DoesNotTouchCache() {
         // Arrange
-        Token token1 = createToken(1L, "token1", TokenType.ACCESS_TOKEN, false);
-        Token token2 = createToken(1L, "token2", TokenType.REFRESH_TOKEN, false);
-        List<Token> userTokens = Arrays.asList(token1, token2);
-        
-        // FIXED: Use proper matchers
-        when(tokenRepository.findValidTokensByUserId(eq(testUserId), any(LocalDateTime.class)))
-            .thenReturn(userTokens);
+        when(tokenRepository.revokeByTokenHash(anyString())).thenReturn(0);
 
+        // Act
+        tokenService.revokeToken("unknown-token");
+
+        // Assert
+        verifyNoInteractions(revokedTokenCache);
+    }
+
+    @Test
+    void revokeAllUserTokens_ValidUserId_RevokesAllTokens() {
         // Act
         tokenService.revokeAllUserTokens(testUserId);
 
         // Assert
-        verify(tokenRepository).saveAll(argThat(tokens -> {
-            List<Token> tokenList = (List<Token>) tokens;
-            return tokenList.stream().allMatch(Token::getIsRevoked);
-        }));
+        verify(tokenRepository).revokeAllTokensForUser(testUserId);
+        verify(tokenRepository, never()).findValidTokensByUserId(anyLong(), any(LocalDateTime.class));
+        verify(revokedTokenCache).revokeAllForUser(eq(testUserId), any(Date.class));
+    }
+
+    @Test
+    void parseToken_SameTokenTwice_ReusesVerifiedClaims() {
+        // Arrange
+        String validToken = generateValidToken();
+
+        // Act
+        Claims first = tokenService.parseToken(validToken);
+        Claims second = tokenService.parseToken(validToken);
+
+        // Assert
+        assertSame(first, second);
+        assertEquals(testEmail, second.getSubject());
+    }
+
+    @Test
+    void parseToken_TamperedToken_ThrowsEvenAfterOriginalCached() {
+        // Arrange
+        String validToken = generateValidToken();
+        tokenService.parseToken(validToken);
+        String tampered = validToken.substring(0, validToken.length() - 2)
+                + (validToken.endsWith("AA") ? "BB" : "AA");
+
+        // Act & Assert
+        assertThrows(RuntimeException.class, () -> tokenService.parseToken(tampered));
+    }
+
+    @Test
+    void generateAccessToken_Rs256_SignsWithActiveKeyAndVerifiesByKid() throws Exception {
+        // Arrange
+        KeyPair keyPair = rsaKeyPair();
+        ReflectionTestUtils.setField(tokenService, "signingAlgorithm", "RS256");
+        when(signingKeyManager.currentSigningKey())
+                .thenReturn(new SigningKeyManager.ActiveKey("kid-1", keyPair.getPrivate()));
+        when(signingKeyManager.findVerificationKey("kid-1")).thenReturn((RSAPublicKey) keyPair.getPublic());
+
+        // Act
+        String token = tokenService.generateAccessToken(testEmail, testUserId, testRoles);
+
+        // Assert: verifiable with the public key alone
+        Claims claims = Jwts.parserBuilder().setSigningKey(keyPair.getPublic()).build()
+                .parseClaimsJws(token).getBody();
+        assertEquals(testEmail, claims.getSubject());
+        assertEquals("kid-1", Jwts.parserBuilder().setSigningKey(keyPair.getPublic()).build()
+                .parseClaimsJws(token).getHeader().getKeyId());
+        assertEquals(testEmail, tokenService.getEmailFromToken(token));
+    }
+
+    @Test
+    void parseToken_Rs256UnknownKid_ThrowsException() throws Exception {
+        // Arrange
+        KeyPair keyPair = rsaKeyPair();
+        ReflectionTestUtils.setField(tokenService, "signingAlgorithm", "RS256");
+        when(signingKeyManager.currentSigningKey())
+                .thenReturn(new SigningKeyManager.ActiveKey("kid-gone", keyPair.getPrivate()));
+        String token = tokenService.generateAccessToken(testEmail, testUserId, testRoles);
+
+        // Act & Assert
+        assertThrows(RuntimeException.class, () -> tokenService.parseToken(token));
+    }
+
+    @Test
+    void parseToken_Rs256WithHmacDisabled_RejectsLegacyHs512Token() {
+        // Arrange
+        String legacyToken = generateValidToken();
+        ReflectionTestUtils.setField(tokenService, "signingAlgorithm", "RS256");
+        ReflectionTestUtils.setField(tokenService, "acceptHmac", false);
+
+        // Act & Assert
+        assertThrows(RuntimeException.class, () -> tokenService.parseToken(legacyToken));
+    }
+
+    @Test
+    void parseToken_NullToken_ThrowsException() {
+        assertThrows(RuntimeException.class, () -> tokenService.parseToken(null));
     }
 
     @Test
@@ -261,7 +445,7 @@ class TokenServiceTest {
         Token refreshTokenEntity = createToken(testUserId, refreshToken, TokenType.REFRESH_TOKEN, false);
         
         // Mock the token validation and repository calls
-        when(tokenRepository.findByToken(refreshToken)).thenReturn(Optional.of(refreshTokenEntity));
+        when(tokenRepository.findByTokenHash(TokenDigests.sha256Hex(refreshToken))).thenReturn(Optional.of(refreshTokenEntity));
         
         // We need to mock the internal calls that refreshAccessToken makes
         // Since this is complex, let's use a spy or refactor the method
@@ -293,7 +477,7 @@ class TokenServiceTest {
         // Arrange
         String tokenValue = "test-token";
         testToken.setIsRevoked(true);
-        when(tokenRepository.findByToken(tokenValue)).thenReturn(Optional.of(testToken));
+        when(tokenRepository.findByTokenHash(TokenDigests.sha256Hex(tokenValue))).thenReturn(Optional.of(testToken));
 
         // Act
         boolean result = tokenService.isTokenRevoked(tokenValue);
@@ -306,7 +490,7 @@ class TokenServiceTest {
     void isTokenRevoked_NonExistingToken_ReturnsTrue() {
         // Arrange
         String tokenValue = "non-existing-token";
-        when(tokenRepository.findByToken(tokenValue)).thenReturn(Optional.empty());
+        when(tokenRepository.findByTokenHash(TokenDigests.sha256Hex(tokenValue))).thenReturn(Optional.empty());
 
         // Act
         boolean result = tokenService.isTokenRevoked(tokenValue);
@@ -390,4 +574,10 @@ class TokenServiceTest {
                 .signWith(key, SignatureAlgorithm.HS512)
                 .compact();
     }
-}
\ No newline at end of file
+
+    private static KeyPair rsaKeyPair() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        return generator.generateKeyPair();
+    }
+}
@@ -0,0 +1,59 @@
+package com.smarttransit.authservice.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientAddressesTest {
+
+    private final ClientAddresses clientAddresses = new ClientAddresses(List.of("10.0.0.0/8", "192.168.1.7", "fd00::/8"));
+
+    private static MockHttpServletRequest request(String remoteAddr, String forwardedFor) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr(remoteAddr);
+        if (forwardedFor != null) {
+            request.addHeader("X-Forwarded-For", forwardedFor);
+        }
+        return request;
+    }
+
+    @Test
+    void resolve_UntrustedPeer_IgnoresForwardedFor() {
+        assertEquals("203.0.113.5", clientAddresses.resolve(request("203.0.113.5", "198.51.100.1")));
+    }
+
+    @Test
+    void resolve_TrustedPeer_TakesTheFirstUntrustedHopFromTheRight() {
+        // The caller prepended 1.1.1.1; the gateway appended the real client
+        assertEquals("198.51.100.1", clientAddresses.resolve(request("10.1.2.3", "1.1.1.1, 198.51.100.1")));
+        // Through a second trusted proxy
+        assertEquals("198.51.100.1", clientAddresses.resolve(request("10.1.2.3", "1.1.1.1, 198.51.100.1, 192.168.1.7")));
+        assertEquals("2001:db8::1", clientAddresses.resolve(request("fd00::2", "2001:db8::1")));
+    }
+
+    @Test
+    void resolve_TrustedPeerWithoutHeader_UsesPeer() {
+        assertEquals("10.1.2.3", clientAddresses.resolve(request("10.1.2.3", null)));
+        assertEquals("10.1.2.3", clientAddresses.resolve(request("10.1.2.3", " , ")));
+    }
+
+    @Test
+    void isTrusted_OnlyMatchesIpLiterals() {
+        assertTrue(clientAddresses.isTrusted("10.255.0.1"));
+        assertTrue(clientAddresses.isTrusted("192.168.1.7"));
+        assertFalse(clientAddresses.isTrusted("192.168.1.8"));
+        assertFalse(clientAddresses.isTrusted("11.0.0.1"));
+        assertFalse(clientAddresses.isTrusted("10.0.0.300"));
+        assertFalse(clientAddresses.isTrusted("gateway.internal"));
+        assertFalse(clientAddresses.isTrusted(null));
+    }
+
+    @Test
+    void constructor_RejectsInvalidRanges() {
+        assertThrows(IllegalArgumentException.class, () -> new ClientAddresses(List.of("10.0.0.0/33")));
+        assertThrows(IllegalArgumentException.class, () -> new ClientAddresses(List.of("gateway")));
+    }
+}
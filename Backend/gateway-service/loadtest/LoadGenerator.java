@@ -0,0 +1,87 @@
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load generator: concurrency clients each send GET url, wait for
+ * the response, and send the next one. Runs a warm-up, then prints one line
+ * with throughput, latency percentiles and errors for the measured period.
+ *
+ * Usage: LoadGenerator url [concurrency=200] [seconds=20] [warmup-seconds=5] [label=run]
+ */
+public class LoadGenerator {
+
+    public static void main(String[] args) {
+        String url = args[0];
+        int concurrency = Integer.parseInt(arg(args, 1, "200"));
+        int seconds = Integer.parseInt(arg(args, 2, "20"));
+        int warmupSeconds = Integer.parseInt(arg(args, 3, "5"));
+        String label = arg(args, 4, "run");
+
+        HttpClient client = HttpClient.create(ConnectionProvider.builder("load-generator")
+                .maxConnections(concurrency)
+                .pendingAcquireMaxCount(-1)
+                .build());
+
+        run(client, url, concurrency, Duration.ofSeconds(warmupSeconds));
+        Result result = run(client, url, concurrency, Duration.ofSeconds(seconds));
+        System.out.printf("%-12s %9.0f req/s   p50 %7.1f ms   p99 %7.1f ms   max %7.1f ms   errors %d%n",
+                label, result.requests / (double) seconds, result.percentile(0.50), result.percentile(0.99),
+                result.percentile(1.0), result.errors);
+    }
+
+    private static Result run(HttpClient client, String url, int concurrency, Duration duration) {
+        long end = System.nanoTime() + duration.toNanos();
+        AtomicLong errors = new AtomicLong();
+        List<long[]> perClient = Flux.range(0, concurrency)
+                .flatMap(i -> Mono.defer(() -> call(client, url, errors))
+                        .repeat(() -> System.nanoTime() < end)
+                        .collectList()
+                        .map(LoadGenerator::toArray), concurrency)
+                .collectList()
+                .block();
+        long[] latencies = perClient.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        return new Result(latencies, latencies.length, errors.get());
+    }
+
+    private static Mono<Long> call(HttpClient client, String url, AtomicLong errors) {
+        long start = System.nanoTime();
+        return client.get().uri(url)
+                .responseSingle((response, body) -> body.asByteArray().defaultIfEmpty(new byte[0])
+                        .doOnNext(bytes -> {
+                            if (response.status().code() >= 400) {
+                                errors.incrementAndGet();
+                            }
+                        }))
+                .map(bytes -> System.nanoTime() - start)
+                .onErrorResume(e -> {
+                    errors.incrementAndGet();
+                    return Mono.just(System.nanoTime() - start);
+                });
+    }
+
+    private static long[] toArray(List<Long> values) {
+        return values.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static String arg(String[] args, int index, String defaultValue) {
+        return args.length > index ? args[index] : defaultValue;
+    }
+
+    private record Result(long[] latencies, long requests, long errors) {
+
+        double percentile(double p) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(latencies.length - 1, Math.ceil(p * latencies.length) - 1);
+            return latencies[Math.max(index, 0)] / 1e6;
+        }
+    }
+}
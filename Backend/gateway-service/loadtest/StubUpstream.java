@@ -0,0 +1,44 @@
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.server.HttpServer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * Stub backend for the gateway load test: answers every request with a JSON
+ * body of the given size after a fixed delay, over HTTP/1.1 or h2c.
+ *
+ * Usage: StubUpstream [port=18099] [delay-ms=20] [body-bytes=2048]
+ */
+public class StubUpstream {
+
+    public static void main(String[] args) {
+        int port = Integer.parseInt(arg(args, 0, "18099"));
+        Duration delay = Duration.ofMillis(Long.parseLong(arg(args, 1, "20")));
+        int bodyBytes = Integer.parseInt(arg(args, 2, "2048"));
+
+        StringBuilder json = new StringBuilder("{\"stops\":[");
+        while (json.length() < bodyBytes - 32) {
+            json.append("{\"id\":").append(json.length()).append(",\"name\":\"stop\"},");
+        }
+        json.append("{}]}");
+        byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+
+        DisposableServer server = HttpServer.create()
+                .port(port)
+                .protocol(HttpProtocol.HTTP11, HttpProtocol.H2C)
+                .handle((request, response) -> response
+                        .header("Content-Type", "application/json")
+                        .header("Content-Length", Integer.toString(body.length))
+                        .sendByteArray(Mono.delay(delay).thenReturn(body)))
+                .bindNow();
+        System.out.printf("stub upstream on port %d, %d ms delay, %d byte bodies%n", port, delay.toMillis(), body.length);
+        server.onDispose().block();
+    }
+
+    private static String arg(String[] args, int index, String defaultValue) {
+        return args.length > index ? args[index] : defaultValue;
+    }
+}
@@ -0,0 +1,54 @@
+#!/usr/bin/env bash
+# Gateway upstream load test: runs the gateway against a stub trip-service once per
+# scenario (small-pool, tuned-pool, h2c by default) and prints throughput, latency and
+# connection-pool figures for each. Needs Java 17 and Maven; run from anywhere.
+#
+#   ./run.sh [scenario...]
+#
+# Knobs (environment): CONCURRENCY=200 DURATION=20 WARMUP=5 DELAY_MS=20 BODY_BYTES=2048
+set -euo pipefail
+
+cd "$(dirname "$0")"
+HERE=$(pwd)
+SCENARIOS=("$@")
+[ ${#SCENARIOS[@]} -eq 0 ] && SCENARIOS=(small-pool tuned-pool h2c)
+CONCURRENCY=${CONCURRENCY:-200}
+DURATION=${DURATION:-20}
+WARMUP=${WARMUP:-5}
+GATEWAY_PORT=18080
+STUB_PORT=18099
+URL="http://127.0.0.1:${GATEWAY_PORT}/trip-service/api/v1/trips/1"
+
+(cd .. && mvn -B -q package -DskipTests && mvn -B -q dependency:build-classpath -Dmdep.outputFile=target/loadtest.classpath)
+CP=$(cat ../target/loadtest.classpath)
+JAR=$(ls ../target/gateway-service-*.jar | grep -v original | head -1)
+
+PIDS=()
+cleanup() { for pid in "${PIDS[@]}"; do kill "$pid" 2>/dev/null || true; done; }
+trap cleanup EXIT
+
+wait_for() {
+    for _ in $(seq 60); do curl -s -o /dev/null "$1" && return 0; sleep 1; done
+    echo "timed out waiting for $1" >&2; exit 1
+}
+
+java -cp "$CP" StubUpstream.java "$STUB_PORT" "${DELAY_MS:-20}" "${BODY_BYTES:-2048}" &
+PIDS+=($!)
+wait_for "http://127.0.0.1:${STUB_PORT}/"
+
+for scenario in "${SCENARIOS[@]}"; do
+    java -jar "$JAR" --server.port="$GATEWAY_PORT" \
+        --spring.config.additional-location="file:${HERE}/common.properties,file:${HERE}/${scenario}.properties" \
+        > "../target/loadtest-${scenario}.log" 2>&1 &
+    gateway=$!
+    wait_for "http://127.0.0.1:${GATEWAY_PORT}/actuator/health"
+
+    java -cp "$CP" LoadGenerator.java "$URL" "$CONCURRENCY" "$DURATION" "$WARMUP" "$scenario"
+    curl -s "http://127.0.0.1:${GATEWAY_PORT}/actuator/prometheus" \
+        | grep 'name="upstream-trip-service"' \
+        | grep -E '^reactor_netty_connection_provider_(max_connections|total_connections|pending_connections_time_seconds_(count|sum|max))\{' \
+        | grep -v 'status="ERROR"' \
+        | sed -E 's/\{[^}]*\}//; s/^reactor_netty_connection_provider_/    pool /'
+
+    kill "$gateway"; wait "$gateway" 2>/dev/null || true
+done
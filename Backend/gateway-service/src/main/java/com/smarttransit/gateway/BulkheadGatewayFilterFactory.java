@@ -0,0 +1,81 @@
+package com.smarttransit.gateway;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Bulkhead route filter: caps the calls in flight to one backend
+ * (e.g. Bulkhead=trip-service) so a slow service can only tie up its own share
+ * of the gateway. Uses the Resilience4j semaphore bulkhead of that name, sized
+ * with resilience4j.bulkhead.instances.{name}.max-concurrent-calls.
+ *
+ * A full bulkhead answers 503 immediately (never waits on an event loop) with
+ * the same JSON body as the route fallbacks.
+ */
+@Component
+public class BulkheadGatewayFilterFactory extends AbstractGatewayFilterFactory<BulkheadGatewayFilterFactory.Config> {
+
+    private final BulkheadRegistry bulkheadRegistry;
+    private final ObjectMapper objectMapper;
+
+    public BulkheadGatewayFilterFactory(BulkheadRegistry bulkheadRegistry, ObjectMapper objectMapper) {
+        super(Config.class);
+        this.bulkheadRegistry = bulkheadRegistry;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("name");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        Bulkhead bulkhead = bulkheadRegistry.bulkhead(config.getName());
+        return (exchange, chain) -> {
+            if (!bulkhead.tryAcquirePermission()) {
+                return reject(exchange, config.getName());
+            }
+            return chain.filter(exchange).doFinally(signal -> bulkhead.onComplete());
+        };
+    }
+
+    private Mono<Void> reject(ServerWebExchange exchange, String name) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        try {
+            DataBuffer body = response.bufferFactory().wrap(objectMapper.writeValueAsBytes(
+                    FallbackController.errorBody(name, HttpStatus.SERVICE_UNAVAILABLE, "bulkhead_full")));
+            return response.writeWith(Mono.just(body));
+        } catch (JsonProcessingException e) {
+            return response.setComplete();
+        }
+    }
+
+    public static class Config {
+
+        private String name;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+}
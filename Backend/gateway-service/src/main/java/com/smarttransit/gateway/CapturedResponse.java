@@ -0,0 +1,65 @@
+package com.smarttransit.gateway;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.server.reactive.AbstractServerHttpResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Response of a detached upstream call (cache refresh, coalesced request):
+ * status, headers and body are kept in memory and never sent anywhere.
+ */
+class CapturedResponse extends AbstractServerHttpResponse {
+
+    private volatile byte[] body;
+
+    CapturedResponse(DataBufferFactory bufferFactory) {
+        super(bufferFactory);
+    }
+
+    /**
+     * The whole body, or null if nothing was written
+     */
+    byte[] getBody() {
+        return body;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getNativeResponse() {
+        return (T) this;
+    }
+
+    @Override
+    protected Mono<Void> writeWithInternal(Publisher<? extends DataBuffer> body) {
+        return DataBufferUtils.join(body)
+                .doOnNext(joined -> {
+                    byte[] bytes = new byte[joined.readableByteCount()];
+                    joined.read(bytes);
+                    DataBufferUtils.release(joined);
+                    this.body = bytes;
+                })
+                .then();
+    }
+
+    @Override
+    protected Mono<Void> writeAndFlushWithInternal(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+        // One body for all the chunks, not the last chunk alone
+        return writeWithInternal(Flux.from(body).concatMap(chunk -> chunk));
+    }
+
+    @Override
+    protected void applyStatusCode() {
+    }
+
+    @Override
+    protected void applyHeaders() {
+    }
+
+    @Override
+    protected void applyCookies() {
+    }
+}
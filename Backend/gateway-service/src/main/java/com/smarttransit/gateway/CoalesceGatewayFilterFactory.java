@@ -0,0 +1,160 @@
+package com.smarttransit.gateway;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Coalesce route filter (single-flight): concurrent identical GETs on the route
+ * share one upstream call, and its response is copied to every waiting client.
+ *
+ * Requests are identical when route, path, query and vary-headers match. The
+ * shared response stays available for window after it arrives (default 0: only
+ * while the call is in flight); errors and non-2xx answers are never reused
+ * past the call itself. Set-Cookie is not replayed to other clients.
+ *
+ * Only enable it on routes whose responses do not depend on who is asking
+ * (trip status, line geometry...). Counted in gateway.coalesce.upstream{route}
+ * (calls made) and gateway.coalesce.saved{route} (calls avoided).
+ */
+@Component
+public class CoalesceGatewayFilterFactory extends AbstractGatewayFilterFactory<CoalesceGatewayFilterFactory.Config> {
+
+    private static final String COALESCED_ATTR = CoalesceGatewayFilterFactory.class.getName() + ".coalesced";
+    private static final List<String> UNSHARED_HEADERS = List.of(
+            HttpHeaders.CONTENT_LENGTH, HttpHeaders.TRANSFER_ENCODING, HttpHeaders.CONNECTION,
+            "Keep-Alive", HttpHeaders.SET_COOKIE);
+
+    private final Map<String, Mono<SharedResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    public CoalesceGatewayFilterFactory(MeterRegistry meterRegistry) {
+        super(Config.class);
+        this.meterRegistry = meterRegistry;
+        meterRegistry.gauge("gateway.coalesce.inflight", inFlight, Map::size);
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        // Ahead of the response writer, so the shared call captures the upstream body
+        return new OrderedGatewayFilter((exchange, chain) -> filter(exchange, chain, config),
+                NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1);
+    }
+
+    private Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain, Config config) {
+        if (exchange.getRequest().getMethod() != HttpMethod.GET || exchange.getAttribute(COALESCED_ATTR) != null) {
+            return chain.filter(exchange);
+        }
+        String routeId = GatewayExchanges.routeId(exchange);
+        String key = GatewayExchanges.requestKey(routeId, exchange.getRequest(), config.getVaryHeaders());
+
+        boolean[] leader = {false};
+        Mono<SharedResponse> shared = inFlight.computeIfAbsent(key, k -> {
+            leader[0] = true;
+            return upstreamCall(exchange, chain, k, config);
+        });
+        counter(leader[0] ? "gateway.coalesce.upstream" : "gateway.coalesce.saved", routeId).increment();
+        return shared.flatMap(response -> write(exchange, response));
+    }
+
+    /**
+     * The one upstream call for a key, run on a detached copy of the first request
+     * and cached for everyone who asks while it is registered
+     */
+    private Mono<SharedResponse> upstreamCall(ServerWebExchange exchange, GatewayFilterChain chain,
+                                              String key, Config config) {
+        CapturedResponse captured = new CapturedResponse(exchange.getResponse().bufferFactory());
+        ServerWebExchange detached = GatewayExchanges.detached(exchange, exchange.getRequest(), captured);
+        detached.getAttributes().put(COALESCED_ATTR, Boolean.TRUE);
+
+        AtomicReference<Mono<SharedResponse>> self = new AtomicReference<>();
+        Mono<SharedResponse> call = Mono.defer(() -> chain.filter(detached))
+                .then(Mono.fromSupplier(() -> SharedResponse.of(captured)))
+                .doOnNext(response -> {
+                    if (response.status().is2xxSuccessful() && !config.getWindow().isZero()) {
+                        Mono.delay(config.getWindow()).subscribe(tick -> inFlight.remove(key, self.get()));
+                    } else {
+                        inFlight.remove(key, self.get());
+                    }
+                })
+                .doOnError(e -> inFlight.remove(key, self.get()))
+                .cache();
+        self.set(call);
+        return call;
+    }
+
+    private static Mono<Void> write(ServerWebExchange exchange, SharedResponse shared) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(shared.status());
+        response.getHeaders().putAll(shared.headers());
+        if (shared.body() == null) {
+            return response.setComplete();
+        }
+        response.getHeaders().setContentLength(shared.body().length);
+        return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(shared.body())));
+    }
+
+    private Counter counter(String name, String routeId) {
+        return counters.computeIfAbsent(name + '|' + routeId, k -> Counter.builder(name)
+                .description(name.endsWith("saved")
+                        ? "GET requests answered from another client's in-flight upstream call"
+                        : "Upstream calls made on behalf of coalesced GET requests")
+                .tag("route", routeId)
+                .register(meterRegistry));
+    }
+
+    private record SharedResponse(HttpStatusCode status, HttpHeaders headers, byte[] body) {
+
+        static SharedResponse of(CapturedResponse captured) {
+            HttpHeaders headers = new HttpHeaders();
+            captured.getHeaders().forEach((name, values) -> {
+                if (UNSHARED_HEADERS.stream().noneMatch(name::equalsIgnoreCase)) {
+                    headers.put(name, List.copyOf(values));
+                }
+            });
+            HttpStatusCode status = captured.getStatusCode() == null ? HttpStatusCode.valueOf(200) : captured.getStatusCode();
+            return new SharedResponse(status, HttpHeaders.readOnlyHttpHeaders(headers), captured.getBody());
+        }
+    }
+
+    public static class Config {
+
+        private Duration window = Duration.ZERO;
+        private List<String> varyHeaders = List.of(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING,
+                HttpHeaders.ACCEPT_LANGUAGE);
+
+        public Duration getWindow() {
+            return window;
+        }
+
+        public void setWindow(Duration window) {
+            this.window = window;
+        }
+
+        public List<String> getVaryHeaders() {
+            return varyHeaders;
+        }
+
+        public void setVaryHeaders(List<String> varyHeaders) {
+            this.varyHeaders = varyHeaders;
+        }
+    }
+}
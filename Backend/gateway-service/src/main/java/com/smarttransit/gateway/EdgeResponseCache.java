@@ -0,0 +1,165 @@
+package com.smarttransit.gateway;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory store behind the EdgeResponseCache route filter.
+ *
+ * Bounded by the total size of the cached bodies (max-size-bytes); Caffeine
+ * evicts the least useful entries first once the bound is reached. Each entry
+ * carries its own route's TTL and stale-while-revalidate window and is dropped
+ * when both are over. Per-route outcomes are counted here for
+ * /actuator/responsecache and as gateway.cache.requests{route,result}.
+ */
+@Component
+public class EdgeResponseCache {
+
+    public enum Outcome { HIT, STALE, NOT_MODIFIED, MISS, BYPASS }
+
+    private final Cache<String, CachedResponse> cache;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, RouteStats> stats = new ConcurrentHashMap<>();
+    private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+
+    public EdgeResponseCache(@Value("${gateway.cache.max-size-bytes:67108864}") long maxSizeBytes,
+                             MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSizeBytes)
+                .weigher((String key, CachedResponse response) -> key.length() + response.body().length + 512)
+                .expireAfter(new Expiry<String, CachedResponse>() {
+                    @Override
+                    public long expireAfterCreate(String key, CachedResponse response, long currentTime) {
+                        return response.freshNanos() + response.staleNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, CachedResponse response, long currentTime,
+                                                  long currentDuration) {
+                        return response.freshNanos() + response.staleNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, CachedResponse response, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        meterRegistry.gauge("gateway.cache.entries", cache, c -> c.estimatedSize());
+    }
+
+    public CachedResponse get(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    public void put(String key, CachedResponse response) {
+        cache.put(key, response);
+    }
+
+    /**
+     * Claim the background refresh of a stale entry; false if one is already running
+     */
+    public boolean startRevalidation(String key) {
+        return revalidating.add(key);
+    }
+
+    public void endRevalidation(String key) {
+        revalidating.remove(key);
+    }
+
+    public void record(String routeId, Outcome outcome) {
+        stats.computeIfAbsent(routeId, RouteStats::new).record(outcome);
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Outcome counts and hit ratio per route; stale and 304 answers count as hits
+     */
+    public Map<String, Map<String, Object>> routeStats() {
+        Map<String, Map<String, Object>> byRoute = new TreeMap<>();
+        stats.forEach((routeId, routeStats) -> byRoute.put(routeId, routeStats.snapshot()));
+        return byRoute;
+    }
+
+    /**
+     * A cached 200 response. Fresh for freshNanos after storedAtNanos, then servable
+     * while it is refreshed in the background for another staleNanos.
+     */
+    public record CachedResponse(HttpHeaders headers, byte[] body, String etag,
+                                 long storedAtNanos, long freshNanos, long staleNanos) {
+
+        public static CachedResponse of(HttpHeaders headers, byte[] body, String etag,
+                                        Duration ttl, Duration staleWhileRevalidate) {
+            return new CachedResponse(headers, body, etag, System.nanoTime(),
+                    ttl.toNanos(), staleWhileRevalidate.toNanos());
+        }
+
+        public boolean isFresh(long now) {
+            return now - storedAtNanos < freshNanos;
+        }
+
+        public long ageSeconds(long now) {
+            return Duration.ofNanos(now - storedAtNanos).toSeconds();
+        }
+    }
+
+    private final class RouteStats {
+
+        private final Map<Outcome, LongAdder> counts = new ConcurrentHashMap<>();
+        private final Map<Outcome, Counter> counters = new ConcurrentHashMap<>();
+        private final String routeId;
+
+        RouteStats(String routeId) {
+            this.routeId = routeId;
+        }
+
+        void record(Outcome outcome) {
+            counts.computeIfAbsent(outcome, o -> new LongAdder()).increment();
+            counters.computeIfAbsent(outcome, o -> Counter.builder("gateway.cache.requests")
+                            .description("GET requests seen by the edge response cache")
+                            .tag("route", routeId)
+                            .tag("result", o.name().toLowerCase())
+                            .register(meterRegistry))
+                    .increment();
+        }
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new TreeMap<>();
+            long served = 0;
+            long lookups = 0;
+            for (Outcome outcome : Outcome.values()) {
+                LongAdder count = counts.get(outcome);
+                long value = count == null ? 0 : count.sum();
+                snapshot.put(outcome.name().toLowerCase(), value);
+                if (outcome != Outcome.BYPASS) {
+                    lookups += value;
+                    served += outcome == Outcome.MISS ? 0 : value;
+                }
+            }
+            snapshot.put("hitRatio", lookups == 0 ? 0.0 : (double) served / lookups);
+            return snapshot;
+        }
+    }
+}
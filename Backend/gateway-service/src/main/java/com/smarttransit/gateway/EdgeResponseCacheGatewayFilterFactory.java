@@ -0,0 +1,250 @@
+package com.smarttransit.gateway;
+
+import com.smarttransit.gateway.EdgeResponseCache.CachedResponse;
+import com.smarttransit.gateway.EdgeResponseCache.Outcome;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * EdgeResponseCache route filter: serves repeated GETs of rarely changing data
+ * (plans, lines, popular places...) from gateway memory.
+ *
+ * Entries are keyed by route, path, query string and the vary-headers values.
+ * Only 200 responses without Set-Cookie, Cache-Control private/no-store or
+ * Vary: * are stored. Every response carries an ETag (the upstream one, or an
+ * MD5 of the body), and a matching If-None-Match is answered with 304 from the
+ * cache. Within stale-while-revalidate after the TTL the stale copy is served
+ * at once while a single background request refreshes it.
+ *
+ * Route args: ttl (default 60s), stale-while-revalidate (default 0), vary-headers.
+ */
+@Component
+public class EdgeResponseCacheGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<EdgeResponseCacheGatewayFilterFactory.Config> {
+
+    public static final String CACHE_STATUS_HEADER = "X-Cache";
+    private static final String REVALIDATION_ATTR = EdgeResponseCacheGatewayFilterFactory.class.getName() + ".revalidation";
+    private static final List<String> UNCACHED_HEADERS = List.of(
+            HttpHeaders.CONTENT_LENGTH, HttpHeaders.TRANSFER_ENCODING, HttpHeaders.CONNECTION,
+            "Keep-Alive", HttpHeaders.DATE, CACHE_STATUS_HEADER);
+
+    private static final Logger log = LoggerFactory.getLogger(EdgeResponseCacheGatewayFilterFactory.class);
+
+    private final EdgeResponseCache cache;
+
+    public EdgeResponseCacheGatewayFilterFactory(EdgeResponseCache cache) {
+        super(Config.class);
+        this.cache = cache;
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        // Just before the response is written, so the decorator sees the upstream body
+        return new OrderedGatewayFilter((exchange, chain) -> filter(exchange, chain, config),
+                NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1);
+    }
+
+    private Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain, Config config) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (exchange.getAttribute(REVALIDATION_ATTR) != null) {
+            return chain.filter(exchange);
+        }
+        String routeId = GatewayExchanges.routeId(exchange);
+        if (request.getMethod() != HttpMethod.GET || hasNoStore(request.getHeaders())) {
+            cache.record(routeId, Outcome.BYPASS);
+            return chain.filter(exchange);
+        }
+
+        String key = GatewayExchanges.requestKey(routeId, request, config.getVaryHeaders());
+        CachedResponse cached = cache.get(key);
+        long now = System.nanoTime();
+        if (cached != null) {
+            if (!cached.isFresh(now) && cache.startRevalidation(key)) {
+                revalidate(exchange, chain, key, config);
+            }
+            return writeCached(exchange, routeId, cached, cached.isFresh(now) ? Outcome.HIT : Outcome.STALE, now);
+        }
+
+        cache.record(routeId, Outcome.MISS);
+        ServerHttpResponse response = new CachingResponse(exchange.getResponse(), key, config);
+        return chain.filter(exchange.mutate().response(response).build());
+    }
+
+    private Mono<Void> writeCached(ServerWebExchange exchange, String routeId, CachedResponse cached,
+                                   Outcome outcome, long now) {
+        ServerHttpResponse response = exchange.getResponse();
+        HttpHeaders headers = response.getHeaders();
+        headers.putAll(cached.headers());
+        headers.set(HttpHeaders.AGE, Long.toString(cached.ageSeconds(now)));
+        headers.set(CACHE_STATUS_HEADER, outcome.name());
+
+        if (matchesEtag(exchange.getRequest().getHeaders().getIfNoneMatch(), cached.etag())) {
+            cache.record(routeId, Outcome.NOT_MODIFIED);
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            headers.remove(HttpHeaders.CONTENT_TYPE);
+            return response.setComplete();
+        }
+        cache.record(routeId, outcome);
+        response.setStatusCode(HttpStatus.OK);
+        headers.setContentLength(cached.body().length);
+        return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(cached.body())));
+    }
+
+    /**
+     * Replay the request through the rest of the chain into a detached response,
+     * without conditional headers so the upstream answers with a full body
+     */
+    private void revalidate(ServerWebExchange exchange, GatewayFilterChain chain, String key, Config config) {
+        CapturedResponse captured = new CapturedResponse(exchange.getResponse().bufferFactory());
+        ServerHttpRequest request = exchange.getRequest().mutate()
+                .headers(headers -> {
+                    headers.remove(HttpHeaders.IF_NONE_MATCH);
+                    headers.remove(HttpHeaders.IF_MODIFIED_SINCE);
+                })
+                .build();
+        ServerWebExchange detached = GatewayExchanges.detached(exchange, request, captured);
+        detached.getAttributes().put(REVALIDATION_ATTR, Boolean.TRUE);
+        chain.filter(detached)
+                .then(Mono.fromRunnable(() -> {
+                    if (captured.getStatusCode() != null && captured.getStatusCode().value() == 200
+                            && captured.getBody() != null && isCacheable(captured.getHeaders())) {
+                        store(key, captured.getHeaders(), captured.getBody(), config);
+                    }
+                }))
+                .doFinally(signal -> cache.endRevalidation(key))
+                .subscribe(null, e -> log.debug("Background refresh of {} failed: {}", key, e.getMessage()));
+    }
+
+    private String store(String key, HttpHeaders responseHeaders, byte[] body, Config config) {
+        String etag = responseHeaders.getETag();
+        if (etag == null) {
+            etag = "\"" + DigestUtils.md5DigestAsHex(body) + "\"";
+        }
+        HttpHeaders headers = new HttpHeaders();
+        responseHeaders.forEach((name, values) -> {
+            if (UNCACHED_HEADERS.stream().noneMatch(name::equalsIgnoreCase)) {
+                headers.put(name, List.copyOf(values));
+            }
+        });
+        headers.setETag(etag);
+        cache.put(key, CachedResponse.of(HttpHeaders.readOnlyHttpHeaders(headers), body, etag,
+                config.getTtl(), config.getStaleWhileRevalidate()));
+        return etag;
+    }
+
+    private static boolean hasNoStore(HttpHeaders headers) {
+        return headers.getOrEmpty(HttpHeaders.CACHE_CONTROL).stream().anyMatch(value -> value.contains("no-store"));
+    }
+
+    private static boolean isCacheable(HttpHeaders headers) {
+        if (headers.containsKey(HttpHeaders.SET_COOKIE)) {
+            return false;
+        }
+        if (headers.getOrEmpty(HttpHeaders.VARY).stream().anyMatch(value -> value.contains("*"))) {
+            return false;
+        }
+        return headers.getOrEmpty(HttpHeaders.CACHE_CONTROL).stream()
+                .noneMatch(value -> value.contains("no-store") || value.contains("private"));
+    }
+
+    private static boolean matchesEtag(List<String> ifNoneMatch, String etag) {
+        String strong = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String candidate : ifNoneMatch) {
+            String value = candidate.trim();
+            if (value.equals("*") || value.equals(etag) || value.equals(strong)
+                    || (value.startsWith("W/") && value.substring(2).equals(strong))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stores the upstream body on its way to the client; streamed responses
+     * (writeAndFlushWith) pass through untouched
+     */
+    private class CachingResponse extends ServerHttpResponseDecorator {
+
+        private final String key;
+        private final Config config;
+
+        CachingResponse(ServerHttpResponse delegate, String key, Config config) {
+            super(delegate);
+            this.key = key;
+            this.config = config;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            HttpStatusCode status = getStatusCode();
+            if (status == null || status.value() != 200 || !isCacheable(getHeaders())) {
+                return super.writeWith(body);
+            }
+            return DataBufferUtils.join(body)
+                    .flatMap(joined -> {
+                        byte[] bytes = new byte[joined.readableByteCount()];
+                        joined.read(bytes);
+                        DataBufferUtils.release(joined);
+                        getHeaders().setETag(store(key, getHeaders(), bytes, config));
+                        getHeaders().set(CACHE_STATUS_HEADER, Outcome.MISS.name());
+                        return super.writeWith(Mono.just(bufferFactory().wrap(bytes)));
+                    })
+                    .switchIfEmpty(Mono.defer(() -> super.writeWith(Flux.empty())));
+        }
+    }
+
+    public static class Config {
+
+        private Duration ttl = Duration.ofSeconds(60);
+        private Duration staleWhileRevalidate = Duration.ZERO;
+        private List<String> varyHeaders = List.of(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING,
+                HttpHeaders.ACCEPT_LANGUAGE);
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+
+        public Duration getStaleWhileRevalidate() {
+            return staleWhileRevalidate;
+        }
+
+        public void setStaleWhileRevalidate(Duration staleWhileRevalidate) {
+            this.staleWhileRevalidate = staleWhileRevalidate;
+        }
+
+        public List<String> getVaryHeaders() {
+            return varyHeaders;
+        }
+
+        public void setVaryHeaders(List<String> varyHeaders) {
+            this.varyHeaders = varyHeaders;
+        }
+    }
+}
@@ -1,10 +1,24 @@
 package com.smarttransit.gateway;
 
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
 @RestController
 public class FallbackController {
 
@@ -12,4 +26,42 @@ public class FallbackController {
     public Mono<String> fallback() {
         return Mono.just("Service temporarily unavailable. Please try again later.");
     }
+
+    /**
+     * Per-route fallback (CircuitBreaker fallbackUri=forward:/fallback/{service}):
+     * a JSON error naming the backend and why it was not reached, 504 for timeouts, 503 otherwise
+     */
+    @RequestMapping(value = "/fallback/{service}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Map<String, Object>>> serviceFallback(@PathVariable String service,
+                                                                     ServerWebExchange exchange) {
+        Throwable cause = exchange.getAttribute(ServerWebExchangeUtils.CIRCUITBREAKER_EXECUTION_EXCEPTION_ATTR);
+        HttpStatus status = HttpStatus.SERVICE_UNAVAILABLE;
+        String reason = "unavailable";
+        if (cause instanceof CallNotPermittedException) {
+            reason = "circuit_open";
+        } else if (isTimeout(cause)) {
+            status = HttpStatus.GATEWAY_TIMEOUT;
+            reason = "timeout";
+        }
+        return Mono.just(ResponseEntity.status(status).body(errorBody(service, status, reason)));
+    }
+
+    /**
+     * Body shared by every gateway-generated upstream error (fallbacks, bulkhead rejections)
+     */
+    public static Map<String, Object> errorBody(String service, HttpStatusCode status, String reason) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("timestamp", Instant.now().toString());
+        body.put("status", status.value());
+        body.put("error", reason);
+        body.put("service", service);
+        body.put("message", service + " is temporarily unavailable. Please try again later.");
+        body.put("retryable", true);
+        return body;
+    }
+
+    private static boolean isTimeout(Throwable cause) {
+        return cause instanceof TimeoutException
+                || (cause instanceof ResponseStatusException e && e.getStatusCode().value() == HttpStatus.GATEWAY_TIMEOUT.value());
+    }
 }
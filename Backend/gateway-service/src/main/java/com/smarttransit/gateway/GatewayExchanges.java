@@ -0,0 +1,81 @@
+package com.smarttransit.gateway;
+
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebExchangeDecorator;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Helpers shared by the route filters that identify "the same request"
+ */
+final class GatewayExchanges {
+
+    // What the rest of the chain needs to route a request the filters so far have matched
+    private static final List<String> ROUTING_ATTRIBUTES = List.of(
+            ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR,
+            ServerWebExchangeUtils.GATEWAY_HANDLER_MAPPER_ATTR,
+            ServerWebExchangeUtils.GATEWAY_PREDICATE_ROUTE_ATTR,
+            ServerWebExchangeUtils.GATEWAY_PREDICATE_MATCHED_PATH_ATTR,
+            ServerWebExchangeUtils.GATEWAY_PREDICATE_MATCHED_PATH_ROUTE_ID_ATTR,
+            ServerWebExchangeUtils.URI_TEMPLATE_VARIABLES_ATTRIBUTE,
+            ServerWebExchangeUtils.GATEWAY_ORIGINAL_REQUEST_URL_ATTR,
+            ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR,
+            ServerWebExchangeUtils.GATEWAY_SCHEME_PREFIX_ATTR,
+            ServerWebExchangeUtils.GATEWAY_ALREADY_PREFIXED_ATTR,
+            ServerWebExchangeUtils.PRESERVE_HOST_HEADER_ATTRIBUTE);
+
+    private GatewayExchanges() {
+    }
+
+    static String routeId(ServerWebExchange exchange) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        return route == null ? "unknown" : route.getId();
+    }
+
+    /**
+     * Route, raw path, raw query and the values of the given headers
+     */
+    static String requestKey(String routeId, ServerHttpRequest request, List<String> varyHeaders) {
+        StringBuilder key = new StringBuilder(routeId).append('|').append(request.getURI().getRawPath());
+        String query = request.getURI().getRawQuery();
+        if (query != null) {
+            key.append('?').append(query);
+        }
+        for (String header : varyHeaders) {
+            key.append('|').append(String.join(",", request.getHeaders().getOrEmpty(header)));
+        }
+        return key.toString();
+    }
+
+    /**
+     * A copy of the exchange for a call the gateway makes on its own behalf (background
+     * refresh, coalesced call), with its own attribute map holding only the routing
+     * attributes: whatever the rest of the chain records there (already routed, client
+     * connection, upstream timing...) stays off the client's exchange
+     */
+    static ServerWebExchange detached(ServerWebExchange exchange, ServerHttpRequest request,
+                                      ServerHttpResponse response) {
+        Map<String, Object> attributes = new ConcurrentHashMap<>();
+        for (String name : ROUTING_ATTRIBUTES) {
+            Object value = exchange.getAttribute(name);
+            if (value != null) {
+                // The original URLs set is appended to by path-rewriting filters
+                attributes.put(name, value instanceof Set<?> set ? new LinkedHashSet<>(set) : value);
+            }
+        }
+        return new ServerWebExchangeDecorator(exchange.mutate().request(request).response(response).build()) {
+            @Override
+            public Map<String, Object> getAttributes() {
+                return attributes;
+            }
+        };
+    }
+}
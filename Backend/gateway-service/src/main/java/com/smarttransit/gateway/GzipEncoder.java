@@ -0,0 +1,118 @@
+package com.smarttransit.gateway;
+
+import org.springframework.core.io.buffer.DataBuffer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Incremental gzip (RFC 1952) encoder: each input chunk is deflated and
+ * sync-flushed on its own, so output can be written as soon as input arrives
+ * and only the deflate window is kept in memory. Not thread-safe; one per response.
+ *
+ * Time spent deflating is measured with the given clock (nanoseconds).
+ */
+final class GzipEncoder {
+
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private final LongSupplier clock;
+    private final byte[] chunk = new byte[8192];
+    private boolean headerWritten;
+    private long bytesIn;
+    private long bytesOut;
+    private long nanos;
+
+    GzipEncoder(int level, LongSupplier clock) {
+        this.deflater = new Deflater(level, true);
+        this.clock = clock;
+    }
+
+    /**
+     * Deflate the readable bytes of the buffer (it is not released)
+     */
+    byte[] encode(DataBuffer input) {
+        long start = clock.getAsLong();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, input.readableByteCount() / 2));
+        writeHeader(out);
+        try (DataBuffer.ByteBufferIterator buffers = input.readableByteBuffers()) {
+            while (buffers.hasNext()) {
+                ByteBuffer buffer = buffers.next();
+                bytesIn += buffer.remaining();
+                crc.update(buffer.duplicate());
+                deflater.setInput(buffer);
+                while (!deflater.needsInput()) {
+                    drain(out, Deflater.NO_FLUSH);
+                }
+            }
+        }
+        int n;
+        do {
+            n = drain(out, Deflater.SYNC_FLUSH);
+        } while (n == chunk.length);
+        return done(out, start);
+    }
+
+    /**
+     * Remaining deflate output and the gzip trailer
+     */
+    byte[] finish() {
+        long start = clock.getAsLong();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        writeHeader(out);
+        deflater.finish();
+        while (!deflater.finished()) {
+            drain(out, Deflater.NO_FLUSH);
+        }
+        writeInt(out, (int) crc.getValue());
+        writeInt(out, (int) bytesIn);
+        return done(out, start);
+    }
+
+    void end() {
+        deflater.end();
+    }
+
+    long bytesIn() {
+        return bytesIn;
+    }
+
+    long bytesOut() {
+        return bytesOut;
+    }
+
+    long nanos() {
+        return nanos;
+    }
+
+    private int drain(ByteArrayOutputStream out, int flush) {
+        int n = deflater.deflate(chunk, 0, chunk.length, flush);
+        out.write(chunk, 0, n);
+        return n;
+    }
+
+    private void writeHeader(ByteArrayOutputStream out) {
+        if (!headerWritten) {
+            out.write(HEADER, 0, HEADER.length);
+            headerWritten = true;
+        }
+    }
+
+    private byte[] done(ByteArrayOutputStream out, long start) {
+        nanos += clock.getAsLong() - start;
+        bytesOut += out.size();
+        return out.toByteArray();
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+}
@@ -0,0 +1,179 @@
+package com.smarttransit.gateway;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreakerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Home screen aggregate (GET /bff/home, routed here so the token is verified first):
+ * profile, subscription, recent searches, popular locations and plans in one
+ * document, fetched from the backends in parallel.
+ *
+ * Each section has its own timeout (gateway.bff.home.{section}.timeout-ms, default
+ * gateway.bff.home.timeout-ms) and goes through the backend's bulkhead and circuit
+ * breaker, shared with its routes; only 5xx answers, timeouts and connection errors
+ * count as breaker failures. A failed section is left out and reported under
+ * "errors" with "partial": true; the answer is 503 only when every section failed.
+ * Anonymous callers get the public sections only. ?sections=plans,profile limits
+ * the sections fetched.
+ */
+@RestController
+public class HomeScreenController {
+
+    static final String PATH = "/internal/bff/home";
+
+    private static final List<Section> SECTIONS = List.of(
+            new Section("profile", "user-service", "/api/v1/users/me?userId={userId}", true),
+            new Section("subscription", "subscription-service", "/api/v1/users/me/subscription", true),
+            new Section("recentSearches", "user-service", "/api/v1/users/me/searches/recent?userId={userId}&limit=5", true),
+            new Section("popularLocations", "geolocation-service", "/api/v1/locations/popular?limit=10", false),
+            new Section("plans", "subscription-service", "/api/v1/subscriptions/plans", false));
+
+    private final WebClient webClient;
+    private final ReactiveCircuitBreakerFactory<?, ?> circuitBreakers;
+    private final BulkheadRegistry bulkheads;
+    private final MeterRegistry meterRegistry;
+    private final Environment environment;
+    private final long defaultTimeoutMillis;
+
+    public HomeScreenController(WebClient.Builder loadBalancedWebClientBuilder,
+                                ReactiveCircuitBreakerFactory<?, ?> circuitBreakers,
+                                BulkheadRegistry bulkheads,
+                                MeterRegistry meterRegistry,
+                                Environment environment,
+                                @Value("${gateway.bff.home.timeout-ms:1500}") long defaultTimeoutMillis) {
+        this.webClient = loadBalancedWebClientBuilder.build();
+        this.circuitBreakers = circuitBreakers;
+        this.bulkheads = bulkheads;
+        this.meterRegistry = meterRegistry;
+        this.environment = environment;
+        this.defaultTimeoutMillis = defaultTimeoutMillis;
+    }
+
+    @GetMapping(value = PATH, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<Map<String, Object>>> home(@RequestParam(required = false) List<String> sections,
+                                                          ServerWebExchange exchange) {
+        Long userId = exchange.getAttribute(JwtAuthenticationFilter.USER_ID_ATTR);
+        List<Section> wanted = SECTIONS.stream()
+                .filter(section -> userId != null || !section.personal())
+                .filter(section -> sections == null || sections.contains(section.name()))
+                .toList();
+
+        return Flux.fromIterable(wanted)
+                .flatMapSequential(section -> fetch(section, userId))
+                .collectList()
+                .map(results -> respond(results, userId));
+    }
+
+    private Mono<SectionResult> fetch(Section section, Long userId) {
+        Bulkhead bulkhead = bulkheads.bulkhead(section.service());
+        return Mono.defer(() -> {
+            if (!bulkhead.tryAcquirePermission()) {
+                return Mono.just(SectionResult.failed(section, "bulkhead_full"));
+            }
+            Mono<SectionResult> call = webClient.get()
+                    .uri("http://" + section.service() + section.path(), Map.of("userId", userId == null ? "" : userId))
+                    .headers(headers -> {
+                        if (userId != null) {
+                            headers.set(JwtAuthenticationFilter.USER_ID_HEADER, userId.toString());
+                        }
+                    })
+                    .retrieve()
+                    .bodyToMono(JsonNode.class)
+                    .map(body -> SectionResult.ok(section, body))
+                    .defaultIfEmpty(SectionResult.ok(section, null))
+                    // A 4xx is the backend answering: the section fails, the breaker does not count it
+                    .onErrorResume(WebClientResponseException.class, error -> error.getStatusCode().is4xxClientError()
+                            ? Mono.just(SectionResult.failed(section, reason(error)))
+                            : Mono.error(error))
+                    .timeout(timeout(section));
+            return circuitBreakers.create(section.service()).run(call, Mono::error)
+                    .onErrorResume(error -> Mono.just(SectionResult.failed(section, reason(error))))
+                    .doFinally(signal -> bulkhead.onComplete());
+        }).doOnNext(result -> count(section, result.error() == null ? "ok" : result.error()));
+    }
+
+    private ResponseEntity<Map<String, Object>> respond(List<SectionResult> results, Long userId) {
+        Map<String, Object> document = new LinkedHashMap<>();
+        Map<String, Object> errors = new LinkedHashMap<>();
+        for (SectionResult result : results) {
+            if (result.error() == null) {
+                document.put(result.section().name(), result.body());
+            } else {
+                errors.put(result.section().name(), Map.of("service", result.section().service(), "error", result.error()));
+            }
+        }
+        document.put("errors", errors);
+        document.put("partial", !errors.isEmpty());
+
+        boolean allFailed = !results.isEmpty() && errors.size() == results.size();
+        return ResponseEntity.status(allFailed ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.OK)
+                .cacheControl(userId != null ? CacheControl.noStore() : CacheControl.noCache())
+                .body(document);
+    }
+
+    private Duration timeout(Section section) {
+        return Duration.ofMillis(environment.getProperty("gateway.bff.home." + section.name() + ".timeout-ms",
+                Long.class, defaultTimeoutMillis));
+    }
+
+    private static String reason(Throwable error) {
+        if (error instanceof CallNotPermittedException) {
+            return "circuit_open";
+        }
+        if (error instanceof TimeoutException) {
+            return "timeout";
+        }
+        if (error instanceof WebClientResponseException e) {
+            return "http_" + e.getStatusCode().value();
+        }
+        return "unavailable";
+    }
+
+    private void count(Section section, String result) {
+        Counter.builder("gateway.bff.sections")
+                .description("Home screen sections fetched, by outcome")
+                .tag("section", section.name())
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private record Section(String name, String service, String path, boolean personal) {
+    }
+
+    private record SectionResult(Section section, JsonNode body, String error) {
+
+        static SectionResult ok(Section section, JsonNode body) {
+            return new SectionResult(section, body, null);
+        }
+
+        static SectionResult failed(Section section, String error) {
+            return new SectionResult(section, null, error);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.smarttransit.gateway;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * IdempotentRetry route filter: retries GET/HEAD (by default) when the backend
+ * could not be reached, timed out, or answered one of the retryable statuses.
+ *
+ * Backoff is exponential from first-backoff up to max-backoff with random
+ * jitter, so clients failing together do not retry together. Non-idempotent
+ * methods are never retried: a POST that timed out may already have been applied.
+ * When the retries are used up the last upstream response (or error) stands.
+ * Retries are counted in gateway.retries{route}.
+ */
+@Component
+public class IdempotentRetryGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<IdempotentRetryGatewayFilterFactory.Config> {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public IdempotentRetryGatewayFilterFactory(MeterRegistry meterRegistry) {
+        super(Config.class);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        Retry retry = Retry.backoff(config.getRetries(), config.getFirstBackoff())
+                .maxBackoff(config.getMaxBackoff())
+                .jitter(config.getJitter())
+                .filter(IdempotentRetryGatewayFilterFactory::isRetryable)
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+
+        return (exchange, chain) -> {
+            if (config.getRetries() <= 0 || !config.getMethods().contains(exchange.getRequest().getMethod())) {
+                return chain.filter(exchange);
+            }
+            Counter retries = counter(exchange);
+            boolean[] firstAttempt = {true};
+            return Mono.defer(() -> {
+                        if (!firstAttempt[0]) {
+                            retries.increment();
+                            reset(exchange);
+                        }
+                        firstAttempt[0] = false;
+                        return chain.filter(exchange).then(Mono.defer(() -> checkStatus(exchange, config)));
+                    })
+                    .retryWhen(retry)
+                    // Out of retries on a status: the last response is already in place, send it
+                    .onErrorResume(RetryableStatusException.class, e -> Mono.empty());
+        };
+    }
+
+    private static Mono<Void> checkStatus(ServerWebExchange exchange, Config config) {
+        HttpStatusCode status = exchange.getResponse().getStatusCode();
+        if (status != null && config.getStatuses().contains(status.value()) && !exchange.getResponse().isCommitted()) {
+            return Mono.error(new RetryableStatusException(status));
+        }
+        return Mono.empty();
+    }
+
+    private static boolean isRetryable(Throwable error) {
+        if (error instanceof RetryableStatusException || error instanceof IOException) {
+            return true;
+        }
+        // Response timeouts surface from the routing filter as 504
+        return error instanceof ResponseStatusException e
+                && e.getStatusCode().value() == HttpStatus.GATEWAY_TIMEOUT.value();
+    }
+
+    /**
+     * Forget the previous attempt: close its upstream connection, drop the headers
+     * it copied onto the response and let the routing filter run again
+     */
+    private static void reset(ServerWebExchange exchange) {
+        Connection connection = exchange.getAttribute(ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR);
+        if (connection != null) {
+            connection.dispose();
+        }
+        Set<String> addedHeaders = exchange.getAttributeOrDefault(
+                ServerWebExchangeUtils.CLIENT_RESPONSE_HEADER_NAMES, Set.of());
+        addedHeaders.forEach(header -> exchange.getResponse().getHeaders().remove(header));
+        exchange.getResponse().setStatusCode(null);
+        ServerWebExchangeUtils.removeAlreadyRouted(exchange);
+    }
+
+    private Counter counter(ServerWebExchange exchange) {
+        return counters.computeIfAbsent(GatewayExchanges.routeId(exchange), id -> Counter.builder("gateway.retries")
+                .description("Upstream calls retried by the gateway")
+                .tag("route", id)
+                .register(meterRegistry));
+    }
+
+    private static class RetryableStatusException extends RuntimeException {
+
+        RetryableStatusException(HttpStatusCode status) {
+            super("Retryable upstream status " + status.value(), null, false, false);
+        }
+    }
+
+    public static class Config {
+
+        private int retries = 2;
+        private List<HttpMethod> methods = List.of(HttpMethod.GET, HttpMethod.HEAD);
+        private Set<Integer> statuses = Set.of(502, 503, 504);
+        private Duration firstBackoff = Duration.ofMillis(50);
+        private Duration maxBackoff = Duration.ofMillis(500);
+        private double jitter = 0.5;
+
+        public int getRetries() {
+            return retries;
+        }
+
+        public void setRetries(int retries) {
+            this.retries = retries;
+        }
+
+        public List<HttpMethod> getMethods() {
+            return methods;
+        }
+
+        public void setMethods(List<HttpMethod> methods) {
+            this.methods = methods;
+        }
+
+        public Set<Integer> getStatuses() {
+            return statuses;
+        }
+
+        public void setStatuses(Set<Integer> statuses) {
+            this.statuses = statuses;
+        }
+
+        public Duration getFirstBackoff() {
+            return firstBackoff;
+        }
+
+        public void setFirstBackoff(Duration firstBackoff) {
+            this.firstBackoff = firstBackoff;
+        }
+
+        public Duration getMaxBackoff() {
+            return maxBackoff;
+        }
+
+        public void setMaxBackoff(Duration maxBackoff) {
+            this.maxBackoff = maxBackoff;
+        }
+
+        public double getJitter() {
+            return jitter;
+        }
+
+        public void setJitter(double jitter) {
+            this.jitter = jitter;
+        }
+    }
+}
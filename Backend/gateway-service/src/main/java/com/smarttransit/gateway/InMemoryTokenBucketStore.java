@@ -0,0 +1,136 @@
+package com.smarttransit.gateway;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Token buckets held in this JVM: limits apply per gateway instance.
+ *
+ * Each bucket is an immutable (tokens, refilledAt) pair swapped with a CAS, so
+ * concurrent requests on the same key never take a lock; a lost race just
+ * recomputes from the newer state. Buckets that have refilled to capacity carry
+ * no information and are dropped by evictIdle(). A new key that finds max-buckets
+ * reached makes room instead of going unchecked: idle buckets are dropped first,
+ * then the tenth closest to full (counted in gateway.ratelimit.evicted). Those
+ * differ least from the full bucket a returning client would get, while the
+ * drained buckets of throttled clients are kept. A flood of distinct clients can
+ * thus neither grow the map without bound nor switch the limiter off.
+ *
+ * Also used by {@link RedisTokenBucketStore} as its fallback while Redis is unreachable.
+ */
+@Component
+public class InMemoryTokenBucketStore implements TokenBucketStore {
+
+    private final ConcurrentHashMap<String, AtomicReference<Bucket>> buckets = new ConcurrentHashMap<>();
+    private final int maxBuckets;
+    private final Counter evictedCounter;
+
+    public InMemoryTokenBucketStore(@Value("${gateway.rate-limit.memory.max-buckets:100000}") int maxBuckets,
+                                    MeterRegistry meterRegistry) {
+        if (maxBuckets <= 0) {
+            throw new IllegalArgumentException("gateway.rate-limit.memory.max-buckets must be positive: " + maxBuckets);
+        }
+        this.maxBuckets = maxBuckets;
+        this.evictedCounter = Counter.builder("gateway.ratelimit.evicted")
+                .description("Buckets not yet full dropped because the in-memory bucket table was full")
+                .register(meterRegistry);
+        meterRegistry.gauge("gateway.ratelimit.buckets", buckets, ConcurrentHashMap::size);
+    }
+
+    @Override
+    public Mono<Result> tryConsume(String key, long capacity, double refillPerSecond, int permits) {
+        return Mono.fromSupplier(() -> consume(key, capacity, refillPerSecond, permits));
+    }
+
+    Result consume(String key, long capacity, double refillPerSecond, int permits) {
+        AtomicReference<Bucket> ref = buckets.get(key);
+        if (ref == null) {
+            if (buckets.size() >= maxBuckets) {
+                makeRoom();
+            }
+            ref = buckets.computeIfAbsent(key, k -> new AtomicReference<>(Bucket.full(capacity, System.nanoTime())));
+        }
+
+        while (true) {
+            Bucket current = ref.get();
+            long now = System.nanoTime();
+            double tokens = current.tokensAt(now, capacity, refillPerSecond);
+            if (tokens >= permits) {
+                if (ref.compareAndSet(current, Bucket.of(tokens - permits, now, capacity, refillPerSecond))) {
+                    return new Result(true, (long) (tokens - permits), 0);
+                }
+            } else {
+                // Nothing to write: the refill is recomputed from the old state next time
+                long retryAfterMillis = (long) Math.ceil((permits - tokens) * 1000 / refillPerSecond);
+                return new Result(false, (long) tokens, retryAfterMillis);
+            }
+        }
+    }
+
+    /**
+     * Drop buckets idle long enough to be full again; recreating one starts it full anyway
+     */
+    @Scheduled(fixedDelayString = "${gateway.rate-limit.memory.eviction-interval-ms:60000}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(ref -> ref.get().isFullAt(now));
+    }
+
+    /**
+     * Drop idle buckets, then the tenth closest to full if the table is still full
+     */
+    private synchronized void makeRoom() {
+        if (buckets.size() < maxBuckets) {
+            return;
+        }
+        evictIdle();
+        int excess = buckets.size() - maxBuckets + 1;
+        if (excess <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        long[] untilFull = buckets.values().stream().mapToLong(ref -> ref.get().fullAtNanos() - now).toArray();
+        if (untilFull.length == 0) {
+            // Emptied by a concurrent eviction since the size check
+            return;
+        }
+        Arrays.sort(untilFull);
+        long cutoff = untilFull[Math.min(untilFull.length, Math.max(excess, maxBuckets / 10)) - 1];
+        int before = buckets.size();
+        buckets.values().removeIf(ref -> ref.get().fullAtNanos() - now <= cutoff);
+        evictedCounter.increment(before - buckets.size());
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    private record Bucket(double tokens, long refilledAtNanos, long fullAtNanos) {
+
+        static Bucket full(long capacity, long now) {
+            return new Bucket(capacity, now, now);
+        }
+
+        static Bucket of(double tokens, long now, long capacity, double refillPerSecond) {
+            long nanosToFull = (long) ((capacity - tokens) / refillPerSecond * 1e9);
+            return new Bucket(tokens, now, now + nanosToFull);
+        }
+
+        double tokensAt(long now, long capacity, double refillPerSecond) {
+            double elapsedSeconds = Math.max(0, now - refilledAtNanos) / 1e9;
+            return Math.min(capacity, tokens + elapsedSeconds * refillPerSecond);
+        }
+
+        boolean isFullAt(long now) {
+            return now - fullAtNanos >= 0;
+        }
+    }
+}
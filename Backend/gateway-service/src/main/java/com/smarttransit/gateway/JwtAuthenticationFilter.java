@@ -0,0 +1,235 @@
+package com.smarttransit.gateway;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.PublicKey;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Verifies bearer tokens once, at the edge.
+ *
+ * RS256 tokens are checked against auth-service's cached JWKS (signature and
+ * expiry) and the polled revocation set. On success the Authorization header is
+ * removed and the identity is forwarded as X-User-Id / X-User-Email / X-User-Roles,
+ * so downstream services trust those headers instead of calling auth-service.
+ * Client-supplied X-User-* headers are always dropped. Requests without a token
+ * pass through anonymously; an invalid, expired or revoked token gets a 401.
+ *
+ * Paths in keep-token-paths (the auth-service endpoints that act on the token
+ * itself, logout and refresh) still receive the raw Authorization header. Paths in
+ * internal-paths are service-to-service or operator endpoints (the GTFS import)
+ * and answered 404 here.
+ */
+@Component
+public class JwtAuthenticationFilter implements GlobalFilter, Ordered {
+
+    public static final String USER_ID_HEADER = "X-User-Id";
+    public static final String USER_EMAIL_HEADER = "X-User-Email";
+    public static final String USER_ROLES_HEADER = "X-User-Roles";
+    /** Verified user id, for handlers inside the gateway (never taken from client headers) */
+    public static final String USER_ID_ATTR = JwtAuthenticationFilter.class.getName() + ".userId";
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final String ALGORITHM = "RS256";
+
+    private final JwtVerificationKeys verificationKeys;
+    private final RevokedTokenSet revokedTokenSet;
+    private final ObjectMapper objectMapper;
+    private final JwtParser parser;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final boolean enabled;
+    private final List<String> keepTokenPaths;
+    private final List<String> internalPaths;
+    private final Counter acceptedCounter;
+    private final Counter rejectedCounter;
+
+    public JwtAuthenticationFilter(JwtVerificationKeys verificationKeys,
+                                   RevokedTokenSet revokedTokenSet,
+                                   ObjectMapper objectMapper,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${gateway.auth.enabled:true}") boolean enabled,
+                                   @Value("${gateway.auth.keep-token-paths:/auth-service/api/auth/logout,/auth-service/api/auth/refresh,/auth-service/api/v1/auth/refresh}") List<String> keepTokenPaths,
+                                   @Value("${gateway.auth.internal-paths:/auth-service/api/auth/revocations,/trip-service/api/gtfs/**}") List<String> internalPaths) {
+        this.verificationKeys = verificationKeys;
+        this.revokedTokenSet = revokedTokenSet;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.keepTokenPaths = keepTokenPaths;
+        this.internalPaths = internalPaths;
+        this.parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    @Override
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        // filter() has already loaded the key set containing this kid
+                        PublicKey key = ALGORITHM.equals(header.getAlgorithm())
+                                ? verificationKeys.cached(header.getKeyId()) : null;
+                        if (key == null) {
+                            throw new UnsupportedJwtException("Unknown signing key: " + header.getKeyId());
+                        }
+                        return key;
+                    }
+                })
+                .build();
+        this.acceptedCounter = Counter.builder("gateway.auth.tokens")
+                .description("Bearer tokens verified at the gateway")
+                .tag("result", "accepted")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("gateway.auth.tokens")
+                .description("Bearer tokens verified at the gateway")
+                .tag("result", "rejected")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        String path = request.getPath().value();
+        if (internalPaths.stream().anyMatch(pattern -> pathMatcher.match(pattern, path))) {
+            exchange.getResponse().setStatusCode(HttpStatus.NOT_FOUND);
+            return exchange.getResponse().setComplete();
+        }
+        String authorization = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (!enabled || authorization == null || !authorization.startsWith(BEARER_PREFIX)) {
+            return chain.filter(exchange.mutate().request(withoutIdentityHeaders(request)).build());
+        }
+
+        String token = authorization.substring(BEARER_PREFIX.length()).trim();
+        String kid = readKeyId(token);
+        if (kid == null) {
+            return reject(exchange);
+        }
+        return verificationKeys.find(kid)
+                .map(key -> verify(token))
+                .defaultIfEmpty(Identity.INVALID)
+                .flatMap(identity -> {
+                    if (!identity.valid()) {
+                        return reject(exchange);
+                    }
+                    acceptedCounter.increment();
+                    if (identity.userId() != null) {
+                        exchange.getAttributes().put(USER_ID_ATTR, identity.userId());
+                    }
+                    boolean keepToken = keepTokenPaths.stream()
+                            .anyMatch(pattern -> pathMatcher.match(pattern, path));
+                    ServerHttpRequest forwarded = withoutIdentityHeaders(request).mutate()
+                            .headers(headers -> {
+                                if (!keepToken) {
+                                    headers.remove(HttpHeaders.AUTHORIZATION);
+                                }
+                                if (identity.userId() != null) {
+                                    headers.set(USER_ID_HEADER, identity.userId().toString());
+                                }
+                                if (identity.email() != null) {
+                                    headers.set(USER_EMAIL_HEADER, identity.email());
+                                }
+                                if (identity.roles() != null && !identity.roles().isEmpty()) {
+                                    headers.set(USER_ROLES_HEADER, String.join(",", identity.roles()));
+                                }
+                            })
+                            .build();
+                    return chain.filter(exchange.mutate().request(forwarded).build());
+                });
+    }
+
+    @Override
+    public int getOrder() {
+        // Before routing and every other gateway filter
+        return Ordered.HIGHEST_PRECEDENCE + 100;
+    }
+
+    private Identity verify(String token) {
+        try {
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            if (!"ACCESS".equals(claims.get("tokenType", String.class))) {
+                return Identity.INVALID;
+            }
+            Object userIdClaim = claims.get("userId");
+            Long userId = userIdClaim == null ? null : Long.valueOf(userIdClaim.toString());
+            long issuedAt = claims.getIssuedAt() == null ? 0 : claims.getIssuedAt().getTime() / 1000;
+            if (revokedTokenSet.isRevoked(token, userId, issuedAt)) {
+                return Identity.INVALID;
+            }
+            @SuppressWarnings("unchecked")
+            List<String> roles = (List<String>) claims.get("roles");
+            return new Identity(true, userId, claims.getSubject(), roles);
+        } catch (JwtException | IllegalArgumentException | ClassCastException e) {
+            return Identity.INVALID;
+        }
+    }
+
+    /**
+     * kid of an RS256 token, read from the header without verifying anything yet
+     */
+    private String readKeyId(String token) {
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
+            return null;
+        }
+        try {
+            JsonNode header = objectMapper.readTree(Base64.getUrlDecoder().decode(token.substring(0, dot)));
+            if (!ALGORITHM.equals(header.path("alg").asText())) {
+                return null;
+            }
+            String kid = header.path("kid").asText(null);
+            return kid == null || kid.isEmpty() ? null : kid;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static ServerHttpRequest withoutIdentityHeaders(ServerHttpRequest request) {
+        HttpHeaders headers = request.getHeaders();
+        if (!headers.containsKey(USER_ID_HEADER) && !headers.containsKey(USER_EMAIL_HEADER)
+                && !headers.containsKey(USER_ROLES_HEADER)) {
+            return request;
+        }
+        return request.mutate()
+                .headers(mutable -> {
+                    mutable.remove(USER_ID_HEADER);
+                    mutable.remove(USER_EMAIL_HEADER);
+                    mutable.remove(USER_ROLES_HEADER);
+                })
+                .build();
+    }
+
+    private Mono<Void> reject(ServerWebExchange exchange) {
+        rejectedCounter.increment();
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.UNAUTHORIZED);
+        response.getHeaders().set(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\"");
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        DataBuffer body = response.bufferFactory()
+                .wrap("{\"error\":\"invalid_token\"}".getBytes(StandardCharsets.UTF_8));
+        return response.writeWith(Mono.just(body));
+    }
+
+    private record Identity(boolean valid, Long userId, String email, List<String> roles) {
+        static final Identity INVALID = new Identity(false, null, null, null);
+    }
+}
@@ -0,0 +1,149 @@
+package com.smarttransit.gateway;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.math.BigInteger;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * auth-service's signing keys, fetched from its JWKS and cached.
+ *
+ * The key set is reloaded after cache-ttl, or early when a token names a kid
+ * that is not in it, which is how rotated keys are picked up. Concurrent
+ * requests share one fetch, and fetches, failed ones included, are at least
+ * MIN_REFETCH apart. Only a request that has no usable key waits for a fetch:
+ * an expired key set keeps being served while it is reloaded in the background,
+ * and a failed fetch keeps the previous keys.
+ */
+@Component
+public class JwtVerificationKeys {
+
+    private static final Logger log = LoggerFactory.getLogger(JwtVerificationKeys.class);
+    private static final long MIN_REFETCH_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final WebClient webClient;
+    private final ObjectMapper objectMapper;
+    private final String jwksUri;
+    private final Duration cacheTtl;
+    private final Duration timeout;
+    private final LongSupplier clock;
+
+    private volatile Map<String, PublicKey> keys = Map.of();
+    private volatile long fetchedAtNanos;
+    private volatile long nextAttemptNanos;
+    private volatile Mono<Map<String, PublicKey>> inFlight;
+
+    @Autowired
+    public JwtVerificationKeys(WebClient.Builder loadBalancedWebClientBuilder,
+                               ObjectMapper objectMapper,
+                               @Value("${gateway.auth.jwks-uri:http://auth-service/.well-known/jwks.json}") String jwksUri,
+                               @Value("${gateway.auth.jwks-cache-ttl-seconds:300}") long cacheTtlSeconds,
+                               @Value("${gateway.auth.jwks-timeout-ms:2000}") long timeoutMillis) {
+        this(loadBalancedWebClientBuilder, objectMapper, jwksUri, cacheTtlSeconds, timeoutMillis, System::nanoTime);
+    }
+
+    /**
+     * With the clock (nanoseconds) that times the cache and the refetch interval
+     */
+    JwtVerificationKeys(WebClient.Builder loadBalancedWebClientBuilder, ObjectMapper objectMapper, String jwksUri,
+                        long cacheTtlSeconds, long timeoutMillis, LongSupplier clock) {
+        this.webClient = loadBalancedWebClientBuilder.build();
+        this.objectMapper = objectMapper;
+        this.jwksUri = jwksUri;
+        this.cacheTtl = Duration.ofSeconds(cacheTtlSeconds);
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.clock = clock;
+        this.nextAttemptNanos = clock.getAsLong();
+    }
+
+    /**
+     * Key for a kid from the cache, waiting for a reload only when the cache lacks the kid
+     */
+    public Mono<PublicKey> find(String kid) {
+        Map<String, PublicKey> current = keys;
+        if (!current.isEmpty() && clock.getAsLong() - fetchedAtNanos > cacheTtl.toNanos()) {
+            reload().subscribe();
+        }
+        PublicKey key = kid == null ? null : current.get(kid);
+        if (key != null) {
+            return Mono.just(key);
+        }
+        return reload().flatMap(loaded -> Mono.justOrEmpty(kid == null ? null : loaded.get(kid)));
+    }
+
+    /**
+     * Key for a kid from the current key set, without reloading
+     */
+    public PublicKey cached(String kid) {
+        return kid == null ? null : keys.get(kid);
+    }
+
+    /**
+     * The running fetch, or a new one unless the last attempt was under MIN_REFETCH ago
+     * (then the current keys)
+     */
+    private synchronized Mono<Map<String, PublicKey>> reload() {
+        Mono<Map<String, PublicKey>> current = inFlight;
+        if (current != null) {
+            return current;
+        }
+        long now = clock.getAsLong();
+        if (now - nextAttemptNanos < 0) {
+            return Mono.just(keys);
+        }
+        nextAttemptNanos = now + MIN_REFETCH_NANOS;
+        current = webClient.get()
+                .uri(jwksUri)
+                .retrieve()
+                .bodyToMono(String.class)
+                .timeout(timeout)
+                .map(this::parseJwks)
+                .doOnNext(loaded -> {
+                    keys = loaded;
+                    fetchedAtNanos = clock.getAsLong();
+                })
+                .onErrorResume(e -> {
+                    log.warn("Cannot fetch JWKS from {}: {}", jwksUri, e.getMessage());
+                    return Mono.just(keys);
+                })
+                .doFinally(signal -> inFlight = null)
+                .cache();
+        inFlight = current;
+        return current;
+    }
+
+    private Map<String, PublicKey> parseJwks(String body) {
+        try {
+            KeyFactory factory = KeyFactory.getInstance("RSA");
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            Map<String, PublicKey> parsed = new HashMap<>();
+            for (JsonNode jwk : objectMapper.readTree(body).path("keys")) {
+                if (!"RSA".equals(jwk.path("kty").asText())) {
+                    continue;
+                }
+                BigInteger modulus = new BigInteger(1, decoder.decode(jwk.path("n").asText()));
+                BigInteger exponent = new BigInteger(1, decoder.decode(jwk.path("e").asText()));
+                parsed.put(jwk.path("kid").asText(), factory.generatePublic(new RSAPublicKeySpec(modulus, exponent)));
+            }
+            return Map.copyOf(parsed);
+        } catch (Exception e) {
+            throw new IllegalStateException("Invalid JWKS document", e);
+        }
+    }
+}
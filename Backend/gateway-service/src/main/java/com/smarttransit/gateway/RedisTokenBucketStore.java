@@ -0,0 +1,99 @@
+package com.smarttransit.gateway;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Token buckets shared by every gateway instance, kept in Redis.
+ *
+ * The refill-and-take step is one Lua script (scripts/token-bucket.lua) run
+ * atomically on the server with the server's clock, so any Redis-protocol
+ * server works (Redis, Valkey, KeyDB or an embedded one for local runs) and
+ * concurrent gateways never double-spend a token. Buckets expire on their own
+ * once they would be full again.
+ *
+ * If Redis is slow or down, decisions fall back to the in-process buckets of
+ * {@link InMemoryTokenBucketStore}: limits become per instance for a while
+ * instead of disappearing or failing every request. Redis is then skipped for
+ * retry-interval-ms so requests don't each wait out the timeout.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "gateway.rate-limit.store", havingValue = "redis")
+public class RedisTokenBucketStore implements TokenBucketStore {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisTokenBucketStore.class);
+    private static final String KEY_PREFIX = "rate-limit:";
+
+    @SuppressWarnings("rawtypes")
+    private final RedisScript<List> script =
+            RedisScript.of(new ClassPathResource("scripts/token-bucket.lua"), List.class);
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final InMemoryTokenBucketStore fallback;
+    private final Duration timeout;
+    private final Counter fallbackCounter;
+    private final long retryIntervalNanos;
+    private final AtomicBoolean degraded = new AtomicBoolean();
+    private volatile long skipRedisUntilNanos;
+
+    public RedisTokenBucketStore(ReactiveStringRedisTemplate redisTemplate,
+                                 InMemoryTokenBucketStore fallback,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${gateway.rate-limit.redis.timeout-ms:100}") long timeoutMillis,
+                                 @Value("${gateway.rate-limit.redis.retry-interval-ms:5000}") long retryIntervalMillis) {
+        this.redisTemplate = redisTemplate;
+        this.fallback = fallback;
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.retryIntervalNanos = Duration.ofMillis(retryIntervalMillis).toNanos();
+        this.fallbackCounter = Counter.builder("gateway.ratelimit.store.fallback")
+                .description("Rate limit decisions taken in-process because Redis was unavailable")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Result> tryConsume(String key, long capacity, double refillPerSecond, int permits) {
+        if (degraded.get() && System.nanoTime() - skipRedisUntilNanos < 0) {
+            fallbackCounter.increment();
+            return fallback.tryConsume(key, capacity, refillPerSecond, permits);
+        }
+        return redisTemplate.execute(script, List.of(KEY_PREFIX + key),
+                        List.of(Long.toString(capacity), Double.toString(refillPerSecond), Integer.toString(permits)))
+                .next()
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("Empty reply from token bucket script")))
+                .timeout(timeout)
+                .map(RedisTokenBucketStore::toResult)
+                .doOnNext(result -> {
+                    if (degraded.compareAndSet(true, false)) {
+                        log.info("Redis rate limit store reachable again");
+                    }
+                })
+                .onErrorResume(e -> {
+                    skipRedisUntilNanos = System.nanoTime() + retryIntervalNanos;
+                    if (degraded.compareAndSet(false, true)) {
+                        log.warn("Redis rate limit store unavailable, limiting per instance: {}", e.getMessage());
+                    }
+                    fallbackCounter.increment();
+                    return fallback.tryConsume(key, capacity, refillPerSecond, permits);
+                });
+    }
+
+    private static Result toResult(List<?> reply) {
+        return new Result(((Number) reply.get(0)).longValue() == 1,
+                ((Number) reply.get(1)).longValue(),
+                ((Number) reply.get(2)).longValue());
+    }
+}
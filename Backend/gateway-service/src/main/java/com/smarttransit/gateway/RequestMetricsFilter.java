@@ -0,0 +1,183 @@
+package com.smarttransit.gateway;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outermost gateway filter: per-route latency, in-flight requests and response sizes.
+ *
+ * gateway.requests{route,method,status,outcome} times the whole exchange, body
+ * included, with a percentile histogram (scrape /actuator/prometheus);
+ * gateway.requests.active{route} is the number in flight and
+ * gateway.response.size{route} the bytes written (after compression).
+ * Per-instance upstream times come from {@link UpstreamTimingFilter}.
+ *
+ * Requests slower than slow-request-threshold-ms are sampled (sample-rate,
+ * at most max-per-second) into the gateway.slow-requests logger as one
+ * key=value line with the time spent before, in and after the upstream call.
+ */
+@Component
+public class RequestMetricsFilter implements GlobalFilter, Ordered {
+
+    private static final Logger slowRequests = LoggerFactory.getLogger("gateway.slow-requests");
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AtomicInteger> active = new ConcurrentHashMap<>();
+    private final long slowThresholdNanos;
+    private final double sampleRate;
+    private final int maxSlowLogsPerSecond;
+    private final AtomicLong slowLogSecond = new AtomicLong();
+    private final AtomicInteger slowLogsThisSecond = new AtomicInteger();
+
+    public RequestMetricsFilter(MeterRegistry meterRegistry,
+                                @Value("${gateway.observability.slow-request-threshold-ms:1000}") long slowThresholdMillis,
+                                @Value("${gateway.observability.slow-request-sample-rate:0.2}") double sampleRate,
+                                @Value("${gateway.observability.slow-request-max-per-second:10}") int maxSlowLogsPerSecond) {
+        this.meterRegistry = meterRegistry;
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+        this.sampleRate = sampleRate;
+        this.maxSlowLogsPerSecond = maxSlowLogsPerSecond;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        long start = System.nanoTime();
+        String routeId = GatewayExchanges.routeId(exchange);
+        AtomicInteger inFlight = active.computeIfAbsent(routeId, id -> meterRegistry.gauge(
+                "gateway.requests.active", Tags.of("route", id), new AtomicInteger()));
+        inFlight.incrementAndGet();
+
+        AtomicLong bytes = new AtomicLong();
+        ServerHttpResponse counting = new ServerHttpResponseDecorator(exchange.getResponse()) {
+            @Override
+            public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                return super.writeWith(Flux.from(body).doOnNext(buffer -> bytes.addAndGet(buffer.readableByteCount())));
+            }
+
+            @Override
+            public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+                return super.writeAndFlushWith(Flux.from(body).map(part -> Flux.from(part)
+                        .doOnNext(buffer -> bytes.addAndGet(buffer.readableByteCount()))));
+            }
+        };
+
+        return chain.filter(exchange.mutate().response(counting).build())
+                .doFinally(signal -> {
+                    inFlight.decrementAndGet();
+                    record(exchange, routeId, System.nanoTime() - start, bytes.get(), signal);
+                });
+    }
+
+    @Override
+    public int getOrder() {
+        // Around everything else, including token verification and the response cache
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    private void record(ServerWebExchange exchange, String routeId, long elapsed, long bytes, SignalType signal) {
+        HttpStatusCode status = exchange.getResponse().getStatusCode();
+        String statusTag = signal == SignalType.CANCEL ? "CANCELLED"
+                : status == null ? (signal == SignalType.ON_ERROR ? "ERROR" : "NONE") : Integer.toString(status.value());
+        Timer.builder("gateway.requests")
+                .description("Gateway request latency, response body included")
+                .tag("route", routeId)
+                .tag("method", exchange.getRequest().getMethod().name())
+                .tag("status", statusTag)
+                .tag("outcome", outcome(status, signal))
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("gateway.response.size")
+                .description("Response body bytes written to clients")
+                .baseUnit("bytes")
+                .tag("route", routeId)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(64.0)
+                .maximumExpectedValue(16.0 * 1024 * 1024)
+                .register(meterRegistry)
+                .record(bytes);
+
+        if (elapsed >= slowThresholdNanos && shouldLogSlowRequest()) {
+            logSlowRequest(exchange, routeId, statusTag, elapsed, bytes);
+        }
+    }
+
+    private static String outcome(HttpStatusCode status, SignalType signal) {
+        if (signal == SignalType.CANCEL) {
+            return "CANCELLED";
+        }
+        if (status == null) {
+            return signal == SignalType.ON_ERROR ? "SERVER_ERROR" : "UNKNOWN";
+        }
+        if (status.is5xxServerError()) {
+            return "SERVER_ERROR";
+        }
+        if (status.is4xxClientError()) {
+            return "CLIENT_ERROR";
+        }
+        return status.is2xxSuccessful() || status.is3xxRedirection() ? "SUCCESS" : "UNKNOWN";
+    }
+
+    private boolean shouldLogSlowRequest() {
+        if (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return false;
+        }
+        long second = System.currentTimeMillis() / 1000;
+        long current = slowLogSecond.get();
+        if (current != second && slowLogSecond.compareAndSet(current, second)) {
+            slowLogsThisSecond.set(0);
+        }
+        return slowLogsThisSecond.incrementAndGet() <= maxSlowLogsPerSecond;
+    }
+
+    /**
+     * One line per slow request: gateway time before the upstream call, the
+     * upstream call itself (last attempt), and the rest (mostly body streaming)
+     */
+    private void logSlowRequest(ServerWebExchange exchange, String routeId, String status, long elapsed, long bytes) {
+        Long upstreamNanos = exchange.getAttribute(UpstreamTimingFilter.UPSTREAM_NANOS_ATTR);
+        Integer attempts = exchange.getAttribute(UpstreamTimingFilter.UPSTREAM_ATTEMPTS_ATTR);
+        String instance = exchange.getAttributeOrDefault(UpstreamTimingFilter.UPSTREAM_INSTANCE_ATTR, "none");
+        slowRequests.warn("slow_request route={} method={} path={} status={} instance={} attempts={} "
+                        + "total_ms={} upstream_ms={} other_ms={} bytes={}",
+                routeId,
+                exchange.getRequest().getMethod().name(),
+                exchange.getRequest().getPath().value(),
+                status,
+                instance,
+                attempts == null ? 0 : attempts,
+                TimeUnit.NANOSECONDS.toMillis(elapsed),
+                upstreamNanos == null ? 0 : TimeUnit.NANOSECONDS.toMillis(upstreamNanos),
+                upstreamNanos == null ? TimeUnit.NANOSECONDS.toMillis(elapsed)
+                        : TimeUnit.NANOSECONDS.toMillis(elapsed - upstreamNanos),
+                bytes);
+    }
+}
@@ -0,0 +1,37 @@
+package com.smarttransit.gateway;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * /actuator/responsecache: entries held by the edge response cache and the
+ * hit/miss counts and hit ratio of each cached route. DELETE empties the cache.
+ */
+@Component
+@Endpoint(id = "responsecache")
+public class ResponseCacheEndpoint {
+
+    private final EdgeResponseCache cache;
+
+    public ResponseCacheEndpoint(EdgeResponseCache cache) {
+        this.cache = cache;
+    }
+
+    @ReadOperation
+    public Map<String, Object> responseCache() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("entries", cache.size());
+        body.put("routes", cache.routeStats());
+        return body;
+    }
+
+    @DeleteOperation
+    public void clear() {
+        cache.clear();
+    }
+}
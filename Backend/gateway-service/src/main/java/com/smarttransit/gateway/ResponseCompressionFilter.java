@@ -0,0 +1,268 @@
+package com.smarttransit.gateway;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gzip-compresses responses for clients that send Accept-Encoding: gzip.
+ *
+ * Only the configured mime-types are compressed (JSON, GeoJSON, text...; not images or event
+ * streams), never responses the backend already encoded, and never bodies known
+ * to be smaller than min-response-size. Bodies up to buffer-limit (or written in
+ * one piece) are compressed whole and keep a Content-Length; larger or chunked
+ * bodies are compressed chunk by chunk as they stream through, so the gateway
+ * never holds more than one upstream chunk of a big GeoJSON route.
+ *
+ * Runs inside {@link RequestMetricsFilter}, so gateway.response.size counts the
+ * compressed bytes. Per route: gateway.compression.responses{route,result},
+ * gateway.compression.ratio{route} (compressed / original bytes) and
+ * gateway.compression.cpu{route} (thread CPU time spent deflating).
+ */
+@Component
+public class ResponseCompressionFilter implements GlobalFilter, Ordered {
+
+    private static final String GZIP = "gzip";
+
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final long minResponseSize;
+    private final long bufferLimit;
+    private final int level;
+    private final List<MediaType> mimeTypes;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final boolean threadCpuTime;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public ResponseCompressionFilter(MeterRegistry meterRegistry,
+                                     @Value("${gateway.compression.enabled:true}") boolean enabled,
+                                     @Value("${gateway.compression.min-response-size:1024}") long minResponseSize,
+                                     @Value("${gateway.compression.buffer-limit:65536}") long bufferLimit,
+                                     @Value("${gateway.compression.level:6}") int level,
+                                     @Value("${gateway.compression.mime-types:application/json,application/*+json,"
+                                             + "text/plain,text/html,text/css,text/csv,text/javascript,"
+                                             + "application/javascript,application/xml,application/*+xml,"
+                                             + "image/svg+xml}") String[] mimeTypes) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.minResponseSize = minResponseSize;
+        this.bufferLimit = bufferLimit;
+        this.level = level;
+        this.mimeTypes = Arrays.stream(mimeTypes).map(String::trim).map(MediaType::parseMediaType).toList();
+        this.threadCpuTime = threads.isCurrentThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        if (!enabled || exchange.getRequest().getMethod() == HttpMethod.HEAD) {
+            return chain.filter(exchange);
+        }
+        boolean acceptsGzip = acceptsGzip(exchange.getRequest().getHeaders().getOrEmpty(HttpHeaders.ACCEPT_ENCODING));
+        CompressingResponse response = new CompressingResponse(exchange.getResponse(),
+                GatewayExchanges.routeId(exchange), acceptsGzip);
+        return chain.filter(exchange.mutate().response(response).build());
+    }
+
+    @Override
+    public int getOrder() {
+        // Just inside the request metrics, so cached and coalesced bodies are kept uncompressed
+        return Ordered.HIGHEST_PRECEDENCE + 1;
+    }
+
+    /**
+     * gzip (or x-gzip) with a non-zero q-value, or * when gzip is not listed
+     */
+    static boolean acceptsGzip(List<String> acceptEncoding) {
+        Boolean wildcard = null;
+        for (String header : acceptEncoding) {
+            for (String coding : header.split(",")) {
+                String[] parts = coding.trim().split(";");
+                String name = parts[0].trim();
+                boolean allowed = true;
+                for (int i = 1; i < parts.length; i++) {
+                    String param = parts[i].trim();
+                    if (param.startsWith("q=")) {
+                        try {
+                            allowed = Double.parseDouble(param.substring(2)) > 0;
+                        } catch (NumberFormatException e) {
+                            allowed = false;
+                        }
+                    }
+                }
+                if (name.equalsIgnoreCase(GZIP) || name.equalsIgnoreCase("x-gzip")) {
+                    return allowed;
+                }
+                if (name.equals("*")) {
+                    wildcard = allowed;
+                }
+            }
+        }
+        return Boolean.TRUE.equals(wildcard);
+    }
+
+    private long cpuNanos() {
+        return threadCpuTime ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    private void record(String routeId, GzipEncoder encoder) {
+        if (encoder.bytesIn() > 0) {
+            DistributionSummary.builder("gateway.compression.ratio")
+                    .description("Compressed size over original size of gzip-encoded responses")
+                    .tag("route", routeId)
+                    .publishPercentiles(0.5, 0.9)
+                    .register(meterRegistry)
+                    .record((double) encoder.bytesOut() / encoder.bytesIn());
+        }
+        Timer.builder("gateway.compression.cpu")
+                .description("CPU time spent compressing responses")
+                .tag("route", routeId)
+                .register(meterRegistry)
+                .record(encoder.nanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private void count(String routeId, String result) {
+        counters.computeIfAbsent(routeId + '|' + result, k -> Counter.builder("gateway.compression.responses")
+                .description("Responses by compression decision")
+                .tag("route", routeId)
+                .tag("result", result)
+                .register(meterRegistry)).increment();
+    }
+
+    private class CompressingResponse extends ServerHttpResponseDecorator {
+
+        private final String routeId;
+        private final boolean acceptsGzip;
+
+        CompressingResponse(ServerHttpResponse delegate, String routeId, boolean acceptsGzip) {
+            super(delegate);
+            this.routeId = routeId;
+            this.acceptsGzip = acceptsGzip;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            String skipped = skipReason();
+            if (skipped != null) {
+                count(routeId, skipped);
+                return super.writeWith(body);
+            }
+            long length = getHeaders().getContentLength();
+            if (body instanceof Mono || (length >= 0 && length <= bufferLimit)) {
+                return Flux.<DataBuffer>from(body).collectList()
+                        .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                        .flatMap(this::writeWhole);
+            }
+            count(routeId, "compressed");
+            setEncodingHeaders(-1);
+            return super.writeWith(compressStreaming(body));
+        }
+
+        /**
+         * Why the response goes out as is, or null to compress it
+         */
+        private String skipReason() {
+            HttpHeaders headers = getHeaders();
+            HttpStatusCode status = getStatusCode();
+            if (status != null && (status.value() < 200 || status.value() == 204 || status.value() == 206
+                    || status.value() == 304)) {
+                return "status";
+            }
+            if (headers.containsKey(HttpHeaders.CONTENT_ENCODING)) {
+                return "encoded";
+            }
+            MediaType type = headers.getContentType();
+            if (type == null || mimeTypes.stream().noneMatch(allowed -> allowed.includes(type))) {
+                return "type";
+            }
+            if (headers.getVary().stream().noneMatch(HttpHeaders.ACCEPT_ENCODING::equalsIgnoreCase)) {
+                headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            }
+            if (!acceptsGzip) {
+                return "not_acceptable";
+            }
+            long length = headers.getContentLength();
+            return length >= 0 && length < minResponseSize ? "too_small" : null;
+        }
+
+        private Mono<Void> writeWhole(List<DataBuffer> buffers) {
+            long size = buffers.stream().mapToLong(DataBuffer::readableByteCount).sum();
+            if (size < minResponseSize) {
+                count(routeId, "too_small");
+                return super.writeWith(Flux.fromIterable(buffers));
+            }
+            GzipEncoder encoder = new GzipEncoder(level, ResponseCompressionFilter.this::cpuNanos);
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(size, Integer.MAX_VALUE) / 2);
+            try {
+                for (DataBuffer buffer : buffers) {
+                    out.writeBytes(encoder.encode(buffer));
+                }
+                out.writeBytes(encoder.finish());
+            } finally {
+                encoder.end();
+                buffers.forEach(DataBufferUtils::release);
+            }
+            count(routeId, "compressed");
+            record(routeId, encoder);
+            setEncodingHeaders(out.size());
+            return super.writeWith(Mono.just(bufferFactory().wrap(out.toByteArray())));
+        }
+
+        private Flux<DataBuffer> compressStreaming(Publisher<? extends DataBuffer> body) {
+            GzipEncoder encoder = new GzipEncoder(level, ResponseCompressionFilter.this::cpuNanos);
+            return Flux.<DataBuffer>from(body)
+                    .map(buffer -> {
+                        try {
+                            return bufferFactory().wrap(encoder.encode(buffer));
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    })
+                    .concatWith(Mono.fromSupplier(() -> bufferFactory().wrap(encoder.finish())))
+                    .doOnComplete(() -> record(routeId, encoder))
+                    .doFinally(signal -> encoder.end());
+        }
+
+        private void setEncodingHeaders(long compressedLength) {
+            HttpHeaders headers = getHeaders();
+            headers.set(HttpHeaders.CONTENT_ENCODING, GZIP);
+            headers.remove(HttpHeaders.ACCEPT_RANGES);
+            if (compressedLength >= 0) {
+                headers.setContentLength(compressedLength);
+            } else {
+                headers.remove(HttpHeaders.CONTENT_LENGTH);
+            }
+            // The compressed body is a different representation: a strong validator no longer holds
+            String etag = headers.getETag();
+            if (etag != null && !etag.startsWith("W/")) {
+                headers.setETag("W/" + etag);
+            }
+        }
+    }
+}
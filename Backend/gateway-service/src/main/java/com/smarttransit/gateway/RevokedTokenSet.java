@@ -0,0 +1,118 @@
+package com.smarttransit.gateway;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Revoked tokens as known to auth-service, polled from /api/auth/revocations
+ * with the internal API key shared with auth-service.
+ *
+ * Tokens are identified by the hex SHA-256 of their compact form, as in
+ * auth-service. A token revoked on auth-service is rejected here within one
+ * sync interval. Until the first successful poll nothing is considered revoked
+ * (signature and expiry are still enforced), so an auth-service outage does not
+ * take the gateway down with it.
+ */
+@Component
+public class RevokedTokenSet {
+
+    private static final Logger log = LoggerFactory.getLogger(RevokedTokenSet.class);
+    private static final String API_KEY_HEADER = "X-Internal-Api-Key";
+
+    private final WebClient webClient;
+    private final ObjectMapper objectMapper;
+    private final String revocationsUri;
+    private final String apiKey;
+    private final Duration timeout;
+
+    private volatile Set<String> tokenHashes = Set.of();
+    private volatile Map<Long, Long> userCutoffs = Map.of();
+    private volatile boolean loaded;
+
+    public RevokedTokenSet(WebClient.Builder loadBalancedWebClientBuilder,
+                           ObjectMapper objectMapper,
+                           @Value("${gateway.auth.revocations-uri:http://auth-service/api/auth/revocations}") String revocationsUri,
+                           @Value("${gateway.auth.internal-api-key:}") String apiKey,
+                           @Value("${gateway.auth.revocations-timeout-ms:5000}") long timeoutMillis) {
+        this.webClient = loadBalancedWebClientBuilder.build();
+        this.objectMapper = objectMapper;
+        this.revocationsUri = revocationsUri;
+        this.apiKey = apiKey;
+        this.timeout = Duration.ofMillis(timeoutMillis);
+    }
+
+    /**
+     * Poll auth-service and swap in the new set; runs on its own, never on a request path
+     */
+    @Scheduled(fixedDelayString = "${gateway.auth.revocations-sync-interval-ms:15000}")
+    public void refresh() {
+        webClient.get()
+                .uri(revocationsUri)
+                .header(API_KEY_HEADER, apiKey)
+                .retrieve()
+                .bodyToMono(String.class)
+                .timeout(timeout)
+                .subscribe(this::apply,
+                        e -> log.warn("Cannot fetch revoked tokens from {}: {}", revocationsUri, e.getMessage()));
+    }
+
+    void apply(String body) {
+        try {
+            JsonNode root = objectMapper.readTree(body);
+            Set<String> hashes = new HashSet<>();
+            root.path("tokenHashes").forEach(node -> hashes.add(node.asText()));
+            Map<Long, Long> cutoffs = new HashMap<>();
+            root.path("userCutoffs").fields()
+                    .forEachRemaining(entry -> cutoffs.put(Long.valueOf(entry.getKey()), entry.getValue().asLong()));
+            tokenHashes = hashes;
+            userCutoffs = cutoffs;
+            loaded = true;
+        } catch (Exception e) {
+            log.warn("Invalid revocation payload: {}", e.getMessage());
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Whether the token itself was revoked, or its user logged out everywhere after it was issued
+     */
+    public boolean isRevoked(String token, Long userId, long issuedAtSeconds) {
+        if (!tokenHashes.isEmpty() && tokenHashes.contains(sha256Hex(token))) {
+            return true;
+        }
+        Long cutoff = userId == null ? null : userCutoffs.get(userId);
+        return cutoff != null && issuedAtSeconds <= cutoff;
+    }
+
+    public int size() {
+        return tokenHashes.size();
+    }
+
+    private static String sha256Hex(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.smarttransit.gateway;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.ratelimit.AbstractRateLimiter;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Token bucket limiter behind the RequestRateLimiter route filter.
+ *
+ * Every (route, client key) pair gets its own bucket in the configured
+ * {@link TokenBucketStore}. Limits are set per route through the filter args,
+ * e.g. token-bucket.capacity=20 and token-bucket.refill-per-second=5; anything
+ * left out comes from gateway.rate-limit.default.*. Decisions are counted in
+ * gateway.ratelimit.requests{route,result}.
+ *
+ * Primary over Spring Cloud Gateway's own RedisRateLimiter, which is
+ * auto-configured as soon as Redis is on the classpath.
+ */
+@Component
+@Primary
+public class TokenBucketRateLimiter extends AbstractRateLimiter<TokenBucketRateLimiter.Config> {
+
+    public static final String CONFIGURATION_PROPERTY_NAME = "token-bucket";
+    public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+    public static final String BURST_CAPACITY_HEADER = "X-RateLimit-Burst-Capacity";
+    public static final String REFILL_RATE_HEADER = "X-RateLimit-Replenish-Rate";
+
+    private final TokenBucketStore store;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final long defaultCapacity;
+    private final double defaultRefillPerSecond;
+    private final boolean includeHeaders;
+
+    public TokenBucketRateLimiter(TokenBucketStore store,
+                                  ConfigurationService configurationService,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${gateway.rate-limit.default.capacity:100}") long defaultCapacity,
+                                  @Value("${gateway.rate-limit.default.refill-per-second:50}") double defaultRefillPerSecond,
+                                  @Value("${gateway.rate-limit.include-headers:true}") boolean includeHeaders) {
+        super(Config.class, CONFIGURATION_PROPERTY_NAME, configurationService);
+        this.store = store;
+        this.meterRegistry = meterRegistry;
+        this.defaultCapacity = defaultCapacity;
+        this.defaultRefillPerSecond = defaultRefillPerSecond;
+        this.includeHeaders = includeHeaders;
+    }
+
+    @Override
+    public Mono<Response> isAllowed(String routeId, String id) {
+        Config config = getConfig().get(routeId);
+        long capacity = config != null && config.getCapacity() != null ? config.getCapacity() : defaultCapacity;
+        double refillPerSecond = config != null && config.getRefillPerSecond() != null
+                ? config.getRefillPerSecond() : defaultRefillPerSecond;
+        int permits = config != null && config.getRequestedTokens() != null ? config.getRequestedTokens() : 1;
+
+        return store.tryConsume(routeId + ":" + id, capacity, refillPerSecond, permits)
+                .map(result -> {
+                    counter(routeId, result.allowed()).increment();
+                    return new Response(result.allowed(), headers(result, capacity, refillPerSecond));
+                });
+    }
+
+    private Map<String, String> headers(TokenBucketStore.Result result, long capacity, double refillPerSecond) {
+        Map<String, String> headers = new HashMap<>();
+        if (includeHeaders) {
+            headers.put(REMAINING_HEADER, Long.toString(result.remaining()));
+            headers.put(BURST_CAPACITY_HEADER, Long.toString(capacity));
+            headers.put(REFILL_RATE_HEADER, Double.toString(refillPerSecond));
+        }
+        if (!result.allowed()) {
+            headers.put(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, (result.retryAfterMillis() + 999) / 1000)));
+        }
+        return headers;
+    }
+
+    private Counter counter(String routeId, boolean allowed) {
+        String result = allowed ? "allowed" : "rejected";
+        return counters.computeIfAbsent(routeId + '|' + result, k -> Counter.builder("gateway.ratelimit.requests")
+                .description("Requests checked by the token bucket rate limiter")
+                .tag("route", routeId)
+                .tag("result", result)
+                .register(meterRegistry));
+    }
+
+    /**
+     * Per-route limits, bound from the RequestRateLimiter args prefixed with token-bucket.
+     */
+    public static class Config {
+
+        private Long capacity;
+        private Double refillPerSecond;
+        private Integer requestedTokens;
+
+        public Long getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(Long capacity) {
+            this.capacity = capacity;
+        }
+
+        public Double getRefillPerSecond() {
+            return refillPerSecond;
+        }
+
+        public void setRefillPerSecond(Double refillPerSecond) {
+            this.refillPerSecond = refillPerSecond;
+        }
+
+        public Integer getRequestedTokens() {
+            return requestedTokens;
+        }
+
+        public void setRequestedTokens(Integer requestedTokens) {
+            this.requestedTokens = requestedTokens;
+        }
+    }
+}
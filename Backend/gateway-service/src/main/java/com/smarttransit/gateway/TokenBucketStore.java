@@ -0,0 +1,25 @@
+package com.smarttransit.gateway;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Where token buckets live. One bucket per key, created full on first use and
+ * refilled continuously at refillPerSecond up to capacity.
+ *
+ * Selected with gateway.rate-limit.store: "memory" (this node only) or "redis"
+ * (shared by every gateway instance).
+ */
+public interface TokenBucketStore {
+
+    /**
+     * Take permits from the key's bucket if it holds enough of them
+     */
+    Mono<Result> tryConsume(String key, long capacity, double refillPerSecond, int permits);
+
+    /**
+     * @param remaining whole tokens left after this call
+     * @param retryAfterMillis when a rejected call would next succeed, 0 when allowed
+     */
+    record Result(boolean allowed, long remaining, long retryAfterMillis) {
+    }
+}
@@ -0,0 +1,102 @@
+package com.smarttransit.gateway;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.Http2AllocationStrategy;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One HTTP client, with its own connection pool, per backend service, so one
+ * service exhausting its connections cannot starve the others.
+ *
+ * Pools are set with gateway.upstream.pools.{service}.* and default to
+ * gateway.upstream.default.*: max-connections, pending-acquire-max-count,
+ * pending-acquire-timeout-ms, max-idle-time-ms, max-life-time-ms,
+ * eviction-interval-ms and protocol (http1, or h2c for cleartext HTTP/2 with
+ * prior knowledge, up to max-concurrent-streams per connection; the backend
+ * needs server.http2.enabled=true).
+ *
+ * Pool metrics are published as reactor.netty.connection.provider.*{name=upstream-{service}}:
+ * active/idle/pending connections against max.connections, and
+ * pending.connections.time for the time spent waiting for a connection.
+ */
+@Component
+public class UpstreamHttpClients implements DisposableBean {
+
+    private final Environment environment;
+    private final HttpClientProperties gatewayProperties;
+    private final Map<String, ConnectionProvider> providers = new ConcurrentHashMap<>();
+    private final Map<String, HttpClient> clients = new ConcurrentHashMap<>();
+
+    public UpstreamHttpClients(Environment environment, HttpClientProperties gatewayProperties) {
+        this.environment = environment;
+        this.gatewayProperties = gatewayProperties;
+    }
+
+    HttpClient client(String serviceId) {
+        return clients.computeIfAbsent(serviceId, this::create);
+    }
+
+    private HttpClient create(String serviceId) {
+        int maxConnections = property(serviceId, "max-connections", Integer.class, 200);
+        boolean h2c = "h2c".equalsIgnoreCase(property(serviceId, "protocol", String.class, "http1"));
+
+        ConnectionProvider.Builder pool = ConnectionProvider.builder("upstream-" + serviceId)
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(property(serviceId, "pending-acquire-max-count", Integer.class, 1000))
+                .pendingAcquireTimeout(millis(serviceId, "pending-acquire-timeout-ms", 2000))
+                .maxIdleTime(millis(serviceId, "max-idle-time-ms", 30000))
+                .maxLifeTime(millis(serviceId, "max-life-time-ms", 300000))
+                .evictInBackground(millis(serviceId, "eviction-interval-ms", 30000))
+                .metrics(true);
+        if (h2c) {
+            pool.allocationStrategy(Http2AllocationStrategy.builder()
+                    .maxConnections(maxConnections)
+                    .minConnections(1)
+                    .maxConcurrentStreams(property(serviceId, "max-concurrent-streams", Long.class, 100L))
+                    .build());
+        }
+        ConnectionProvider provider = pool.build();
+        providers.put(serviceId, provider);
+
+        HttpClient client = HttpClient.create(provider)
+                .protocol(h2c ? HttpProtocol.H2C : HttpProtocol.HTTP11)
+                .compress(gatewayProperties.isCompression())
+                .httpResponseDecoder(spec -> {
+                    if (gatewayProperties.getMaxHeaderSize() != null) {
+                        spec.maxHeaderSize((int) gatewayProperties.getMaxHeaderSize().toBytes());
+                    }
+                    if (gatewayProperties.getMaxInitialLineLength() != null) {
+                        spec.maxInitialLineLength((int) gatewayProperties.getMaxInitialLineLength().toBytes());
+                    }
+                    return spec;
+                });
+        if (gatewayProperties.getConnectTimeout() != null) {
+            client = client.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, gatewayProperties.getConnectTimeout());
+        }
+        return client;
+    }
+
+    private Duration millis(String serviceId, String name, long defaultMillis) {
+        return Duration.ofMillis(property(serviceId, name, Long.class, defaultMillis));
+    }
+
+    private <T> T property(String serviceId, String name, Class<T> type, T defaultValue) {
+        T fallback = environment.getProperty("gateway.upstream.default." + name, type, defaultValue);
+        return environment.getProperty("gateway.upstream.pools." + serviceId + "." + name, type, fallback);
+    }
+
+    @Override
+    public void destroy() {
+        providers.values().forEach(ConnectionProvider::dispose);
+    }
+}
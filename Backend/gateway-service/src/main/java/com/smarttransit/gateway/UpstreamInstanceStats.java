@@ -0,0 +1,198 @@
+package com.smarttransit.gateway;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * What the gateway has seen of each backend instance (host:port), fed by
+ * {@link UpstreamTimingFilter} and read by {@link LatencyAwareLoadBalancer}.
+ *
+ * Latency is a peak-sensitive EWMA: a slower sample is taken at once, faster
+ * ones pull the average down with a decay-ms time constant, so an instance that
+ * starts pausing is avoided on its next slow answer. Calls in flight are counted
+ * separately. After failure-threshold consecutive failures (connection errors,
+ * timeouts, 5xx) an instance is ejected for ejection-ms, doubling on each
+ * ejection in a row up to max-ejection-ms; a success resets both.
+ */
+@Component
+public class UpstreamInstanceStats {
+
+    private static final Logger log = LoggerFactory.getLogger(UpstreamInstanceStats.class);
+
+    private final Map<String, Instance> instances = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final double decayNanos;
+    private final long initialLatencyNanos;
+    private final int failureThreshold;
+    private final long ejectionNanos;
+    private final long maxEjectionNanos;
+    private final long idleNanos;
+    private final LongSupplier clock;
+
+    @Autowired
+    public UpstreamInstanceStats(MeterRegistry meterRegistry,
+                                 @Value("${gateway.load-balancer.decay-ms:10000}") long decayMillis,
+                                 @Value("${gateway.load-balancer.initial-latency-ms:50}") long initialLatencyMillis,
+                                 @Value("${gateway.load-balancer.failure-threshold:5}") int failureThreshold,
+                                 @Value("${gateway.load-balancer.ejection-ms:30000}") long ejectionMillis,
+                                 @Value("${gateway.load-balancer.max-ejection-ms:300000}") long maxEjectionMillis,
+                                 @Value("${gateway.load-balancer.idle-ms:600000}") long idleMillis) {
+        this(meterRegistry, decayMillis, initialLatencyMillis, failureThreshold, ejectionMillis, maxEjectionMillis,
+                idleMillis, System::nanoTime);
+    }
+
+    UpstreamInstanceStats(MeterRegistry meterRegistry, long decayMillis, long initialLatencyMillis,
+                          int failureThreshold, long ejectionMillis, long maxEjectionMillis, long idleMillis,
+                          LongSupplier clock) {
+        this.meterRegistry = meterRegistry;
+        this.decayNanos = TimeUnit.MILLISECONDS.toNanos(decayMillis);
+        this.initialLatencyNanos = TimeUnit.MILLISECONDS.toNanos(initialLatencyMillis);
+        this.failureThreshold = failureThreshold;
+        this.ejectionNanos = TimeUnit.MILLISECONDS.toNanos(ejectionMillis);
+        this.maxEjectionNanos = TimeUnit.MILLISECONDS.toNanos(maxEjectionMillis);
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+        this.clock = clock;
+        meterRegistry.gauge("gateway.loadbalancer.ejected", instances,
+                all -> all.values().stream().filter(instance -> instance.isEjected(clock.getAsLong())).count());
+    }
+
+    static String key(String host, int port) {
+        return port < 0 ? host : host + ":" + port;
+    }
+
+    /**
+     * Expected cost of sending one more call: latency times (calls in flight + 1)
+     */
+    double score(String key) {
+        Instance instance = instances.get(key);
+        if (instance == null) {
+            return initialLatencyNanos;
+        }
+        return instance.latency(clock.getAsLong()) * (instance.inFlight.get() + 1);
+    }
+
+    boolean isEjected(String key) {
+        Instance instance = instances.get(key);
+        return instance != null && instance.isEjected(clock.getAsLong());
+    }
+
+    void callStarted(String key) {
+        instance(key).inFlight.incrementAndGet();
+    }
+
+    void callFinished(String key, long elapsedNanos, boolean failed) {
+        Instance instance = instance(key);
+        instance.inFlight.decrementAndGet();
+        long now = clock.getAsLong();
+        long ejectedFor = instance.record(now, elapsedNanos, failed);
+        if (ejectedFor > 0) {
+            log.warn("Ejecting upstream instance {} for {} ms after {} consecutive failures",
+                    key, TimeUnit.NANOSECONDS.toMillis(ejectedFor), failureThreshold);
+            Counter.builder("gateway.loadbalancer.ejections")
+                    .description("Backend instances taken out of load balancing after repeated failures")
+                    .tag("instance", key)
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+
+    /**
+     * Latency, calls in flight and ejection state per instance, for /actuator/upstreams
+     */
+    Map<String, Map<String, Object>> describe() {
+        long now = clock.getAsLong();
+        Map<String, Map<String, Object>> all = new TreeMap<>();
+        instances.forEach((key, instance) -> all.put(key, instance.describe(now)));
+        return all;
+    }
+
+    /**
+     * Forget instances that have not been called for idle-ms (gone from discovery, most likely)
+     */
+    @Scheduled(fixedDelayString = "${gateway.load-balancer.idle-ms:600000}")
+    void evictIdle() {
+        long now = clock.getAsLong();
+        instances.entrySet().removeIf(entry -> entry.getValue().isIdle(now, idleNanos));
+    }
+
+    private Instance instance(String key) {
+        return instances.computeIfAbsent(key, k -> new Instance(initialLatencyNanos, clock.getAsLong()));
+    }
+
+    private final class Instance {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private double latencyNanos;
+        private long updatedAtNanos;
+        private int consecutiveFailures;
+        private int ejections;
+        private boolean ejected;
+        private long ejectedUntilNanos;
+
+        private Instance(long latencyNanos, long now) {
+            this.latencyNanos = latencyNanos;
+            this.updatedAtNanos = now;
+        }
+
+        synchronized double latency(long now) {
+            // Decay towards zero while idle, so a recovered instance gets traffic again
+            return latencyNanos * Math.exp(-(now - updatedAtNanos) / decayNanos);
+        }
+
+        synchronized boolean isEjected(long now) {
+            return ejected && now - ejectedUntilNanos < 0;
+        }
+
+        synchronized boolean isIdle(long now, long idleNanos) {
+            return inFlight.get() == 0 && now - updatedAtNanos > idleNanos && !isEjected(now);
+        }
+
+        /**
+         * @return how long the instance was just ejected for, or 0
+         */
+        synchronized long record(long now, long elapsedNanos, boolean failed) {
+            // A fast failure must not make the instance look better than it was
+            double sample = failed ? Math.max(elapsedNanos, latencyNanos) : elapsedNanos;
+            double weight = Math.exp(-(now - updatedAtNanos) / decayNanos);
+            latencyNanos = sample > latencyNanos ? sample : latencyNanos * weight + sample * (1 - weight);
+            updatedAtNanos = now;
+            if (!failed) {
+                consecutiveFailures = 0;
+                ejections = 0;
+                return 0;
+            }
+            if (++consecutiveFailures < failureThreshold) {
+                return 0;
+            }
+            consecutiveFailures = 0;
+            long duration = Math.min(ejectionNanos << Math.min(ejections, 20), maxEjectionNanos);
+            ejections++;
+            ejected = true;
+            ejectedUntilNanos = now + duration;
+            return duration;
+        }
+
+        synchronized Map<String, Object> describe(long now) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("latencyMs", Math.round(latency(now) / 1e4) / 100.0);
+            stats.put("inFlight", inFlight.get());
+            stats.put("consecutiveFailures", consecutiveFailures);
+            stats.put("ejectedForMs", isEjected(now) ? TimeUnit.NANOSECONDS.toMillis(ejectedUntilNanos - now) : 0);
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.smarttransit.gateway;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.RouteMetadataUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.netty.http.client.HttpClient;
+
+import java.util.List;
+
+/**
+ * The gateway's routing filter, sending each lb:// route through the client
+ * (and connection pool) of its backend service from {@link UpstreamHttpClients}.
+ * Other routes keep the shared gateway client. The connect-timeout route
+ * metadata still applies.
+ *
+ * The stock routingFilter bean is not conditional on a missing bean, so it is
+ * switched off with spring.cloud.gateway.global-filter.netty-routing.enabled=false.
+ */
+@Component
+public class UpstreamRoutingFilter extends NettyRoutingFilter {
+
+    private final UpstreamHttpClients clients;
+
+    public UpstreamRoutingFilter(HttpClient httpClient, ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider,
+                                 HttpClientProperties properties, UpstreamHttpClients clients) {
+        super(httpClient, headersFiltersProvider, properties);
+        this.clients = clients;
+    }
+
+    @Override
+    protected HttpClient getHttpClient(Route route, ServerWebExchange exchange) {
+        if (!"lb".equals(route.getUri().getScheme()) || route.getUri().getHost() == null) {
+            return super.getHttpClient(route, exchange);
+        }
+        HttpClient client = clients.client(route.getUri().getHost());
+        Object connectTimeout = route.getMetadata().get(RouteMetadataUtils.CONNECT_TIMEOUT_ATTR);
+        if (connectTimeout != null) {
+            client = client.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, Integer.valueOf(connectTimeout.toString()));
+        }
+        return client;
+    }
+}
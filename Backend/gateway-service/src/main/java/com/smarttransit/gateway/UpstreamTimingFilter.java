@@ -0,0 +1,89 @@
+package com.smarttransit.gateway;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times each call to a backend instance, from just after the load balancer
+ * picked the instance until its response headers arrive (the body is streamed
+ * afterwards and counted in gateway.requests). Retries are timed one by one.
+ *
+ * Published as gateway.upstream.duration{route,instance,status} with a
+ * percentile histogram, left on the exchange for the slow-request log, and fed
+ * to {@link UpstreamInstanceStats} (latency, calls in flight, failures) for the
+ * load balancer.
+ */
+@Component
+public class UpstreamTimingFilter implements GlobalFilter, Ordered {
+
+    static final String UPSTREAM_NANOS_ATTR = UpstreamTimingFilter.class.getName() + ".nanos";
+    static final String UPSTREAM_INSTANCE_ATTR = UpstreamTimingFilter.class.getName() + ".instance";
+    static final String UPSTREAM_ATTEMPTS_ATTR = UpstreamTimingFilter.class.getName() + ".attempts";
+
+    private final MeterRegistry meterRegistry;
+    private final UpstreamInstanceStats instanceStats;
+
+    public UpstreamTimingFilter(MeterRegistry meterRegistry, UpstreamInstanceStats instanceStats) {
+        this.meterRegistry = meterRegistry;
+        this.instanceStats = instanceStats;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        String instance = instance(exchange);
+        boolean tracked = !instance.equals("none");
+        if (tracked) {
+            instanceStats.callStarted(instance);
+        }
+        long start = System.nanoTime();
+        return chain.filter(exchange).doFinally(signal -> {
+            long elapsed = System.nanoTime() - start;
+            exchange.getAttributes().put(UPSTREAM_NANOS_ATTR, elapsed);
+            exchange.getAttributes().put(UPSTREAM_INSTANCE_ATTR, instance);
+            exchange.getAttributes().merge(UPSTREAM_ATTEMPTS_ATTR, 1, (a, b) -> (Integer) a + (Integer) b);
+
+            HttpStatusCode status = exchange.getResponse().getStatusCode();
+            if (tracked) {
+                instanceStats.callFinished(instance, elapsed,
+                        signal == SignalType.ON_ERROR || (status != null && status.is5xxServerError()));
+            }
+            Timer.builder("gateway.upstream.duration")
+                    .description("Time from instance selection to upstream response headers")
+                    .tag("route", GatewayExchanges.routeId(exchange))
+                    .tag("instance", instance)
+                    .tag("status", status == null ? "NONE" : Integer.toString(status.value()))
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(30))
+                    .register(meterRegistry)
+                    .record(elapsed, TimeUnit.NANOSECONDS);
+        });
+    }
+
+    @Override
+    public int getOrder() {
+        // After the load balancer (10150) has resolved the instance, right before the routing filter
+        return Ordered.LOWEST_PRECEDENCE - 1;
+    }
+
+    private static String instance(ServerWebExchange exchange) {
+        URI url = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR);
+        if (url == null || url.getHost() == null) {
+            return "none";
+        }
+        return UpstreamInstanceStats.key(url.getHost(), url.getPort());
+    }
+}
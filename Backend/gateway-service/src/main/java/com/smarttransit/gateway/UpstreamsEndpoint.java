@@ -0,0 +1,27 @@
+package com.smarttransit.gateway;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * /actuator/upstreams: the latency, calls in flight and ejection state the
+ * load balancer currently sees for each backend instance.
+ */
+@Component
+@Endpoint(id = "upstreams")
+public class UpstreamsEndpoint {
+
+    private final UpstreamInstanceStats stats;
+
+    public UpstreamsEndpoint(UpstreamInstanceStats stats) {
+        this.stats = stats;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> upstreams() {
+        return stats.describe();
+    }
+}
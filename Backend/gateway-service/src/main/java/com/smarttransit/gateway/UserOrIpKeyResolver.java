@@ -0,0 +1,31 @@
+package com.smarttransit.gateway;
+
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Rate limit key: the authenticated user when there is one, the client IP otherwise.
+ *
+ * X-User-Id is only ever set by {@link JwtAuthenticationFilter}, which runs
+ * before route filters and drops any client-supplied copy, so it cannot be
+ * forged to dodge a limit.
+ */
+@Component("userOrIpKeyResolver")
+public class UserOrIpKeyResolver implements KeyResolver {
+
+    @Override
+    public Mono<String> resolve(ServerWebExchange exchange) {
+        String userId = exchange.getRequest().getHeaders().getFirst(JwtAuthenticationFilter.USER_ID_HEADER);
+        if (userId != null && !userId.isBlank()) {
+            return Mono.just("user:" + userId);
+        }
+        InetSocketAddress remoteAddress = exchange.getRequest().getRemoteAddress();
+        String ip = remoteAddress == null || remoteAddress.getAddress() == null
+                ? "unknown" : remoteAddress.getAddress().getHostAddress();
+        return Mono.just("ip:" + ip);
+    }
+}
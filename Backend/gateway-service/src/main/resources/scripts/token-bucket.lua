@@ -0,0 +1,41 @@
+-- Token bucket, evaluated atomically on the Redis side.
+-- KEYS[1]  bucket hash {tokens, ts}
+-- ARGV[1]  capacity, ARGV[2] refill per second, ARGV[3] permits requested
+-- Returns  {allowed (0/1), whole tokens remaining, retry after (ms)}
+local capacity = tonumber(ARGV[1])
+local rate = tonumber(ARGV[2])
+local requested = tonumber(ARGV[3])
+
+-- TIME is non-deterministic: replicate the writes, not the script (default from Redis 5)
+if redis.replicate_commands then
+  redis.replicate_commands()
+end
+
+-- Redis' own clock, so gateway instances with skewed clocks share one timeline
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+
+local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+local tokens = tonumber(state[1])
+local ts = tonumber(state[2])
+if tokens == nil or ts == nil then
+  tokens = capacity
+  ts = now
+end
+
+tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate / 1000)
+
+local allowed = 0
+local retry = 0
+if tokens >= requested then
+  allowed = 1
+  tokens = tokens - requested
+else
+  retry = math.ceil((requested - tokens) * 1000 / rate)
+end
+
+redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(now))
+-- A bucket left alone until it is full again is the same as no bucket
+redis.call('PEXPIRE', KEYS[1], math.ceil((capacity - tokens) * 1000 / rate) + 1000)
+
+return {allowed, math.floor(tokens), retry}
@@ -0,0 +1,41 @@
+package com.smarttransit.gateway;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CapturedResponseTest {
+
+    private final DefaultDataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+
+    private DataBuffer buffer(String text) {
+        return bufferFactory.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void writeWith_KeepsTheWholeBody() {
+        CapturedResponse response = new CapturedResponse(bufferFactory);
+
+        response.writeWith(Flux.just(buffer("{\"plans\":"), buffer("[]}"))).block();
+
+        assertEquals("{\"plans\":[]}", new String(response.getBody(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void writeAndFlushWith_KeepsEveryChunk() {
+        CapturedResponse response = new CapturedResponse(bufferFactory);
+
+        response.writeAndFlushWith(Flux.just(
+                Mono.just(buffer("data: 1\n\n")),
+                Flux.just(buffer("data: "), buffer("2\n\n")),
+                Mono.just(buffer("data: 3\n\n")))).block();
+
+        assertEquals("data: 1\n\ndata: 2\n\ndata: 3\n\n", new String(response.getBody(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,45 @@
+package com.smarttransit.gateway;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.net.URI;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GatewayExchangesTest {
+
+    @Test
+    void detached_KeepsRoutingAttributesAndWritesNothingBack() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/plans-service/api/plans"));
+        Route route = Route.async().id("plans").uri("http://plans").predicate(e -> true).build();
+        Set<URI> originalUrls = new LinkedHashSet<>(Set.of(URI.create("http://gateway/plans-service/api/plans")));
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, route);
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ORIGINAL_REQUEST_URL_ATTR, originalUrls);
+        exchange.getAttributes().put(JwtAuthenticationFilter.USER_ID_ATTR, 42L);
+        CapturedResponse captured = new CapturedResponse(DefaultDataBufferFactory.sharedInstance);
+
+        ServerWebExchange detached = GatewayExchanges.detached(exchange, exchange.getRequest(), captured);
+        detached.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ALREADY_ROUTED_ATTR, true);
+        detached.<Set<URI>>getAttribute(ServerWebExchangeUtils.GATEWAY_ORIGINAL_REQUEST_URL_ATTR)
+                .add(URI.create("http://gateway/api/plans"));
+        // Filters further down the chain mutate the exchange again
+        ServerWebExchange mutated = detached.mutate().build();
+        mutated.getAttributes().put(UpstreamTimingFilter.UPSTREAM_NANOS_ATTR, 5L);
+
+        assertSame(route, detached.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR));
+        assertNull(detached.getAttribute(JwtAuthenticationFilter.USER_ID_ATTR));
+        assertSame(captured, detached.getResponse());
+        assertEquals(5L, detached.<Long>getAttribute(UpstreamTimingFilter.UPSTREAM_NANOS_ATTR));
+        assertNull(exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ALREADY_ROUTED_ATTR));
+        assertNull(exchange.getAttribute(UpstreamTimingFilter.UPSTREAM_NANOS_ATTR));
+        assertEquals(1, originalUrls.size());
+    }
+}
@@ -0,0 +1,84 @@
+package com.smarttransit.gateway;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GzipEncoderTest {
+
+    static byte[] gunzip(byte[] gzip) {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new AssertionError("Not a valid gzip stream", e);
+        }
+    }
+
+    /** Mostly incompressible, so the deflate output is larger than one 8 KB drain */
+    static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] encode(byte[]... chunks) {
+        GzipEncoder encoder = new GzipEncoder(6, System::nanoTime);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            for (byte[] chunk : chunks) {
+                out.writeBytes(encoder.encode(DefaultDataBufferFactory.sharedInstance.wrap(chunk)));
+            }
+            out.writeBytes(encoder.finish());
+        } finally {
+            encoder.end();
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void encode_SingleBuffer_RoundTrips() {
+        byte[] body = "{\"lines\":[1,2,3]}".repeat(100).getBytes(StandardCharsets.UTF_8);
+
+        byte[] gzip = encode(body);
+
+        assertArrayEquals(body, gunzip(gzip));
+        assertTrue(gzip.length < body.length);
+    }
+
+    @Test
+    void encode_ManyChunks_RoundTripsAsOneStream() {
+        byte[] first = "{\"type\":\"FeatureCollection\",".getBytes(StandardCharsets.UTF_8);
+        byte[] second = "\"features\":[]".getBytes(StandardCharsets.UTF_8);
+        byte[] third = "}".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals("{\"type\":\"FeatureCollection\",\"features\":[]}",
+                new String(gunzip(encode(first, second, third)), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void encode_EmptyBody_IsAValidEmptyStream() {
+        assertEquals(0, gunzip(encode()).length);
+        assertEquals(0, gunzip(encode(new byte[0])).length);
+    }
+
+    @Test
+    void encode_LargerThanTheDrainBuffer_RoundTrips() {
+        byte[] big = randomBytes(100_000);
+        byte[] compressible = "0123456789".repeat(5_000).getBytes(StandardCharsets.UTF_8);
+
+        assertArrayEquals(big, gunzip(encode(big)));
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.writeBytes(compressible);
+        expected.writeBytes(big);
+        expected.writeBytes(compressible);
+        assertArrayEquals(expected.toByteArray(), gunzip(encode(compressible, big, compressible)));
+    }
+}
@@ -0,0 +1,94 @@
+package com.smarttransit.gateway;
+
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.circuitbreaker.resilience4j.ReactiveResilience4JCircuitBreakerFactory;
+import org.springframework.cloud.circuitbreaker.resilience4j.Resilience4JConfigBuilder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HomeScreenControllerTest {
+
+    private final AtomicInteger backendStatus = new AtomicInteger(200);
+    private ReactiveResilience4JCircuitBreakerFactory circuitBreakers;
+    private HomeScreenController controller;
+
+    @BeforeEach
+    void setUp() {
+        WebClient.Builder webClient = WebClient.builder().exchangeFunction(request -> Mono.just(
+                ClientResponse.create(HttpStatus.valueOf(backendStatus.get()))
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .body("{\"plans\":[]}")
+                        .build()));
+        circuitBreakers = new ReactiveResilience4JCircuitBreakerFactory(
+                CircuitBreakerRegistry.ofDefaults(), TimeLimiterRegistry.ofDefaults());
+        circuitBreakers.configureDefault(id -> new Resilience4JConfigBuilder(id)
+                .circuitBreakerConfig(CircuitBreakerConfig.custom().slidingWindowSize(4).minimumNumberOfCalls(4).build())
+                .timeLimiterConfig(TimeLimiterConfig.custom().timeoutDuration(Duration.ofSeconds(5)).build())
+                .build());
+        controller = new HomeScreenController(webClient, circuitBreakers, BulkheadRegistry.ofDefaults(),
+                new SimpleMeterRegistry(), new MockEnvironment(), 1500);
+    }
+
+    private ResponseEntity<Map<String, Object>> home() {
+        return controller.home(List.of("plans"),
+                MockServerWebExchange.from(MockServerHttpRequest.get(HomeScreenController.PATH))).block();
+    }
+
+    private CircuitBreaker.State breakerState() {
+        return circuitBreakers.getCircuitBreakerRegistry().circuitBreaker("subscription-service").getState();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String sectionError(ResponseEntity<Map<String, Object>> response) {
+        Map<String, Object> errors = (Map<String, Object>) response.getBody().get("errors");
+        Map<String, Object> plans = (Map<String, Object>) errors.get("plans");
+        return plans == null ? null : (String) plans.get("error");
+    }
+
+    @Test
+    void clientErrors_FailTheSectionButNotTheBreaker() {
+        backendStatus.set(404);
+        for (int i = 0; i < 10; i++) {
+            assertEquals("http_404", sectionError(home()));
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breakerState());
+
+        backendStatus.set(200);
+        ResponseEntity<Map<String, Object>> response = home();
+        assertNull(sectionError(response));
+        assertNotNull(response.getBody().get("plans"));
+    }
+
+    @Test
+    void serverErrors_OpenTheBreaker() {
+        backendStatus.set(500);
+        for (int i = 0; i < 4; i++) {
+            assertEquals("http_500", sectionError(home()));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breakerState());
+        assertEquals("circuit_open", sectionError(home()));
+    }
+}
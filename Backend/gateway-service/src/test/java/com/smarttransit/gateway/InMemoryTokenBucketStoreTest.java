@@ -0,0 +1,53 @@
+package com.smarttransit.gateway;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryTokenBucketStoreTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void consume_BurstThenReject() {
+        InMemoryTokenBucketStore store = new InMemoryTokenBucketStore(100, meterRegistry);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(store.consume("a", 3, 1, 1).allowed());
+        }
+        TokenBucketStore.Result rejected = store.consume("a", 3, 1, 1);
+        assertFalse(rejected.allowed());
+        assertTrue(rejected.retryAfterMillis() > 0);
+    }
+
+    @Test
+    void consume_AtCapacity_KeepsThrottledBucketsAndEvictsTheFullest() {
+        InMemoryTokenBucketStore store = new InMemoryTokenBucketStore(2, meterRegistry);
+        // "drained" is throttled, "light" has used one token of a thousand
+        for (int i = 0; i < 3; i++) {
+            store.consume("drained", 3, 0.001, 1);
+        }
+        store.consume("light", 1000, 0.001, 1);
+
+        // A new key still gets a bucket, and the throttled client stays throttled
+        assertTrue(store.consume("new", 3, 0.001, 1).allowed());
+        assertEquals(2, store.size());
+        assertFalse(store.consume("drained", 3, 0.001, 1).allowed());
+        assertEquals(1.0, meterRegistry.get("gateway.ratelimit.evicted").counter().count());
+    }
+
+    @Test
+    void constructor_NoBuckets_Rejected() {
+        assertThrows(IllegalArgumentException.class, () -> new InMemoryTokenBucketStore(0, meterRegistry));
+    }
+
+    @Test
+    void consume_CapacityOfOne_ReplacesTheOnlyBucket() {
+        InMemoryTokenBucketStore store = new InMemoryTokenBucketStore(1, meterRegistry);
+        store.consume("first", 3, 0.001, 1);
+
+        assertTrue(store.consume("second", 3, 0.001, 1).allowed());
+        assertEquals(1, store.size());
+        assertEquals(1.0, meterRegistry.get("gateway.ratelimit.evicted").counter().count());
+    }
+}
@@ -0,0 +1,180 @@
+package com.smarttransit.gateway;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.time.Instant;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtAuthenticationFilterTest {
+
+    private final KeyPair signingKey = JwtVerificationKeysTest.rsaKeyPair();
+    private final AtomicReference<ServerWebExchange> forwarded = new AtomicReference<>();
+    private final GatewayFilterChain chain = exchange -> {
+        forwarded.set(exchange);
+        return Mono.empty();
+    };
+    private RevokedTokenSet revokedTokenSet;
+    private JwtAuthenticationFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        JwtVerificationKeys keys = new JwtVerificationKeys(
+                JwtVerificationKeysTest.serving(new AtomicReference<>(JwtVerificationKeysTest.jwks("k1", signingKey.getPublic())),
+                        new AtomicInteger()),
+                objectMapper, "http://auth-service/.well-known/jwks.json", 300, 2000);
+        revokedTokenSet = new RevokedTokenSet(WebClient.builder(),
+                objectMapper, "http://auth-service/api/auth/revocations", "key", 5000);
+        filter = new JwtAuthenticationFilter(keys, revokedTokenSet, objectMapper, new SimpleMeterRegistry(), true,
+                List.of("/auth-service/**"),
+                List.of("/auth-service/api/auth/revocations", "/trip-service/api/gtfs/**"));
+    }
+
+    private String token(PrivateKey key, Instant issuedAt, Instant expiresAt) {
+        return Jwts.builder()
+                .setHeaderParam("kid", "k1")
+                .setSubject("rider@example.com")
+                .claim("userId", 42)
+                .claim("roles", List.of("PASSENGER"))
+                .claim("tokenType", "ACCESS")
+                .setIssuedAt(Date.from(issuedAt))
+                .setExpiration(Date.from(expiresAt))
+                .signWith(key, SignatureAlgorithm.RS256)
+                .compact();
+    }
+
+    private String validToken() {
+        Instant now = Instant.now();
+        return token(signingKey.getPrivate(), now.minusSeconds(60), now.plusSeconds(900));
+    }
+
+    private MockServerWebExchange send(MockServerHttpRequest.BaseBuilder<?> request) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        filter.filter(exchange, chain).block();
+        return exchange;
+    }
+
+    private static MockServerHttpRequest.BaseBuilder<?> get(String path, String token) {
+        return MockServerHttpRequest.get(path).header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+    }
+
+    @Test
+    void filter_ValidToken_ForwardsTheIdentityInsteadOfTheToken() {
+        MockServerWebExchange exchange = send(get("/trip-service/api/trips", validToken())
+                .header(JwtAuthenticationFilter.USER_ID_HEADER, "7")
+                .header(JwtAuthenticationFilter.USER_ROLES_HEADER, "ADMIN"));
+
+        ServerHttpRequest request = forwarded.get().getRequest();
+        assertEquals("42", request.getHeaders().getFirst(JwtAuthenticationFilter.USER_ID_HEADER));
+        assertEquals(List.of("PASSENGER"), request.getHeaders().get(JwtAuthenticationFilter.USER_ROLES_HEADER));
+        assertEquals("rider@example.com", request.getHeaders().getFirst(JwtAuthenticationFilter.USER_EMAIL_HEADER));
+        assertNull(request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION));
+        assertEquals(42L, exchange.<Long>getAttribute(JwtAuthenticationFilter.USER_ID_ATTR));
+    }
+
+    @Test
+    void filter_KeepTokenPath_KeepsTheToken() {
+        String token = validToken();
+        send(get("/auth-service/api/auth/logout", token));
+
+        assertEquals("Bearer " + token, forwarded.get().getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION));
+    }
+
+    @Test
+    void filter_ExpiredToken_Rejected() {
+        Instant now = Instant.now();
+        MockServerWebExchange exchange = send(get("/trip-service/api/trips",
+                token(signingKey.getPrivate(), now.minusSeconds(1000), now.minusSeconds(100))));
+
+        assertEquals(HttpStatus.UNAUTHORIZED, exchange.getResponse().getStatusCode());
+        assertNull(forwarded.get());
+    }
+
+    @Test
+    void filter_BadSignature_Rejected() {
+        Instant now = Instant.now();
+        String forged = token(JwtVerificationKeysTest.rsaKeyPair().getPrivate(), now, now.plusSeconds(900));
+        MockServerWebExchange exchange = send(get("/trip-service/api/trips", forged));
+
+        assertEquals(HttpStatus.UNAUTHORIZED, exchange.getResponse().getStatusCode());
+        assertNull(forwarded.get());
+    }
+
+    @Test
+    void filter_RevokedToken_Rejected() {
+        String token = validToken();
+        revokedTokenSet.apply("{\"tokenHashes\":[\"" + sha256Hex(token) + "\"],\"userCutoffs\":{}}");
+
+        assertEquals(HttpStatus.UNAUTHORIZED, send(get("/trip-service/api/trips", token)).getResponse().getStatusCode());
+        assertNull(forwarded.get());
+    }
+
+    @Test
+    void filter_UserLoggedOutEverywhere_RejectsTokensIssuedBefore() {
+        Instant now = Instant.now();
+        String before = token(signingKey.getPrivate(), now.minusSeconds(120), now.plusSeconds(900));
+        String after = token(signingKey.getPrivate(), now.plusSeconds(1), now.plusSeconds(900));
+        revokedTokenSet.apply("{\"tokenHashes\":[],\"userCutoffs\":{\"42\":" + now.minusSeconds(60).getEpochSecond() + "}}");
+
+        assertEquals(HttpStatus.UNAUTHORIZED, send(get("/trip-service/api/trips", before)).getResponse().getStatusCode());
+        assertNull(forwarded.get());
+        send(get("/trip-service/api/trips", after));
+        assertNotNull(forwarded.get());
+    }
+
+    @Test
+    void filter_NoToken_DropsClientIdentityHeaders() {
+        send(MockServerHttpRequest.get("/trip-service/api/trips")
+                .header(JwtAuthenticationFilter.USER_ID_HEADER, "1")
+                .header(JwtAuthenticationFilter.USER_EMAIL_HEADER, "admin@example.com")
+                .header(JwtAuthenticationFilter.USER_ROLES_HEADER, "ADMIN"));
+
+        HttpHeaders headers = forwarded.get().getRequest().getHeaders();
+        assertFalse(headers.containsKey(JwtAuthenticationFilter.USER_ID_HEADER));
+        assertFalse(headers.containsKey(JwtAuthenticationFilter.USER_EMAIL_HEADER));
+        assertFalse(headers.containsKey(JwtAuthenticationFilter.USER_ROLES_HEADER));
+    }
+
+    @Test
+    void filter_InternalPath_NotFound() {
+        MockServerWebExchange revocations = send(get("/auth-service/api/auth/revocations", validToken()));
+        MockServerWebExchange gtfs = send(MockServerHttpRequest.post("/trip-service/api/gtfs/import"));
+
+        assertEquals(HttpStatus.NOT_FOUND, revocations.getResponse().getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, gtfs.getResponse().getStatusCode());
+        assertNull(forwarded.get());
+    }
+
+    private static String sha256Hex(String token) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.smarttransit.gateway;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtVerificationKeysTest {
+
+    static KeyPair rsaKeyPair() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            return generator.generateKeyPair();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A JWKS document with the given kid / key pairs, as auth-service publishes it
+     */
+    static String jwks(Object... kidsAndKeys) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        StringBuilder keys = new StringBuilder();
+        for (int i = 0; i < kidsAndKeys.length; i += 2) {
+            RSAPublicKey key = (RSAPublicKey) kidsAndKeys[i + 1];
+            keys.append(i == 0 ? "" : ",").append("{\"kty\":\"RSA\",\"alg\":\"RS256\",\"use\":\"sig\",\"kid\":\"")
+                    .append(kidsAndKeys[i]).append("\",\"n\":\"")
+                    .append(encoder.encodeToString(key.getModulus().toByteArray())).append("\",\"e\":\"")
+                    .append(encoder.encodeToString(key.getPublicExponent().toByteArray())).append("\"}");
+        }
+        return "{\"keys\":[" + keys + "]}";
+    }
+
+    /**
+     * A WebClient answering every request with the current document, counting the requests
+     */
+    static WebClient.Builder serving(AtomicReference<String> document, AtomicInteger requests) {
+        return WebClient.builder().exchangeFunction(request -> {
+            requests.incrementAndGet();
+            return Mono.just(ClientResponse.create(HttpStatus.OK)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body(document.get())
+                    .build());
+        });
+    }
+
+    private final PublicKey first = rsaKeyPair().getPublic();
+    private final PublicKey rotated = rsaKeyPair().getPublic();
+    private final AtomicReference<String> document = new AtomicReference<>();
+    private final AtomicInteger fetches = new AtomicInteger();
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+    private JwtVerificationKeys keys;
+
+    @BeforeEach
+    void setUp() {
+        document.set(jwks("k1", first));
+        keys = new JwtVerificationKeys(serving(document, fetches), new ObjectMapper(),
+                "http://auth-service/.well-known/jwks.json", 300, 2000, now::get);
+    }
+
+    private void advanceSeconds(long seconds) {
+        now.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+    @Test
+    void find_KnownKid_FetchesOnceThenServesFromCache() {
+        assertEquals(first, keys.find("k1").block());
+        advanceSeconds(60);
+        assertEquals(first, keys.find("k1").block());
+        assertEquals(first, keys.cached("k1"));
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    void find_UnknownKid_RefetchesAtMostOncePerInterval() {
+        assertEquals(first, keys.find("k1").block());
+        document.set(jwks("k1", first, "k2", rotated));
+
+        // Right after a fetch an unknown kid does not trigger another one
+        assertNull(keys.find("k2").block());
+        assertNull(keys.find("k3").block());
+        assertEquals(1, fetches.get());
+
+        // Five seconds later it does, and the rotated key is found
+        advanceSeconds(5);
+        assertEquals(rotated, keys.find("k2").block());
+        assertEquals(2, fetches.get());
+
+        // A kid that is still unknown stays throttled
+        assertNull(keys.find("k3").block());
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void find_ExpiredKeySet_ServedWhileReloading() {
+        assertEquals(first, keys.find("k1").block());
+        document.set(jwks("k2", rotated));
+        advanceSeconds(301);
+
+        // The stale key still answers; the reload replaces the set behind it
+        assertEquals(first, keys.find("k1").block());
+        assertEquals(2, fetches.get());
+        assertNull(keys.cached("k1"));
+        assertEquals(rotated, keys.cached("k2"));
+    }
+}
@@ -0,0 +1,138 @@
+package com.smarttransit.gateway;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Flux;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LatencyAwareLoadBalancerTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final ServiceInstance fast = instance("10.0.0.1");
+    private final ServiceInstance medium = instance("10.0.0.2");
+    private final ServiceInstance slow = instance("10.0.0.3");
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+    private UpstreamInstanceStats stats;
+
+    @BeforeEach
+    void setUp() {
+        stats = new UpstreamInstanceStats(new SimpleMeterRegistry(), 10_000, 50, 5, 30_000, 300_000, 600_000, now::get);
+    }
+
+    private static ServiceInstance instance(String host) {
+        return new DefaultServiceInstance(host, "trip-service", host, 8080, false);
+    }
+
+    private static String key(ServiceInstance instance) {
+        return UpstreamInstanceStats.key(instance.getHost(), instance.getPort());
+    }
+
+    @SuppressWarnings("unchecked")
+    private LatencyAwareLoadBalancer balancer(ServiceInstance... instances) {
+        ServiceInstanceListSupplier supplier = new ServiceInstanceListSupplier() {
+            @Override
+            public String getServiceId() {
+                return "trip-service";
+            }
+
+            @Override
+            public Flux<List<ServiceInstance>> get() {
+                return Flux.just(List.of(instances));
+            }
+        };
+        ObjectProvider<ServiceInstanceListSupplier> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable(any())).thenReturn(supplier);
+        return new LatencyAwareLoadBalancer(provider, "trip-service", stats);
+    }
+
+    private ServiceInstance choose(LatencyAwareLoadBalancer balancer) {
+        Response<ServiceInstance> response = balancer.choose(new DefaultRequest<>()).block();
+        return response.hasServer() ? response.getServer() : null;
+    }
+
+    private void answered(ServiceInstance instance, long millis) {
+        stats.callStarted(key(instance));
+        stats.callFinished(key(instance), millis * MS, false);
+    }
+
+    private void eject(ServiceInstance instance) {
+        for (int i = 0; i < 5; i++) {
+            stats.callStarted(key(instance));
+            stats.callFinished(key(instance), MS, true);
+        }
+    }
+
+    @Test
+    void choose_TwoOfThree_NeverPicksTheSlowest() {
+        answered(fast, 60);
+        answered(medium, 100);
+        answered(slow, 1000);
+        LatencyAwareLoadBalancer balancer = balancer(fast, medium, slow);
+
+        Set<ServiceInstance> chosen = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            chosen.add(choose(balancer));
+        }
+
+        // The slowest loses every comparison; the middle one wins whenever it is drawn with the slowest
+        assertEquals(Set.of(fast, medium), chosen);
+    }
+
+    @Test
+    void choose_TwoInstances_PicksTheLowerLatencyTimesCallsInFlight() {
+        answered(fast, 60);
+        answered(medium, 150);
+        LatencyAwareLoadBalancer balancer = balancer(fast, medium);
+        assertEquals(fast, choose(balancer));
+
+        // 60 ms with three calls waiting costs more than 150 ms with none
+        stats.callStarted(key(fast));
+        stats.callStarted(key(fast));
+        stats.callStarted(key(fast));
+        assertEquals(medium, choose(balancer));
+    }
+
+    @Test
+    void choose_EjectedInstance_Skipped() {
+        answered(fast, 60);
+        answered(slow, 1000);
+        eject(fast);
+        LatencyAwareLoadBalancer balancer = balancer(fast, slow);
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(slow, choose(balancer));
+        }
+    }
+
+    @Test
+    void choose_EveryInstanceEjected_StillPicksOne() {
+        eject(fast);
+        eject(slow);
+        LatencyAwareLoadBalancer balancer = balancer(fast, slow);
+
+        assertNotNull(choose(balancer));
+    }
+
+    @Test
+    void choose_NoInstances_EmptyResponse() {
+        assertNull(choose(balancer()));
+    }
+}
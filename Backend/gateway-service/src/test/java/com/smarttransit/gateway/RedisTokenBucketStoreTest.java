@@ -0,0 +1,122 @@
+package com.smarttransit.gateway;
+
+import com.github.fppt.jedismock.RedisServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * scripts/token-bucket.lua run by an in-process Redis-protocol server
+ */
+class RedisTokenBucketStoreTest {
+
+    private static RedisServer server;
+    private static LettuceConnectionFactory connectionFactory;
+    private static ReactiveStringRedisTemplate redisTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private RedisTokenBucketStore store;
+
+    @BeforeAll
+    static void startServer() throws IOException {
+        server = RedisServer.newRedisServer().start();
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(server.getHost(), server.getBindPort()));
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new ReactiveStringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void stopServer() throws IOException {
+        connectionFactory.destroy();
+        server.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate.execute(connection -> connection.serverCommands().flushAll()).blockLast();
+        meterRegistry = new SimpleMeterRegistry();
+        // A generous timeout: these tests are about the script, not the fallback
+        store = new RedisTokenBucketStore(redisTemplate, new InMemoryTokenBucketStore(100, meterRegistry),
+                meterRegistry, 2000, 5000);
+    }
+
+    private TokenBucketStore.Result consume(String key, long capacity, double refillPerSecond) {
+        return store.tryConsume(key, capacity, refillPerSecond, 1).block();
+    }
+
+    @Test
+    void burst_AllowsCapacityThenRejectsWithRetryAfter() {
+        for (int i = 4; i >= 0; i--) {
+            TokenBucketStore.Result result = consume("burst", 5, 1);
+            assertTrue(result.allowed());
+            assertEquals(i, result.remaining());
+        }
+
+        TokenBucketStore.Result rejected = consume("burst", 5, 1);
+        assertFalse(rejected.allowed());
+        assertEquals(0, rejected.remaining());
+        assertTrue(rejected.retryAfterMillis() > 0 && rejected.retryAfterMillis() <= 1000,
+                "retry after " + rejected.retryAfterMillis());
+        // Another key has its own bucket
+        assertTrue(consume("other", 5, 1).allowed());
+        assertEquals(0.0, meterRegistry.get("gateway.ratelimit.store.fallback").counter().count());
+    }
+
+    @Test
+    void refill_AddsTokensAtTheConfiguredRateUpToCapacity() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(consume("refill", 3, 10).allowed());
+        }
+        assertFalse(consume("refill", 3, 10).allowed());
+
+        // 10 tokens/s: one is back after 100 ms
+        Thread.sleep(150);
+        TokenBucketStore.Result afterOne = consume("refill", 3, 10);
+        assertTrue(afterOne.allowed());
+
+        // Never above capacity, however long the wait
+        Thread.sleep(600);
+        TokenBucketStore.Result full = consume("refill", 3, 10);
+        assertTrue(full.allowed());
+        assertEquals(2, full.remaining());
+    }
+
+    @Test
+    void expiry_BucketKeyLivesUntilItWouldBeFullAgain() {
+        consume("expiry", 10, 2);
+        consume("expiry", 10, 2);
+
+        // 2 tokens short at 2/s: full in 1 s, plus the script's 1 s margin
+        Duration ttl = redisTemplate.getExpire("rate-limit:expiry").block();
+        assertNotNull(ttl);
+        assertTrue(ttl.toMillis() > 1000 && ttl.toMillis() <= 2000, "ttl " + ttl);
+
+        // A full bucket is kept only for the margin
+        consume("expiry-full", 1000, 1000);
+        Duration shortTtl = redisTemplate.getExpire("rate-limit:expiry-full").block();
+        assertNotNull(shortTtl);
+        assertTrue(shortTtl.toMillis() <= 1001, "ttl " + shortTtl);
+    }
+
+    @Test
+    void expiry_ExpiredBucketStartsFullAgain() throws InterruptedException {
+        consume("expired", 1000, 1000);
+        assertEquals(Boolean.TRUE, redisTemplate.hasKey("rate-limit:expired").block());
+
+        Thread.sleep(1200);
+
+        assertEquals(Boolean.FALSE, redisTemplate.hasKey("rate-limit:expired").block());
+        assertEquals(999, consume("expired", 1000, 1000).remaining());
+    }
+}
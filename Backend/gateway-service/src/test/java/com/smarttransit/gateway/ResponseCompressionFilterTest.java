@@ -0,0 +1,144 @@
+package com.smarttransit.gateway;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCompressionFilterTest {
+
+    private static final byte[] JSON = "{\"stop\":\"Casa Port\",\"lines\":[1,2,3]}".repeat(100)
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final ResponseCompressionFilter filter = new ResponseCompressionFilter(new SimpleMeterRegistry(),
+            true, 1024, 65536, 6, new String[]{"application/json", "text/plain"});
+
+    /**
+     * Runs the filter in front of a backend that sets up the response and writes the body
+     */
+    private MockServerWebExchange respond(Consumer<ServerHttpResponse> backend,
+                                          Publisher<? extends DataBuffer> body) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/route-service/api/v1/lines")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"));
+        GatewayFilterChain chain = forwarded -> {
+            ServerHttpResponse response = forwarded.getResponse();
+            response.setStatusCode(HttpStatus.OK);
+            response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            backend.accept(response);
+            return response.writeWith(body);
+        };
+        filter.filter(exchange, chain).block();
+        return exchange;
+    }
+
+    private static DataBuffer buffer(byte[] bytes) {
+        return DefaultDataBufferFactory.sharedInstance.wrap(bytes);
+    }
+
+    private static byte[] body(MockServerWebExchange exchange) {
+        return DataBufferUtils.join(exchange.getResponse().getBody())
+                .map(joined -> {
+                    byte[] bytes = new byte[joined.readableByteCount()];
+                    joined.read(bytes);
+                    DataBufferUtils.release(joined);
+                    return bytes;
+                })
+                .defaultIfEmpty(new byte[0])
+                .block();
+    }
+
+    @Test
+    void filter_BufferedBody_CompressedWithALength() {
+        MockServerWebExchange exchange = respond(response -> { }, Mono.just(buffer(JSON)));
+
+        HttpHeaders headers = exchange.getResponse().getHeaders();
+        byte[] gzip = body(exchange);
+        assertEquals("gzip", headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(gzip.length, headers.getContentLength());
+        assertTrue(headers.getVary().contains(HttpHeaders.ACCEPT_ENCODING));
+        assertArrayEquals(JSON, GzipEncoderTest.gunzip(gzip));
+    }
+
+    @Test
+    void filter_StreamedChunks_CompressedAsTheyArrive() {
+        byte[] big = GzipEncoderTest.randomBytes(100_000);
+        MockServerWebExchange exchange = respond(response -> { },
+                Flux.just(buffer(JSON), buffer(big), buffer(JSON)));
+
+        HttpHeaders headers = exchange.getResponse().getHeaders();
+        assertEquals("gzip", headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(-1, headers.getContentLength());
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.writeBytes(JSON);
+        expected.writeBytes(big);
+        expected.writeBytes(JSON);
+        assertArrayEquals(expected.toByteArray(), GzipEncoderTest.gunzip(body(exchange)));
+    }
+
+    @Test
+    void filter_EmptyStream_IsAValidEmptyGzipBody() {
+        MockServerWebExchange exchange = respond(response -> { }, Flux.empty());
+
+        assertEquals("gzip", exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(0, GzipEncoderTest.gunzip(body(exchange)).length);
+    }
+
+    @Test
+    void filter_BelowTheThreshold_PassesThrough() {
+        byte[] small = "{\"ok\":true}".getBytes(StandardCharsets.UTF_8);
+
+        MockServerWebExchange buffered = respond(response -> { }, Mono.just(buffer(small)));
+        MockServerWebExchange declared = respond(response -> response.getHeaders().setContentLength(small.length),
+                Flux.just(buffer(small)));
+
+        for (MockServerWebExchange exchange : new MockServerWebExchange[]{buffered, declared}) {
+            assertNull(exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+            assertArrayEquals(small, body(exchange));
+        }
+    }
+
+    @Test
+    void filter_AlreadyEncoded_PassesThrough() {
+        MockServerWebExchange exchange = respond(response -> response.getHeaders().set(HttpHeaders.CONTENT_ENCODING, "br"),
+                Mono.just(buffer(JSON)));
+
+        assertEquals("br", exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertArrayEquals(JSON, body(exchange));
+    }
+
+    @Test
+    void filter_NoContentAndNotModified_PassThrough() {
+        for (HttpStatus status : new HttpStatus[]{HttpStatus.NO_CONTENT, HttpStatus.NOT_MODIFIED}) {
+            MockServerWebExchange exchange = respond(response -> response.setStatusCode(status), Flux.just(buffer(JSON)));
+
+            assertNull(exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+            assertEquals(status, exchange.getResponse().getStatusCode());
+        }
+    }
+
+    @Test
+    void filter_StrongEtag_BecomesWeak() {
+        MockServerWebExchange strong = respond(response -> response.getHeaders().setETag("\"v1\""), Mono.just(buffer(JSON)));
+        MockServerWebExchange weak = respond(response -> response.getHeaders().setETag("W/\"v2\""), Mono.just(buffer(JSON)));
+
+        assertEquals("W/\"v1\"", strong.getResponse().getHeaders().getETag());
+        assertEquals("W/\"v2\"", weak.getResponse().getHeaders().getETag());
+    }
+}
@@ -0,0 +1,138 @@
+package com.smarttransit.gateway;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpstreamInstanceStatsTest {
+
+    private static final String KEY = "10.0.0.1:8080";
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+    private UpstreamInstanceStats stats;
+
+    @BeforeEach
+    void setUp() {
+        // decay 10 s, initial latency 50 ms, eject after 5 failures for 30 s doubling up to 100 s, idle 600 s
+        stats = new UpstreamInstanceStats(new SimpleMeterRegistry(), 10_000, 50, 5, 30_000, 100_000, 600_000, now::get);
+    }
+
+    private void advanceMillis(long millis) {
+        now.addAndGet(millis * MS);
+    }
+
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            stats.callStarted(KEY);
+            stats.callFinished(KEY, 5 * MS, true);
+        }
+    }
+
+    private void succeed() {
+        stats.callStarted(KEY);
+        stats.callFinished(KEY, 5 * MS, false);
+    }
+
+    private long ejectedForMs() {
+        return ((Number) stats.describe().get(KEY).get("ejectedForMs")).longValue();
+    }
+
+    @Test
+    void score_UnknownInstance_IsTheInitialLatency() {
+        assertEquals(50 * MS, stats.score(KEY));
+    }
+
+    @Test
+    void score_SlowerSample_TakenAtOnce() {
+        stats.callStarted(KEY);
+        stats.callFinished(KEY, 200 * MS, false);
+
+        assertEquals(200 * MS, stats.score(KEY), 1);
+    }
+
+    @Test
+    void score_FasterSamplesAndIdleTime_DecayWithTheTimeConstant() {
+        stats.callStarted(KEY);
+        stats.callFinished(KEY, 200 * MS, false);
+
+        // Idle for one time constant
+        advanceMillis(10_000);
+        assertEquals(200 * MS * Math.exp(-1), stats.score(KEY), 1);
+
+        // A faster sample is weighted by how long ago the last one was
+        stats.callStarted(KEY);
+        stats.callFinished(KEY, 10 * MS, false);
+        assertEquals(200 * MS * Math.exp(-1) + 10 * MS * (1 - Math.exp(-1)), stats.score(KEY), 1);
+    }
+
+    @Test
+    void score_CallsInFlight_MultiplyTheLatency() {
+        stats.callStarted(KEY);
+        stats.callFinished(KEY, 100 * MS, false);
+        stats.callStarted(KEY);
+        stats.callStarted(KEY);
+
+        assertEquals(300 * MS, stats.score(KEY), 1);
+    }
+
+    @Test
+    void callFinished_FailureThreshold_EjectsUntilTheEjectionEnds() {
+        fail(4);
+        assertFalse(stats.isEjected(KEY));
+
+        fail(1);
+        assertTrue(stats.isEjected(KEY));
+        assertEquals(30_000, ejectedForMs());
+
+        advanceMillis(29_999);
+        assertTrue(stats.isEjected(KEY));
+        advanceMillis(1);
+        assertFalse(stats.isEjected(KEY));
+    }
+
+    @Test
+    void callFinished_EjectionsInARow_DoubleUpToTheMaximum() {
+        fail(5);
+        assertEquals(30_000, ejectedForMs());
+        advanceMillis(30_000);
+
+        fail(5);
+        assertEquals(60_000, ejectedForMs());
+        advanceMillis(60_000);
+
+        fail(5);
+        assertEquals(100_000, ejectedForMs());
+    }
+
+    @Test
+    void callFinished_Success_ResetsFailuresAndBackoff() {
+        fail(4);
+        succeed();
+        fail(4);
+        assertFalse(stats.isEjected(KEY));
+
+        fail(1);
+        advanceMillis(30_000);
+        succeed();
+        fail(5);
+        assertEquals(30_000, ejectedForMs());
+    }
+
+    @Test
+    void callFinished_FastFailure_CountsAsTheLastKnownLatency() {
+        stats.callStarted(KEY);
+        stats.callFinished(KEY, 200 * MS, false);
+
+        // Idle decay lowered the score; a 5 ms failure must not lower it further
+        advanceMillis(10_000);
+        fail(1);
+
+        assertEquals(200 * MS, stats.score(KEY), 1);
+    }
+}
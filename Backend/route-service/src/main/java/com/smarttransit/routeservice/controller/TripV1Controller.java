@@ -2,7 +2,6 @@ package com.smarttransit.routeservice.controller;
 
 import com.smarttransit.routeservice.dto.RouteDto;
 import com.smarttransit.routeservice.service.RouteService;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -27,7 +26,7 @@ public class TripV1Controller {
     @GetMapping("/{tripId}")
     public ResponseEntity<Map<String, Object>> getTrip(@PathVariable String tripId,
                                                        @RequestParam(required = false) String date,
-                                                       @RequestHeader(value = "Authorization", required = false) String authorizationHeader) {
+                                                       @RequestHeader(value = "X-User-Id", required = false) String userId) {
         WebClient.RequestHeadersSpec<?> req = tripWebClient.get()
                 .uri(uriBuilder -> {
                     if (date != null && !date.isBlank()) {
@@ -37,8 +36,9 @@ public class TripV1Controller {
                 })
                 .accept(MediaType.APPLICATION_JSON);
 
-        if (authorizationHeader != null && !authorizationHeader.isBlank()) {
-            req = req.header(HttpHeaders.AUTHORIZATION, authorizationHeader);
+        // The identity the gateway verified; the token itself stops at the gateway
+        if (userId != null && !userId.isBlank()) {
+            req = req.header("X-User-Id", userId);
         }
 
         try {
@@ -9,25 +9,33 @@ import com.smarttransit.routeservice.dto.ValidateRouteResponse;
 import com.smarttransit.routeservice.dto.WalkingRouteRequest;
 import com.smarttransit.routeservice.dto.WalkingRouteResponse;
 import com.smarttransit.routeservice.service.RouteService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
-import java.time.LocalDateTime;
+import java.time.Duration;
 import java.util.*;
-import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/v1/routes")
 public class V1RoutesController {
 
+    private static final Logger log = LoggerFactory.getLogger(V1RoutesController.class);
+
     private final RouteService routeService;
+    private final WebClient tripWebClient;
 
-    public V1RoutesController(RouteService routeService) {
+    public V1RoutesController(RouteService routeService, WebClient tripWebClient) {
         this.routeService = routeService;
+        this.tripWebClient = tripWebClient;
     }
 
     @GetMapping("/search")
-    public ResponseEntity<TripsSearchResponse> search(
+    public ResponseEntity<?> search(
             @RequestParam(required = false) String from,
             @RequestParam(required = false) String to,
             @RequestParam(required = false) Double fromLat,
@@ -41,35 +49,48 @@ public class V1RoutesController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size
     ) {
-            List<TripSummaryDto> trips = new ArrayList<>();
-            TripSummaryDto t1 = new TripSummaryDto();
-            t1.setId(UUID.randomUUID().toString());
-            t1.setLineNumber("10A");
-            t1.setDepartureStation(from);
-            t1.setArrivalStation(to);
-            t1.setDepartureTime(LocalDateTime.now().plusMinutes(15).toString());
-            t1.setArrivalTime(LocalDateTime.now().plusMinutes(45).toString());
-            t1.setDurationMinutes(30);
-            t1.setPrice(2.5);
-            t1.setServices(java.util.Arrays.asList("wifi", "ac"));
-            t1.setAvailableSeats(12);
-            trips.add(t1);
-
-            TripSummaryDto t2 = new TripSummaryDto();
-            t2.setId(UUID.randomUUID().toString());
-            t2.setLineNumber("12B");
-            t2.setDepartureStation(from);
-            t2.setArrivalStation(to);
-            t2.setDepartureTime(LocalDateTime.now().plusMinutes(25).toString());
-            t2.setArrivalTime(LocalDateTime.now().plusMinutes(70).toString());
-            t2.setDurationMinutes(45);
-            t2.setPrice(3.0);
-            t2.setServices(java.util.Arrays.asList("ac"));
-            t2.setAvailableSeats(8);
-            trips.add(t2);
+        // Journeys are planned by trip-service, which owns the timetable
+        int limit = (Math.max(page, 0) + 1) * Math.max(size, 1);
+        try {
+            TripsSearchResponse planned = tripWebClient.get()
+                    .uri(uriBuilder -> uriBuilder.path("/api/v1/routes/search")
+                            .queryParamIfPresent("from", Optional.ofNullable(from))
+                            .queryParamIfPresent("to", Optional.ofNullable(to))
+                            .queryParamIfPresent("fromLat", Optional.ofNullable(fromLat))
+                            .queryParamIfPresent("fromLng", Optional.ofNullable(fromLng))
+                            .queryParamIfPresent("toLat", Optional.ofNullable(toLat))
+                            .queryParamIfPresent("toLng", Optional.ofNullable(toLng))
+                            .queryParamIfPresent("date", Optional.ofNullable(date))
+                            .queryParamIfPresent("time", Optional.ofNullable(time))
+                            .queryParamIfPresent("timeOption", Optional.ofNullable(timeOption))
+                            .queryParamIfPresent("passengers", Optional.ofNullable(passengers))
+                            .queryParam("limit", limit)
+                            .build())
+                    .accept(MediaType.APPLICATION_JSON)
+                    .retrieve()
+                    .bodyToMono(TripsSearchResponse.class)
+                    .timeout(Duration.ofSeconds(5))
+                    .block();
 
-            TripsSearchResponse resp = new TripsSearchResponse(trips);
-            return ResponseEntity.ok(resp);
+            List<TripSummaryDto> trips = planned != null && planned.getTrips() != null ? planned.getTrips() : List.of();
+            int first = Math.min(Math.max(page, 0) * Math.max(size, 1), trips.size());
+            return ResponseEntity.ok(new TripsSearchResponse(trips.subList(first, Math.min(first + Math.max(size, 1), trips.size()))));
+        } catch (WebClientResponseException ex) {
+            // trip-service rejecting the query (bad date, unknown stop...) is the caller's error, not an outage
+            if (ex.getStatusCode().is4xxClientError()) {
+                ResponseEntity.BodyBuilder response = ResponseEntity.status(ex.getStatusCode());
+                MediaType contentType = ex.getHeaders().getContentType();
+                if (contentType != null) {
+                    response.contentType(contentType);
+                }
+                return response.body(ex.getResponseBodyAsString());
+            }
+            log.warn("Journey search failed: trip-service answered {}", ex.getStatusCode());
+            return ResponseEntity.status(503).build();
+        } catch (Exception ex) {
+            log.warn("Journey search failed: {}", ex.toString());
+            return ResponseEntity.status(503).build();
+        }
     }
 
     @PostMapping("/validate")
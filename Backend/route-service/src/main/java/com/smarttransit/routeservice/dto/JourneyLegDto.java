@@ -0,0 +1,18 @@
+package com.smarttransit.routeservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JourneyLegDto {
+    private String mode; // BUS or WALK
+    private Long tripId;
+    private String lineNumber;
+    private String departureStation;
+    private String arrivalStation;
+    private String departureTime;
+    private String arrivalTime;
+}
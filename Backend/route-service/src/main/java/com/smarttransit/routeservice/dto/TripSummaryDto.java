@@ -18,4 +18,6 @@ public class TripSummaryDto {
     private Double price;
     private Integer availableSeats;
     private java.util.List<String> services;
+    private Integer transfers;
+    private java.util.List<JourneyLegDto> legs;
 }
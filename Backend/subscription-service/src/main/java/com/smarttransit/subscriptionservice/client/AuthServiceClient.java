@@ -1,6 +1,7 @@
 package com.smarttransit.subscriptionservice.client;
 
 import com.smarttransit.subscriptionservice.dto.TokenValidationResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
@@ -8,12 +9,21 @@ import reactor.core.publisher.Mono;
 @Component
 public class AuthServiceClient {
     private final WebClient.Builder webClientBuilder;
+    private final JwksTokenVerifier jwksTokenVerifier;
 
-    public AuthServiceClient(WebClient.Builder webClientBuilder) {
+    // "local" verifies RS256 tokens against the cached JWKS; "remote" always calls /api/auth/validate
+    @Value("${auth.token-verification.mode:local}")
+    private String verificationMode = "local";
+
+    public AuthServiceClient(WebClient.Builder webClientBuilder, JwksTokenVerifier jwksTokenVerifier) {
         this.webClientBuilder = webClientBuilder;
+        this.jwksTokenVerifier = jwksTokenVerifier;
     }
 
     public TokenValidationResponse validateToken(String token) {
+        if ("local".equalsIgnoreCase(verificationMode) && jwksTokenVerifier.canVerify(token)) {
+            return jwksTokenVerifier.verify(token);
+        }
         return webClientBuilder.build()
                 .post()
                 .uri("http://auth-service/api/auth/validate")
@@ -0,0 +1,231 @@
+package com.smarttransit.subscriptionservice.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smarttransit.subscriptionservice.dto.TokenValidationResponse;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Verifies auth-service access tokens locally against its published JWKS.
+ *
+ * The key set is fetched from /.well-known/jwks.json and kept for cache-ttl;
+ * a token whose kid is not in the cached set triggers one early refetch
+ * (at most every few seconds), which is how keys rotated in by auth-service
+ * are picked up. Once a set is loaded, an expired one keeps being served while
+ * it is refreshed in the background; fetches, failed ones included, are spaced
+ * by MIN_REFETCH and shared by all waiting threads. Revocation is not visible here: a revoked access token stays
+ * valid until its exp (15 minutes by default).
+ */
+@Component
+public class JwksTokenVerifier {
+
+    private static final Logger log = LoggerFactory.getLogger(JwksTokenVerifier.class);
+    private static final String ALGORITHM = "RS256";
+    private static final long MIN_REFETCH_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final WebClient.Builder webClientBuilder;
+    private final ObjectMapper objectMapper;
+    private final JwtParser parser;
+    private final LongSupplier clock;
+
+    @Value("${auth.jwks.uri:http://auth-service/.well-known/jwks.json}")
+    private String jwksUri = "http://auth-service/.well-known/jwks.json";
+
+    @Value("${auth.jwks.cache-ttl-seconds:300}")
+    private long cacheTtlSeconds = 300;
+
+    @Value("${auth.jwks.timeout-ms:2000}")
+    private long timeoutMillis = 2000;
+
+    private volatile Map<String, PublicKey> keys = Map.of();
+    private volatile long fetchedAtNanos;
+    private volatile long nextAttemptNanos;
+    private final AtomicReference<CompletableFuture<Map<String, PublicKey>>> inFlight = new AtomicReference<>();
+
+    @Autowired
+    public JwksTokenVerifier(WebClient.Builder webClientBuilder, ObjectMapper objectMapper) {
+        this(webClientBuilder, objectMapper, System::nanoTime);
+    }
+
+    JwksTokenVerifier(WebClient.Builder webClientBuilder, ObjectMapper objectMapper, LongSupplier clock) {
+        this.webClientBuilder = webClientBuilder;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.nextAttemptNanos = clock.getAsLong();
+        this.parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    @Override
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        return resolveKey(header);
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Whether the token is signed with a key pair at all; HS512 tokens issued
+     * before auth-service switched to RS256 can only be checked remotely
+     */
+    public boolean canVerify(String token) {
+        int dot = token == null ? -1 : token.indexOf('.');
+        if (dot <= 0) {
+            return false;
+        }
+        try {
+            JsonNode header = objectMapper.readTree(Base64.getUrlDecoder().decode(token.substring(0, dot)));
+            return ALGORITHM.equals(header.path("alg").asText());
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Signature, expiry and token type check; never throws
+     */
+    public TokenValidationResponse verify(String token) {
+        try {
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            if (!"ACCESS".equals(claims.get("tokenType", String.class))) {
+                return invalid();
+            }
+            Object userId = claims.get("userId");
+            @SuppressWarnings("unchecked")
+            List<String> roles = (List<String>) claims.get("roles");
+            return new TokenValidationResponse(true,
+                    userId == null ? null : Long.valueOf(userId.toString()),
+                    claims.getSubject(), roles);
+        } catch (JwtException | IllegalArgumentException | ClassCastException e) {
+            return invalid();
+        }
+    }
+
+    private Key resolveKey(JwsHeader<?> header) {
+        if (!ALGORITHM.equals(header.getAlgorithm())) {
+            throw new UnsupportedJwtException("Unsupported signing algorithm: " + header.getAlgorithm());
+        }
+        String kid = header.getKeyId();
+        Map<String, PublicKey> current = keys;
+        if (current.isEmpty()) {
+            current = await(refresh());
+        } else if (clock.getAsLong() - fetchedAtNanos > TimeUnit.SECONDS.toNanos(cacheTtlSeconds)) {
+            refresh(); // stale keys are served until the new set arrives
+        }
+        PublicKey key = current.get(kid);
+        if (key == null) {
+            key = await(refresh()).get(kid);
+        }
+        if (key == null) {
+            throw new UnsupportedJwtException("Unknown signing key: " + kid);
+        }
+        return key;
+    }
+
+    /**
+     * The running fetch, or a new one unless the last attempt (successful or not) was
+     * under MIN_REFETCH ago; null when throttled. No lock is held while fetching.
+     */
+    private CompletableFuture<Map<String, PublicKey>> refresh() {
+        CompletableFuture<Map<String, PublicKey>> running = inFlight.get();
+        if (running != null) {
+            return running;
+        }
+        long now = clock.getAsLong();
+        if (now - nextAttemptNanos < 0) {
+            return null;
+        }
+        CompletableFuture<Map<String, PublicKey>> fetch = new CompletableFuture<>();
+        if (!inFlight.compareAndSet(null, fetch)) {
+            return inFlight.get();
+        }
+        nextAttemptNanos = now + MIN_REFETCH_NANOS;
+        webClientBuilder.build()
+                .get()
+                .uri(jwksUri)
+                .retrieve()
+                .bodyToMono(String.class)
+                .timeout(Duration.ofMillis(timeoutMillis))
+                .toFuture()
+                .whenComplete((body, error) -> {
+                    try {
+                        if (error != null) {
+                            throw error;
+                        }
+                        keys = parseJwks(body);
+                        fetchedAtNanos = clock.getAsLong();
+                    } catch (Throwable e) {
+                        // Keep serving the previous key set; retried after MIN_REFETCH
+                        log.warn("Cannot fetch JWKS from {}: {}", jwksUri, e.getMessage());
+                    } finally {
+                        inFlight.set(null);
+                        fetch.complete(keys);
+                    }
+                });
+        return fetch;
+    }
+
+    /**
+     * Keys once the fetch has finished (the fetch has its own timeout), or the current ones
+     */
+    private Map<String, PublicKey> await(CompletableFuture<Map<String, PublicKey>> fetch) {
+        if (fetch == null) {
+            return keys;
+        }
+        try {
+            return fetch.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return keys;
+        } catch (ExecutionException | TimeoutException e) {
+            return keys;
+        }
+    }
+
+    private Map<String, PublicKey> parseJwks(String body) throws Exception {
+        KeyFactory factory = KeyFactory.getInstance("RSA");
+        Base64.Decoder decoder = Base64.getUrlDecoder();
+        Map<String, PublicKey> parsed = new HashMap<>();
+        for (JsonNode jwk : objectMapper.readTree(body.getBytes(StandardCharsets.UTF_8)).path("keys")) {
+            if (!"RSA".equals(jwk.path("kty").asText())) {
+                continue;
+            }
+            BigInteger modulus = new BigInteger(1, decoder.decode(jwk.path("n").asText()));
+            BigInteger exponent = new BigInteger(1, decoder.decode(jwk.path("e").asText()));
+            parsed.put(jwk.path("kid").asText(), factory.generatePublic(new RSAPublicKeySpec(modulus, exponent)));
+        }
+        return Map.copyOf(parsed);
+    }
+
+    private static TokenValidationResponse invalid() {
+        return new TokenValidationResponse(false, null, null, null);
+    }
+}
@@ -44,8 +44,9 @@ public class PublicSubscriptionController {
     }
 
     @GetMapping("/users/me/subscription")
-    public Map<String, SubscriptionSummaryDto> getMySubscription(@RequestHeader("Authorization") String authHeader) {
-        Long userId = extractUserId(authHeader);
+    public Map<String, SubscriptionSummaryDto> getMySubscription(@RequestHeader(value = "Authorization", required = false) String authHeader,
+                                                                 @RequestHeader(value = "X-User-Id", required = false) Long gatewayUserId) {
+        Long userId = extractUserId(gatewayUserId, authHeader);
         if (userId == null) return Map.of("subscription", null);
         Utilisateur u = utilisateurRepository.findById(userId).orElse(null);
         if (u == null) return Map.of("subscription", null);
@@ -67,9 +68,10 @@ public class PublicSubscriptionController {
     }
 
     @PostMapping("/subscriptions/change")
-    public ResponseEntity<ChangeSubscriptionResponse> change(@RequestHeader("Authorization") String authHeader,
+    public ResponseEntity<ChangeSubscriptionResponse> change(@RequestHeader(value = "Authorization", required = false) String authHeader,
+                                                             @RequestHeader(value = "X-User-Id", required = false) Long gatewayUserId,
                                                              @RequestBody ChangeRequest request) {
-        Long userId = extractUserId(authHeader);
+        Long userId = extractUserId(gatewayUserId, authHeader);
         if (userId == null) return ResponseEntity.ok(new ChangeSubscriptionResponse(false, null, "Unauthorized", null));
         String type = request.getPlanId();
         int duree = request.getPlanId().endsWith("year") ? 365 : 30;
@@ -81,8 +83,9 @@ public class PublicSubscriptionController {
     }
 
     @PostMapping("/subscriptions/cancel")
-    public Map<String, Object> cancel(@RequestHeader("Authorization") String authHeader) {
-        Long userId = extractUserId(authHeader);
+    public Map<String, Object> cancel(@RequestHeader(value = "Authorization", required = false) String authHeader,
+                                      @RequestHeader(value = "X-User-Id", required = false) Long gatewayUserId) {
+        Long userId = extractUserId(gatewayUserId, authHeader);
         if (userId == null) return Map.of("success", false, "message", "Unauthorized");
         Utilisateur u = utilisateurRepository.findById(userId).orElse(null);
         if (u == null) return Map.of("success", false, "message", "User not found");
@@ -93,7 +96,10 @@ public class PublicSubscriptionController {
         return Map.of("success", true, "message", "Subscription cancelled", "endDate", cancelled.getDateFin().toString());
     }
 
-    private Long extractUserId(String authHeader) {
+    // X-User-Id is set by the gateway after verifying the token (and stripped from client requests);
+    // calls that do not come through the gateway are checked against their own bearer token
+    private Long extractUserId(Long gatewayUserId, String authHeader) {
+        if (gatewayUserId != null) return gatewayUserId;
         if (authHeader == null || !authHeader.startsWith("Bearer ")) return null;
         String token = authHeader.substring(7);
         TokenValidationResponse resp = authClient.validateToken(token);
@@ -0,0 +1,84 @@
+package com.smarttransit.subscriptionservice.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smarttransit.subscriptionservice.dto.TokenValidationResponse;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.security.KeyPair;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuthServiceClientTest {
+
+    private final KeyPair signingKey = JwksTokenVerifierTest.rsaKeyPair();
+    private final List<URI> validateCalls = new CopyOnWriteArrayList<>();
+    private AuthServiceClient client;
+
+    @BeforeEach
+    void setUp() {
+        JwksTokenVerifier verifier = new JwksTokenVerifier(
+                JwksTokenVerifierTest.serving(new AtomicReference<>(JwksTokenVerifierTest.jwks("k1", signingKey.getPublic())),
+                        new AtomicInteger()),
+                new ObjectMapper());
+        WebClient.Builder authService = WebClient.builder().exchangeFunction(request -> {
+            validateCalls.add(request.url());
+            return Mono.just(ClientResponse.create(HttpStatus.OK)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body("{\"valid\":true,\"userId\":7,\"email\":\"legacy@example.com\",\"roles\":[\"PASSENGER\"]}")
+                    .build());
+        });
+        client = new AuthServiceClient(authService, verifier);
+    }
+
+    private static String hs512Token() {
+        return Jwts.builder()
+                .setSubject("legacy@example.com")
+                .claim("userId", 7)
+                .signWith(Keys.secretKeyFor(SignatureAlgorithm.HS512))
+                .compact();
+    }
+
+    @Test
+    void validateToken_Rs256Token_VerifiedLocally() {
+        TokenValidationResponse response = client.validateToken(JwksTokenVerifierTest.accessToken("k1", signingKey.getPrivate()));
+
+        assertTrue(response.isValid());
+        assertEquals(42L, response.getUserId());
+        assertTrue(validateCalls.isEmpty());
+    }
+
+    @Test
+    void validateToken_NonRs256Token_AsksAuthService() {
+        TokenValidationResponse response = client.validateToken(hs512Token());
+
+        assertTrue(response.isValid());
+        assertEquals(7L, response.getUserId());
+        assertEquals(List.of(URI.create("http://auth-service/api/auth/validate")), validateCalls);
+    }
+
+    @Test
+    void validateToken_RemoteMode_AsksAuthServiceForEveryToken() {
+        ReflectionTestUtils.setField(client, "verificationMode", "remote");
+
+        TokenValidationResponse response = client.validateToken(JwksTokenVerifierTest.accessToken("k1", signingKey.getPrivate()));
+
+        assertEquals(7L, response.getUserId());
+        assertEquals(1, validateCalls.size());
+    }
+}
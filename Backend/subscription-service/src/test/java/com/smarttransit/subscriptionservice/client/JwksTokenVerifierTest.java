@@ -0,0 +1,183 @@
+package com.smarttransit.subscriptionservice.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smarttransit.subscriptionservice.dto.TokenValidationResponse;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwksTokenVerifierTest {
+
+    static KeyPair rsaKeyPair() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            return generator.generateKeyPair();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A JWKS document with the given kid / key pairs, as auth-service publishes it
+     */
+    static String jwks(Object... kidsAndKeys) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        StringBuilder keys = new StringBuilder();
+        for (int i = 0; i < kidsAndKeys.length; i += 2) {
+            RSAPublicKey key = (RSAPublicKey) kidsAndKeys[i + 1];
+            keys.append(i == 0 ? "" : ",").append("{\"kty\":\"RSA\",\"alg\":\"RS256\",\"use\":\"sig\",\"kid\":\"")
+                    .append(kidsAndKeys[i]).append("\",\"n\":\"")
+                    .append(encoder.encodeToString(key.getModulus().toByteArray())).append("\",\"e\":\"")
+                    .append(encoder.encodeToString(key.getPublicExponent().toByteArray())).append("\"}");
+        }
+        return "{\"keys\":[" + keys + "]}";
+    }
+
+    /**
+     * A WebClient answering every request with the current document, counting the requests
+     */
+    static WebClient.Builder serving(AtomicReference<String> document, AtomicInteger requests) {
+        return WebClient.builder().exchangeFunction(request -> {
+            requests.incrementAndGet();
+            return Mono.just(ClientResponse.create(HttpStatus.OK)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body(document.get())
+                    .build());
+        });
+    }
+
+    /**
+     * An access token as auth-service issues it
+     */
+    static String accessToken(String kid, PrivateKey key) {
+        Instant now = Instant.now();
+        return Jwts.builder()
+                .setHeaderParam("kid", kid)
+                .setSubject("rider@example.com")
+                .claim("userId", 42)
+                .claim("roles", List.of("PASSENGER"))
+                .claim("tokenType", "ACCESS")
+                .setIssuedAt(Date.from(now.minusSeconds(60)))
+                .setExpiration(Date.from(now.plusSeconds(900)))
+                .signWith(key, SignatureAlgorithm.RS256)
+                .compact();
+    }
+
+    private final KeyPair first = rsaKeyPair();
+    private final KeyPair rotated = rsaKeyPair();
+    private final AtomicReference<String> document = new AtomicReference<>();
+    private final AtomicInteger fetches = new AtomicInteger();
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+    private JwksTokenVerifier verifier;
+
+    @BeforeEach
+    void setUp() {
+        document.set(jwks("k1", first.getPublic()));
+        verifier = new JwksTokenVerifier(serving(document, fetches), new ObjectMapper(), now::get);
+    }
+
+    private void advanceSeconds(long seconds) {
+        now.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+    @Test
+    void verify_KnownKid_FetchesOnceThenServesFromCache() {
+        String token = accessToken("k1", first.getPrivate());
+
+        TokenValidationResponse response = verifier.verify(token);
+        advanceSeconds(60);
+
+        assertTrue(response.isValid());
+        assertEquals(42L, response.getUserId());
+        assertEquals("rider@example.com", response.getEmail());
+        assertEquals(List.of("PASSENGER"), response.getRoles());
+        assertTrue(verifier.verify(token).isValid());
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    void verify_UnknownKid_RefetchesAtMostOncePerInterval() {
+        assertTrue(verifier.verify(accessToken("k1", first.getPrivate())).isValid());
+        document.set(jwks("k1", first.getPublic(), "k2", rotated.getPublic()));
+
+        // Right after a fetch an unknown kid does not trigger another one
+        assertFalse(verifier.verify(accessToken("k2", rotated.getPrivate())).isValid());
+        assertFalse(verifier.verify(accessToken("k3", rotated.getPrivate())).isValid());
+        assertEquals(1, fetches.get());
+
+        // Five seconds later it does, and the rotated key is found
+        advanceSeconds(5);
+        assertTrue(verifier.verify(accessToken("k2", rotated.getPrivate())).isValid());
+        assertEquals(2, fetches.get());
+
+        // A kid that is still unknown stays throttled
+        assertFalse(verifier.verify(accessToken("k3", rotated.getPrivate())).isValid());
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void verify_ExpiredKeySet_ServedWhileReloading() {
+        String token = accessToken("k1", first.getPrivate());
+        assertTrue(verifier.verify(token).isValid());
+        document.set(jwks("k2", rotated.getPublic()));
+        advanceSeconds(301);
+
+        // The stale key still answers; the reload replaces the set behind it
+        assertTrue(verifier.verify(token).isValid());
+        assertEquals(2, fetches.get());
+        assertFalse(verifier.verify(token).isValid());
+        assertTrue(verifier.verify(accessToken("k2", rotated.getPrivate())).isValid());
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void verify_KeySetUnreachable_TokenInvalid() {
+        WebClient.Builder failing = WebClient.builder().exchangeFunction(request -> {
+            fetches.incrementAndGet();
+            return Mono.just(ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build());
+        });
+        verifier = new JwksTokenVerifier(failing, new ObjectMapper(), now::get);
+
+        assertFalse(verifier.verify(accessToken("k1", first.getPrivate())).isValid());
+        assertFalse(verifier.verify(accessToken("k1", first.getPrivate())).isValid());
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    void canVerify_OnlyRs256Tokens() {
+        String hs512 = Jwts.builder()
+                .setSubject("rider@example.com")
+                .signWith(Keys.secretKeyFor(SignatureAlgorithm.HS512))
+                .compact();
+
+        assertTrue(verifier.canVerify(accessToken("k1", first.getPrivate())));
+        assertFalse(verifier.canVerify(hs512));
+        assertFalse(verifier.canVerify("not-a-token"));
+        assertFalse(verifier.canVerify(null));
+        assertEquals(0, fetches.get());
+    }
+}
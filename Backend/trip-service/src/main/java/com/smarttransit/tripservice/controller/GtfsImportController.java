@@ -0,0 +1,71 @@
+package com.smarttransit.tripservice.controller;
+
+import com.smarttransit.tripservice.gtfs.GtfsFeedAlreadyImportedException;
+import com.smarttransit.tripservice.gtfs.GtfsFeedException;
+import com.smarttransit.tripservice.gtfs.GtfsImportInProgressException;
+import com.smarttransit.tripservice.gtfs.GtfsImportReport;
+import com.smarttransit.tripservice.gtfs.GtfsImporter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Map;
+
+/**
+ * POST /api/gtfs/import with a GTFS zip as the request body (application/zip), e.g.
+ * curl --data-binary @feed.zip -H 'Content-Type: application/zip' -H 'X-Internal-Api-Key: ...' \
+ *   .../api/gtfs/import?tripDays=2
+ *
+ * A city feed takes minutes: call trip-service directly rather than through the
+ * gateway, whose route timeouts are sized for interactive requests.
+ *
+ * Operators only: callers must send trip.internal.api-key in X-Internal-Api-Key (the
+ * gateway also refuses the path from clients). Without a configured key the
+ * endpoint answers 403 to everyone.
+ */
+@RestController
+@RequestMapping("/api/gtfs")
+public class GtfsImportController {
+
+    public static final String API_KEY_HEADER = "X-Internal-Api-Key";
+
+    private final GtfsImporter gtfsImporter;
+    private final byte[] apiKey;
+
+    public GtfsImportController(GtfsImporter gtfsImporter,
+                                @Value("${trip.internal.api-key:}") String apiKey) {
+        this.gtfsImporter = gtfsImporter;
+        this.apiKey = apiKey.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @PostMapping(value = "/import", consumes = {"application/zip", "application/octet-stream"})
+    public ResponseEntity<?> importFeed(InputStream body,
+                                        @RequestParam(name = "tripDays", required = false) Integer tripDays,
+                                        @RequestHeader(name = API_KEY_HEADER, required = false) String callerKey) throws IOException {
+        if (apiKey.length == 0 || callerKey == null
+                || !MessageDigest.isEqual(apiKey, callerKey.getBytes(StandardCharsets.UTF_8))) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        // The zip's directory is at its end, so the upload is spooled to disk first
+        Path zip = Files.createTempFile("gtfs-", ".zip");
+        try {
+            Files.copy(body, zip, StandardCopyOption.REPLACE_EXISTING);
+            GtfsImportReport report = gtfsImporter.importFeed(zip, tripDays);
+            return ResponseEntity.ok(report);
+        } catch (GtfsFeedException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (GtfsImportInProgressException | GtfsFeedAlreadyImportedException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } finally {
+            Files.deleteIfExists(zip);
+        }
+    }
+}
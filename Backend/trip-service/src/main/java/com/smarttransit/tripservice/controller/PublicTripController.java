@@ -2,13 +2,18 @@ package com.smarttransit.tripservice.controller;
 
 import com.smarttransit.tripservice.dto.*;
 import com.smarttransit.tripservice.model.*;
-import com.smarttransit.tripservice.repository.RouteStopRepository;
+import com.smarttransit.tripservice.planner.Journey;
+import com.smarttransit.tripservice.planner.JourneyPlanner;
+import com.smarttransit.tripservice.planner.JourneyQuery;
 import com.smarttransit.tripservice.repository.TripStopRepository;
+import com.smarttransit.tripservice.service.RouteStopCache;
+import com.smarttransit.tripservice.service.RouteStopCache.StopView;
 import com.smarttransit.tripservice.service.TripService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
+import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -18,23 +23,46 @@ import java.util.stream.Collectors;
 public class PublicTripController {
 
     private final TripService tripService;
-    private final RouteStopRepository routeStopRepository;
+    private final RouteStopCache routeStopCache;
     private final TripStopRepository tripStopRepository;
+    private final JourneyPlanner journeyPlanner;
 
-    public PublicTripController(TripService tripService, RouteStopRepository routeStopRepository, TripStopRepository tripStopRepository) {
+    public PublicTripController(TripService tripService, RouteStopCache routeStopCache, TripStopRepository tripStopRepository,
+                                JourneyPlanner journeyPlanner) {
         this.tripService = tripService;
-        this.routeStopRepository = routeStopRepository;
+        this.routeStopCache = routeStopCache;
         this.tripStopRepository = tripStopRepository;
+        this.journeyPlanner = journeyPlanner;
     }
 
     @GetMapping("/routes/search")
     public Map<String, List<TripSummaryDto>> searchRoutes(@RequestParam(name = "from", required = false) String from,
                                                           @RequestParam(name = "to", required = false) String to,
+                                                          @RequestParam(name = "fromLat", required = false) Double fromLat,
+                                                          @RequestParam(name = "fromLng", required = false) Double fromLng,
+                                                          @RequestParam(name = "toLat", required = false) Double toLat,
+                                                          @RequestParam(name = "toLng", required = false) Double toLng,
                                                           @RequestParam(name = "date", required = false) String date,
-                                                          @RequestParam(name = "passengers", required = false) Integer passengers) {
+                                                          @RequestParam(name = "time", required = false) String time,
+                                                          @RequestParam(name = "timeOption", required = false) String timeOption,
+                                                          @RequestParam(name = "passengers", required = false) Integer passengers,
+                                                          @RequestParam(name = "limit", defaultValue = "10") int limit) {
         LocalDate d = date != null ? LocalDate.parse(date) : LocalDate.now();
+        JourneyQuery query = new JourneyQuery(from, fromLat, fromLng, to, toLat, toLng, d,
+                time != null && !time.isBlank() ? LocalTime.parse(time) : null,
+                "arrive".equalsIgnoreCase(timeOption) || "arriveBy".equalsIgnoreCase(timeOption),
+                passengers != null ? passengers : 1, limit);
+        if (query.hasEnds()) {
+            List<TripSummaryDto> results = journeyPlanner.plan(query).stream().map(this::toTripSummary).collect(Collectors.toList());
+            return Map.of("trips", results);
+        }
+        // No origin or destination: the day's departures, as before
         List<Trip> trips = tripService.searchTrips(from != null ? from : "", to != null ? to : "", d);
-        List<TripSummaryDto> results = trips.stream().map(this::toTripSummary).collect(Collectors.toList());
+        Map<Long, List<StopView>> stopsByRoute = routeStopCache.stops(
+                trips.stream().map(trip -> trip.getRoute().getId()).collect(Collectors.toSet()));
+        List<TripSummaryDto> results = trips.stream()
+                .map(trip -> toTripSummary(trip, stopsByRoute.get(trip.getRoute().getId())))
+                .collect(Collectors.toList());
         return Map.of("trips", results);
     }
 
@@ -85,20 +113,19 @@ public class PublicTripController {
         List<Route> routes = tripService.getAllRoutes();
         Route route = routes.stream().filter(r -> lineNumber.equals(r.getNumeroLigne())).findFirst().orElse(null);
         if (route == null) return Map.of("line", null);
-        List<RouteStop> rStops = routeStopRepository.findByRoute_IdOrderByOrdreArretAsc(route.getId());
+        List<StopView> rStops = routeStopCache.stops(route.getId());
         List<Map<String, Object>> stations = new ArrayList<>();
         List<Map<String, Object>> features = new ArrayList<>();
         List<List<Double>> coords = new ArrayList<>();
         int order = 1;
-        for (RouteStop rs : rStops) {
-            Stop s = rs.getStop();
+        for (StopView s : rStops) {
             stations.add(Map.of(
-                    "id", String.valueOf(s.getId()),
-                    "name", s.getNom(),
-                    "coordinates", Arrays.asList(s.getLatitude(), s.getLongitude()),
+                    "id", String.valueOf(s.id()),
+                    "name", s.name(),
+                    "coordinates", Arrays.asList(s.latitude(), s.longitude()),
                     "order", order++
             ));
-            coords.add(Arrays.asList(s.getLatitude(), s.getLongitude()));
+            coords.add(Arrays.asList(s.latitude(), s.longitude()));
         }
         Map<String, Object> geometry = Map.of("type", "LineString", "coordinates", coords);
         features.add(Map.of("type", "Feature", "geometry", geometry));
@@ -112,11 +139,32 @@ public class PublicTripController {
         return Map.of("line", line);
     }
 
-    private TripSummaryDto toTripSummary(Trip trip) {
+    private TripSummaryDto toTripSummary(Journey journey) {
+        List<Journey.Leg> legs = journey.legs();
+        Journey.Leg first = legs.get(0);
+        Journey.Leg last = legs.get(legs.size() - 1);
+        Journey.Leg firstRide = legs.stream().filter(leg -> leg.mode() == Journey.Mode.BUS).findFirst().orElse(first);
+        String lines = legs.stream().filter(leg -> leg.mode() == Journey.Mode.BUS)
+                .map(Journey.Leg::line).collect(Collectors.joining(" > "));
+        int minutes = (journey.arrival() - journey.departure()) / 60;
+        TripSummaryDto dto = new TripSummaryDto(firstRide.tripId(), lines, first.fromStop(), last.toStop(),
+                clock(journey.departure()), clock(journey.arrival()), minutes + " min", journey.price(),
+                journey.availableSeats(), Collections.emptyList());
+        dto.setDurationMinutes(minutes);
+        dto.setTransfers(journey.transfers());
+        dto.setLegs(legs.stream().map(leg -> new TripSummaryDto.LegDto(leg.mode().name(), leg.tripId(), leg.line(),
+                leg.fromStop(), leg.toStop(), clock(leg.departure()), clock(leg.arrival()))).collect(Collectors.toList()));
+        return dto;
+    }
+
+    private static String clock(int secondsAfterMidnight) {
+        return LocalTime.ofSecondOfDay(Math.floorMod(secondsAfterMidnight, 24 * 3600)).format(DateTimeFormatter.ofPattern("HH:mm"));
+    }
+
+    private TripSummaryDto toTripSummary(Trip trip, List<StopView> rStops) {
         Route route = trip.getRoute();
-        List<RouteStop> rStops = routeStopRepository.findByRoute_IdOrderByOrdreArretAsc(route.getId());
-        String dep = rStops.isEmpty() ? null : rStops.get(0).getStop().getNom();
-        String arr = rStops.isEmpty() ? null : rStops.get(rStops.size() - 1).getStop().getNom();
+        String dep = rStops.isEmpty() ? null : rStops.get(0).name();
+        String arr = rStops.isEmpty() ? null : rStops.get(rStops.size() - 1).name();
         String depTime = trip.getHeureDepartReelle() != null ? trip.getHeureDepartReelle().toLocalTime().format(DateTimeFormatter.ofPattern("HH:mm")) : "";
         String arrTime = trip.getHeureArriveeReelle() != null ? trip.getHeureArriveeReelle().toLocalTime().format(DateTimeFormatter.ofPattern("HH:mm")) : "";
         String duration = route.getDureeEstimee() != null ? route.getDureeEstimee() + " min" : "";
@@ -129,12 +177,12 @@ public class PublicTripController {
 
     private TripDetailDto toTripDetail(Trip trip) {
         Route route = trip.getRoute();
-        List<RouteStop> rStops = routeStopRepository.findByRoute_IdOrderByOrdreArretAsc(route.getId());
+        List<StopView> rStops = routeStopCache.stops(route.getId());
         TripDetailDto dto = new TripDetailDto();
         dto.setId(trip.getId());
         dto.setLineNumber(route.getNumeroLigne());
-        dto.setDepartureStation(rStops.isEmpty() ? null : rStops.get(0).getStop().getNom());
-        dto.setArrivalStation(rStops.isEmpty() ? null : rStops.get(rStops.size() - 1).getStop().getNom());
+        dto.setDepartureStation(rStops.isEmpty() ? null : rStops.get(0).name());
+        dto.setArrivalStation(rStops.isEmpty() ? null : rStops.get(rStops.size() - 1).name());
         dto.setDepartureTime(trip.getHeureDepartReelle() != null ? trip.getHeureDepartReelle().toString() : null);
         dto.setArrivalTime(trip.getHeureArriveeReelle() != null ? trip.getHeureArriveeReelle().toString() : null);
         dto.setPrice(route.getDistanceTotale() != null ? Math.round(route.getDistanceTotale() * 1.5 * 100.0) / 100.0 : 10.0);
@@ -142,10 +190,9 @@ public class PublicTripController {
         List<TripDetailDto.Coordinate> polyline = new ArrayList<>();
         List<TripDetailDto.StationDto> stations = new ArrayList<>();
         int order = 1;
-        for (RouteStop rs : rStops) {
-            Stop s = rs.getStop();
-            polyline.add(new TripDetailDto.Coordinate(s.getLatitude(), s.getLongitude()));
-            stations.add(new TripDetailDto.StationDto(String.valueOf(s.getId()), s.getNom(), Arrays.asList(s.getLatitude(), s.getLongitude()), order++));
+        for (StopView s : rStops) {
+            polyline.add(new TripDetailDto.Coordinate(s.latitude(), s.longitude()));
+            stations.add(new TripDetailDto.StationDto(String.valueOf(s.id()), s.name(), Arrays.asList(s.latitude(), s.longitude()), order++));
         }
         dto.setPolyline(polyline);
         dto.setStations(stations);
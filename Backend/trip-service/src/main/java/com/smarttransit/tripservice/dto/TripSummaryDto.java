@@ -3,6 +3,37 @@ package com.smarttransit.tripservice.dto;
 import java.util.List;
 
 public class TripSummaryDto {
+    public static class LegDto {
+        private String mode;
+        private Long tripId;
+        private String lineNumber;
+        private String departureStation;
+        private String arrivalStation;
+        private String departureTime;
+        private String arrivalTime;
+        public LegDto() {}
+        public LegDto(String mode, Long tripId, String lineNumber, String departureStation, String arrivalStation,
+                      String departureTime, String arrivalTime) {
+            this.mode = mode; this.tripId = tripId; this.lineNumber = lineNumber;
+            this.departureStation = departureStation; this.arrivalStation = arrivalStation;
+            this.departureTime = departureTime; this.arrivalTime = arrivalTime;
+        }
+        public String getMode() { return mode; }
+        public void setMode(String mode) { this.mode = mode; }
+        public Long getTripId() { return tripId; }
+        public void setTripId(Long tripId) { this.tripId = tripId; }
+        public String getLineNumber() { return lineNumber; }
+        public void setLineNumber(String lineNumber) { this.lineNumber = lineNumber; }
+        public String getDepartureStation() { return departureStation; }
+        public void setDepartureStation(String departureStation) { this.departureStation = departureStation; }
+        public String getArrivalStation() { return arrivalStation; }
+        public void setArrivalStation(String arrivalStation) { this.arrivalStation = arrivalStation; }
+        public String getDepartureTime() { return departureTime; }
+        public void setDepartureTime(String departureTime) { this.departureTime = departureTime; }
+        public String getArrivalTime() { return arrivalTime; }
+        public void setArrivalTime(String arrivalTime) { this.arrivalTime = arrivalTime; }
+    }
+
     private Long id;
     private String lineNumber;
     private String departureStation;
@@ -13,6 +44,9 @@ public class TripSummaryDto {
     private Double price;
     private Integer availableSeats;
     private List<String> services;
+    private Integer durationMinutes;
+    private Integer transfers;
+    private List<LegDto> legs;
 
     public TripSummaryDto() {}
 
@@ -51,4 +85,10 @@ public class TripSummaryDto {
     public void setAvailableSeats(Integer availableSeats) { this.availableSeats = availableSeats; }
     public List<String> getServices() { return services; }
     public void setServices(List<String> services) { this.services = services; }
+    public Integer getDurationMinutes() { return durationMinutes; }
+    public void setDurationMinutes(Integer durationMinutes) { this.durationMinutes = durationMinutes; }
+    public Integer getTransfers() { return transfers; }
+    public void setTransfers(Integer transfers) { this.transfers = transfers; }
+    public List<LegDto> getLegs() { return legs; }
+    public void setLegs(List<LegDto> legs) { this.legs = legs; }
 }
@@ -0,0 +1,171 @@
+package com.smarttransit.tripservice.gtfs;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * One file of a GTFS zip, read a line at a time. Fields follow RFC 4180 quoting
+ * within a line; quoted line breaks are not supported (GTFS feeds do not use them
+ * in practice).
+ */
+final class GtfsCsv implements Closeable {
+
+    private final String file;
+    private final BufferedReader reader;
+    private final Map<String, Integer> columns = new HashMap<>();
+    private long lineNumber;
+
+    private GtfsCsv(String file, BufferedReader reader) throws IOException {
+        this.file = file;
+        this.reader = reader;
+        String header = reader.readLine();
+        if (header == null) {
+            throw new GtfsFeedException(file + " is empty");
+        }
+        lineNumber = 1;
+        if (header.startsWith("\uFEFF")) {
+            header = header.substring(1);
+        }
+        String[] names = split(header);
+        for (int i = 0; i < names.length; i++) {
+            columns.put(names[i].trim().toLowerCase(Locale.ROOT), i);
+        }
+    }
+
+    /**
+     * The file, at the root of the zip or in a single folder, or null when absent and not required
+     */
+    static GtfsCsv open(ZipFile zip, String file, boolean required) throws IOException {
+        ZipEntry entry = entry(zip, file);
+        if (entry == null) {
+            if (required) {
+                throw new GtfsFeedException("The feed has no " + file);
+            }
+            return null;
+        }
+        return new GtfsCsv(file, new BufferedReader(
+                new InputStreamReader(zip.getInputStream(entry), StandardCharsets.UTF_8), 1 << 16));
+    }
+
+    /**
+     * The file's entry, at the root of the zip or in a single folder, or null when absent
+     */
+    static ZipEntry entry(ZipFile zip, String file) {
+        ZipEntry entry = zip.getEntry(file);
+        if (entry == null) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements() && entry == null) {
+                ZipEntry candidate = entries.nextElement();
+                if (candidate.getName().endsWith("/" + file)) {
+                    entry = candidate;
+                }
+            }
+        }
+        return entry;
+    }
+
+    String file() {
+        return file;
+    }
+
+    /**
+     * Index of a column, or -1 when the file does not have it
+     */
+    int column(String name) {
+        return columns.getOrDefault(name, -1);
+    }
+
+    int requiredColumn(String name) {
+        Integer index = columns.get(name);
+        if (index == null) {
+            throw new GtfsFeedException(file + " has no " + name + " column");
+        }
+        return index;
+    }
+
+    /**
+     * The next non-blank row, or null at the end of the file
+     */
+    String[] next() throws IOException {
+        String line;
+        while ((line = nextLine()) != null) {
+            if (!line.isBlank()) {
+                return split(line);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The next raw line, or null at the end of the file
+     */
+    String nextLine() throws IOException {
+        String line = reader.readLine();
+        if (line != null) {
+            lineNumber++;
+        }
+        return line;
+    }
+
+    long lineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    static String[] split(String line) {
+        if (line.indexOf('"') < 0) {
+            return line.split(",", -1);
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    /**
+     * The trimmed field, or null when the column is absent or the field empty
+     */
+    static String field(String[] row, int column) {
+        if (column < 0 || column >= row.length) {
+            return null;
+        }
+        String value = row[column].trim();
+        return value.isEmpty() ? null : value;
+    }
+}
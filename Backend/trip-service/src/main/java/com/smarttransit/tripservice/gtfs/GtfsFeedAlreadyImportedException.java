@@ -0,0 +1,12 @@
+package com.smarttransit.tripservice.gtfs;
+
+/**
+ * The feed's files are identical to a feed imported before (see gtfs_imports), so
+ * importing it again would only duplicate its routes, stops and trips.
+ */
+public class GtfsFeedAlreadyImportedException extends RuntimeException {
+
+    public GtfsFeedAlreadyImportedException(String feedHash) {
+        super("This feed was already imported (SHA-256 " + feedHash + ")");
+    }
+}
@@ -0,0 +1,13 @@
+package com.smarttransit.tripservice.gtfs;
+
+/**
+ * The feed cannot be imported at all: a required file or column is missing, or it
+ * breaks an assumption the streaming import relies on. Problems with single rows
+ * are reported in {@link GtfsImportReport#problems()} instead.
+ */
+public class GtfsFeedException extends RuntimeException {
+
+    public GtfsFeedException(String message) {
+        super(message);
+    }
+}
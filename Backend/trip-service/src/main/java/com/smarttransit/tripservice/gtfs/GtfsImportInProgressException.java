@@ -0,0 +1,11 @@
+package com.smarttransit.tripservice.gtfs;
+
+/**
+ * Another GTFS import is running in this instance; the feed was not read.
+ */
+public class GtfsImportInProgressException extends RuntimeException {
+
+    public GtfsImportInProgressException() {
+        super("A GTFS import is already running");
+    }
+}
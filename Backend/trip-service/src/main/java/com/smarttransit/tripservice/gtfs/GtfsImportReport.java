@@ -0,0 +1,23 @@
+package com.smarttransit.tripservice.gtfs;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a GTFS import.
+ *
+ * @param rowsRead data rows per feed file
+ * @param rowsInserted rows per table
+ * @param skippedRows rows and trips left out because they were invalid
+ * @param problems the first of those problems, with file and line
+ * @param stopTimesPerSecond stop_times rows read per second over the whole import
+ */
+public record GtfsImportReport(Map<String, Long> rowsRead,
+                               Map<String, Long> rowsInserted,
+                               long skippedRows,
+                               List<String> problems,
+                               long parseMillis,
+                               long writeMillis,
+                               long totalMillis,
+                               long stopTimesPerSecond) {
+}
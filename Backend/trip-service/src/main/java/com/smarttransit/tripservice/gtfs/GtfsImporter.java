@@ -0,0 +1,1029 @@
+package com.smarttransit.tripservice.gtfs;
+
+import com.smarttransit.tripservice.planner.TimetableStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Imports a GTFS static feed (stops, routes, calendar, trips, stop_times) into the
+ * routes, stops, route_stops, schedules and trips tables.
+ *
+ * The files are streamed: stop_times is read in chunks of lines that a pool of
+ * parser threads parses and validates in parallel, while the calling thread puts the
+ * chunks back in order and assembles one trip at a time, so only the current trip's
+ * stop times are held. This relies on stop_times.txt being grouped by trip_id, as
+ * feeds normally are; a feed that is not is rejected.
+ *
+ * The tables' model is coarser than GTFS, so the feed is folded into it:
+ * <ul>
+ *   <li>each distinct stop sequence of a GTFS route becomes a route, with the time
+ *   profile of its first trip (dureeEstimee, tempsArret) and distances between stop
+ *   coordinates (distanceProchain, distanceTotale);</li>
+ *   <li>the trips of a route and service become schedules: runs of at least three
+ *   departures at a constant whole-minute headway become one schedule with that
+ *   frequence, other departures a schedule each. Days and dates come from
+ *   calendar.txt; departures after 24:00 move to the next day;</li>
+ *   <li>trips rows are created for the first trip-days days from the import date,
+ *   for booking and operations.</li>
+ * </ul>
+ * Invalid rows and trips are skipped and reported; calendar_dates.txt, shapes and
+ * frequencies.txt are not imported. Everything is inserted in one transaction
+ * through JDBC batches; the journey planner's timetable is rebuilt afterwards.
+ * An import adds to the tables. The SHA-256 of the five files is recorded in
+ * gtfs_imports in the same transaction, and a feed with the same files is refused
+ * however it was zipped; a new version of a feed is imported alongside the old one.
+ */
+@Service
+public class GtfsImporter {
+
+    private static final Logger log = LoggerFactory.getLogger(GtfsImporter.class);
+
+    private static final int CHUNK_LINES = 8192;
+    private static final int MAX_REPORTED_PROBLEMS = 100;
+    private static final int DAY = 24 * 3600;
+    private static final DateTimeFormatter GTFS_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final String[] DAY_COLUMNS = {"monday", "tuesday", "wednesday", "thursday", "friday", "saturday", "sunday"};
+    private static final String[] DAY_CODES = {"MON", "TUE", "WED", "THU", "FRI", "SAT", "SUN"};
+    private static final List<String> FEED_FILES = List.of("stops.txt", "routes.txt", "calendar.txt", "trips.txt", "stop_times.txt");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TimetableStore timetableStore;
+    private final int batchSize;
+    private final int parserThreads;
+    private final int defaultTripDays;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public GtfsImporter(JdbcTemplate jdbcTemplate,
+                        PlatformTransactionManager transactionManager,
+                        TimetableStore timetableStore,
+                        @Value("${trip.gtfs.batch-size:1000}") int batchSize,
+                        @Value("${trip.gtfs.parser-threads:0}") int parserThreads,
+                        @Value("${trip.gtfs.trip-days:1}") int defaultTripDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.timetableStore = timetableStore;
+        this.batchSize = batchSize;
+        this.parserThreads = parserThreads > 0 ? parserThreads : Runtime.getRuntime().availableProcessors();
+        this.defaultTripDays = defaultTripDays;
+    }
+
+    /**
+     * @param tripDays days of trips rows to create, from today; null for trip-days
+     * @throws GtfsFeedException when the feed cannot be imported
+     * @throws GtfsImportInProgressException when another import is running
+     * @throws GtfsFeedAlreadyImportedException when the same feed was imported before
+     */
+    public GtfsImportReport importFeed(Path zip, Integer tripDays) {
+        if (!running.compareAndSet(false, true)) {
+            throw new GtfsImportInProgressException();
+        }
+        long start = System.nanoTime();
+        try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+            String feedHash = feedHash(zipFile);
+            Integer imported = jdbcTemplate.queryForObject(
+                    "select count(*) from gtfs_imports where feed_hash = ?", Integer.class, feedHash);
+            if (imported != null && imported > 0) {
+                throw new GtfsFeedAlreadyImportedException(feedHash);
+            }
+            Feed feed = new Feed();
+            readStops(zipFile, feed);
+            readRoutes(zipFile, feed);
+            readCalendar(zipFile, feed);
+            readTrips(zipFile, feed);
+            readStopTimes(zipFile, feed);
+            if (feed.patterns.isEmpty()) {
+                throw new GtfsFeedException("No trip in the feed has two or more valid stop times");
+            }
+            long parsed = System.nanoTime();
+
+            Map<String, Long> inserted;
+            try {
+                inserted = transactionTemplate.execute(status ->
+                        write(feed, feedHash, LocalDate.now(), tripDays != null ? tripDays : defaultTripDays));
+            } catch (DuplicateKeyException e) {
+                // Imported meanwhile by another instance
+                throw new GtfsFeedAlreadyImportedException(feedHash);
+            }
+            timetableStore.requestRebuild();
+            long done = System.nanoTime();
+
+            long totalMillis = TimeUnit.NANOSECONDS.toMillis(done - start);
+            long stopTimes = feed.rowsRead.getOrDefault("stop_times.txt", 0L);
+            GtfsImportReport report = new GtfsImportReport(feed.rowsRead, inserted, feed.problems.count(),
+                    feed.problems.reported(), TimeUnit.NANOSECONDS.toMillis(parsed - start),
+                    TimeUnit.NANOSECONDS.toMillis(done - parsed), totalMillis,
+                    stopTimes * 1000 / Math.max(totalMillis, 1));
+            log.info("GTFS import: read {}, inserted {}, skipped {} in {} ms ({} stop_times/s)",
+                    report.rowsRead(), report.rowsInserted(), report.skippedRows(), totalMillis, report.stopTimesPerSecond());
+            return report;
+        } catch (IOException e) {
+            throw new GtfsFeedException("Cannot read the GTFS zip: " + e.getMessage());
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * SHA-256 of the imported files' names and contents
+     */
+    private static String feedHash(ZipFile zip) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[1 << 16];
+        for (String file : FEED_FILES) {
+            ZipEntry entry = GtfsCsv.entry(zip, file);
+            if (entry == null) {
+                throw new GtfsFeedException("The feed has no " + file);
+            }
+            digest.update(file.getBytes(StandardCharsets.UTF_8));
+            long length = 0;
+            try (InputStream in = zip.getInputStream(entry)) {
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, read);
+                    length += read;
+                }
+            }
+            digest.update(Long.toString(length).getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private void readStops(ZipFile zip, Feed feed) throws IOException {
+        try (GtfsCsv csv = GtfsCsv.open(zip, "stops.txt", true)) {
+            int idColumn = csv.requiredColumn("stop_id");
+            int nameColumn = csv.column("stop_name");
+            int descColumn = csv.column("stop_desc");
+            int latColumn = csv.column("stop_lat");
+            int lonColumn = csv.column("stop_lon");
+            int typeColumn = csv.column("location_type");
+            long rows = 0;
+            String[] row;
+            while ((row = csv.next()) != null) {
+                rows++;
+                String id = GtfsCsv.field(row, idColumn);
+                String type = GtfsCsv.field(row, typeColumn);
+                // Stations, entrances and nodes are not where vehicles stop
+                if (type != null && !type.equals("0")) {
+                    continue;
+                }
+                Double lat = number(GtfsCsv.field(row, latColumn));
+                Double lon = number(GtfsCsv.field(row, lonColumn));
+                if (id == null) {
+                    feed.problems.add(csv, "no stop_id");
+                    continue;
+                }
+                if (lat != null && (lat < -90 || lat > 90) || lon != null && (lon < -180 || lon > 180)) {
+                    feed.problems.add(csv, "stop " + id + " has coordinates out of range");
+                    lat = null;
+                    lon = null;
+                }
+                if (feed.stopIndex.putIfAbsent(id, feed.stops.size()) != null) {
+                    feed.problems.add(csv, "duplicate stop_id " + id);
+                    continue;
+                }
+                String name = GtfsCsv.field(row, nameColumn);
+                feed.stops.add(new StopRow(name != null ? name : id, GtfsCsv.field(row, descColumn), lat, lon));
+            }
+            feed.rowsRead.put(csv.file(), rows);
+        }
+    }
+
+    private void readRoutes(ZipFile zip, Feed feed) throws IOException {
+        try (GtfsCsv csv = GtfsCsv.open(zip, "routes.txt", true)) {
+            int idColumn = csv.requiredColumn("route_id");
+            int shortNameColumn = csv.column("route_short_name");
+            int longNameColumn = csv.column("route_long_name");
+            int descColumn = csv.column("route_desc");
+            int typeColumn = csv.column("route_type");
+            long rows = 0;
+            String[] row;
+            while ((row = csv.next()) != null) {
+                rows++;
+                String id = GtfsCsv.field(row, idColumn);
+                if (id == null || feed.routeIndex.putIfAbsent(id, feed.routes.size()) != null) {
+                    feed.problems.add(csv, id == null ? "no route_id" : "duplicate route_id " + id);
+                    continue;
+                }
+                Double type = number(GtfsCsv.field(row, typeColumn));
+                feed.routes.add(new RouteRow(id, GtfsCsv.field(row, shortNameColumn), GtfsCsv.field(row, longNameColumn),
+                        GtfsCsv.field(row, descColumn), type != null ? type.intValue() : 3));
+            }
+            feed.rowsRead.put(csv.file(), rows);
+        }
+    }
+
+    private void readCalendar(ZipFile zip, Feed feed) throws IOException {
+        try (GtfsCsv csv = GtfsCsv.open(zip, "calendar.txt", true)) {
+            int idColumn = csv.requiredColumn("service_id");
+            int[] dayColumns = new int[7];
+            for (int d = 0; d < 7; d++) {
+                dayColumns[d] = csv.requiredColumn(DAY_COLUMNS[d]);
+            }
+            int startColumn = csv.requiredColumn("start_date");
+            int endColumn = csv.requiredColumn("end_date");
+            long rows = 0;
+            String[] row;
+            while ((row = csv.next()) != null) {
+                rows++;
+                String id = GtfsCsv.field(row, idColumn);
+                int days = 0;
+                for (int d = 0; d < 7; d++) {
+                    if ("1".equals(GtfsCsv.field(row, dayColumns[d]))) {
+                        days |= 1 << d;
+                    }
+                }
+                LocalDate first;
+                LocalDate last;
+                try {
+                    first = LocalDate.parse(GtfsCsv.field(row, startColumn), GTFS_DATE);
+                    last = LocalDate.parse(GtfsCsv.field(row, endColumn), GTFS_DATE);
+                } catch (DateTimeParseException | NullPointerException e) {
+                    feed.problems.add(csv, "service " + id + " has no valid start_date and end_date");
+                    continue;
+                }
+                if (id == null || feed.serviceIndex.putIfAbsent(id, feed.services.size()) != null) {
+                    feed.problems.add(csv, id == null ? "no service_id" : "duplicate service_id " + id);
+                    continue;
+                }
+                feed.services.add(new ServiceRow(days, first, last));
+            }
+            feed.rowsRead.put(csv.file(), rows);
+        }
+    }
+
+    private void readTrips(ZipFile zip, Feed feed) throws IOException {
+        try (GtfsCsv csv = GtfsCsv.open(zip, "trips.txt", true)) {
+            int idColumn = csv.requiredColumn("trip_id");
+            int routeColumn = csv.requiredColumn("route_id");
+            int serviceColumn = csv.requiredColumn("service_id");
+            long rows = 0;
+            String[] row;
+            while ((row = csv.next()) != null) {
+                rows++;
+                String id = GtfsCsv.field(row, idColumn);
+                Integer route = feed.routeIndex.get(GtfsCsv.field(row, routeColumn));
+                Integer service = feed.serviceIndex.get(GtfsCsv.field(row, serviceColumn));
+                if (id == null || route == null) {
+                    feed.problems.add(csv, id == null ? "no trip_id" : "trip " + id + " has an unknown route_id");
+                    continue;
+                }
+                if (service == null) {
+                    feed.problems.add(csv, "trip " + id + " runs on a service missing from calendar.txt");
+                    continue;
+                }
+                if (feed.tripIndex.putIfAbsent(id, feed.tripIds.size()) != null) {
+                    feed.problems.add(csv, "duplicate trip_id " + id);
+                    continue;
+                }
+                feed.tripIds.add(id);
+                feed.tripRoutes.add(route);
+                feed.tripServices.add(service);
+            }
+            feed.rowsRead.put(csv.file(), rows);
+        }
+    }
+
+    /**
+     * Reads chunks of lines on this thread, parses them on the pool, and assembles
+     * the parsed chunks in file order
+     */
+    private void readStopTimes(ZipFile zip, Feed feed) throws IOException {
+        try (GtfsCsv csv = GtfsCsv.open(zip, "stop_times.txt", true)) {
+            int[] columns = {
+                    csv.requiredColumn("trip_id"),
+                    csv.requiredColumn("arrival_time"),
+                    csv.requiredColumn("departure_time"),
+                    csv.requiredColumn("stop_id"),
+                    csv.requiredColumn("stop_sequence")};
+            AtomicInteger threads = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(parserThreads, runnable -> {
+                Thread thread = new Thread(runnable, "gtfs-parser-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            TripAssembler assembler = new TripAssembler(feed);
+            Deque<Future<StopTimeChunk>> inFlight = new ArrayDeque<>();
+            long rows = 0;
+            boolean more = true;
+            try {
+                while (more || !inFlight.isEmpty()) {
+                    if (more && inFlight.size() < parserThreads * 2) {
+                        long firstLine = csv.lineNumber() + 1;
+                        String[] lines = new String[CHUNK_LINES];
+                        int count = 0;
+                        String line;
+                        while (count < CHUNK_LINES && (line = csv.nextLine()) != null) {
+                            lines[count++] = line;
+                        }
+                        more = count == CHUNK_LINES;
+                        if (count > 0) {
+                            int size = count;
+                            inFlight.add(pool.submit(() -> StopTimeChunk.parse(lines, size, firstLine, columns, feed)));
+                        }
+                    } else {
+                        StopTimeChunk chunk = inFlight.poll().get();
+                        rows += chunk.rows;
+                        assembler.accept(chunk);
+                    }
+                }
+                assembler.finish();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException runtime ? runtime : new RuntimeException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("GTFS import interrupted", e);
+            } finally {
+                pool.shutdownNow();
+            }
+            feed.rowsRead.put(csv.file(), rows);
+        }
+    }
+
+    /**
+     * Inserts the parsed feed and returns the rows inserted per table
+     */
+    private Map<String, Long> write(Feed feed, String feedHash, LocalDate today, int tripDays) {
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.update("insert into gtfs_imports (feed_hash, imported_at) values (?, ?)",
+                feedHash, Timestamp.valueOf(now));
+
+        // A stop takes the vehicle type of the first route that serves it
+        String[] stopTypes = new String[feed.stops.size()];
+        for (PatternRow pattern : feed.patterns) {
+            for (int stop : pattern.stops) {
+                if (stopTypes[stop] == null) {
+                    stopTypes[stop] = vehicleType(feed.routes.get(pattern.route).type);
+                }
+            }
+        }
+        long[] stopIds = insert("insert into stops (nom, adresse, latitude, longitude, type) values (?, ?, ?, ?, ?)",
+                feed.stops.size(), true, (statement, i) -> {
+                    StopRow stop = feed.stops.get(i);
+                    statement.setString(1, stop.name);
+                    setString(statement, 2, stop.description);
+                    setDouble(statement, 3, stop.lat);
+                    setDouble(statement, 4, stop.lon);
+                    statement.setString(5, stopTypes[i] != null ? stopTypes[i] : "BUS");
+                });
+
+        int[] patternsPerRoute = new int[feed.routes.size()];
+        for (PatternRow pattern : feed.patterns) {
+            patternsPerRoute[pattern.route]++;
+        }
+        long[] routeIds = insert("insert into routes (nom, numero_ligne, description, distance_totale, duree_estimee, statut, date_creation) "
+                + "values (?, ?, ?, ?, ?, ?, ?)", feed.patterns.size(), true, (statement, p) -> {
+            PatternRow pattern = feed.patterns.get(p);
+            RouteRow route = feed.routes.get(pattern.route);
+            String name = route.longName != null ? route.longName : route.shortName != null ? route.shortName : route.id;
+            if (patternsPerRoute[pattern.route] > 1) {
+                name += " → " + feed.stops.get(pattern.stops[pattern.stops.length - 1]).name;
+            }
+            statement.setString(1, name);
+            statement.setString(2, route.shortName != null ? route.shortName : route.id);
+            setString(statement, 3, route.description);
+            statement.setDouble(4, Math.round(pattern.totalKm() * 100.0) / 100.0);
+            statement.setInt(5, Math.max(1, Math.round(pattern.arrivals[pattern.stops.length - 1] / 60f)));
+            statement.setString(6, "ACTIVE");
+            statement.setTimestamp(7, Timestamp.valueOf(now));
+        });
+
+        int routeStopCount = feed.patterns.stream().mapToInt(pattern -> pattern.stops.length).sum();
+        int[] routeStopPattern = new int[routeStopCount];
+        int[] routeStopPosition = new int[routeStopCount];
+        int slot = 0;
+        for (int p = 0; p < feed.patterns.size(); p++) {
+            for (int i = 0; i < feed.patterns.get(p).stops.length; i++) {
+                routeStopPattern[slot] = p;
+                routeStopPosition[slot++] = i;
+            }
+        }
+        insert("insert into route_stops (route_id, stop_id, ordre_arret, temps_arret, distance_prochain) values (?, ?, ?, ?, ?)",
+                routeStopCount, false, (statement, r) -> {
+                    PatternRow pattern = feed.patterns.get(routeStopPattern[r]);
+                    int i = routeStopPosition[r];
+                    statement.setLong(1, routeIds[routeStopPattern[r]]);
+                    statement.setLong(2, stopIds[pattern.stops[i]]);
+                    statement.setInt(3, i + 1);
+                    statement.setInt(4, Math.round((pattern.departures[i] - pattern.arrivals[i]) / 60f));
+                    setDouble(statement, 5, i < pattern.stops.length - 1
+                            ? Math.round(pattern.hopKm[i] * 1000.0) / 1000.0 : null);
+                });
+
+        List<ScheduleRow> schedules = schedules(feed);
+        long[] scheduleIds = insert("insert into schedules (route_id, heure_depart, heure_arrivee, jours_semaine, date_debut, date_fin, frequence) "
+                + "values (?, ?, ?, ?, ?, ?, ?)", schedules.size(), true, (statement, s) -> {
+            ScheduleRow schedule = schedules.get(s);
+            PatternRow pattern = feed.patterns.get(schedule.pattern);
+            statement.setLong(1, routeIds[schedule.pattern]);
+            statement.setTime(2, Time.valueOf(LocalTime.ofSecondOfDay(schedule.first)));
+            // Frequency schedules run up to heureArrivee; single departures end at the last stop
+            int end = schedule.frequency > 0 ? schedule.last : schedule.first + pattern.arrivals[pattern.stops.length - 1];
+            statement.setTime(3, Time.valueOf(LocalTime.ofSecondOfDay(end % DAY)));
+            statement.setString(4, days(schedule.days));
+            statement.setDate(5, Date.valueOf(schedule.firstDate));
+            statement.setDate(6, Date.valueOf(schedule.lastDate));
+            if (schedule.frequency > 0) {
+                statement.setInt(7, schedule.frequency / 60);
+            } else {
+                statement.setNull(7, Types.INTEGER);
+            }
+        });
+
+        // trips rows for the first tripDays days: schedule index, day, departure
+        IntList tripRows = new IntList();
+        for (int d = 0; d < tripDays; d++) {
+            LocalDate date = today.plusDays(d);
+            int weekday = 1 << (date.getDayOfWeek().getValue() - 1);
+            for (int s = 0; s < schedules.size(); s++) {
+                ScheduleRow schedule = schedules.get(s);
+                if ((schedule.days & weekday) == 0 || date.isBefore(schedule.firstDate) || date.isAfter(schedule.lastDate)) {
+                    continue;
+                }
+                int step = schedule.frequency > 0 ? schedule.frequency : 1;
+                for (int t = schedule.first; t <= schedule.last; t += step) {
+                    tripRows.add(s);
+                    tripRows.add(d);
+                    tripRows.add(t);
+                }
+            }
+        }
+        insert("insert into trips (route_id, schedule_id, date_trajet, heure_depart_reelle, statut, nombre_passagers) values (?, ?, ?, ?, ?, ?)",
+                tripRows.size() / 3, false, (statement, t) -> {
+                    int s = tripRows.get(t * 3);
+                    LocalDate date = today.plusDays(tripRows.get(t * 3 + 1));
+                    statement.setLong(1, routeIds[schedules.get(s).pattern]);
+                    statement.setLong(2, scheduleIds[s]);
+                    statement.setDate(3, Date.valueOf(date));
+                    statement.setTimestamp(4, Timestamp.valueOf(date.atTime(LocalTime.ofSecondOfDay(tripRows.get(t * 3 + 2)))));
+                    statement.setString(5, "PLANNED");
+                    statement.setInt(6, 0);
+                });
+
+        Map<String, Long> inserted = new LinkedHashMap<>();
+        inserted.put("stops", (long) stopIds.length);
+        inserted.put("routes", (long) routeIds.length);
+        inserted.put("route_stops", (long) routeStopCount);
+        inserted.put("schedules", (long) scheduleIds.length);
+        inserted.put("trips", (long) tripRows.size() / 3);
+        return inserted;
+    }
+
+    /**
+     * Folds the trips' departures into schedules per route, service and day shift
+     */
+    private static List<ScheduleRow> schedules(Feed feed) {
+        // pattern | service | day shift | second of day, so sorting groups them and orders departures
+        long[] keys = new long[feed.departures.size() / 3];
+        for (int i = 0; i < keys.length; i++) {
+            int departure = feed.departures.get(i * 3 + 2);
+            long shift = Math.min(departure / DAY, 7);
+            keys[i] = (long) feed.departures.get(i * 3) << 40 | (long) feed.departures.get(i * 3 + 1) << 20
+                    | shift << 17 | departure % DAY;
+        }
+        Arrays.sort(keys);
+
+        List<ScheduleRow> schedules = new ArrayList<>();
+        int i = 0;
+        while (i < keys.length) {
+            long group = keys[i] >>> 17;
+            int end = i;
+            while (end < keys.length && keys[end] >>> 17 == group) {
+                end++;
+            }
+            int pattern = (int) (group >>> 23);
+            ServiceRow service = feed.services.get((int) (group >>> 3) & 0xFFFFF);
+            int shift = (int) (group & 7);
+            int days = service.days;
+            for (int s = 0; s < shift; s++) {
+                days = (days << 1 | days >>> 6) & 0x7F;
+            }
+            int[] times = Arrays.stream(keys, i, end).mapToInt(key -> (int) (key & 0x1FFFF)).distinct().toArray();
+            int t = 0;
+            while (t < times.length) {
+                int run = 1;
+                int headway = t + 1 < times.length ? times[t + 1] - times[t] : 0;
+                if (headway > 0 && headway % 60 == 0) {
+                    while (t + run < times.length && times[t + run] - times[t + run - 1] == headway) {
+                        run++;
+                    }
+                }
+                if (run < 3) {
+                    run = 1;
+                    headway = 0;
+                }
+                schedules.add(new ScheduleRow(pattern, times[t], times[t + run - 1], headway, days,
+                        service.first.plusDays(shift), service.last.plusDays(shift)));
+                t += run;
+            }
+            i = end;
+        }
+        return schedules;
+    }
+
+    @FunctionalInterface
+    private interface RowBinder {
+        void bind(PreparedStatement statement, int row) throws SQLException;
+    }
+
+    /**
+     * Inserts rows through JDBC batches, in the current transaction
+     *
+     * @return the generated ids when asked for, in row order
+     */
+    private long[] insert(String sql, int rows, boolean generatedIds, RowBinder binder) {
+        long[] ids = generatedIds ? new long[rows] : new long[0];
+        if (rows == 0) {
+            return ids;
+        }
+        return jdbcTemplate.execute((ConnectionCallback<long[]>) connection -> {
+            int received = 0;
+            try (PreparedStatement statement = generatedIds
+                    ? connection.prepareStatement(sql, new String[]{"id"}) : connection.prepareStatement(sql)) {
+                for (int row = 0; row < rows; row++) {
+                    binder.bind(statement, row);
+                    statement.addBatch();
+                    if ((row + 1) % batchSize == 0 || row == rows - 1) {
+                        statement.executeBatch();
+                        if (generatedIds) {
+                            try (ResultSet keys = statement.getGeneratedKeys()) {
+                                while (keys.next()) {
+                                    ids[received++] = keys.getLong(1);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            if (generatedIds && received != rows) {
+                throw new SQLException("Expected " + rows + " generated ids, got " + received);
+            }
+            return ids;
+        });
+    }
+
+    private static void setString(PreparedStatement statement, int index, String value) throws SQLException {
+        if (value != null) {
+            statement.setString(index, value);
+        } else {
+            statement.setNull(index, Types.VARCHAR);
+        }
+    }
+
+    private static void setDouble(PreparedStatement statement, int index, Double value) throws SQLException {
+        if (value != null) {
+            statement.setDouble(index, value);
+        } else {
+            statement.setNull(index, Types.DOUBLE);
+        }
+    }
+
+    private static Double number(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Double.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String days(int mask) {
+        List<String> days = new ArrayList<>();
+        for (int d = 0; d < 7; d++) {
+            if ((mask & 1 << d) != 0) {
+                days.add(DAY_CODES[d]);
+            }
+        }
+        return String.join(",", days);
+    }
+
+    private static String vehicleType(int routeType) {
+        return switch (routeType) {
+            case 0, 900 -> "TRAM";
+            case 1, 400 -> "METRO";
+            case 2, 100 -> "TRAIN";
+            case 4, 1000 -> "FERRY";
+            default -> "BUS";
+        };
+    }
+
+    static double km(StopRow a, StopRow b) {
+        if (a.lat == null || a.lon == null || b.lat == null || b.lon == null) {
+            return 0;
+        }
+        double x = Math.toRadians(b.lon - a.lon) * Math.cos(Math.toRadians((a.lat + b.lat) / 2));
+        double y = Math.toRadians(b.lat - a.lat);
+        return Math.sqrt(x * x + y * y) * 6371;
+    }
+
+    /**
+     * Seconds after midnight of the service day for H:MM:SS (hours may pass 24), or -1 when empty
+     */
+    static int seconds(String value) {
+        if (value == null) {
+            return -1;
+        }
+        int first = value.indexOf(':');
+        int second = value.indexOf(':', first + 1);
+        if (first <= 0 || second != first + 3 || value.length() != second + 3) {
+            throw new NumberFormatException("bad time " + value);
+        }
+        int minutes = Integer.parseInt(value, first + 1, second, 10);
+        int secs = Integer.parseInt(value, second + 1, value.length(), 10);
+        if (minutes > 59 || secs > 59) {
+            throw new NumberFormatException("bad time " + value);
+        }
+        return Integer.parseInt(value, 0, first, 10) * 3600 + minutes * 60 + secs;
+    }
+
+    /**
+     * Everything read from the feed, as indices into lists
+     */
+    static final class Feed {
+        final Map<String, Long> rowsRead = new LinkedHashMap<>();
+        final Problems problems = new Problems();
+        final Map<String, Integer> stopIndex = new HashMap<>();
+        final List<StopRow> stops = new ArrayList<>();
+        final Map<String, Integer> routeIndex = new HashMap<>();
+        final List<RouteRow> routes = new ArrayList<>();
+        final Map<String, Integer> serviceIndex = new HashMap<>();
+        final List<ServiceRow> services = new ArrayList<>();
+        final Map<String, Integer> tripIndex = new HashMap<>();
+        final List<String> tripIds = new ArrayList<>();
+        final IntList tripRoutes = new IntList();
+        final IntList tripServices = new IntList();
+        final Map<PatternKey, Integer> patternIndex = new HashMap<>();
+        final List<PatternRow> patterns = new ArrayList<>();
+        // pattern, service, first departure of every valid trip
+        final IntList departures = new IntList();
+    }
+
+    record StopRow(String name, String description, Double lat, Double lon) {
+    }
+
+    record RouteRow(String id, String shortName, String longName, String description, int type) {
+    }
+
+    /**
+     * @param days bit 0 for Monday to bit 6 for Sunday
+     */
+    record ServiceRow(int days, LocalDate first, LocalDate last) {
+    }
+
+    /**
+     * A GTFS route's stop sequence, with the offsets of its first trip
+     */
+    record PatternRow(int route, int[] stops, int[] arrivals, int[] departures, double[] hopKm) {
+
+        double totalKm() {
+            return Arrays.stream(hopKm).sum();
+        }
+    }
+
+    record PatternKey(int route, int[] stops) {
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof PatternKey key && key.route == route && Arrays.equals(key.stops, stops);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * route + Arrays.hashCode(stops);
+        }
+    }
+
+    /**
+     * @param frequency headway in seconds, 0 for a single departure
+     */
+    record ScheduleRow(int pattern, int first, int last, int frequency, int days, LocalDate firstDate, LocalDate lastDate) {
+    }
+
+    /**
+     * stop_times rows of one chunk, parsed and validated off the reading thread. Rows
+     * of known trips keep their place even when invalid, so their trip is skipped whole.
+     */
+    static final class StopTimeChunk {
+        int rows;
+        int count;
+        final int[] trips;
+        final int[] stops;
+        final int[] arrivals;
+        final int[] departures;
+        final int[] sequences;
+        final BitSet invalid = new BitSet();
+
+        private StopTimeChunk(int size) {
+            trips = new int[size];
+            stops = new int[size];
+            arrivals = new int[size];
+            departures = new int[size];
+            sequences = new int[size];
+        }
+
+        static StopTimeChunk parse(String[] lines, int size, long firstLine, int[] columns, Feed feed) {
+            StopTimeChunk chunk = new StopTimeChunk(size);
+            for (int l = 0; l < size; l++) {
+                String line = lines[l];
+                if (line.isBlank()) {
+                    continue;
+                }
+                chunk.rows++;
+                long lineNumber = firstLine + l;
+                String[] row = GtfsCsv.split(line);
+                String tripId = GtfsCsv.field(row, columns[0]);
+                Integer trip = feed.tripIndex.get(tripId);
+                if (trip == null) {
+                    // Trips already reported in trips.txt are left out silently
+                    if (tripId == null) {
+                        feed.problems.add("stop_times.txt", lineNumber, "no trip_id");
+                    }
+                    continue;
+                }
+                int i = chunk.count++;
+                chunk.trips[i] = trip;
+                String problem = chunk.parseRow(i, row, columns, feed);
+                if (problem != null) {
+                    chunk.invalid.set(i);
+                    feed.problems.add("stop_times.txt", lineNumber, problem + " in trip " + tripId);
+                }
+            }
+            return chunk;
+        }
+
+        private String parseRow(int i, String[] row, int[] columns, Feed feed) {
+            String stopId = GtfsCsv.field(row, columns[3]);
+            Integer stop = feed.stopIndex.get(stopId);
+            if (stop == null) {
+                return "unknown stop_id " + stopId;
+            }
+            int arrival;
+            int departure;
+            try {
+                arrival = seconds(GtfsCsv.field(row, columns[1]));
+                departure = seconds(GtfsCsv.field(row, columns[2]));
+                sequences[i] = Integer.parseInt(GtfsCsv.field(row, columns[4]));
+            } catch (NumberFormatException e) {
+                return "invalid time or stop_sequence";
+            }
+            if (arrival < 0) {
+                arrival = departure;
+            } else if (departure < 0) {
+                departure = arrival;
+            }
+            if (departure < arrival) {
+                return "departure before arrival";
+            }
+            stops[i] = stop;
+            arrivals[i] = arrival;
+            departures[i] = departure;
+            return null;
+        }
+    }
+
+    /**
+     * Collects the stop times of the current trip and turns each finished trip into a
+     * departure of its pattern
+     */
+    static final class TripAssembler {
+        private final Feed feed;
+        private final BitSet finished = new BitSet();
+        private final IntList stops = new IntList();
+        private final IntList arrivals = new IntList();
+        private final IntList departures = new IntList();
+        private final IntList sequences = new IntList();
+        private int trip = -1;
+        private boolean invalid;
+
+        TripAssembler(Feed feed) {
+            this.feed = feed;
+        }
+
+        void accept(StopTimeChunk chunk) {
+            for (int i = 0; i < chunk.count; i++) {
+                int rowTrip = chunk.trips[i];
+                if (rowTrip != trip) {
+                    finish();
+                    if (finished.get(rowTrip)) {
+                        throw new GtfsFeedException("stop_times.txt is not grouped by trip_id (trip "
+                                + feed.tripIds.get(rowTrip) + " appears in more than one run of rows)");
+                    }
+                    trip = rowTrip;
+                }
+                if (chunk.invalid.get(i)) {
+                    invalid = true;
+                    continue;
+                }
+                stops.add(chunk.stops[i]);
+                arrivals.add(chunk.arrivals[i]);
+                departures.add(chunk.departures[i]);
+                sequences.add(chunk.sequences[i]);
+            }
+        }
+
+        void finish() {
+            if (trip < 0) {
+                return;
+            }
+            finished.set(trip);
+            String problem = invalid ? "invalid stop_times rows" : build();
+            if (problem != null) {
+                feed.problems.add("stop_times.txt", -1, "trip " + feed.tripIds.get(trip) + " skipped: " + problem);
+            }
+            trip = -1;
+            invalid = false;
+            stops.clear();
+            arrivals.clear();
+            departures.clear();
+            sequences.clear();
+        }
+
+        private String build() {
+            int n = stops.size();
+            if (n < 2) {
+                return "fewer than two stops";
+            }
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Integer.compare(sequences.get(a), sequences.get(b)));
+            int[] tripStops = new int[n];
+            int[] tripArrivals = new int[n];
+            int[] tripDepartures = new int[n];
+            for (int i = 0; i < n; i++) {
+                if (i > 0 && sequences.get(order[i]) == sequences.get(order[i - 1])) {
+                    return "duplicate stop_sequence " + sequences.get(order[i]);
+                }
+                tripStops[i] = stops.get(order[i]);
+                tripArrivals[i] = arrivals.get(order[i]);
+                tripDepartures[i] = departures.get(order[i]);
+            }
+            if (tripDepartures[0] < 0 || tripArrivals[n - 1] < 0) {
+                return "no time at its first or last stop";
+            }
+            double[] hopKm = new double[n - 1];
+            for (int i = 0; i < n - 1; i++) {
+                hopKm[i] = km(feed.stops.get(tripStops[i]), feed.stops.get(tripStops[i + 1]));
+            }
+            interpolate(tripArrivals, tripDepartures, hopKm);
+            for (int i = 1; i < n; i++) {
+                if (tripArrivals[i] < tripDepartures[i - 1]) {
+                    return "times go backwards at stop_sequence " + sequences.get(order[i]);
+                }
+            }
+
+            int start = tripDepartures[0];
+            int[] arrivalOffsets = new int[n];
+            int[] departureOffsets = new int[n];
+            for (int i = 0; i < n; i++) {
+                arrivalOffsets[i] = tripArrivals[i] - start;
+                departureOffsets[i] = tripDepartures[i] - start;
+            }
+            int route = feed.tripRoutes.get(trip);
+            Integer pattern = feed.patternIndex.get(new PatternKey(route, tripStops));
+            if (pattern == null) {
+                pattern = feed.patterns.size();
+                feed.patternIndex.put(new PatternKey(route, tripStops), pattern);
+                feed.patterns.add(new PatternRow(route, tripStops, arrivalOffsets, departureOffsets, hopKm));
+            }
+            feed.departures.add(pattern);
+            feed.departures.add(feed.tripServices.get(trip));
+            feed.departures.add(start);
+            return null;
+        }
+
+        /**
+         * Fills the times of stops without one (not timepoints) in proportion to distance
+         */
+        private static void interpolate(int[] arrivals, int[] departures, double[] hopKm) {
+            int previous = 0;
+            for (int i = 1; i < arrivals.length; i++) {
+                if (arrivals[i] < 0) {
+                    continue;
+                }
+                if (i - previous > 1) {
+                    double total = 0;
+                    for (int h = previous; h < i; h++) {
+                        total += hopKm[h];
+                    }
+                    double along = 0;
+                    for (int k = previous + 1; k < i; k++) {
+                        along += hopKm[k - 1];
+                        double share = total > 0 ? along / total : (double) (k - previous) / (i - previous);
+                        arrivals[k] = departures[previous] + (int) Math.round(share * (arrivals[i] - departures[previous]));
+                        departures[k] = arrivals[k];
+                    }
+                }
+                previous = i;
+            }
+        }
+    }
+
+    /**
+     * Row problems: counted, and the first ones kept for the report
+     */
+    static final class Problems {
+        private final AtomicLong count = new AtomicLong();
+        private final List<String> reported = new ArrayList<>();
+
+        void add(GtfsCsv csv, String problem) {
+            add(csv.file(), csv.lineNumber(), problem);
+        }
+
+        void add(String file, long line, String problem) {
+            if (count.incrementAndGet() <= MAX_REPORTED_PROBLEMS) {
+                synchronized (reported) {
+                    reported.add(line > 0 ? file + ":" + line + ": " + problem : file + ": " + problem);
+                }
+            }
+        }
+
+        long count() {
+            return count.get();
+        }
+
+        List<String> reported() {
+            synchronized (reported) {
+                return List.copyOf(reported);
+            }
+        }
+    }
+
+    static final class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.smarttransit.tripservice.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "gtfs_imports")
+public class GtfsImport {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true, length = 64)
+    private String feedHash;
+
+    private LocalDateTime importedAt;
+
+    public GtfsImport() {}
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getFeedHash() { return feedHash; }
+    public void setFeedHash(String feedHash) { this.feedHash = feedHash; }
+
+    public LocalDateTime getImportedAt() { return importedAt; }
+    public void setImportedAt(LocalDateTime importedAt) { this.importedAt = importedAt; }
+}
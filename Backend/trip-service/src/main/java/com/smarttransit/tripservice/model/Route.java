@@ -1,6 +1,7 @@
 package com.smarttransit.tripservice.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.UpdateTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
@@ -18,6 +19,9 @@ public class Route {
     private String statut;
     private LocalDateTime dateCreation;
 
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+
     public Route() {}
 
     public Long getId() { return id; }
@@ -43,4 +47,6 @@ public class Route {
 
     public LocalDateTime getDateCreation() { return dateCreation; }
     public void setDateCreation(LocalDateTime dateCreation) { this.dateCreation = dateCreation; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
 }
\ No newline at end of file
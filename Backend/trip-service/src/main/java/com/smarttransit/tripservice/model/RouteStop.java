@@ -1,6 +1,8 @@
 package com.smarttransit.tripservice.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.UpdateTimestamp;
+import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "route_stops")
@@ -21,6 +23,9 @@ public class RouteStop {
     private Integer tempsArret; // minutes
     private Double distanceProchain; // km to next stop
 
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+
     public RouteStop() {}
 
     public Long getId() { return id; }
@@ -40,4 +45,6 @@ public class RouteStop {
 
     public Double getDistanceProchain() { return distanceProchain; }
     public void setDistanceProchain(Double distanceProchain) { this.distanceProchain = distanceProchain; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
 }
\ No newline at end of file
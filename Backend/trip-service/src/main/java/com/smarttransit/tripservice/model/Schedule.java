@@ -1,7 +1,9 @@
 package com.smarttransit.tripservice.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.UpdateTimestamp;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 
 @Entity
@@ -22,6 +24,9 @@ public class Schedule {
     private LocalDate dateFin;
     private Integer frequence; // minutes between departures
 
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+
     public Schedule() {}
 
     public Long getId() { return id; }
@@ -47,4 +52,6 @@ public class Schedule {
 
     public Integer getFrequence() { return frequence; }
     public void setFrequence(Integer frequence) { this.frequence = frequence; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package com.smarttransit.tripservice.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.UpdateTimestamp;
+import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "stops")
@@ -15,6 +17,9 @@ public class Stop {
     private Double longitude;
     private String type; // e.g., BUS, TRAM, METRO
 
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+
     public Stop() {}
 
     public Long getId() { return id; }
@@ -34,4 +39,6 @@ public class Stop {
 
     public String getType() { return type; }
     public void setType(String type) { this.type = type; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
 }
\ No newline at end of file
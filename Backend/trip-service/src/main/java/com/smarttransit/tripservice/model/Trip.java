@@ -1,6 +1,7 @@
 package com.smarttransit.tripservice.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.UpdateTimestamp;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
@@ -27,6 +28,9 @@ public class Trip {
     private String statut; // e.g., PLANNED, IN_PROGRESS, COMPLETED, CANCELLED
     private Integer nombrePassagers;
 
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+
     public Trip() {}
 
     public Long getId() { return id; }
@@ -58,4 +62,6 @@ public class Trip {
 
     public Integer getNombrePassagers() { return nombrePassagers; }
     public void setNombrePassagers(Integer nombrePassagers) { this.nombrePassagers = nombrePassagers; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
 }
\ No newline at end of file
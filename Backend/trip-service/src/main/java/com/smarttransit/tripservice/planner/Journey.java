@@ -0,0 +1,21 @@
+package com.smarttransit.tripservice.planner;
+
+import java.util.List;
+
+/**
+ * One itinerary found by {@link Raptor}. Times are seconds after midnight of the
+ * timetable's service day; departure and arrival include walking to the first and
+ * from the last stop.
+ */
+public record Journey(int departure, int arrival, int transfers, double price, int availableSeats, List<Leg> legs) {
+
+    public enum Mode { BUS, WALK }
+
+    /**
+     * @param tripId the trips row, null for walks and for departures only known from the schedule
+     */
+    public record Leg(Mode mode, Long tripId, Long routeId, String line,
+                      long fromStopId, String fromStop, long toStopId, String toStop,
+                      int departure, int arrival) {
+    }
+}
@@ -0,0 +1,143 @@
+package com.smarttransit.tripservice.planner;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Journey search for /api/v1/routes/search: resolves both ends to stops and runs
+ * {@link Raptor} over the day's {@link Timetable}.
+ *
+ * One search gives the fastest journey for each number of transfers from the
+ * requested time; the next one starts a minute after the latest departure found,
+ * until limit journeys are collected. Journeys that leave earlier and arrive no
+ * sooner than another are dropped. For arrive-by searches the departures of the
+ * arrive-by-window-minutes before the time are searched and the latest kept.
+ *
+ * Timetables come from the {@link TimetableStore}'s current snapshot; a date it has
+ * no timetable for finds no journeys.
+ */
+@Service
+public class JourneyPlanner {
+
+    private final TimetableStore store;
+    private final double maxAccessMeters;
+    private final double walkSpeed;
+    private final int arriveByWindowSeconds;
+    private final ThreadLocal<Raptor> workspaces;
+
+    public JourneyPlanner(TimetableStore store,
+                          @Value("${trip.planner.max-transfers:3}") int maxTransfers,
+                          @Value("${trip.planner.transfer-slack-seconds:60}") int transferSlackSeconds,
+                          @Value("${trip.planner.max-access-meters:800}") double maxAccessMeters,
+                          @Value("${trip.planner.walk-speed:1.2}") double walkSpeed,
+                          @Value("${trip.planner.arrive-by-window-minutes:120}") int arriveByWindowMinutes) {
+        this.store = store;
+        this.maxAccessMeters = maxAccessMeters;
+        this.walkSpeed = walkSpeed;
+        this.arriveByWindowSeconds = arriveByWindowMinutes * 60;
+        this.workspaces = ThreadLocal.withInitial(() -> new Raptor(maxTransfers, transferSlackSeconds));
+    }
+
+    public List<Journey> plan(JourneyQuery query) {
+        Timetable timetable = store.timetable(query.date());
+        if (timetable == null) {
+            return List.of();
+        }
+        int[][] origin = place(timetable, query.from(), query.fromLat(), query.fromLng());
+        int[][] destination = place(timetable, query.to(), query.toLat(), query.toLng());
+        if (origin[0].length == 0 || destination[0].length == 0) {
+            return List.of();
+        }
+
+        int limit = Math.max(query.limit(), 1);
+        LocalTime time = query.time() != null ? query.time()
+                : query.date().equals(LocalDate.now()) ? LocalTime.now() : LocalTime.MIDNIGHT;
+        int latestArrival = query.arriveBy() ? time.toSecondOfDay() : Integer.MAX_VALUE;
+        int departure = query.arriveBy() ? Math.max(time.toSecondOfDay() - arriveByWindowSeconds, 0) : time.toSecondOfDay();
+        int wanted = query.arriveBy() ? limit * 4 : limit;
+
+        Raptor raptor = workspaces.get();
+        List<Journey> found = new ArrayList<>();
+        for (int attempt = 0; attempt < wanted * 2 && found.size() < wanted; attempt++) {
+            int count = raptor.search(timetable, origin[0], origin[1], departure, destination[0], destination[1]);
+            if (count == 0) {
+                break;
+            }
+            int latestDeparture = departure;
+            for (int i = 0; i < count; i++) {
+                if (raptor.arrival(i) > latestArrival) {
+                    continue;
+                }
+                Journey journey = raptor.journey(i);
+                latestDeparture = Math.max(latestDeparture, journey.departure());
+                boolean rides = journey.legs().stream().anyMatch(leg -> leg.mode() == Journey.Mode.BUS);
+                if (rides && journey.availableSeats() >= query.passengers()) {
+                    found.add(journey);
+                }
+            }
+            if (raptor.arrival(count - 1) > latestArrival) {
+                break;
+            }
+            departure = latestDeparture + 60;
+        }
+
+        List<Journey> kept = found.stream()
+                .filter(journey -> found.stream().noneMatch(other -> other != journey && dominates(other, journey)))
+                .distinct()
+                .sorted(Comparator.comparingInt(Journey::departure).thenComparingInt(Journey::arrival))
+                .toList();
+        return query.arriveBy() ? kept.subList(Math.max(kept.size() - limit, 0), kept.size())
+                : kept.subList(0, Math.min(limit, kept.size()));
+    }
+
+    /**
+     * Stops for one end of the journey and the walk to or from each, in seconds:
+     * stops within max-access-meters of a coordinate (the nearest if none is), or stops by name
+     */
+    private int[][] place(Timetable timetable, String name, Double lat, Double lng) {
+        if (lat == null || lng == null) {
+            int[] stops = name == null || name.isBlank() ? new int[0] : timetable.stopsNamed(name);
+            return new int[][]{stops, new int[stops.length]};
+        }
+        int[] stops = new int[8];
+        int[] seconds = new int[8];
+        int count = 0;
+        int nearest = -1;
+        double nearestMeters = Double.MAX_VALUE;
+        for (int s = 0; s < timetable.stopCount; s++) {
+            if (Double.isNaN(timetable.stopLats[s]) || Double.isNaN(timetable.stopLons[s])) {
+                continue;
+            }
+            double meters = Timetable.meters(lat, lng, timetable.stopLats[s], timetable.stopLons[s]);
+            if (meters < nearestMeters) {
+                nearestMeters = meters;
+                nearest = s;
+            }
+            if (meters <= maxAccessMeters) {
+                if (count == stops.length) {
+                    stops = Arrays.copyOf(stops, count * 2);
+                    seconds = Arrays.copyOf(seconds, count * 2);
+                }
+                stops[count] = s;
+                seconds[count] = (int) Math.ceil(meters / walkSpeed);
+                count++;
+            }
+        }
+        if (count == 0 && nearest >= 0) {
+            return new int[][]{{nearest}, {(int) Math.ceil(nearestMeters / walkSpeed)}};
+        }
+        return new int[][]{Arrays.copyOf(stops, count), Arrays.copyOf(seconds, count)};
+    }
+
+    private static boolean dominates(Journey a, Journey b) {
+        return a.departure() >= b.departure() && a.arrival() <= b.arrival() && a.transfers() <= b.transfers()
+                && (a.departure() > b.departure() || a.arrival() < b.arrival() || a.transfers() < b.transfers());
+    }
+}
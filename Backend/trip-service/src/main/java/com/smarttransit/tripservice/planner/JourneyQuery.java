@@ -0,0 +1,25 @@
+package com.smarttransit.tripservice.planner;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * A journey search: each end is a stop name or a coordinate (the coordinate wins
+ * when both are given).
+ *
+ * @param arriveBy time is the latest arrival rather than the earliest departure
+ */
+public record JourneyQuery(String from, Double fromLat, Double fromLng,
+                           String to, Double toLat, Double toLng,
+                           LocalDate date, LocalTime time, boolean arriveBy,
+                           int passengers, int limit) {
+
+    public boolean hasEnds() {
+        return (notBlank(from) || (fromLat != null && fromLng != null))
+                && (notBlank(to) || (toLat != null && toLng != null));
+    }
+
+    private static boolean notBlank(String value) {
+        return value != null && !value.isBlank();
+    }
+}
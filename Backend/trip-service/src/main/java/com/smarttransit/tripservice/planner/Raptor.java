@@ -0,0 +1,361 @@
+package com.smarttransit.tripservice.planner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Round-based public transit routing (RAPTOR) over a {@link Timetable}.
+ *
+ * Round k finds the earliest arrival at every stop using at most k vehicles: it
+ * scans each pattern serving a stop improved in round k-1 once, hopping on the
+ * earliest catchable trip, then relaxes walking transfers from the stops it
+ * improved. The answer is the Pareto set of (arrival, transfers) at the targets.
+ *
+ * An instance is a reusable workspace: all labels live in int arrays sized for the
+ * largest timetable seen, so a search allocates nothing until its journeys are
+ * built. Not thread-safe; keep one per thread.
+ */
+public final class Raptor {
+
+    public static final int UNREACHED = Integer.MAX_VALUE;
+
+    private static final int NONE = -3;
+    private static final int ACCESS = -2;
+    private static final int WALK = -1;
+
+    private final int maxRounds;
+    private final int transferSlack;
+
+    private Timetable timetable;
+    private int stops;
+    private int departure;
+
+    // Per round and stop: arrival, and how it was reached (trip index, WALK, ACCESS or NONE)
+    private int[] arrival = new int[0];
+    private int[] via = new int[0];
+    private int[] from = new int[0];
+    private int[] to = new int[0];
+    private int[] pattern = new int[0];
+    private int[] best = new int[0];
+
+    private int[] marked = new int[0];
+    private boolean[] isMarked = new boolean[0];
+    private int markedCount;
+    private int[] patternFrom = new int[0];
+    private int[] touched = new int[0];
+
+    private int[] targets = new int[0];
+    private int[] egress = new int[0];
+    private int targetCount;
+
+    private final int[] resultRounds;
+    private final int[] resultTargets;
+    private final int[] resultArrivals;
+    private int resultCount;
+
+    /**
+     * @param maxTransfers the most vehicle changes a journey may have
+     * @param transferSlackSeconds the least time between getting off one vehicle and boarding the next
+     */
+    public Raptor(int maxTransfers, int transferSlackSeconds) {
+        this.maxRounds = maxTransfers + 1;
+        this.transferSlack = transferSlackSeconds;
+        this.resultRounds = new int[maxRounds];
+        this.resultTargets = new int[maxRounds];
+        this.resultArrivals = new int[maxRounds];
+    }
+
+    /**
+     * Searches from the source stops (reached accessSeconds after departure) to the
+     * target stops (left egressSeconds before arrival).
+     *
+     * @return how many Pareto-optimal journeys were found, each with one more transfer
+     */
+    public int search(Timetable timetable, int[] sources, int[] accessSeconds, int departure,
+                      int[] targetStops, int[] egressSeconds) {
+        prepare(timetable);
+        this.departure = departure;
+        this.targetCount = 0;
+        this.resultCount = 0;
+        for (int i = 0; i < targetStops.length; i++) {
+            if (targetCount == targets.length) {
+                targets = Arrays.copyOf(targets, targetCount * 2 + 4);
+                egress = Arrays.copyOf(egress, targets.length);
+            }
+            targets[targetCount] = targetStops[i];
+            egress[targetCount] = egressSeconds[i];
+            targetCount++;
+        }
+
+        Arrays.fill(arrival, 0, stops, UNREACHED);
+        Arrays.fill(via, 0, stops, NONE);
+        Arrays.fill(best, 0, stops, UNREACHED);
+        for (int i = 0; i < sources.length; i++) {
+            int s = sources[i];
+            int time = departure + accessSeconds[i];
+            if (time < arrival[s]) {
+                arrival[s] = time;
+                best[s] = time;
+                via[s] = ACCESS;
+                mark(s);
+            }
+        }
+        relaxTransfers(0, 0);
+
+        int bestArrival = UNREACHED;
+        for (int round = 1; round <= maxRounds && markedCount > 0; round++) {
+            int base = round * stops;
+            System.arraycopy(arrival, base - stops, arrival, base, stops);
+            Arrays.fill(via, base, base + stops, NONE);
+
+            int touchedCount = collectPatterns();
+            int bound = targetBound();
+            for (int i = 0; i < touchedCount; i++) {
+                int p = touched[i];
+                scanPattern(p, patternFrom[p], round, bound);
+                patternFrom[p] = -1;
+            }
+            relaxTransfers(round, 0);
+
+            int roundBest = UNREACHED;
+            int roundTarget = -1;
+            for (int i = 0; i < targetCount; i++) {
+                int reached = arrival[base + targets[i]];
+                if (reached != UNREACHED && reached + egress[i] < roundBest) {
+                    roundBest = reached + egress[i];
+                    roundTarget = targets[i];
+                }
+            }
+            if (roundBest < bestArrival) {
+                bestArrival = roundBest;
+                resultRounds[resultCount] = round;
+                resultTargets[resultCount] = roundTarget;
+                resultArrivals[resultCount] = roundBest;
+                resultCount++;
+            }
+        }
+        // Marks left over from the last round
+        for (int i = 0; i < markedCount; i++) {
+            isMarked[marked[i]] = false;
+        }
+        markedCount = 0;
+        return resultCount;
+    }
+
+    /**
+     * Earliest arrival (egress included) of the i-th journey of the last search
+     */
+    public int arrival(int i) {
+        return resultArrivals[i];
+    }
+
+    /**
+     * Builds the i-th journey of the last search: the only step that allocates
+     */
+    public Journey journey(int i) {
+        Timetable tt = timetable;
+        int round = resultRounds[i];
+        int s = resultTargets[i];
+        int egressSeconds = 0;
+        for (int t = 0; t < targetCount; t++) {
+            if (targets[t] == s) {
+                egressSeconds = egress[t];
+                break;
+            }
+        }
+
+        List<Journey.Leg> legs = new ArrayList<>();
+        int rides = 0;
+        double price = 0;
+        int seats = Integer.MAX_VALUE;
+        int accessSeconds = 0;
+        while (true) {
+            while (via[round * stops + s] == NONE) {
+                round--;
+            }
+            int label = round * stops + s;
+            int how = via[label];
+            if (how == ACCESS) {
+                accessSeconds = arrival[label] - departure;
+                break;
+            }
+            if (how == WALK) {
+                int origin = from[label];
+                legs.add(new Journey.Leg(Journey.Mode.WALK, null, null, null,
+                        tt.stopIds[origin], tt.stopNames[origin], tt.stopIds[s], tt.stopNames[s],
+                        arrival[round * stops + origin], arrival[label]));
+                s = origin;
+                continue;
+            }
+            int p = pattern[label];
+            int boardStop = tt.patternStops[tt.patternStopStart[p] + from[label]];
+            int times = tt.tripTimeStart[how];
+            legs.add(new Journey.Leg(Journey.Mode.BUS, tt.tripIds[how] != 0 ? tt.tripIds[how] : null,
+                    tt.patternRouteIds[p], tt.patternLines[p],
+                    tt.stopIds[boardStop], tt.stopNames[boardStop], tt.stopIds[s], tt.stopNames[s],
+                    tt.departures[times + from[label]], tt.arrivals[times + to[label]]));
+            rides++;
+            price += tt.patternPrices[p];
+            seats = Math.min(seats, tt.tripSeats[how]);
+            s = boardStop;
+            round--;
+        }
+        List<Journey.Leg> ordered = new ArrayList<>(legs.size());
+        for (int l = legs.size() - 1; l >= 0; l--) {
+            ordered.add(legs.get(l));
+        }
+        int start = ordered.isEmpty() ? departure : ordered.get(0).departure() - accessSeconds;
+        int end = ordered.isEmpty() ? departure : ordered.get(ordered.size() - 1).arrival() + egressSeconds;
+        return new Journey(start, end, Math.max(rides - 1, 0), Math.round(price * 100.0) / 100.0,
+                seats == Integer.MAX_VALUE ? 0 : seats, ordered);
+    }
+
+    private void prepare(Timetable timetable) {
+        this.timetable = timetable;
+        this.stops = timetable.stopCount;
+        int labels = (maxRounds + 1) * stops;
+        if (arrival.length < labels) {
+            arrival = new int[labels];
+            via = new int[labels];
+            from = new int[labels];
+            to = new int[labels];
+            pattern = new int[labels];
+        }
+        if (best.length < stops) {
+            best = new int[stops];
+            marked = new int[stops];
+            isMarked = new boolean[stops];
+        }
+        if (patternFrom.length < timetable.patternCount) {
+            patternFrom = new int[timetable.patternCount];
+            Arrays.fill(patternFrom, -1);
+            touched = new int[timetable.patternCount];
+        }
+    }
+
+    private void mark(int stop) {
+        if (!isMarked[stop]) {
+            isMarked[stop] = true;
+            marked[markedCount++] = stop;
+        }
+    }
+
+    /**
+     * Queues every pattern through a marked stop, from the earliest marked position, and clears the marks
+     */
+    private int collectPatterns() {
+        Timetable tt = timetable;
+        int touchedCount = 0;
+        for (int i = 0; i < markedCount; i++) {
+            int s = marked[i];
+            isMarked[s] = false;
+            for (int slot = tt.stopPatternStart[s]; slot < tt.stopPatternStart[s + 1]; slot++) {
+                int p = tt.stopPatterns[slot];
+                int position = tt.stopPatternPositions[slot];
+                if (patternFrom[p] < 0) {
+                    touched[touchedCount++] = p;
+                    patternFrom[p] = position;
+                } else if (position < patternFrom[p]) {
+                    patternFrom[p] = position;
+                }
+            }
+        }
+        markedCount = 0;
+        return touchedCount;
+    }
+
+    private void scanPattern(int p, int firstPosition, int round, int bound) {
+        Timetable tt = timetable;
+        int base = round * stops;
+        int previous = base - stops;
+        int stopStart = tt.patternStopStart[p];
+        int length = tt.patternStopStart[p + 1] - stopStart;
+        int firstTrip = tt.patternTripStart[p];
+        int tripEnd = tt.patternTripStart[p + 1];
+
+        int trip = -1;
+        int times = 0;
+        int boardPosition = -1;
+        for (int i = firstPosition; i < length; i++) {
+            int s = tt.patternStops[stopStart + i];
+            if (trip >= 0) {
+                int reached = tt.arrivals[times + i];
+                if (reached < best[s] && reached < bound) {
+                    arrival[base + s] = reached;
+                    best[s] = reached;
+                    via[base + s] = trip;
+                    from[base + s] = boardPosition;
+                    to[base + s] = i;
+                    pattern[base + s] = p;
+                    mark(s);
+                }
+            }
+            int ready = arrival[previous + s];
+            if (ready == UNREACHED) {
+                continue;
+            }
+            // From round 2 on, boarding means changing vehicles: boarding at the origin happened in round 1
+            if (round > 1) {
+                ready += transferSlack;
+            }
+            if (trip >= 0 && ready >= tt.departures[times + i]) {
+                continue;
+            }
+            // Trips of a pattern never overtake each other, so departures at i are sorted
+            int lo = firstTrip;
+            int hi = trip >= 0 ? trip : tripEnd;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (tt.departures[tt.tripTimeStart[mid] + i] < ready) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            if (lo < (trip >= 0 ? trip : tripEnd)) {
+                trip = lo;
+                times = tt.tripTimeStart[trip];
+                boardPosition = i;
+            }
+        }
+    }
+
+    /**
+     * Walks from the stops improved so far in this round (the ones marked from index start)
+     */
+    private void relaxTransfers(int round, int start) {
+        Timetable tt = timetable;
+        int base = round * stops;
+        int bound = targetBound();
+        int rideMarked = markedCount;
+        for (int m = start; m < rideMarked; m++) {
+            int s = marked[m];
+            int reached = arrival[base + s];
+            for (int t = tt.transferStart[s]; t < tt.transferStart[s + 1]; t++) {
+                int target = tt.transferTargets[t];
+                int walked = reached + tt.transferSeconds[t];
+                if (walked < best[target] && walked < bound) {
+                    arrival[base + target] = walked;
+                    best[target] = walked;
+                    via[base + target] = WALK;
+                    from[base + target] = s;
+                    mark(target);
+                }
+            }
+        }
+    }
+
+    /**
+     * Earliest known arrival at any target, egress included: nothing later is worth keeping
+     */
+    private int targetBound() {
+        long bound = UNREACHED;
+        for (int i = 0; i < targetCount; i++) {
+            if (best[targets[i]] != UNREACHED) {
+                bound = Math.min(bound, (long) best[targets[i]] + egress[i]);
+            }
+        }
+        return (int) bound;
+    }
+}
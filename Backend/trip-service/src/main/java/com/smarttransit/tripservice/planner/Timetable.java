@@ -0,0 +1,174 @@
+package com.smarttransit.tripservice.planner;
+
+import java.lang.reflect.Array;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One service day of the network, flattened into primitive arrays for {@link Raptor}.
+ * Built by {@link TimetableBuilder}; never modified afterwards, so any number of
+ * searches can read it at once.
+ *
+ * Stops, patterns (a route's ordered stop list) and trips are numbered from 0.
+ * The trips of a pattern are contiguous and sorted by departure, and their stop
+ * times are stored trip by trip: trip t of pattern p, at position i of the pattern,
+ * arrives at arrivals[tripTimeStart[t] + i]. Times are seconds after midnight of
+ * the service day and may exceed 24h for trips running past midnight.
+ */
+public final class Timetable {
+
+    final LocalDate serviceDate;
+
+    final int stopCount;
+    final long[] stopIds;
+    final String[] stopNames;
+    final double[] stopLats;
+    final double[] stopLons;
+
+    final int patternCount;
+    final long[] patternRouteIds;
+    final String[] patternLines;
+    final double[] patternPrices;
+    final int[] patternStopStart;
+    final int[] patternStops;
+    final int[] patternTripStart;
+
+    final int tripCount;
+    final long[] tripIds;
+    final int[] tripSeats;
+    final int[] tripTimeStart;
+    final int[] arrivals;
+    final int[] departures;
+
+    final int[] stopPatternStart;
+    final int[] stopPatterns;
+    final int[] stopPatternPositions;
+
+    final int[] transferStart;
+    final int[] transferTargets;
+    final int[] transferSeconds;
+
+    private final Map<String, int[]> stopsByName;
+
+    Timetable(LocalDate serviceDate,
+              long[] stopIds, String[] stopNames, double[] stopLats, double[] stopLons,
+              long[] patternRouteIds, String[] patternLines, double[] patternPrices,
+              int[] patternStopStart, int[] patternStops, int[] patternTripStart,
+              long[] tripIds, int[] tripSeats, int[] tripTimeStart, int[] arrivals, int[] departures,
+              int[] stopPatternStart, int[] stopPatterns, int[] stopPatternPositions,
+              int[] transferStart, int[] transferTargets, int[] transferSeconds,
+              Map<String, int[]> stopsByName) {
+        this.serviceDate = serviceDate;
+        this.stopCount = stopIds.length;
+        this.stopIds = stopIds;
+        this.stopNames = stopNames;
+        this.stopLats = stopLats;
+        this.stopLons = stopLons;
+        this.patternCount = patternRouteIds.length;
+        this.patternRouteIds = patternRouteIds;
+        this.patternLines = patternLines;
+        this.patternPrices = patternPrices;
+        this.patternStopStart = patternStopStart;
+        this.patternStops = patternStops;
+        this.patternTripStart = patternTripStart;
+        this.tripCount = tripIds.length;
+        this.tripIds = tripIds;
+        this.tripSeats = tripSeats;
+        this.tripTimeStart = tripTimeStart;
+        this.arrivals = arrivals;
+        this.departures = departures;
+        this.stopPatternStart = stopPatternStart;
+        this.stopPatterns = stopPatterns;
+        this.stopPatternPositions = stopPatternPositions;
+        this.transferStart = transferStart;
+        this.transferTargets = transferTargets;
+        this.transferSeconds = transferSeconds;
+        this.stopsByName = stopsByName;
+    }
+
+    public LocalDate serviceDate() { return serviceDate; }
+
+    public int stopCount() { return stopCount; }
+
+    public int patternCount() { return patternCount; }
+
+    public int tripCount() { return tripCount; }
+
+    public int stopTimeCount() { return arrivals.length; }
+
+    public int transferCount() { return transferTargets.length; }
+
+    /**
+     * Stops with this name (case-insensitive), or else stops whose name contains it
+     */
+    public int[] stopsNamed(String name) {
+        String key = name.trim().toLowerCase(Locale.ROOT);
+        int[] exact = stopsByName.get(key);
+        if (exact != null) {
+            return exact;
+        }
+        List<Integer> partial = new ArrayList<>();
+        for (int s = 0; s < stopCount; s++) {
+            if (stopNames[s] != null && stopNames[s].toLowerCase(Locale.ROOT).contains(key)) {
+                partial.add(s);
+            }
+        }
+        return partial.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Stop indices by lowercased name
+     */
+    static Map<String, int[]> nameIndex(String[] stopNames) {
+        Map<String, int[]> index = new HashMap<>();
+        for (int s = 0; s < stopNames.length; s++) {
+            if (stopNames[s] != null) {
+                index.merge(stopNames[s].trim().toLowerCase(Locale.ROOT), new int[]{s}, TimetableBuilder::concat);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Approximate heap size of the arrays, skipping the ones already in seen: days
+     * built together share their stop, pattern and transfer arrays
+     */
+    long estimatedBytes(Set<Object> seen) {
+        long bytes = 0;
+        for (Object array : new Object[]{stopIds, stopLats, stopLons, patternRouteIds, patternPrices,
+                patternStopStart, patternStops, patternTripStart, tripIds, tripSeats, tripTimeStart,
+                arrivals, departures, stopPatternStart, stopPatterns, stopPatternPositions,
+                transferStart, transferTargets, transferSeconds}) {
+            if (seen.add(array)) {
+                bytes += 16 + (long) Array.getLength(array)
+                        * (array instanceof long[] || array instanceof double[] ? 8 : 4);
+            }
+        }
+        for (String[] strings : List.of(stopNames, patternLines)) {
+            if (seen.add(strings)) {
+                bytes += 16 + 4L * strings.length;
+                for (String value : strings) {
+                    bytes += value != null ? 40 + value.length() : 0;
+                }
+            }
+        }
+        if (seen.add(stopsByName)) {
+            bytes += 64L * stopsByName.size() + 20L * stopCount;
+        }
+        return bytes;
+    }
+
+    /**
+     * Distance in meters between two points (equirectangular, fine at walking range)
+     */
+    static double meters(double lat1, double lon1, double lat2, double lon2) {
+        double x = Math.toRadians(lon2 - lon1) * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double y = Math.toRadians(lat2 - lat1);
+        return Math.sqrt(x * x + y * y) * 6_371_000;
+    }
+}
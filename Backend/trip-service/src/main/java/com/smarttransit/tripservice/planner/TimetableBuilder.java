@@ -0,0 +1,302 @@
+package com.smarttransit.tripservice.planner;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects stops, patterns and trips of one or more service days, then packs them
+ * into a {@link Timetable} per day. Not thread-safe; use one builder per build.
+ *
+ * A pattern is given as its stop ids with arrival and departure offsets from the
+ * first stop; each trip is the pattern's time profile shifted to its departure.
+ * Walking transfers are added between stops within max-transfer-meters of each other.
+ * The days' timetables share their stop, pattern and transfer arrays: only trips
+ * and stop times are stored per day.
+ */
+public final class TimetableBuilder {
+
+    private final List<LocalDate> serviceDates;
+    private final Map<LocalDate, Integer> dayIndex = new HashMap<>();
+    private final Map<Long, Integer> stopIndex = new HashMap<>();
+    private final List<Long> stopIds = new ArrayList<>();
+    private final List<String> stopNames = new ArrayList<>();
+    private final List<double[]> stopCoordinates = new ArrayList<>();
+    private final List<PatternDraft> patterns = new ArrayList<>();
+
+    public TimetableBuilder(LocalDate serviceDate) {
+        this(List.of(serviceDate));
+    }
+
+    public TimetableBuilder(List<LocalDate> serviceDates) {
+        this.serviceDates = List.copyOf(serviceDates);
+        for (int d = 0; d < this.serviceDates.size(); d++) {
+            dayIndex.put(this.serviceDates.get(d), d);
+        }
+    }
+
+    public TimetableBuilder stop(long id, String name, Double latitude, Double longitude) {
+        if (stopIndex.putIfAbsent(id, stopNames.size()) == null) {
+            stopIds.add(id);
+            stopNames.add(name);
+            stopCoordinates.add(new double[]{
+                    latitude != null ? latitude : Double.NaN,
+                    longitude != null ? longitude : Double.NaN});
+        }
+        return this;
+    }
+
+    /**
+     * @return the pattern's handle for {@link #trip}, or -1 when fewer than two of its stops are known
+     */
+    public int pattern(long routeId, String line, double price, long[] stops, int[] arrivalOffsets, int[] departureOffsets) {
+        int[] indices = new int[stops.length];
+        int[] arrivals = new int[stops.length];
+        int[] departures = new int[stops.length];
+        int n = 0;
+        for (int i = 0; i < stops.length; i++) {
+            Integer index = stopIndex.get(stops[i]);
+            if (index != null) {
+                indices[n] = index;
+                arrivals[n] = arrivalOffsets[i];
+                departures[n] = departureOffsets[i];
+                n++;
+            }
+        }
+        if (n < 2) {
+            return -1;
+        }
+        patterns.add(new PatternDraft(routeId, line, price, Arrays.copyOf(indices, n),
+                Arrays.copyOf(arrivals, n), Arrays.copyOf(departures, n)));
+        return patterns.size() - 1;
+    }
+
+    /**
+     * A trip on the first service day
+     *
+     * @param tripId the trips row, or 0 for a departure that only exists in the schedule
+     * @param departure seconds after midnight at the pattern's first stop
+     */
+    public TimetableBuilder trip(int pattern, long tripId, int departure, int seats) {
+        return trip(pattern, serviceDates.get(0), tripId, departure, seats);
+    }
+
+    public TimetableBuilder trip(int pattern, LocalDate date, long tripId, int departure, int seats) {
+        Integer day = dayIndex.get(date);
+        if (day == null) {
+            throw new IllegalArgumentException("Not a service day of this build: " + date);
+        }
+        patterns.get(pattern).trips.add(new TripDraft(day, tripId, departure, seats));
+        return this;
+    }
+
+    /**
+     * The first service day's timetable
+     */
+    public Timetable build(double maxTransferMeters, double walkMetersPerSecond) {
+        return buildAll(maxTransferMeters, walkMetersPerSecond).get(serviceDates.get(0));
+    }
+
+    /**
+     * Every service day's timetable, in date order
+     */
+    public Map<LocalDate, Timetable> buildAll(double maxTransferMeters, double walkMetersPerSecond) {
+        int stopCount = stopNames.size();
+        long[] ids = new long[stopCount];
+        String[] names = stopNames.toArray(new String[0]);
+        double[] lats = new double[stopCount];
+        double[] lons = new double[stopCount];
+        for (int s = 0; s < stopCount; s++) {
+            ids[s] = stopIds.get(s);
+            lats[s] = stopCoordinates.get(s)[0];
+            lons[s] = stopCoordinates.get(s)[1];
+        }
+
+        Map<String, int[]> byName = Timetable.nameIndex(names);
+
+        // Shared by all days: patterns running on any of them
+        List<PatternDraft> served = patterns.stream().filter(p -> !p.trips.isEmpty()).toList();
+        int patternCount = served.size();
+        int stopSlots = served.stream().mapToInt(p -> p.stops.length).sum();
+        long[] routeIds = new long[patternCount];
+        String[] lines = new String[patternCount];
+        double[] prices = new double[patternCount];
+        int[] patternStopStart = new int[patternCount + 1];
+        int[] patternStops = new int[stopSlots];
+        int[] stopPatternCounts = new int[stopCount + 1];
+        int stopCursor = 0;
+        for (int p = 0; p < patternCount; p++) {
+            PatternDraft draft = served.get(p);
+            routeIds[p] = draft.routeId;
+            lines[p] = draft.line;
+            prices[p] = draft.price;
+            patternStopStart[p] = stopCursor;
+            System.arraycopy(draft.stops, 0, patternStops, stopCursor, draft.stops.length);
+            stopCursor += draft.stops.length;
+            for (int stop : draft.stops) {
+                stopPatternCounts[stop]++;
+            }
+            draft.trips.sort(Comparator.comparingInt(TripDraft::day).thenComparingInt(TripDraft::departure));
+        }
+        patternStopStart[patternCount] = stopCursor;
+
+        // stop -> (pattern, position) lists, one slot per occurrence
+        int[] stopPatternStart = new int[stopCount + 1];
+        for (int s = 0; s < stopCount; s++) {
+            stopPatternStart[s + 1] = stopPatternStart[s] + stopPatternCounts[s];
+        }
+        int[] stopPatterns = new int[stopSlots];
+        int[] stopPatternPositions = new int[stopSlots];
+        int[] fill = Arrays.copyOf(stopPatternStart, stopCount);
+        for (int p = 0; p < patternCount; p++) {
+            for (int i = patternStopStart[p]; i < patternStopStart[p + 1]; i++) {
+                int slot = fill[patternStops[i]]++;
+                stopPatterns[slot] = p;
+                stopPatternPositions[slot] = i - patternStopStart[p];
+            }
+        }
+
+        int[][] transfers = transfers(lats, lons, maxTransferMeters, walkMetersPerSecond);
+
+        // Per day: trips and their stop times
+        Map<LocalDate, Timetable> days = new LinkedHashMap<>();
+        int[] cursors = new int[patternCount];
+        for (int day = 0; day < serviceDates.size(); day++) {
+            int tripCount = 0;
+            long timeSlots = 0;
+            for (int p = 0; p < patternCount; p++) {
+                List<TripDraft> trips = served.get(p).trips;
+                int end = cursors[p];
+                while (end < trips.size() && trips.get(end).day == day) {
+                    end++;
+                }
+                tripCount += end - cursors[p];
+                timeSlots += (long) (end - cursors[p]) * served.get(p).stops.length;
+            }
+            if (timeSlots > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Timetable too large: " + timeSlots + " stop times on " + serviceDates.get(day));
+            }
+
+            int[] patternTripStart = new int[patternCount + 1];
+            long[] tripIds = new long[tripCount];
+            int[] tripSeats = new int[tripCount];
+            int[] tripTimeStart = new int[tripCount];
+            int[] arrivals = new int[(int) timeSlots];
+            int[] departures = new int[(int) timeSlots];
+            int tripCursor = 0;
+            int timeCursor = 0;
+            for (int p = 0; p < patternCount; p++) {
+                PatternDraft draft = served.get(p);
+                patternTripStart[p] = tripCursor;
+                while (cursors[p] < draft.trips.size() && draft.trips.get(cursors[p]).day == day) {
+                    TripDraft trip = draft.trips.get(cursors[p]++);
+                    tripIds[tripCursor] = trip.tripId;
+                    tripSeats[tripCursor] = trip.seats;
+                    tripTimeStart[tripCursor] = timeCursor;
+                    for (int i = 0; i < draft.stops.length; i++) {
+                        arrivals[timeCursor + i] = trip.departure + draft.arrivalOffsets[i];
+                        departures[timeCursor + i] = trip.departure + draft.departureOffsets[i];
+                    }
+                    timeCursor += draft.stops.length;
+                    tripCursor++;
+                }
+            }
+            patternTripStart[patternCount] = tripCursor;
+
+            days.put(serviceDates.get(day), new Timetable(serviceDates.get(day), ids, names, lats, lons,
+                    routeIds, lines, prices, patternStopStart, patternStops, patternTripStart,
+                    tripIds, tripSeats, tripTimeStart, arrivals, departures,
+                    stopPatternStart, stopPatterns, stopPatternPositions,
+                    transfers[0], transfers[1], transfers[2], byName));
+        }
+        return days;
+    }
+
+    /**
+     * Walking links between nearby stops, found through a grid of max-transfer-meters cells
+     *
+     * @return start offsets per stop, target stops and walking seconds
+     */
+    private static int[][] transfers(double[] lats, double[] lons, double maxMeters, double metersPerSecond) {
+        int stopCount = lats.length;
+        int[] start = new int[stopCount + 1];
+        if (maxMeters <= 0 || stopCount == 0) {
+            return new int[][]{start, new int[0], new int[0]};
+        }
+        double meanLat = Arrays.stream(lats).filter(lat -> !Double.isNaN(lat)).average().orElse(0);
+        double cellLat = maxMeters / 111_320.0;
+        double cellLon = cellLat / Math.max(Math.cos(Math.toRadians(meanLat)), 0.01);
+
+        Map<Long, int[]> cells = new HashMap<>();
+        for (int s = 0; s < stopCount; s++) {
+            if (!Double.isNaN(lats[s]) && !Double.isNaN(lons[s])) {
+                cells.merge(cell((int) Math.floor(lats[s] / cellLat), (int) Math.floor(lons[s] / cellLon)),
+                        new int[]{s}, TimetableBuilder::concat);
+            }
+        }
+
+        int[] targets = new int[Math.max(16, stopCount * 4)];
+        int[] seconds = new int[targets.length];
+        int count = 0;
+        for (int s = 0; s < stopCount; s++) {
+            start[s] = count;
+            if (Double.isNaN(lats[s]) || Double.isNaN(lons[s])) {
+                continue;
+            }
+            int cy = (int) Math.floor(lats[s] / cellLat);
+            int cx = (int) Math.floor(lons[s] / cellLon);
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    int[] nearby = cells.get(cell(cy + dy, cx + dx));
+                    if (nearby == null) {
+                        continue;
+                    }
+                    for (int other : nearby) {
+                        if (other == s) {
+                            continue;
+                        }
+                        double distance = Timetable.meters(lats[s], lons[s], lats[other], lons[other]);
+                        if (distance > maxMeters) {
+                            continue;
+                        }
+                        if (count == targets.length) {
+                            targets = Arrays.copyOf(targets, count * 2);
+                            seconds = Arrays.copyOf(seconds, count * 2);
+                        }
+                        targets[count] = other;
+                        seconds[count] = Math.max(1, (int) Math.ceil(distance / metersPerSecond));
+                        count++;
+                    }
+                }
+            }
+        }
+        start[stopCount] = count;
+        return new int[][]{start, Arrays.copyOf(targets, count), Arrays.copyOf(seconds, count)};
+    }
+
+    private static long cell(int y, int x) {
+        return ((long) y << 32) ^ (x & 0xffffffffL);
+    }
+
+    static int[] concat(int[] a, int[] b) {
+        int[] both = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, both, a.length, b.length);
+        return both;
+    }
+
+    private record PatternDraft(long routeId, String line, double price, int[] stops,
+                                int[] arrivalOffsets, int[] departureOffsets, List<TripDraft> trips) {
+
+        PatternDraft(long routeId, String line, double price, int[] stops, int[] arrivalOffsets, int[] departureOffsets) {
+            this(routeId, line, price, stops, arrivalOffsets, departureOffsets, new ArrayList<>());
+        }
+    }
+
+    private record TripDraft(int day, long tripId, int departure, int seats) {
+    }
+}
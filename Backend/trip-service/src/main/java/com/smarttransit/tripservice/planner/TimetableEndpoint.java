@@ -0,0 +1,34 @@
+package com.smarttransit.tripservice.planner;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * /actuator/timetable: version, build time and estimated memory of the journey
+ * planner's current snapshot, with per-day counts. POST queues a rebuild.
+ */
+@Component
+@Endpoint(id = "timetable")
+public class TimetableEndpoint {
+
+    private final TimetableStore store;
+
+    public TimetableEndpoint(TimetableStore store) {
+        this.store = store;
+    }
+
+    @ReadOperation
+    public Map<String, Object> timetable() {
+        return store.describe();
+    }
+
+    @WriteOperation
+    public Map<String, Object> rebuild() {
+        store.requestRebuild();
+        return store.describe();
+    }
+}
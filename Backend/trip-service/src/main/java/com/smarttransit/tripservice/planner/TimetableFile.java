@@ -0,0 +1,269 @@
+package com.smarttransit.tripservice.planner;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary copy of a {@link TimetableSnapshot}, so a restarted instance can serve
+ * searches without reading the whole network from the database first.
+ *
+ * Layout (big-endian): a 24-byte header with the magic "STTT", the format version,
+ * the body length and the CRC32C of the body; then the body: the loader settings and
+ * data fingerprint the snapshot was built from, its first day and day count, the
+ * arrays shared by all days, then each day's trip arrays. Arrays are an int length
+ * followed by the values; strings are an int byte length (-1 for null) and UTF-8.
+ *
+ * The file is written next to its final name and moved into place, and read through
+ * FileChannel.map with bulk copies into the timetable's arrays.
+ */
+public final class TimetableFile {
+
+    private static final int MAGIC = 0x53545454;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+
+    private TimetableFile() {
+    }
+
+    /**
+     * @param settings {@link TimetableLoader#settings()}: a file built with other settings is stale
+     */
+    public static void write(TimetableSnapshot snapshot, String settings, Path path) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                channel.position(HEADER_BYTES);
+                CRC32C crc = new CRC32C();
+                CheckedOutputStream checked = new CheckedOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16), crc);
+                DataOutputStream out = new DataOutputStream(checked);
+                writeBody(out, snapshot, settings);
+                out.flush();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                        .putInt(MAGIC)
+                        .putInt(FORMAT_VERSION)
+                        .putLong(out.size())
+                        .putLong(crc.getValue())
+                        .flip();
+                channel.write(header, 0);
+                channel.force(true);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * The snapshot in the file, or null when there is none or it cannot be used:
+     * another format version, a bad checksum, other settings or another first day
+     */
+    public static TimetableSnapshot read(Path path, String settings, LocalDate firstDay, int dayCount,
+                                         long version) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+            long length = buffer.getLong();
+            long checksum = buffer.getLong();
+            if (length != size - HEADER_BYTES) {
+                return null;
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice());
+            if (crc.getValue() != checksum) {
+                return null;
+            }
+            return readBody(buffer, settings, firstDay, dayCount, version);
+        }
+    }
+
+    private static void writeBody(DataOutputStream out, TimetableSnapshot snapshot, String settings) throws IOException {
+        writeString(out, settings);
+        writeString(out, snapshot.fingerprint());
+        out.writeLong(snapshot.builtAt().toEpochMilli());
+        out.writeLong(snapshot.buildMillis());
+        out.writeLong(snapshot.firstDay().toEpochDay());
+        out.writeInt(snapshot.days().size());
+
+        Timetable shared = snapshot.days().values().iterator().next();
+        writeLongs(out, shared.stopIds);
+        writeStrings(out, shared.stopNames);
+        writeDoubles(out, shared.stopLats);
+        writeDoubles(out, shared.stopLons);
+        writeLongs(out, shared.patternRouteIds);
+        writeStrings(out, shared.patternLines);
+        writeDoubles(out, shared.patternPrices);
+        writeInts(out, shared.patternStopStart);
+        writeInts(out, shared.patternStops);
+        writeInts(out, shared.stopPatternStart);
+        writeInts(out, shared.stopPatterns);
+        writeInts(out, shared.stopPatternPositions);
+        writeInts(out, shared.transferStart);
+        writeInts(out, shared.transferTargets);
+        writeInts(out, shared.transferSeconds);
+
+        for (Timetable day : snapshot.days().values()) {
+            writeInts(out, day.patternTripStart);
+            writeLongs(out, day.tripIds);
+            writeInts(out, day.tripSeats);
+            writeInts(out, day.tripTimeStart);
+            writeInts(out, day.arrivals);
+            writeInts(out, day.departures);
+        }
+    }
+
+    private static TimetableSnapshot readBody(ByteBuffer in, String settings, LocalDate firstDay, int dayCount,
+                                              long version) {
+        if (!settings.equals(readString(in))) {
+            return null;
+        }
+        String fingerprint = readString(in);
+        Instant builtAt = Instant.ofEpochMilli(in.getLong());
+        long buildMillis = in.getLong();
+        LocalDate first = LocalDate.ofEpochDay(in.getLong());
+        int days = in.getInt();
+        if (!first.equals(firstDay) || days != dayCount) {
+            return null;
+        }
+
+        long[] stopIds = readLongs(in);
+        String[] stopNames = readStrings(in);
+        double[] stopLats = readDoubles(in);
+        double[] stopLons = readDoubles(in);
+        long[] patternRouteIds = readLongs(in);
+        String[] patternLines = readStrings(in);
+        double[] patternPrices = readDoubles(in);
+        int[] patternStopStart = readInts(in);
+        int[] patternStops = readInts(in);
+        int[] stopPatternStart = readInts(in);
+        int[] stopPatterns = readInts(in);
+        int[] stopPatternPositions = readInts(in);
+        int[] transferStart = readInts(in);
+        int[] transferTargets = readInts(in);
+        int[] transferSeconds = readInts(in);
+        Map<String, int[]> byName = Timetable.nameIndex(stopNames);
+
+        Map<LocalDate, Timetable> timetables = new LinkedHashMap<>();
+        for (int d = 0; d < days; d++) {
+            LocalDate date = first.plusDays(d);
+            int[] patternTripStart = readInts(in);
+            long[] tripIds = readLongs(in);
+            int[] tripSeats = readInts(in);
+            int[] tripTimeStart = readInts(in);
+            int[] arrivals = readInts(in);
+            int[] departures = readInts(in);
+            timetables.put(date, new Timetable(date, stopIds, stopNames, stopLats, stopLons,
+                    patternRouteIds, patternLines, patternPrices, patternStopStart, patternStops, patternTripStart,
+                    tripIds, tripSeats, tripTimeStart, arrivals, departures,
+                    stopPatternStart, stopPatterns, stopPatternPositions,
+                    transferStart, transferTargets, transferSeconds, byName));
+        }
+        return new TimetableSnapshot(version, timetables, builtAt, buildMillis,
+                TimetableSnapshot.estimatedBytes(timetables), fingerprint);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static void writeLongs(DataOutputStream out, long[] values) throws IOException {
+        out.writeInt(values.length);
+        for (long value : values) {
+            out.writeLong(value);
+        }
+    }
+
+    private static void writeDoubles(DataOutputStream out, double[] values) throws IOException {
+        out.writeInt(values.length);
+        for (double value : values) {
+            out.writeDouble(value);
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] values) throws IOException {
+        out.writeInt(values.length);
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static int[] readInts(ByteBuffer in) {
+        int[] values = new int[in.getInt()];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + values.length * Integer.BYTES);
+        return values;
+    }
+
+    private static long[] readLongs(ByteBuffer in) {
+        long[] values = new long[in.getInt()];
+        in.asLongBuffer().get(values);
+        in.position(in.position() + values.length * Long.BYTES);
+        return values;
+    }
+
+    private static double[] readDoubles(ByteBuffer in) {
+        double[] values = new double[in.getInt()];
+        in.asDoubleBuffer().get(values);
+        in.position(in.position() + values.length * Double.BYTES);
+        return values;
+    }
+
+    private static String[] readStrings(ByteBuffer in) {
+        String[] values = new String[in.getInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readString(in);
+        }
+        return values;
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,274 @@
+package com.smarttransit.tripservice.planner;
+
+import com.smarttransit.tripservice.model.Route;
+import com.smarttransit.tripservice.model.RouteStop;
+import com.smarttransit.tripservice.model.Schedule;
+import com.smarttransit.tripservice.model.Stop;
+import com.smarttransit.tripservice.model.Trip;
+import com.smarttransit.tripservice.repository.RouteRepository;
+import com.smarttransit.tripservice.repository.RouteStopRepository;
+import com.smarttransit.tripservice.repository.ScheduleRepository;
+import com.smarttransit.tripservice.repository.StopRepository;
+import com.smarttransit.tripservice.repository.TripRepository;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Reads routes, route_stops, schedules and the days' trips into a {@link Timetable} per day.
+ *
+ * A route's time profile comes from its estimated duration (dureeEstimee, less the
+ * dwell times tempsArret), split between stops by distanceProchain when every hop has
+ * one, evenly otherwise. Its departures are the schedules running that day, expanded
+ * every frequence minutes from heureDepart up to heureArrivee, merged with the trips
+ * rows of the day: a trip takes over the scheduled departure at its time, a cancelled
+ * trip removes it.
+ */
+@Component
+public class TimetableLoader {
+
+    private static final int DAY = 24 * 3600;
+
+    private final RouteRepository routeRepository;
+    private final StopRepository stopRepository;
+    private final RouteStopRepository routeStopRepository;
+    private final ScheduleRepository scheduleRepository;
+    private final TripRepository tripRepository;
+    private final EntityManager entityManager;
+    private final int defaultHopSeconds;
+    private final int seatsPerTrip;
+    private final double maxTransferMeters;
+    private final double walkSpeed;
+
+    public TimetableLoader(RouteRepository routeRepository,
+                           StopRepository stopRepository,
+                           RouteStopRepository routeStopRepository,
+                           ScheduleRepository scheduleRepository,
+                           TripRepository tripRepository,
+                           EntityManager entityManager,
+                           @Value("${trip.planner.default-hop-seconds:120}") int defaultHopSeconds,
+                           @Value("${trip.planner.seats-per-trip:50}") int seatsPerTrip,
+                           @Value("${trip.planner.max-transfer-meters:300}") double maxTransferMeters,
+                           @Value("${trip.planner.walk-speed:1.2}") double walkSpeed) {
+        this.routeRepository = routeRepository;
+        this.stopRepository = stopRepository;
+        this.routeStopRepository = routeStopRepository;
+        this.scheduleRepository = scheduleRepository;
+        this.tripRepository = tripRepository;
+        this.entityManager = entityManager;
+        this.defaultHopSeconds = defaultHopSeconds;
+        this.seatsPerTrip = seatsPerTrip;
+        this.maxTransferMeters = maxTransferMeters;
+        this.walkSpeed = walkSpeed;
+    }
+
+    @Transactional(readOnly = true)
+    public Timetable load(LocalDate date) {
+        return load(List.of(date)).get(date);
+    }
+
+    /**
+     * Timetables for consecutive service days, read in one pass: they share their
+     * stops, patterns and transfers
+     */
+    @Transactional(readOnly = true)
+    public Map<LocalDate, Timetable> load(List<LocalDate> dates) {
+        // Routes and stops first, so the route_stops rows resolve them from the persistence context
+        List<Route> routes = routeRepository.findAll();
+        List<Stop> stops = stopRepository.findAll();
+        Map<Long, List<RouteStop>> stopsByRoute = routeStopRepository.findAll().stream()
+                .collect(Collectors.groupingBy(rs -> rs.getRoute().getId()));
+        Map<Long, List<Schedule>> schedulesByRoute = scheduleRepository.findAll().stream()
+                .collect(Collectors.groupingBy(schedule -> schedule.getRoute().getId()));
+        Map<Long, List<Trip>> tripsByRoute = tripRepository
+                .findByDateTrajetBetween(dates.get(0), dates.get(dates.size() - 1)).stream()
+                .collect(Collectors.groupingBy(trip -> trip.getRoute().getId()));
+
+        TimetableBuilder builder = new TimetableBuilder(dates);
+        for (Stop stop : stops) {
+            builder.stop(stop.getId(), stop.getNom(), stop.getLatitude(), stop.getLongitude());
+        }
+        for (Route route : routes) {
+            List<RouteStop> routeStops = stopsByRoute.getOrDefault(route.getId(), List.of()).stream()
+                    .sorted(Comparator.comparing(RouteStop::getOrdreArret, Comparator.nullsLast(Comparator.naturalOrder())))
+                    .toList();
+            if (routeStops.size() < 2) {
+                continue;
+            }
+            int[][] offsets = offsets(route, routeStops);
+            long[] stopIds = routeStops.stream().mapToLong(rs -> rs.getStop().getId()).toArray();
+            String line = route.getNumeroLigne() != null ? route.getNumeroLigne() : route.getNom();
+            double price = route.getDistanceTotale() != null ? Math.round(route.getDistanceTotale() * 1.5 * 100.0) / 100.0 : 10.0;
+            int pattern = builder.pattern(route.getId(), line, price, stopIds, offsets[0], offsets[1]);
+            if (pattern < 0) {
+                continue;
+            }
+
+            for (LocalDate date : dates) {
+                // departure second -> {trip id (0 if only scheduled), seats left}
+                Map<Integer, long[]> departures = new TreeMap<>();
+                for (Schedule schedule : schedulesByRoute.getOrDefault(route.getId(), List.of())) {
+                    if (runsOn(schedule, date)) {
+                        expand(schedule, departures);
+                    }
+                }
+                for (Trip trip : tripsByRoute.getOrDefault(route.getId(), List.of())) {
+                    if (!date.equals(trip.getDateTrajet())) {
+                        continue;
+                    }
+                    int departure = departure(trip, date);
+                    if (departure < 0) {
+                        continue;
+                    }
+                    if ("CANCELLED".equalsIgnoreCase(trip.getStatut())) {
+                        departures.remove(departure);
+                    } else {
+                        int used = trip.getNombrePassagers() != null ? trip.getNombrePassagers() : 0;
+                        departures.put(departure, new long[]{trip.getId(), Math.max(seatsPerTrip - used, 0)});
+                    }
+                }
+                departures.forEach((departure, trip) -> builder.trip(pattern, date, trip[0], departure, (int) trip[1]));
+            }
+        }
+        return builder.buildAll(maxTransferMeters, walkSpeed);
+    }
+
+    /**
+     * Row count, highest id and latest updatedAt of every table a timetable is read
+     * from: changes when rows are added, removed or edited, including by another
+     * instance. Rows written with plain SQL count through their ids only, so such
+     * writers must set updated_at on UPDATEs.
+     */
+    @Transactional(readOnly = true)
+    public String fingerprint() {
+        StringBuilder fingerprint = new StringBuilder();
+        for (String entity : List.of("Route", "Stop", "RouteStop", "Schedule", "Trip")) {
+            Object[] row = entityManager.createQuery(
+                    "select count(e), max(e.id), max(e.updatedAt) from " + entity + " e", Object[].class).getSingleResult();
+            fingerprint.append(entity).append(':').append(row[0]).append('/').append(row[1])
+                    .append('/').append(row[2]).append(' ');
+        }
+        return fingerprint.toString().trim();
+    }
+
+    /**
+     * The settings that shape a timetable besides the data itself
+     */
+    public String settings() {
+        return "default-hop-seconds=" + defaultHopSeconds + ",seats-per-trip=" + seatsPerTrip
+                + ",max-transfer-meters=" + maxTransferMeters + ",walk-speed=" + walkSpeed;
+    }
+
+    /**
+     * Arrival and departure offsets from the first stop, in seconds
+     */
+    private int[][] offsets(Route route, List<RouteStop> routeStops) {
+        int n = routeStops.size();
+        int[] dwell = new int[n];
+        int dwellTotal = 0;
+        for (int i = 1; i < n - 1; i++) {
+            Integer minutes = routeStops.get(i).getTempsArret();
+            dwell[i] = minutes != null && minutes > 0 ? minutes * 60 : 0;
+            dwellTotal += dwell[i];
+        }
+        int total = route.getDureeEstimee() != null && route.getDureeEstimee() > 0
+                ? route.getDureeEstimee() * 60 : defaultHopSeconds * (n - 1);
+        int running = Math.max(total - dwellTotal, 30 * (n - 1));
+
+        double[] weights = new double[n - 1];
+        double weightTotal = 0;
+        boolean byDistance = true;
+        for (int i = 0; i < n - 1; i++) {
+            Double km = routeStops.get(i).getDistanceProchain();
+            if (km == null || km <= 0) {
+                byDistance = false;
+                break;
+            }
+            weights[i] = km;
+            weightTotal += km;
+        }
+        if (!byDistance) {
+            Arrays.fill(weights, 1);
+            weightTotal = n - 1;
+        }
+
+        int[] arrivals = new int[n];
+        int[] departures = new int[n];
+        double driven = 0;
+        int dwelt = 0;
+        for (int i = 1; i < n; i++) {
+            driven += running * weights[i - 1] / weightTotal;
+            arrivals[i] = (int) Math.round(driven) + dwelt;
+            departures[i] = arrivals[i] + dwell[i];
+            dwelt += dwell[i];
+        }
+        return new int[][]{arrivals, departures};
+    }
+
+    private void expand(Schedule schedule, Map<Integer, long[]> departures) {
+        if (schedule.getHeureDepart() == null) {
+            return;
+        }
+        int first = schedule.getHeureDepart().toSecondOfDay();
+        Integer frequency = schedule.getFrequence();
+        if (frequency == null || frequency <= 0 || schedule.getHeureArrivee() == null) {
+            departures.putIfAbsent(first, new long[]{0, seatsPerTrip});
+            return;
+        }
+        int last = schedule.getHeureArrivee().toSecondOfDay();
+        if (last < first) {
+            last += DAY;
+        }
+        for (int t = first; t <= last; t += frequency * 60) {
+            departures.putIfAbsent(t, new long[]{0, seatsPerTrip});
+        }
+    }
+
+    /**
+     * The trip's departure from its first stop, or -1 when it cannot be placed
+     */
+    private static int departure(Trip trip, LocalDate date) {
+        if (trip.getHeureDepartReelle() != null) {
+            int days = (int) (trip.getHeureDepartReelle().toLocalDate().toEpochDay() - date.toEpochDay());
+            return trip.getHeureDepartReelle().toLocalTime().toSecondOfDay() + days * DAY;
+        }
+        Schedule schedule = trip.getSchedule();
+        // One run of a frequency schedule, but which one is unknown: its slot is already there
+        if (schedule == null || schedule.getHeureDepart() == null
+                || (schedule.getFrequence() != null && schedule.getFrequence() > 0)) {
+            return -1;
+        }
+        return schedule.getHeureDepart().toSecondOfDay();
+    }
+
+    static boolean runsOn(Schedule schedule, LocalDate date) {
+        if (schedule.getDateDebut() != null && date.isBefore(schedule.getDateDebut())) {
+            return false;
+        }
+        if (schedule.getDateFin() != null && date.isAfter(schedule.getDateFin())) {
+            return false;
+        }
+        String days = schedule.getJoursSemaine();
+        if (days == null || days.isBlank()) {
+            return true;
+        }
+        String today = date.getDayOfWeek().name().substring(0, 3);
+        for (String day : days.split(",")) {
+            String code = day.trim().toUpperCase(Locale.ROOT);
+            if (code.length() >= 3 && code.substring(0, 3).equals(today)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
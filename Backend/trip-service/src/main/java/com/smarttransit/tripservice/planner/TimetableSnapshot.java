@@ -0,0 +1,30 @@
+package com.smarttransit.tripservice.planner;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The timetables of the days from yesterday to horizon-days ahead, built together
+ * and never modified: {@link TimetableStore} replaces the whole snapshot when the
+ * data changes.
+ *
+ * @param version increases with every snapshot built since startup
+ * @param bytes approximate heap size, counting the arrays the days share once
+ * @param fingerprint {@link TimetableLoader#fingerprint()} read just before the build
+ */
+public record TimetableSnapshot(long version, Map<LocalDate, Timetable> days, Instant builtAt,
+                                long buildMillis, long bytes, String fingerprint) {
+
+    public LocalDate firstDay() {
+        return days.keySet().iterator().next();
+    }
+
+    static long estimatedBytes(Map<LocalDate, Timetable> days) {
+        Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        return days.values().stream().mapToLong(timetable -> timetable.estimatedBytes(seen)).sum();
+    }
+}
@@ -0,0 +1,304 @@
+package com.smarttransit.tripservice.planner;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the current {@link TimetableSnapshot} behind a volatile reference: searches
+ * read whatever snapshot is current without locking, while a single background
+ * thread builds the next one and swaps it in whole.
+ *
+ * A rebuild is requested when trip-service changes routes, stops, schedules or trips
+ * (after the transaction commits), and by a periodic check that notices a new day
+ * or rows written elsewhere (see {@link TimetableLoader#fingerprint()}). Requests
+ * arriving while one is queued are folded into it. A failed build keeps the
+ * previous snapshot.
+ *
+ * Each snapshot is also saved to snapshot-file ({@link TimetableFile}). At startup a
+ * saved snapshot for the current days and settings is served straight away if its
+ * fingerprint still matches the database; otherwise the first build replaces it.
+ *
+ * Only yesterday to horizon-days ahead can be searched; other dates have no
+ * timetable. Before the first snapshot is ready those days are loaded on demand,
+ * once per day however many searches ask at the same time, and kept until the
+ * snapshot replaces them.
+ */
+@Component
+public class TimetableStore {
+
+    private static final Logger log = LoggerFactory.getLogger(TimetableStore.class);
+
+    private final TimetableLoader loader;
+    private final int horizonDays;
+    private final Path snapshotFile;
+    private final Map<LocalDate, CompletableFuture<Timetable>> extraDays = new ConcurrentHashMap<>();
+    private final ExecutorService builder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "timetable-builder");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean queued = new AtomicBoolean();
+    private volatile boolean building;
+    private final AtomicLong versions = new AtomicLong();
+    private final Timer buildTimer;
+    private final Counter failures;
+
+    private volatile TimetableSnapshot current;
+    private volatile String lastError;
+
+    public TimetableStore(TimetableLoader loader,
+                          MeterRegistry meterRegistry,
+                          @Value("${trip.planner.horizon-days:7}") int horizonDays,
+                          @Value("${trip.planner.snapshot-file:}") String snapshotFile) {
+        this.loader = loader;
+        this.horizonDays = horizonDays;
+        this.snapshotFile = snapshotFile.isBlank() ? null : Path.of(snapshotFile);
+        this.buildTimer = Timer.builder("trip.timetable.build")
+                .description("Time to read and pack a timetable snapshot")
+                .register(meterRegistry);
+        this.failures = Counter.builder("trip.timetable.build.failures").register(meterRegistry);
+        Gauge.builder("trip.timetable.version", this, store -> store.current != null ? store.current.version() : 0)
+                .register(meterRegistry);
+        Gauge.builder("trip.timetable.memory", this, store -> store.current != null ? store.current.bytes() : 0)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("trip.timetable.age", this,
+                        store -> store.current != null ? Instant.now().getEpochSecond() - store.current.builtAt().getEpochSecond() : 0)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        // Before the web server starts, so no search waits on the database
+        restore();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (current == null) {
+            schedule();
+        }
+    }
+
+    /**
+     * The timetable of a service day: from the current snapshot, or else loaded on
+     * demand (see above). Null for a day outside yesterday to horizon-days ahead.
+     */
+    public Timetable timetable(LocalDate date) {
+        LocalDate today = LocalDate.now();
+        if (date.isBefore(today.minusDays(1)) || date.isAfter(today.plusDays(horizonDays))) {
+            return null;
+        }
+        TimetableSnapshot snapshot = current;
+        Timetable timetable = snapshot != null ? snapshot.days().get(date) : null;
+        if (timetable != null) {
+            return timetable;
+        }
+        CompletableFuture<Timetable> pending = extraDays.get(date);
+        if (pending == null) {
+            CompletableFuture<Timetable> loading = new CompletableFuture<>();
+            pending = extraDays.putIfAbsent(date, loading);
+            if (pending == null) {
+                pending = loading;
+                load(date, loading);
+            }
+        }
+        try {
+            return pending.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private void load(LocalDate date, CompletableFuture<Timetable> loading) {
+        long start = System.nanoTime();
+        try {
+            loading.complete(loader.load(date));
+            log.info("Built timetable for {} ahead of the first snapshot in {} ms",
+                    date, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (RuntimeException e) {
+            // Not cached: the next search tries again
+            extraDays.remove(date, loading);
+            loading.completeExceptionally(e);
+        }
+    }
+
+    public TimetableSnapshot current() {
+        return current;
+    }
+
+    /**
+     * Queues a rebuild, once the current transaction (if any) has committed
+     */
+    public void requestRebuild() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    schedule();
+                }
+            });
+        } else {
+            schedule();
+        }
+    }
+
+    @Scheduled(initialDelayString = "${trip.planner.refresh-check-ms:60000}",
+            fixedDelayString = "${trip.planner.refresh-check-ms:60000}")
+    public void checkForChanges() {
+        // The snapshot being built will be compared on the next check
+        if (building || queued.get()) {
+            return;
+        }
+        TimetableSnapshot snapshot = current;
+        try {
+            if (snapshot == null || !snapshot.firstDay().equals(LocalDate.now().minusDays(1))
+                    || !snapshot.fingerprint().equals(loader.fingerprint())) {
+                schedule();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Timetable change check failed: {}", e.getMessage());
+        }
+    }
+
+    public Map<String, Object> describe() {
+        TimetableSnapshot snapshot = current;
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("rebuildQueued", queued.get());
+        description.put("failedBuilds", (long) failures.count());
+        description.put("lastError", lastError);
+        if (snapshot == null) {
+            description.put("version", null);
+            return description;
+        }
+        description.put("version", snapshot.version());
+        description.put("builtAt", snapshot.builtAt().toString());
+        description.put("buildMillis", snapshot.buildMillis());
+        description.put("estimatedBytes", snapshot.bytes());
+        description.put("fingerprint", snapshot.fingerprint());
+        Map<String, Object> days = new LinkedHashMap<>();
+        snapshot.days().forEach((date, timetable) -> days.put(date.toString(), Map.of(
+                "stops", timetable.stopCount(),
+                "patterns", timetable.patternCount(),
+                "trips", timetable.tripCount(),
+                "stopTimes", timetable.stopTimeCount(),
+                "transfers", timetable.transferCount())));
+        description.put("days", days);
+        return description;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        builder.shutdownNow();
+    }
+
+    private void schedule() {
+        if (queued.compareAndSet(false, true)) {
+            builder.execute(this::rebuild);
+        }
+    }
+
+    /**
+     * Serves the saved snapshot if it matches the current days, settings and data
+     */
+    private void restore() {
+        if (snapshotFile == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            TimetableSnapshot snapshot = TimetableFile.read(snapshotFile, loader.settings(),
+                    LocalDate.now().minusDays(1), horizonDays + 2, versions.get() + 1);
+            if (snapshot == null) {
+                log.info("No usable timetable snapshot in {}, building from the database", snapshotFile);
+                return;
+            }
+            String fingerprint = loader.fingerprint();
+            if (!snapshot.fingerprint().equals(fingerprint)) {
+                log.info("Timetable snapshot in {} is out of date ({} saved, {} now), building from the database",
+                        snapshotFile, snapshot.fingerprint(), fingerprint);
+                return;
+            }
+            versions.incrementAndGet();
+            current = snapshot;
+            log.info("Timetable snapshot v{} restored from {} (built {}): ~{} KB in {} ms",
+                    snapshot.version(), snapshotFile, snapshot.builtAt(), snapshot.bytes() / 1024,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not restore timetable snapshot {}: {}", snapshotFile, e.toString());
+        }
+    }
+
+    private void save(TimetableSnapshot snapshot) {
+        if (snapshotFile == null) {
+            return;
+        }
+        try {
+            TimetableFile.write(snapshot, loader.settings(), snapshotFile);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not save timetable snapshot to {}: {}", snapshotFile, e.toString());
+        }
+    }
+
+    private void rebuild() {
+        // Cleared before reading, so a change committed during the build queues the next one
+        queued.set(false);
+        building = true;
+        long start = System.nanoTime();
+        try {
+            String fingerprint = loader.fingerprint();
+            LocalDate today = LocalDate.now();
+            List<LocalDate> dates = new ArrayList<>();
+            for (LocalDate date = today.minusDays(1); !date.isAfter(today.plusDays(horizonDays)); date = date.plusDays(1)) {
+                dates.add(date);
+            }
+            Map<LocalDate, Timetable> days = loader.load(dates);
+            long buildNanos = System.nanoTime() - start;
+            buildTimer.record(buildNanos, TimeUnit.NANOSECONDS);
+            TimetableSnapshot snapshot = new TimetableSnapshot(versions.incrementAndGet(), days, Instant.now(),
+                    TimeUnit.NANOSECONDS.toMillis(buildNanos), TimetableSnapshot.estimatedBytes(days), fingerprint);
+            current = snapshot;
+            // Built from older data; days now in the snapshot are not needed either
+            extraDays.clear();
+            lastError = null;
+            save(snapshot);
+            Timetable first = days.get(today);
+            log.info("Timetable snapshot v{} for {} to {}: {} stops, {} patterns, {} trips today, ~{} KB, built in {} ms",
+                    snapshot.version(), dates.get(0), dates.get(dates.size() - 1), first.stopCount(),
+                    first.patternCount(), first.tripCount(), snapshot.bytes() / 1024, snapshot.buildMillis());
+        } catch (RuntimeException e) {
+            failures.increment();
+            lastError = e.toString();
+            log.error("Timetable rebuild failed, keeping snapshot v{}",
+                    current != null ? current.version() : 0, e);
+        } finally {
+            building = false;
+        }
+    }
+}
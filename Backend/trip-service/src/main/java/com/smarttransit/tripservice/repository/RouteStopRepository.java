@@ -2,10 +2,17 @@ package com.smarttransit.tripservice.repository;
 
 import com.smarttransit.tripservice.model.RouteStop;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface RouteStopRepository extends JpaRepository<RouteStop, Long> {
     List<RouteStop> findByRoute_IdOrderByOrdreArretAsc(Long routeId);
     List<RouteStop> findByStop_Id(Long stopId);
+
+    @Query("select rs from RouteStop rs join fetch rs.route join fetch rs.stop "
+            + "where rs.route.id in :routeIds order by rs.route.id, rs.ordreArret")
+    List<RouteStop> findWithStopByRouteIds(@Param("routeIds") Collection<Long> routeIds);
 }
\ No newline at end of file
@@ -2,13 +2,20 @@ package com.smarttransit.tripservice.repository;
 
 import com.smarttransit.tripservice.model.Trip;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
 import java.util.List;
 
 public interface TripRepository extends JpaRepository<Trip, Long> {
     List<Trip> findByDateTrajet(LocalDate dateTrajet);
+    List<Trip> findByDateTrajetBetween(LocalDate from, LocalDate to);
     List<Trip> findByConducteurId(Long conducteurId);
     List<Trip> findByRoute_IdAndDateTrajet(Long routeId, LocalDate dateTrajet);
     List<Trip> findByRoute_IdInAndDateTrajet(Iterable<Long> routeIds, LocalDate dateTrajet);
+
+    @Query("select t from Trip t join fetch t.route left join fetch t.schedule s left join fetch s.route "
+            + "where t.dateTrajet = :date")
+    List<Trip> findWithRouteByDateTrajet(@Param("date") LocalDate date);
 }
\ No newline at end of file
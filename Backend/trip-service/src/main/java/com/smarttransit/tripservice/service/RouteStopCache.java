@@ -0,0 +1,115 @@
+package com.smarttransit.tripservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.smarttransit.tripservice.model.RouteStop;
+import com.smarttransit.tripservice.model.Stop;
+import com.smarttransit.tripservice.repository.RouteStopRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ordered stops of each route, for the trip listings and details: the routes
+ * missing from the cache are read together with one IN query, stops joined.
+ *
+ * Entries are immutable views rather than entities, so they can be shared between
+ * requests. Cleared when trip-service writes routes or stops; a GTFS import only
+ * adds routes, which are read on first use. Writes made elsewhere (another
+ * instance, plain SQL) show after ttl-seconds; at most max-routes are kept.
+ *
+ * Every clear starts a new generation. A read that began in an older one may hold
+ * the data from before the write, so what it put is dropped again.
+ */
+@Component
+public class RouteStopCache {
+
+    public record StopView(Long id, String name, Double latitude, Double longitude) {
+    }
+
+    private final RouteStopRepository routeStopRepository;
+    private final Cache<Long, List<StopView>> stopsByRoute;
+    private final AtomicLong generation = new AtomicLong();
+
+    public RouteStopCache(RouteStopRepository routeStopRepository,
+                          @Value("${trip.route-stop-cache.max-routes:10000}") long maxRoutes,
+                          @Value("${trip.route-stop-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.routeStopRepository = routeStopRepository;
+        this.stopsByRoute = Caffeine.newBuilder()
+                .maximumSize(maxRoutes)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    public List<StopView> stops(Long routeId) {
+        return stops(List.of(routeId)).get(routeId);
+    }
+
+    /**
+     * Stops in ordreArret order for each route (an empty list for a route without stops)
+     */
+    public Map<Long, List<StopView>> stops(Collection<Long> routeIds) {
+        Map<Long, List<StopView>> found = new HashMap<>();
+        Set<Long> missing = new LinkedHashSet<>();
+        for (Long routeId : routeIds) {
+            List<StopView> stops = stopsByRoute.getIfPresent(routeId);
+            if (stops != null) {
+                found.put(routeId, stops);
+            } else {
+                missing.add(routeId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return found;
+        }
+        long readIn = generation.get();
+        Map<Long, List<StopView>> loaded = new HashMap<>();
+        for (RouteStop routeStop : routeStopRepository.findWithStopByRouteIds(missing)) {
+            Stop stop = routeStop.getStop();
+            loaded.computeIfAbsent(routeStop.getRoute().getId(), id -> new ArrayList<>())
+                    .add(new StopView(stop.getId(), stop.getNom(), stop.getLatitude(), stop.getLongitude()));
+        }
+        for (Long routeId : missing) {
+            List<StopView> stops = List.copyOf(loaded.getOrDefault(routeId, List.of()));
+            stopsByRoute.put(routeId, stops);
+            found.put(routeId, stops);
+        }
+        // Checked after the puts: a clear between the read and here has bumped the generation first
+        if (generation.get() != readIn) {
+            stopsByRoute.invalidateAll(missing);
+        }
+        return found;
+    }
+
+    /**
+     * Clears the cache, once the current transaction (if any) has committed
+     */
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    clear();
+                }
+            });
+        } else {
+            clear();
+        }
+    }
+
+    private void clear() {
+        generation.incrementAndGet();
+        stopsByRoute.invalidateAll();
+    }
+}
@@ -1,7 +1,9 @@
 package com.smarttransit.tripservice.service.impl;
 
 import com.smarttransit.tripservice.model.*;
+import com.smarttransit.tripservice.planner.TimetableStore;
 import com.smarttransit.tripservice.repository.*;
+import com.smarttransit.tripservice.service.RouteStopCache;
 import com.smarttransit.tripservice.service.TripService;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -20,19 +22,25 @@ public class TripServiceImpl implements TripService {
     private final ScheduleRepository scheduleRepository;
     private final TripRepository tripRepository;
     private final TripStopRepository tripStopRepository;
+    private final TimetableStore timetableStore;
+    private final RouteStopCache routeStopCache;
 
     public TripServiceImpl(RouteRepository routeRepository,
                            StopRepository stopRepository,
                            RouteStopRepository routeStopRepository,
                            ScheduleRepository scheduleRepository,
                            TripRepository tripRepository,
-                           TripStopRepository tripStopRepository) {
+                           TripStopRepository tripStopRepository,
+                           TimetableStore timetableStore,
+                           RouteStopCache routeStopCache) {
         this.routeRepository = routeRepository;
         this.stopRepository = stopRepository;
         this.routeStopRepository = routeStopRepository;
         this.scheduleRepository = scheduleRepository;
         this.tripRepository = tripRepository;
         this.tripStopRepository = tripStopRepository;
+        this.timetableStore = timetableStore;
+        this.routeStopCache = routeStopCache;
     }
 
     // Routes
@@ -43,7 +51,11 @@ public class TripServiceImpl implements TripService {
     public Route getRoute(Long id) { return routeRepository.findById(id).orElse(null); }
 
     @Override
-    public Route createRoute(Route route) { return routeRepository.save(route); }
+    public Route createRoute(Route route) {
+        timetableStore.requestRebuild();
+        routeStopCache.invalidate();
+        return routeRepository.save(route);
+    }
 
     @Override
     public Route updateRoute(Long id, Route route) {
@@ -56,6 +68,8 @@ public class TripServiceImpl implements TripService {
         existing.setDureeEstimee(route.getDureeEstimee());
         existing.setStatut(route.getStatut());
         existing.setDateCreation(route.getDateCreation());
+        timetableStore.requestRebuild();
+        routeStopCache.invalidate();
         return routeRepository.save(existing);
     }
 
@@ -70,21 +84,28 @@ public class TripServiceImpl implements TripService {
     public List<Stop> getAllStops() { return stopRepository.findAll(); }
 
     @Override
-    public Stop createStop(Stop stop) { return stopRepository.save(stop); }
+    public Stop createStop(Stop stop) {
+        timetableStore.requestRebuild();
+        routeStopCache.invalidate();
+        return stopRepository.save(stop);
+    }
 
     // Schedules
     @Override
     public List<Schedule> getSchedulesByRoute(Long routeId) { return scheduleRepository.findByRoute_Id(routeId); }
 
     @Override
-    public Schedule createSchedule(Schedule schedule) { return scheduleRepository.save(schedule); }
+    public Schedule createSchedule(Schedule schedule) {
+        timetableStore.requestRebuild();
+        return scheduleRepository.save(schedule);
+    }
 
     // Trips
     @Override
     public List<Trip> searchTrips(String origin, String destination, LocalDate date) {
         // Placeholder: a real implementation would map origin/destination to route IDs via stops
-        // For now, return trips on the date
-        return tripRepository.findByDateTrajet(date);
+        // For now, return trips on the date, with their route and schedule in the same query
+        return tripRepository.findWithRouteByDateTrajet(date);
     }
 
     @Override
@@ -94,7 +115,10 @@ public class TripServiceImpl implements TripService {
     public List<Trip> getTripsByDriver(Long driverId) { return tripRepository.findByConducteurId(driverId); }
 
     @Override
-    public Trip createTrip(Trip trip) { return tripRepository.save(trip); }
+    public Trip createTrip(Trip trip) {
+        timetableStore.requestRebuild();
+        return tripRepository.save(trip);
+    }
 
     @Override
     public Trip assignTrip(Long id, Long driverId, Long busId) {
@@ -110,6 +134,7 @@ public class TripServiceImpl implements TripService {
         Trip t = tripRepository.findById(id).orElse(null);
         if (t == null) return null;
         t.setStatut(status);
+        timetableStore.requestRebuild();
         return tripRepository.save(t);
     }
 
@@ -118,6 +143,7 @@ public class TripServiceImpl implements TripService {
         Trip t = tripRepository.findById(id).orElse(null);
         if (t == null) return null;
         t.setStatut("CANCELLED");
+        timetableStore.requestRebuild();
         return tripRepository.save(t);
     }
 }
\ No newline at end of file
@@ -0,0 +1,143 @@
+package com.smarttransit.tripservice.benchmark;
+
+import com.smarttransit.tripservice.planner.Journey;
+import com.smarttransit.tripservice.planner.Raptor;
+import com.smarttransit.tripservice.planner.Timetable;
+import com.smarttransit.tripservice.planner.TimetableBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Journey search latency on a synthetic city: a grid of GRID x GRID stops 250 m
+ * apart, one bus line along every row and column in each direction (4 * GRID
+ * patterns of GRID stops), a bus every 8 minutes from 05:00 to midnight and walking
+ * transfers between neighbouring stops. At GRID = 70 that is 4,900 stops, 280
+ * patterns, ~40,000 trips and ~2.8M stop times. Most origin-destination pairs need a
+ * transfer.
+ *
+ * SampleTime mode, so the report carries p99 per query.
+ *
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="JourneyPlannerBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class JourneyPlannerBenchmark {
+
+    private static final int QUERIES = 1024;
+    private static final double SPACING_DEGREES = 250 / 111_320.0;
+    private static final int[] NO_WALK = {0};
+
+    @Param({"70"})
+    private int grid;
+
+    @Param({"1", "3"})
+    private int maxTransfers;
+
+    private Timetable timetable;
+    private int[][] origins;
+    private int[][] destinations;
+    private int[] departures;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        TimetableBuilder builder = new TimetableBuilder(LocalDate.now());
+        for (int row = 0; row < grid; row++) {
+            for (int col = 0; col < grid; col++) {
+                builder.stop(stopId(row, col), "Stop " + row + "-" + col,
+                        48.80 + row * SPACING_DEGREES, 2.25 + col * SPACING_DEGREES / Math.cos(Math.toRadians(48.8)));
+            }
+        }
+        long routeId = 1;
+        for (int line = 0; line < grid; line++) {
+            long[] row = new long[grid];
+            long[] column = new long[grid];
+            for (int i = 0; i < grid; i++) {
+                row[i] = stopId(line, i);
+                column[i] = stopId(i, line);
+            }
+            // Lines start at staggered times so transfers are not all perfectly timed
+            addLine(builder, routeId++, "R" + line, row, line * 37);
+            addLine(builder, routeId++, "R" + line + "'", reversed(row), line * 53);
+            addLine(builder, routeId++, "C" + line, column, line * 41);
+            addLine(builder, routeId++, "C" + line + "'", reversed(column), line * 29);
+        }
+        timetable = builder.build(300, 1.2);
+
+        Random random = new Random(42);
+        origins = new int[QUERIES][];
+        destinations = new int[QUERIES][];
+        departures = new int[QUERIES];
+        for (int q = 0; q < QUERIES; q++) {
+            origins[q] = new int[]{random.nextInt(grid * grid)};
+            destinations[q] = new int[]{random.nextInt(grid * grid)};
+            departures[q] = 6 * 3600 + random.nextInt(14 * 3600);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Workspace {
+        Raptor raptor;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(JourneyPlannerBenchmark benchmark) {
+            raptor = new Raptor(benchmark.maxTransfers, 60);
+        }
+    }
+
+    /**
+     * The search alone: arrival times and transfer counts, no journey objects
+     */
+    @Benchmark
+    public int earliestArrival(Workspace workspace) {
+        int q = workspace.next++ & (QUERIES - 1);
+        int found = workspace.raptor.search(timetable, origins[q], NO_WALK, departures[q], destinations[q], NO_WALK);
+        return found == 0 ? Raptor.UNREACHED : workspace.raptor.arrival(found - 1);
+    }
+
+    /**
+     * Search plus building every Pareto-optimal journey, as the endpoint does
+     */
+    @Benchmark
+    public Journey journeys(Workspace workspace) {
+        int q = workspace.next++ & (QUERIES - 1);
+        int found = workspace.raptor.search(timetable, origins[q], NO_WALK, departures[q], destinations[q], NO_WALK);
+        Journey last = null;
+        for (int i = 0; i < found; i++) {
+            last = workspace.raptor.journey(i);
+        }
+        return last;
+    }
+
+    private void addLine(TimetableBuilder builder, long routeId, String name, long[] stops, int offsetSeconds) {
+        int[] arrivals = new int[stops.length];
+        int[] departures = new int[stops.length];
+        for (int i = 1; i < stops.length; i++) {
+            arrivals[i] = departures[i - 1] + 60;
+            departures[i] = arrivals[i] + 20;
+        }
+        int pattern = builder.pattern(routeId, name, 2.0, stops, arrivals, departures);
+        for (int departure = 5 * 3600 + offsetSeconds % 480; departure < 24 * 3600; departure += 480) {
+            builder.trip(pattern, 0, departure, 50);
+        }
+    }
+
+    private long stopId(int row, int col) {
+        return (long) row * grid + col + 1;
+    }
+
+    private static long[] reversed(long[] stops) {
+        long[] reversed = new long[stops.length];
+        for (int i = 0; i < stops.length; i++) {
+            reversed[i] = stops[stops.length - 1 - i];
+        }
+        return reversed;
+    }
+}
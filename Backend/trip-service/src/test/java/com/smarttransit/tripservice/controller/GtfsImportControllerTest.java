@@ -0,0 +1,87 @@
+package com.smarttransit.tripservice.controller;
+
+import com.smarttransit.tripservice.gtfs.GtfsFeedAlreadyImportedException;
+import com.smarttransit.tripservice.gtfs.GtfsFeedException;
+import com.smarttransit.tripservice.gtfs.GtfsImportInProgressException;
+import com.smarttransit.tripservice.gtfs.GtfsImporter;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(GtfsImportController.class)
+@ActiveProfiles("test")
+class GtfsImportControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private GtfsImporter gtfsImporter;
+
+    private static MockHttpServletRequestBuilder upload() {
+        return upload("test-internal-api-key");
+    }
+
+    private static MockHttpServletRequestBuilder upload(String apiKey) {
+        MockHttpServletRequestBuilder request = post("/api/gtfs/import").contentType("application/zip").content(new byte[]{'P', 'K'});
+        return apiKey != null ? request.header(GtfsImportController.API_KEY_HEADER, apiKey) : request;
+    }
+
+    @Test
+    void importFeed_WithoutApiKey_Forbidden() throws Exception {
+        mockMvc.perform(upload(null))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(upload("wrong-key"))
+                .andExpect(status().isForbidden());
+        verifyNoInteractions(gtfsImporter);
+    }
+
+    @Test
+    void importFeed_AnotherImportRunning_Returns409() throws Exception {
+        when(gtfsImporter.importFeed(any(), any())).thenThrow(new GtfsImportInProgressException());
+
+        mockMvc.perform(upload())
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").value("A GTFS import is already running"));
+    }
+
+    @Test
+    void importFeed_AlreadyImported_Returns409() throws Exception {
+        when(gtfsImporter.importFeed(any(), any())).thenThrow(new GtfsFeedAlreadyImportedException("ab12"));
+
+        mockMvc.perform(upload())
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").value("This feed was already imported (SHA-256 ab12)"));
+    }
+
+    @Test
+    void importFeed_InvalidFeed_Returns400() throws Exception {
+        when(gtfsImporter.importFeed(any(), any())).thenThrow(new GtfsFeedException("trips.txt is empty"));
+
+        mockMvc.perform(upload())
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("trips.txt is empty"));
+    }
+
+    @Test
+    void importFeed_UnexpectedIllegalState_IsNotAConflict() {
+        when(gtfsImporter.importFeed(any(), any())).thenThrow(new IllegalStateException("Timetable too large"));
+
+        assertThatThrownBy(() -> mockMvc.perform(upload()))
+                .isInstanceOf(ServletException.class)
+                .hasRootCauseInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,147 @@
+package com.smarttransit.tripservice.controller;
+
+import com.smarttransit.tripservice.model.Route;
+import com.smarttransit.tripservice.model.RouteStop;
+import com.smarttransit.tripservice.model.Stop;
+import com.smarttransit.tripservice.model.Trip;
+import com.smarttransit.tripservice.planner.TimetableStore;
+import com.smarttransit.tripservice.repository.RouteRepository;
+import com.smarttransit.tripservice.repository.RouteStopRepository;
+import com.smarttransit.tripservice.repository.StopRepository;
+import com.smarttransit.tripservice.repository.TripRepository;
+import com.smarttransit.tripservice.service.RouteStopCache;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The trip listing and details must not issue one route_stops query per trip
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class PublicTripControllerQueryCountTest {
+
+    private static final LocalDate DAY = LocalDate.of(2030, 1, 15);
+    private static final int ROUTES = 3;
+    private static final int TRIPS_PER_ROUTE = 10;
+
+    // Keeps the planner's background rebuilds out of the statement counts
+    @MockBean
+    private TimetableStore timetableStore;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private RouteRepository routeRepository;
+
+    @Autowired
+    private StopRepository stopRepository;
+
+    @Autowired
+    private RouteStopRepository routeStopRepository;
+
+    @Autowired
+    private TripRepository tripRepository;
+
+    @Autowired
+    private RouteStopCache routeStopCache;
+
+    private final List<Trip> trips = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        tripRepository.deleteAll();
+        routeStopRepository.deleteAll();
+        routeRepository.deleteAll();
+        stopRepository.deleteAll();
+        routeStopCache.invalidate();
+        trips.clear();
+        for (int r = 1; r <= ROUTES; r++) {
+            Route route = new Route();
+            route.setNom("Route " + r);
+            route.setNumeroLigne("L" + r);
+            route = routeRepository.save(route);
+            for (int s = 1; s <= 4; s++) {
+                Stop stop = new Stop();
+                stop.setNom("L" + r + " stop " + s);
+                stop.setLatitude(33.5 + r * 0.01 + s * 0.001);
+                stop.setLongitude(-7.6 + s * 0.001);
+                stop = stopRepository.save(stop);
+                RouteStop routeStop = new RouteStop();
+                routeStop.setRoute(route);
+                routeStop.setStop(stop);
+                routeStop.setOrdreArret(s);
+                routeStopRepository.save(routeStop);
+            }
+            for (int t = 0; t < TRIPS_PER_ROUTE; t++) {
+                Trip trip = new Trip();
+                trip.setRoute(route);
+                trip.setDateTrajet(DAY);
+                trip.setStatut("PLANNED");
+                trips.add(tripRepository.save(trip));
+            }
+        }
+    }
+
+    @Test
+    void listingReadsTripsAndRouteStopsInTwoQueries() throws Exception {
+        Statistics statistics = statistics();
+        statistics.clear();
+        mockMvc.perform(get("/api/v1/routes/search").param("date", DAY.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.trips", hasSize(ROUTES * TRIPS_PER_ROUTE)))
+                .andExpect(jsonPath("$.trips[0].departureStation").value("L1 stop 1"))
+                .andExpect(jsonPath("$.trips[0].arrivalStation").value("L1 stop 4"));
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(2);
+
+        // Stops now come from the cache
+        statistics.clear();
+        mockMvc.perform(get("/api/v1/routes/search").param("date", DAY.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.trips", hasSize(ROUTES * TRIPS_PER_ROUTE)));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void detailReadsOnlyTheTripOnceStopsAreCached() throws Exception {
+        Trip trip = trips.get(TRIPS_PER_ROUTE);
+        mockMvc.perform(get("/api/v1/trips/{tripId}", trip.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.trip.stations", hasSize(4)));
+
+        Statistics statistics = statistics();
+        statistics.clear();
+        mockMvc.perform(get("/api/v1/trips/{tripId}", trip.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.trip.departureStation").value("L2 stop 1"))
+                .andExpect(jsonPath("$.trip.arrivalStation").value("L2 stop 4"));
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(1);
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+}
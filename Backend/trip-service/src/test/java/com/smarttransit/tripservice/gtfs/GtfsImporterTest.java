@@ -0,0 +1,175 @@
+package com.smarttransit.tripservice.gtfs;
+
+import com.smarttransit.tripservice.planner.TimetableStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Imports src/test/resources/gtfs/small: one route, S1 - S2 - S3 - S4, with three
+ * weekday departures 15 minutes apart, a night departure at 24:30 and a trip whose
+ * times go backwards. S2 has no times (not a timepoint) and sits a third of the way
+ * from S1 to S3.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class GtfsImporterTest {
+
+    private static final List<String> FILES = List.of("stops.txt", "routes.txt", "calendar.txt", "trips.txt", "stop_times.txt");
+
+    @MockBean
+    private TimetableStore timetableStore;
+
+    @Autowired
+    private GtfsImporter importer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void emptyTables() {
+        for (String table : List.of("gtfs_imports", "trips", "schedules", "route_stops", "routes", "stops")) {
+            jdbcTemplate.update("delete from " + table);
+        }
+    }
+
+    static Path zip(Path directory, String feed) throws IOException {
+        return zip(directory, feed, "");
+    }
+
+    /**
+     * The feed's files zipped under folder (empty for the root of the zip)
+     */
+    static Path zip(Path directory, String feed, String folder) throws IOException {
+        Path zip = Files.createTempFile(directory, feed, ".zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            for (String file : FILES) {
+                out.putNextEntry(new ZipEntry(folder + file));
+                try (InputStream in = GtfsImporterTest.class.getResourceAsStream("/gtfs/" + feed + "/" + file)) {
+                    in.transferTo(out);
+                }
+                out.closeEntry();
+            }
+        }
+        return zip;
+    }
+
+    @Test
+    void importFeed_SmallFeed_InsertsTheFoldedNetwork() throws Exception {
+        GtfsImportReport report = importer.importFeed(zip(directory, "small"), 7);
+
+        assertThat(report.rowsRead()).containsEntry("stops.txt", 5L).containsEntry("stop_times.txt", 18L);
+        // 3 weekday departures on 5 of the 7 days, and the night one on the 5 following days
+        assertThat(report.rowsInserted()).hasSize(5).containsAllEntriesOf(Map.of(
+                "stops", 4L, "routes", 1L, "route_stops", 4L, "schedules", 2L, "trips", 20L));
+        assertThat(report.skippedRows()).isEqualTo(2);
+        assertThat(report.problems()).anyMatch(problem -> problem.contains("departure before arrival in trip BAD"));
+        verify(timetableStore).requestRebuild();
+
+        assertThat(jdbcTemplate.queryForList("select nom from stops order by id", String.class))
+                .containsExactly("Gare Centrale", "Place des Nations", "Hôpital", "Terminus, Port");
+        Map<String, Object> route = jdbcTemplate.queryForMap("select nom, numero_ligne, duree_estimee from routes");
+        assertThat(route).containsEntry("NOM", "Gare - Port").containsEntry("NUMERO_LIGNE", "10")
+                .containsEntry("DUREE_ESTIMEE", 20);
+        assertThat(jdbcTemplate.queryForList("select temps_arret from route_stops order by ordre_arret", Integer.class))
+                .containsExactly(0, 0, 1, 0);
+    }
+
+    @Test
+    void importFeed_DeparturesAfterMidnight_MoveToTheNextDay() throws Exception {
+        importer.importFeed(zip(directory, "small"), 7);
+
+        List<Map<String, Object>> schedules = jdbcTemplate.queryForList(
+                "select heure_depart, heure_arrivee, jours_semaine, frequence, date_debut from schedules order by heure_depart");
+        assertThat(schedules).hasSize(2);
+        Map<String, Object> night = schedules.get(0);
+        assertThat(night.get("HEURE_DEPART").toString()).isEqualTo("00:30:00");
+        assertThat(night.get("HEURE_ARRIVEE").toString()).isEqualTo("00:50:00");
+        assertThat(night).containsEntry("JOURS_SEMAINE", "TUE,WED,THU,FRI,SAT").containsEntry("FREQUENCE", null);
+        assertThat(night.get("DATE_DEBUT").toString()).isEqualTo("2020-01-02");
+        Map<String, Object> day = schedules.get(1);
+        assertThat(day.get("HEURE_DEPART").toString()).isEqualTo("08:00:00");
+        assertThat(day.get("HEURE_ARRIVEE").toString()).isEqualTo("08:30:00");
+        assertThat(day).containsEntry("JOURS_SEMAINE", "MON,TUE,WED,THU,FRI").containsEntry("FREQUENCE", 15);
+
+        List<LocalDateTime> departures = jdbcTemplate.queryForList("select heure_depart_reelle from trips", LocalDateTime.class);
+        assertThat(departures).filteredOn(departure -> departure.toLocalTime().equals(LocalTime.of(0, 30)))
+                .hasSize(5)
+                .allSatisfy(departure -> assertThat(departure.getDayOfWeek())
+                        .isNotIn(DayOfWeek.SUNDAY, DayOfWeek.MONDAY));
+    }
+
+    @Test
+    void importFeed_SameFeedAgain_IsRefused() throws Exception {
+        importer.importFeed(zip(directory, "small"), 1);
+        long routes = jdbcTemplate.queryForObject("select count(*) from routes", Long.class);
+
+        // Zipped differently, same files
+        assertThatThrownBy(() -> importer.importFeed(zip(directory, "small", "feed/"), 1))
+                .isInstanceOf(GtfsFeedAlreadyImportedException.class);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from routes", Long.class)).isEqualTo(routes);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from gtfs_imports", Long.class)).isEqualTo(1);
+    }
+
+    @Test
+    void assembler_StopsWithoutTimes_AreInterpolatedByDistance() {
+        GtfsImporter.Feed feed = new GtfsImporter.Feed();
+        String[][] stops = {{"S1", "33.5000"}, {"S2", "33.5090"}, {"S3", "33.5270"}, {"S4", "33.5450"}};
+        for (String[] stop : stops) {
+            feed.stopIndex.put(stop[0], feed.stops.size());
+            feed.stops.add(new GtfsImporter.StopRow(stop[0], null, Double.valueOf(stop[1]), -7.6));
+        }
+        feed.tripIndex.put("NIGHT", 0);
+        feed.tripIds.add("NIGHT");
+        feed.tripRoutes.add(0);
+        feed.tripServices.add(0);
+        String[] lines = {
+                "NIGHT,24:30:00,24:30:00,S1,1",
+                "NIGHT,,,S2,2",
+                "NIGHT,24:39:00,24:40:00,S3,3",
+                "NIGHT,24:50:00,24:50:00,S4,4"};
+
+        GtfsImporter.TripAssembler assembler = new GtfsImporter.TripAssembler(feed);
+        assembler.accept(GtfsImporter.StopTimeChunk.parse(lines, lines.length, 2, new int[]{0, 1, 2, 3, 4}, feed));
+        assembler.finish();
+
+        assertThat(feed.problems.count()).isZero();
+        GtfsImporter.PatternRow pattern = feed.patterns.get(0);
+        // S2 is a third of the 9 minutes from S1 to S3
+        assertThat(pattern.arrivals()).containsExactly(0, 180, 540, 1200);
+        assertThat(pattern.departures()).containsExactly(0, 180, 600, 1200);
+        // Pattern, service and first departure, past 24:00
+        assertThat(feed.departures.get(2)).isEqualTo(24 * 3600 + 30 * 60);
+    }
+
+    @Test
+    void seconds_HoursPastMidnight() {
+        assertThat(GtfsImporter.seconds("25:10:05")).isEqualTo(25 * 3600 + 10 * 60 + 5);
+        assertThat(GtfsImporter.seconds("7:05:00")).isEqualTo(7 * 3600 + 5 * 60);
+        assertThat(GtfsImporter.seconds(null)).isEqualTo(-1);
+    }
+}
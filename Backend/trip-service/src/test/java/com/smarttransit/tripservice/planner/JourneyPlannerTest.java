@@ -0,0 +1,91 @@
+package com.smarttransit.tripservice.planner;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.List;
+
+import static com.smarttransit.tripservice.planner.RaptorTest.DAY;
+import static com.smarttransit.tripservice.planner.RaptorTest.at;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class JourneyPlannerTest {
+
+    private JourneyPlanner planner;
+
+    @BeforeEach
+    void setUp() {
+        TimetableStore store = mock(TimetableStore.class);
+        when(store.timetable(DAY)).thenReturn(RaptorTest.network());
+        planner = new JourneyPlanner(store, 3, 60, 800, 1.2, 120);
+    }
+
+    private static JourneyQuery query(String from, String to, String time, boolean arriveBy, int limit) {
+        return new JourneyQuery(from, null, null, to, null, null, DAY, LocalTime.parse(time), arriveBy, 1, limit);
+    }
+
+    private static List<Integer> departures(List<Journey> journeys) {
+        return journeys.stream().map(Journey::departure).toList();
+    }
+
+    @Test
+    void plan_DepartAfter_ReturnsTheNextDeparturesInOrder() {
+        List<Journey> journeys = planner.plan(query("A", "C", "07:50", false, 3));
+
+        assertThat(departures(journeys)).containsExactly(at("08:00"), at("08:30"), at("09:00"));
+        assertThat(journeys).allSatisfy(journey -> assertThat(journey.transfers()).isZero());
+    }
+
+    @Test
+    void plan_ArriveBy_KeepsTheLatestDeparturesArrivingInTime() {
+        List<Journey> latest = planner.plan(query("A", "C", "08:45", true, 1));
+
+        assertThat(departures(latest)).containsExactly(at("08:30"));
+        assertThat(latest.get(0).arrival()).isEqualTo(at("08:40"));
+
+        List<Journey> two = planner.plan(query("A", "C", "08:45", true, 2));
+        assertThat(departures(two)).containsExactly(at("08:00"), at("08:30"));
+    }
+
+    @Test
+    void plan_ArriveBy_WithTransfer() {
+        List<Journey> journeys = planner.plan(query("A", "D", "08:50", true, 3));
+
+        assertThat(journeys).hasSize(1);
+        assertThat(journeys.get(0).departure()).isEqualTo(at("08:00"));
+        assertThat(journeys.get(0).arrival()).isEqualTo(at("08:25"));
+        assertThat(journeys.get(0).transfers()).isEqualTo(1);
+    }
+
+    @Test
+    void plan_TooManyPassengers_SkipsFullTrips() {
+        JourneyQuery query = new JourneyQuery("C", null, null, "G", null, null,
+                DAY, LocalTime.parse("08:00"), false, 25, 3);
+
+        // The only C - G journey rides line 3, which has 20 seats
+        assertThat(planner.plan(query)).isEmpty();
+    }
+
+    @Test
+    void plan_DayWithoutATimetable_FindsNothing() {
+        JourneyQuery query = new JourneyQuery("A", null, null, "C", null, null,
+                DAY.plusYears(1), LocalTime.parse("08:00"), false, 1, 3);
+
+        assertThat(planner.plan(query)).isEmpty();
+    }
+
+    @Test
+    void plan_Repeated_GivesTheSameAnswer() {
+        JourneyQuery query = query("A", "G", "07:30", false, 2);
+        List<Journey> first = planner.plan(query);
+
+        planner.plan(query("C", "D", "08:00", false, 2));
+        planner.plan(query("A", "C", "08:45", true, 3));
+
+        assertThat(first).hasSize(1);
+        assertThat(planner.plan(query)).isEqualTo(first);
+    }
+}
@@ -0,0 +1,205 @@
+package com.smarttransit.tripservice.planner;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RaptorTest {
+
+    static final LocalDate DAY = LocalDate.of(2030, 1, 15);
+
+    /**
+     * Line 1: A - B - C every half hour from 08:00, 5 minutes between stops.
+     * Line 2: C - D at 08:15 and 08:45, 10 minutes.
+     * Line 3: F - G at 08:35, 5 minutes. F is about 100 m from D; every other
+     * pair of stops is over a kilometre apart, so D - F is the only footpath.
+     */
+    static Timetable network() {
+        TimetableBuilder builder = new TimetableBuilder(DAY)
+                .stop(1, "A", 33.50, -7.60)
+                .stop(2, "B", 33.51, -7.60)
+                .stop(3, "C", 33.52, -7.60)
+                .stop(4, "D", 33.53, -7.60)
+                .stop(6, "F", 33.5309, -7.60)
+                .stop(7, "G", 33.55, -7.60);
+        int line1 = builder.pattern(10, "L1", 5.0, new long[]{1, 2, 3}, new int[]{0, 300, 600}, new int[]{0, 300, 600});
+        int line2 = builder.pattern(20, "L2", 7.0, new long[]{3, 4}, new int[]{0, 600}, new int[]{0, 600});
+        int line3 = builder.pattern(30, "L3", 4.0, new long[]{6, 7}, new int[]{0, 300}, new int[]{0, 300});
+        builder.trip(line1, 101, at("08:00"), 40)
+                .trip(line1, 102, at("08:30"), 40)
+                .trip(line1, 103, at("09:00"), 40)
+                .trip(line2, 201, at("08:15"), 30)
+                .trip(line2, 202, at("08:45"), 30)
+                .trip(line3, 301, at("08:35"), 20);
+        return builder.build(300, 1.2);
+    }
+
+    static int at(String time) {
+        return LocalTime.parse(time).toSecondOfDay();
+    }
+
+    private static int stop(Timetable timetable, String name) {
+        return timetable.stopsNamed(name)[0];
+    }
+
+    private static int search(Raptor raptor, Timetable timetable, String from, int departure, String to) {
+        return raptor.search(timetable, new int[]{stop(timetable, from)}, new int[]{0}, departure,
+                new int[]{stop(timetable, to)}, new int[]{0});
+    }
+
+    private static List<String> legs(Journey journey) {
+        List<String> legs = new ArrayList<>();
+        for (Journey.Leg leg : journey.legs()) {
+            legs.add(leg.mode() + " " + (leg.line() != null ? leg.line() + " " : "") + leg.fromStop() + "-" + leg.toStop());
+        }
+        return legs;
+    }
+
+    @Test
+    void search_DirectRide_TakesTheNextTrip() {
+        Timetable timetable = network();
+        Raptor raptor = new Raptor(3, 60);
+
+        assertThat(search(raptor, timetable, "A", at("07:55"), "C")).isEqualTo(1);
+        Journey journey = raptor.journey(0);
+        assertThat(legs(journey)).containsExactly("BUS L1 A-C");
+        assertThat(journey.departure()).isEqualTo(at("08:00"));
+        assertThat(journey.arrival()).isEqualTo(at("08:10"));
+        assertThat(journey.transfers()).isZero();
+        assertThat(journey.legs().get(0).tripId()).isEqualTo(101L);
+        assertThat(journey.price()).isEqualTo(5.0);
+        assertThat(journey.availableSeats()).isEqualTo(40);
+
+        // 08:00 has left: the 08:30 is next
+        search(raptor, timetable, "A", at("08:01"), "C");
+        assertThat(raptor.journey(0).legs().get(0).tripId()).isEqualTo(102L);
+    }
+
+    @Test
+    void search_OneTransfer_ChangesAtTheSharedStop() {
+        Timetable timetable = network();
+        Raptor raptor = new Raptor(3, 60);
+
+        assertThat(search(raptor, timetable, "A", at("07:55"), "D")).isEqualTo(1);
+        Journey journey = raptor.journey(0);
+        assertThat(legs(journey)).containsExactly("BUS L1 A-C", "BUS L2 C-D");
+        assertThat(journey.arrival()).isEqualTo(at("08:25"));
+        assertThat(journey.transfers()).isEqualTo(1);
+        assertThat(journey.price()).isEqualTo(12.0);
+        assertThat(journey.availableSeats()).isEqualTo(30);
+    }
+
+    @Test
+    void search_TransferSlack_MissesATightConnection() {
+        Timetable timetable = network();
+        // Arriving at C at 08:10 leaves 5 minutes for the 08:15; 6 minutes of slack pushes to the 08:45
+        Raptor raptor = new Raptor(3, 360);
+
+        search(raptor, timetable, "A", at("07:55"), "D");
+        assertThat(raptor.journey(0).arrival()).isEqualTo(at("08:55"));
+    }
+
+    @Test
+    void search_FootpathTransfer_WalksBetweenNearbyStops() {
+        Timetable timetable = network();
+        Raptor raptor = new Raptor(3, 60);
+
+        assertThat(search(raptor, timetable, "C", at("08:10"), "G")).isEqualTo(1);
+        Journey journey = raptor.journey(0);
+        assertThat(legs(journey)).containsExactly("BUS L2 C-D", "WALK D-F", "BUS L3 F-G");
+        Journey.Leg walk = journey.legs().get(1);
+        assertThat(walk.tripId()).isNull();
+        assertThat(walk.departure()).isEqualTo(at("08:25"));
+        assertThat(walk.arrival() - walk.departure()).isBetween(80, 90);
+        assertThat(journey.arrival()).isEqualTo(at("08:40"));
+        assertThat(journey.transfers()).isEqualTo(1);
+    }
+
+    @Test
+    void search_MaxTransfers_LimitsTheRounds() {
+        Timetable timetable = network();
+        Raptor raptor = new Raptor(1, 60);
+
+        // A - G needs three vehicles
+        assertThat(search(raptor, timetable, "A", at("07:55"), "G")).isZero();
+        assertThat(search(new Raptor(2, 60), timetable, "A", at("07:55"), "G")).isEqualTo(1);
+    }
+
+    @Test
+    void search_TargetPruning_AccountsForEgress() {
+        Timetable timetable = network();
+        Raptor raptor = new Raptor(3, 60);
+        int[] targets = {stop(timetable, "B"), stop(timetable, "D")};
+
+        // B is reached first (08:05) but its long walk out ends at 08:30, so D at 08:25 still wins
+        int count = raptor.search(timetable, new int[]{stop(timetable, "A")}, new int[]{0}, at("07:55"),
+                targets, new int[]{1500, 0});
+        assertThat(count).isEqualTo(2);
+        assertThat(raptor.arrival(0)).isEqualTo(at("08:30"));
+        assertThat(legs(raptor.journey(0))).containsExactly("BUS L1 A-B");
+        assertThat(raptor.arrival(1)).isEqualTo(at("08:25"));
+        assertThat(legs(raptor.journey(1))).containsExactly("BUS L1 A-C", "BUS L2 C-D");
+
+        // With a short walk out of B, nothing reaching D later is worth keeping
+        count = raptor.search(timetable, new int[]{stop(timetable, "A")}, new int[]{0}, at("07:55"),
+                targets, new int[]{300, 0});
+        assertThat(count).isEqualTo(1);
+        assertThat(raptor.arrival(0)).isEqualTo(at("08:10"));
+        assertThat(raptor.journey(0).arrival()).isEqualTo(at("08:10"));
+    }
+
+    @Test
+    void search_Unreachable_FindsNothing() {
+        Timetable timetable = network();
+        Raptor raptor = new Raptor(3, 60);
+
+        assertThat(search(raptor, timetable, "G", at("07:00"), "A")).isZero();
+        assertThat(search(raptor, timetable, "A", at("09:01"), "C")).isZero();
+    }
+
+    @Test
+    void search_ReusedWorkspace_MatchesAFreshOne() {
+        Timetable network = network();
+        TimetableBuilder small = new TimetableBuilder(DAY)
+                .stop(1, "A", 33.50, -7.60)
+                .stop(2, "B", 33.51, -7.60);
+        small.trip(small.pattern(10, "L1", 5.0, new long[]{1, 2}, new int[]{0, 300}, new int[]{0, 300}), 0, at("06:00"), 10);
+        Timetable other = small.build(300, 1.2);
+
+        Raptor reused = new Raptor(3, 60);
+        List<Journey> first = new ArrayList<>();
+        for (String target : List.of("D", "G", "C")) {
+            int count = search(reused, network, "A", at("07:55"), target);
+            for (int i = 0; i < count; i++) {
+                first.add(reused.journey(i));
+            }
+        }
+
+        // A smaller timetable in between must leave nothing behind for the next search
+        assertThat(search(reused, other, "A", at("05:00"), "B")).isEqualTo(1);
+        assertThat(reused.journey(0).legs().get(0).tripId()).isNull();
+        assertThat(search(reused, network, "G", at("07:00"), "A")).isZero();
+
+        List<Journey> again = new ArrayList<>();
+        List<Journey> fresh = new ArrayList<>();
+        for (String target : List.of("D", "G", "C")) {
+            int count = search(reused, network, "A", at("07:55"), target);
+            for (int i = 0; i < count; i++) {
+                again.add(reused.journey(i));
+            }
+            Raptor raptor = new Raptor(3, 60);
+            count = search(raptor, network, "A", at("07:55"), target);
+            for (int i = 0; i < count; i++) {
+                fresh.add(raptor.journey(i));
+            }
+        }
+        assertThat(first).hasSize(3);
+        assertThat(again).isEqualTo(first);
+        assertThat(fresh).isEqualTo(first);
+    }
+}
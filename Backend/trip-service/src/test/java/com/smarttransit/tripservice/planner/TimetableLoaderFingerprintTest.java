@@ -0,0 +1,47 @@
+package com.smarttransit.tripservice.planner;
+
+import com.smarttransit.tripservice.model.Stop;
+import com.smarttransit.tripservice.repository.StopRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The periodic change check must notice edits, not only added or removed rows
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class TimetableLoaderFingerprintTest {
+
+    // No background builds reading the tables meanwhile
+    @MockBean
+    private TimetableStore timetableStore;
+
+    @Autowired
+    private TimetableLoader loader;
+
+    @Autowired
+    private StopRepository stopRepository;
+
+    @Test
+    void fingerprint_ChangesWhenARowIsEdited() throws Exception {
+        Stop stop = new Stop();
+        stop.setNom("Fingerprint stop");
+        stop.setLatitude(33.5);
+        stop.setLongitude(-7.6);
+        stop = stopRepository.save(stop);
+        String before = loader.fingerprint();
+        assertThat(loader.fingerprint()).isEqualTo(before);
+
+        Thread.sleep(5);
+        stop.setLatitude(33.6);
+        stopRepository.save(stop);
+
+        assertThat(loader.fingerprint()).isNotEqualTo(before);
+        stopRepository.delete(stop);
+    }
+}
@@ -0,0 +1,149 @@
+package com.smarttransit.tripservice.planner;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class TimetableStoreTest {
+
+    private TimetableLoader loader;
+    private TimetableStore store;
+
+    private static final LocalDate DAY = LocalDate.now().plusDays(1);
+
+    @BeforeEach
+    void setUp() {
+        loader = mock(TimetableLoader.class);
+        store = new TimetableStore(loader, new SimpleMeterRegistry(), 7, "");
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.shutdown();
+    }
+
+    @Test
+    void timetable_BeforeTheFirstSnapshot_LoadsTheDayOnceForConcurrentSearches() throws Exception {
+        Timetable timetable = RaptorTest.network();
+        CountDownLatch release = new CountDownLatch(1);
+        when(loader.load(DAY)).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return timetable;
+        });
+
+        ExecutorService searches = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Timetable>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(searches.submit(() -> store.timetable(DAY)));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<Timetable> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isSameAs(timetable);
+            }
+        } finally {
+            searches.shutdownNow();
+        }
+
+        assertThat(store.timetable(DAY)).isSameAs(timetable);
+        verify(loader, times(1)).load(DAY);
+    }
+
+    @Test
+    void restore_MatchingFingerprint_ServesTheSavedSnapshot(@TempDir Path directory) throws Exception {
+        Path file = saveSnapshot(directory, "Route:1/1/x");
+        when(loader.fingerprint()).thenReturn("Route:1/1/x");
+
+        TimetableStore restored = new TimetableStore(loader, new SimpleMeterRegistry(), 1, file.toString());
+        try {
+            assertThat(restored.current()).isNotNull();
+            assertThat(restored.timetable(LocalDate.now()).stopCount()).isEqualTo(6);
+        } finally {
+            restored.shutdown();
+        }
+    }
+
+    @Test
+    void restore_DataEditedSinceTheSave_IgnoresTheFile(@TempDir Path directory) throws Exception {
+        Path file = saveSnapshot(directory, "Route:1/1/x");
+        when(loader.fingerprint()).thenReturn("Route:1/1/y");
+
+        TimetableStore restored = new TimetableStore(loader, new SimpleMeterRegistry(), 1, file.toString());
+        try {
+            assertThat(restored.current()).isNull();
+        } finally {
+            restored.shutdown();
+        }
+    }
+
+    @Test
+    void timetable_FailedLoad_IsNotCached() {
+        Timetable timetable = RaptorTest.network();
+        when(loader.load(DAY)).thenThrow(new IllegalStateException("database down")).thenReturn(timetable);
+
+        assertThatThrownBy(() -> store.timetable(DAY))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("database down");
+        assertThat(store.timetable(DAY)).isSameAs(timetable);
+        verify(loader, times(2)).load(DAY);
+    }
+
+    @Test
+    void timetable_OutsideTheSearchableDays_IsNullWithoutLoading() {
+        LocalDate today = LocalDate.now();
+
+        assertThat(store.timetable(today.minusDays(2))).isNull();
+        assertThat(store.timetable(today.plusDays(8))).isNull();
+        assertThat(store.timetable(today.plusYears(5))).isNull();
+        verifyNoInteractions(loader);
+    }
+
+    /**
+     * A snapshot of yesterday to tomorrow (horizon-days 1) built from data with this fingerprint
+     */
+    private Path saveSnapshot(Path directory, String fingerprint) throws Exception {
+        LocalDate today = LocalDate.now();
+        List<LocalDate> dates = List.of(today.minusDays(1), today, today.plusDays(1));
+        TimetableBuilder builder = new TimetableBuilder(dates)
+                .stop(1, "A", 33.50, -7.60)
+                .stop(2, "B", 33.51, -7.60)
+                .stop(3, "C", 33.52, -7.60)
+                .stop(4, "D", 33.53, -7.60)
+                .stop(6, "F", 33.5309, -7.60)
+                .stop(7, "G", 33.55, -7.60);
+        int line = builder.pattern(10, "L1", 5.0, new long[]{1, 2, 3}, new int[]{0, 300, 600}, new int[]{0, 300, 600});
+        for (LocalDate date : dates) {
+            builder.trip(line, date, 0, RaptorTest.at("08:00"), 40);
+        }
+        Map<LocalDate, Timetable> days = builder.buildAll(300, 1.2);
+        when(loader.settings()).thenReturn("settings");
+        Path file = directory.resolve("timetable.bin");
+        TimetableFile.write(new TimetableSnapshot(1, days, Instant.now(), 1,
+                TimetableSnapshot.estimatedBytes(days), fingerprint), "settings", file);
+        return file;
+    }
+}
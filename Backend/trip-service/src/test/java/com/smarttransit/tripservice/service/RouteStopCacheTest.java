@@ -0,0 +1,70 @@
+package com.smarttransit.tripservice.service;
+
+import com.smarttransit.tripservice.model.Route;
+import com.smarttransit.tripservice.model.RouteStop;
+import com.smarttransit.tripservice.model.Stop;
+import com.smarttransit.tripservice.repository.RouteStopRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RouteStopCacheTest {
+
+    private RouteStopRepository repository;
+    private RouteStopCache cache;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(RouteStopRepository.class);
+        cache = new RouteStopCache(repository, 100, 300);
+    }
+
+    private static RouteStop routeStop(long routeId, long stopId, String name) {
+        Route route = new Route();
+        route.setId(routeId);
+        Stop stop = new Stop();
+        stop.setId(stopId);
+        stop.setNom(name);
+        RouteStop routeStop = new RouteStop();
+        routeStop.setRoute(route);
+        routeStop.setStop(stop);
+        return routeStop;
+    }
+
+    @Test
+    void stops_SecondRead_ComesFromTheCache() {
+        when(repository.findWithStopByRouteIds(any())).thenReturn(List.of(routeStop(1, 10, "A"), routeStop(1, 11, "B")));
+
+        assertThat(cache.stops(1L)).extracting(RouteStopCache.StopView::name).containsExactly("A", "B");
+        assertThat(cache.stops(1L)).extracting(RouteStopCache.StopView::name).containsExactly("A", "B");
+        verify(repository, times(1)).findWithStopByRouteIds(any());
+
+        cache.invalidate();
+        cache.stops(1L);
+        verify(repository, times(2)).findWithStopByRouteIds(any());
+    }
+
+    @Test
+    void stops_InvalidatedWhileReading_DoesNotKeepTheOldStops() {
+        // The write commits (and clears the cache) after the read has seen the old rows
+        when(repository.findWithStopByRouteIds(any()))
+                .thenAnswer(invocation -> {
+                    cache.invalidate();
+                    return List.of(routeStop(1, 10, "Old name"));
+                })
+                .thenReturn(List.of(routeStop(1, 10, "New name")));
+
+        assertThat(cache.stops(1L)).extracting(RouteStopCache.StopView::name).containsExactly("Old name");
+        assertThat(cache.stops(1L)).extracting(RouteStopCache.StopView::name).containsExactly("New name");
+        assertThat(cache.stops(1L)).extracting(RouteStopCache.StopView::name).containsExactly("New name");
+        verify(repository, times(2)).findWithStopByRouteIds(any());
+    }
+}
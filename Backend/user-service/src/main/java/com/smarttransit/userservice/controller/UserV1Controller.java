@@ -89,19 +89,17 @@ public class UserV1Controller {
     }
 
     @GetMapping("/me/wallet")
-    public ResponseEntity<com.smarttransit.userservice.dto.WalletResponse> meWallet(@RequestParam(value = "userId", required = false) Long userId,
-                                      @RequestHeader(value = "Authorization", required = false) String authorization) {
+    public ResponseEntity<com.smarttransit.userservice.dto.WalletResponse> meWallet(@RequestParam(value = "userId", required = false) Long userId) {
         if (userId == null) throw new org.springframework.web.server.ResponseStatusException(org.springframework.http.HttpStatus.BAD_REQUEST, "userId parameter required");
-        com.smarttransit.userservice.dto.WalletResponse resp = userService.getWallet(userId, authorization);
+        com.smarttransit.userservice.dto.WalletResponse resp = userService.getWallet(userId);
         if (resp.getError() != null) return ResponseEntity.status(502).body(resp);
         return ResponseEntity.ok(resp);
     }
 
     @GetMapping("/me/subscription")
-    public ResponseEntity<com.smarttransit.userservice.dto.SubscriptionResponse> meSubscription(@RequestParam(value = "userId", required = false) Long userId,
-                                            @RequestHeader(value = "Authorization", required = false) String authorization) {
+    public ResponseEntity<com.smarttransit.userservice.dto.SubscriptionResponse> meSubscription(@RequestParam(value = "userId", required = false) Long userId) {
         if (userId == null) throw new org.springframework.web.server.ResponseStatusException(org.springframework.http.HttpStatus.BAD_REQUEST, "userId parameter required");
-        com.smarttransit.userservice.dto.SubscriptionResponse resp = userService.getSubscription(userId, authorization);
+        com.smarttransit.userservice.dto.SubscriptionResponse resp = userService.getSubscription(userId);
         if (resp.getError() != null) return ResponseEntity.status(502).body(resp);
         return ResponseEntity.ok(resp);
     }
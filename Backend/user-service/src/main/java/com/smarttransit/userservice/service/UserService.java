@@ -22,6 +22,6 @@ public interface UserService {
     UserDto updateAvatar(Long userId, java.lang.String avatarUrl);
 
     // Proxy endpoints for wallet/subscription (delegates to external services)
-    com.smarttransit.userservice.dto.WalletResponse getWallet(Long userId, String authorizationHeader);
-    com.smarttransit.userservice.dto.SubscriptionResponse getSubscription(Long userId, String authorizationHeader);
+    com.smarttransit.userservice.dto.WalletResponse getWallet(Long userId);
+    com.smarttransit.userservice.dto.SubscriptionResponse getSubscription(Long userId);
 }
@@ -131,7 +131,7 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
-    public com.smarttransit.userservice.dto.WalletResponse getWallet(Long userId, String authorizationHeader) {
+    public com.smarttransit.userservice.dto.WalletResponse getWallet(Long userId) {
         if (paymentsBaseUrl.isBlank()) return new com.smarttransit.userservice.dto.WalletResponse(null, null, null, "payments service not configured");
         try {
             org.springframework.web.util.UriComponentsBuilder builder = org.springframework.web.util.UriComponentsBuilder.fromHttpUrl(paymentsBaseUrl)
@@ -141,9 +141,8 @@ public class UserServiceImpl implements UserService {
             org.springframework.core.ParameterizedTypeReference<java.util.Map<String, Object>> typeRef =
                 new org.springframework.core.ParameterizedTypeReference<java.util.Map<String, Object>>() {};
             org.springframework.http.HttpHeaders headers = new org.springframework.http.HttpHeaders();
-            if (authorizationHeader != null && !authorizationHeader.isBlank()) {
-                headers.set("Authorization", authorizationHeader);
-            }
+            // The gateway does not pass the token on; the called service trusts X-User-Id as it does from the gateway
+            headers.set("X-User-Id", String.valueOf(userId));
             org.springframework.http.HttpEntity<?> entity = new org.springframework.http.HttpEntity<>(null, headers);
             org.springframework.http.ResponseEntity<java.util.Map<String, Object>> response =
                     restTemplate.exchange(url, org.springframework.http.HttpMethod.GET, entity, typeRef);
@@ -168,7 +167,7 @@ public class UserServiceImpl implements UserService {
     }
 
         @Override
-        public com.smarttransit.userservice.dto.SubscriptionResponse getSubscription(Long userId, String authorizationHeader) {
+        public com.smarttransit.userservice.dto.SubscriptionResponse getSubscription(Long userId) {
         if (subscriptionsBaseUrl.isBlank()) return new com.smarttransit.userservice.dto.SubscriptionResponse(null, null, null, null, null, null, null, "subscriptions service not configured");
         try {
             org.springframework.web.util.UriComponentsBuilder builder = org.springframework.web.util.UriComponentsBuilder.fromHttpUrl(subscriptionsBaseUrl)
@@ -178,9 +177,8 @@ public class UserServiceImpl implements UserService {
             org.springframework.core.ParameterizedTypeReference<java.util.Map<String, Object>> typeRef =
                 new org.springframework.core.ParameterizedTypeReference<java.util.Map<String, Object>>() {};
             org.springframework.http.HttpHeaders headers = new org.springframework.http.HttpHeaders();
-            if (authorizationHeader != null && !authorizationHeader.isBlank()) {
-                headers.set("Authorization", authorizationHeader);
-            }
+            // The gateway does not pass the token on; the called service trusts X-User-Id as it does from the gateway
+            headers.set("X-User-Id", String.valueOf(userId));
             org.springframework.http.HttpEntity<?> entity = new org.springframework.http.HttpEntity<>(null, headers);
             org.springframework.http.ResponseEntity<java.util.Map<String, Object>> response =
                 restTemplate.exchange(url, org.springframework.http.HttpMethod.GET, entity, typeRef);